@@ -7,6 +7,7 @@ import java.util.Calendar;
 
 import com.uc4.ara.feature.globalcodes.ErrorCodes;
 import com.uc4.ara.feature.utils.CmdLineParser;
+import com.uc4.ara.util.LogLevel;
 import com.uc4.ara.util.Logger;
 
 /**
@@ -19,11 +20,20 @@ public abstract class AbstractPublicFeature implements IFeature {
     protected CmdLineParser parser = new CmdLineParser();
     protected CmdLineParser.Option<String> loglevel;
     protected String loglevelValue = null;
+    /**
+     * The parsed log level, checked by the level-aware methods of {@link Logger}
+     */
+    protected LogLevel logLevel = LogLevel.ERROR;
 
     protected static final String LOGLEVEL_DEFAULT = "ERROR";
 
     @Override
     public void initialize() {
+        //the description is declared by the annotation which is also read into the feature index
+        Feature feature = getClass().getAnnotation(Feature.class);
+        if(feature != null)
+            parser.setDescription(feature.description());
+
         //define the loglevel parameter
         loglevel = parser.addHelp(
                 parser.addStringOption("ll", "loglevel", false),
@@ -36,7 +46,8 @@ public abstract class AbstractPublicFeature implements IFeature {
     {
         //log header
         startTime = Calendar.getInstance();
-        Logger.logHeader(this.getClass().getSimpleName(), startTime);
+        if (isLoggingBanners())
+            Logger.logHeader(this.getClass().getSimpleName(), startTime);
 
         //parse arguments - if parameter ar not valid an excption is thrown
         parser.parse(args);
@@ -45,6 +56,7 @@ public abstract class AbstractPublicFeature implements IFeature {
         loglevelValue = parser.getOptionValue(loglevel);
         if(loglevelValue == null)
             loglevelValue = LOGLEVEL_DEFAULT;
+        logLevel = LogLevel.parse(loglevelValue);
 
         return ErrorCodes.OK;
     }
@@ -52,7 +64,16 @@ public abstract class AbstractPublicFeature implements IFeature {
     @Override
     public void finalize(int errorCode) {
         //log footer
-        Logger.logFooter(getPackageNameFromClass(), this.getClass().getSimpleName(), startTime, Calendar.getInstance(), errorCode);
+        if (isLoggingBanners())
+            Logger.logFooter(getPackageNameFromClass(), this.getClass().getSimpleName(), startTime, Calendar.getInstance(), errorCode);
+    }
+
+    /**
+     * @return false if the feature only runs another feature which logs its
+     *         own header and footer
+     */
+    protected boolean isLoggingBanners() {
+        return true;
     }
 
     @Override
@@ -67,6 +88,22 @@ public abstract class AbstractPublicFeature implements IFeature {
         parser.printDescription(isOneliner);
     }
 
+    /**
+     * Gets the value of a numeric option. If the option is not set or cannot
+     * be parsed the default value is returned.
+     */
+    protected int getIntOptionValue(CmdLineParser.Option<String> option, int defaultValue) throws Exception {
+        String value = parser.getOptionValue(option);
+        if (value == null || value.trim().length() == 0)
+            return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            Logger.log("Cannot parse the " + option.longForm() + " value, use the default value " + defaultValue, loglevelValue);
+            return defaultValue;
+        }
+    }
+
     private String getPackageNameFromClass()
     {
         String className = this.getClass().getName();
@@ -57,7 +57,7 @@ public class AraFileCmd {
 			
 			if(args.length == 0)
 				FeatureUtil.printGeneralHelp(pkg);
-			else if (!FeatureUtil.packageExists(pkg, args[0]))
+			else if (!args[0].toLowerCase().equals("arb") && !FeatureUtil.packageExists(pkg, args[0]))
 				FeatureUtil.printGeneralHelp(pkg);
 			else if (args.length == 1)
 				FeatureUtil.printPackageHelp(pkg, args[0]);
@@ -83,10 +83,11 @@ public class AraFileCmd {
 	
 				}else{
 					// package
-					String className = pkg + '.' + args[0].toLowerCase() + '.'
-							+ args[1];
+					FeatureIndex.Entry entry = FeatureIndex.find(args[0], args[1]);
 					try {
-					Class<?> clazz = Class.forName(className);
+					if (entry == null)
+						throw new ClassNotFoundException(args[0] + ' ' + args[1]);
+					Class<?> clazz = Class.forName(entry.getClassName());
 					// strip off first 2 args
 					String[] params = new String[args.length - 2];
 					for (int i = 2, n = args.length; i < n; i++)
@@ -94,7 +95,7 @@ public class AraFileCmd {
 					
 					if(IFeatureDeprecated.class.isAssignableFrom(clazz))
 					{
-						IFeatureDeprecated instance = (IFeatureDeprecated) clazz.newInstance();
+						IFeatureDeprecated instance = (IFeatureDeprecated) clazz.getDeclaredConstructor().newInstance();
 						
 						// handle password decryption
 						params = handlePasswordDecryption(params);
@@ -118,23 +119,8 @@ public class AraFileCmd {
 							System.exit(ErrorCodes.EXCEPTION);
 						}
 					} else {
-						IFeature feature = (IFeature) clazz.newInstance();
-						int errorCode = ErrorCodes.OK;
-						try {
-							feature.initialize();
-							errorCode = feature.run(params);
-						} catch(Exception e) {
-							if(e.getClass().isAssignableFrom(IllegalStateException.class) && 
-									!AbstractInternalFeature.class.isAssignableFrom(feature.getClass()))
-								feature.printUsage();
-							
-							errorCode = ErrorCodes.EXCEPTION;
-							
-							Logger.logException(e);
-						} finally {
-							feature.finalize(errorCode);
-							System.exit(errorCode);
-						}
+						IFeature feature = (IFeature) clazz.getDeclaredConstructor().newInstance();
+						System.exit(runFeature(feature, params));
 					}
 					} catch(ClassNotFoundException ex) {
 						FeatureUtil.logMsg("Could not find specified method: " + args[1]);
@@ -148,6 +134,60 @@ public class AraFileCmd {
 		}
 	}
 
+	/**
+	 * Creates a new instance of the feature <code>featureName</code> of the
+	 * method group <code>group</code>, i.e. <code>websmoketest GetSite</code>.
+	 * 
+	 * @param group
+	 *            the method group (sub package name)
+	 * @param featureName
+	 *            the simple class name of the feature
+	 * @return a new, not yet initialized feature instance
+	 * @throws ClassNotFoundException
+	 *             if there is no such feature in the {@link FeatureIndex}
+	 * @throws Exception
+	 *             if the feature cannot be instantiated
+	 */
+	public static IFeature createFeature(String group, String featureName) throws Exception {
+		FeatureIndex.Entry entry = FeatureIndex.find(group, featureName);
+		if (entry == null)
+			throw new ClassNotFoundException(group + ' ' + featureName);
+		Class<?> clazz = Class.forName(entry.getClassName());
+		if (!IFeature.class.isAssignableFrom(clazz))
+			throw new ClassNotFoundException(entry.getClassName() + " is not a feature");
+		return (IFeature) clazz.getDeclaredConstructor().newInstance();
+	}
+
+	/**
+	 * Initializes and runs a feature and logs its footer. Unlike
+	 * {@link #main(String[])} this method does not exit the VM so it can be used
+	 * to run several features within one process.
+	 * 
+	 * @param feature
+	 *            the feature to run
+	 * @param params
+	 *            the feature parameters
+	 * @return the return code of the feature
+	 */
+	public static int runFeature(IFeature feature, String[] params) {
+		int errorCode = ErrorCodes.OK;
+		try {
+			feature.initialize();
+			errorCode = feature.run(params);
+		} catch(Exception e) {
+			if(e.getClass().isAssignableFrom(IllegalStateException.class) && 
+					!AbstractInternalFeature.class.isAssignableFrom(feature.getClass()))
+				feature.printUsage();
+			
+			errorCode = ErrorCodes.EXCEPTION;
+			
+			Logger.logException(e);
+		} finally {
+			feature.finalize(errorCode);
+		}
+		return errorCode;
+	}
+
 	private static String[] handlePasswordDecryption(String[] args) {
 		for (int i = 0; i < args.length; i++) {
 			args[i] = decryptPassword(args[i]);
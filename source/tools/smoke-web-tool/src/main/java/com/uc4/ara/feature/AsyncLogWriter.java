@@ -0,0 +1,197 @@
+package com.uc4.ara.feature;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes log messages on a background thread, so the threads logging do not
+ * wait for STDOUT and the log files. The messages are kept in a bounded queue
+ * in the order they were logged and written in batches with one flush per
+ * output and batch. If the queue is full the logging thread waits, messages
+ * are never dropped, since the job report has to be complete.
+ * <p>
+ * {@link #flush()} waits until the messages logged before are written,
+ * {@link #close()} writes everything still queued and makes the following
+ * messages being written directly by the logging thread.
+ */
+final class AsyncLogWriter {
+
+	/**
+	 * Maximum number of messages written in one batch
+	 */
+	private static final int BATCH_SIZE = 512;
+
+	private final BlockingQueue<Record> queue;
+	private final Thread thread;
+	private final Object closeLock = new Object();
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates the writer and starts its thread.
+	 *
+	 * @param capacity
+	 *            maximum number of queued messages
+	 * @param threadName
+	 *            name of the writing thread
+	 */
+	AsyncLogWriter(int capacity, String threadName) {
+		queue = new ArrayBlockingQueue<Record>(capacity);
+		thread = new Thread(threadName) {
+			@Override
+			public void run() {
+				List<Record> batch = new ArrayList<Record>(BATCH_SIZE);
+				while (true) {
+					try {
+						batch.add(queue.take());
+					} catch (InterruptedException e) {
+						// interrupted by close, which writes the rest
+						return;
+					}
+					queue.drainTo(batch, BATCH_SIZE - 1);
+					write(batch);
+					batch.clear();
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Queues the text for the output.
+	 *
+	 * @param out
+	 *            a <code>PrintStream</code> or <code>PrintWriter</code>
+	 * @param text
+	 *            the text including the line separator
+	 */
+	<T extends Appendable & Flushable> void write(T out, String text) {
+		Record record = new Record(out, text, null);
+		if (!closed) {
+			try {
+				// offer does not fail for interrupted threads, e.g. cancelled checks
+				if (!queue.offer(record))
+					queue.put(record);
+				if (!closed || !queue.remove(record))
+					return;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		// closed or interrupted while the queue is full: write on the calling thread
+		synchronized (closeLock) {
+			write(Collections.singletonList(record));
+		}
+	}
+
+	/**
+	 * Waits until all messages queued so far are written and flushed.
+	 */
+	void flush() {
+		if (closed || Thread.currentThread() == thread)
+			return;
+		CountDownLatch written = new CountDownLatch(1);
+		try {
+			Record marker = new Record(null, null, written);
+			if (!queue.offer(marker))
+				queue.put(marker);
+			while (!closed && !written.await(100, TimeUnit.MILLISECONDS)) {
+				// wait, close writes the marker as well
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Stops the thread and writes the messages still queued. Called when the
+	 * VM shuts down.
+	 */
+	void close() {
+		synchronized (closeLock) {
+			if (closed)
+				return;
+			closed = true;
+			thread.interrupt();
+			try {
+				thread.join(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			List<Record> rest = new ArrayList<Record>();
+			queue.drainTo(rest);
+			write(rest);
+		}
+	}
+
+	/**
+	 * Writes the texts of consecutive records for the same output at once and
+	 * flushes every output of the batch.
+	 */
+	private static void write(List<Record> batch) {
+		Map<Appendable, Flushable> outputs = new IdentityHashMap<Appendable, Flushable>();
+		StringBuilder text = new StringBuilder();
+		Record previous = null;
+		for (Record record : batch) {
+			if (previous != null && record.out != previous.out) {
+				append(previous, text);
+				text.setLength(0);
+			}
+			if (record.written != null) {
+				flush(outputs);
+				record.written.countDown();
+				previous = null;
+				continue;
+			}
+			text.append(record.text);
+			outputs.put(record.out, (Flushable) record.out);
+			previous = record;
+		}
+		if (previous != null)
+			append(previous, text);
+		flush(outputs);
+	}
+
+	private static void append(Record record, StringBuilder text) {
+		try {
+			record.out.append(text);
+		} catch (IOException e) {
+			// PrintStream and PrintWriter report errors by checkError()
+		}
+	}
+
+	private static void flush(Map<Appendable, Flushable> outputs) {
+		for (Flushable out : outputs.values()) {
+			try {
+				out.flush();
+			} catch (IOException e) {
+				// as above
+			}
+		}
+		outputs.clear();
+	}
+
+	/**
+	 * A queued message or, without output, a flush marker.
+	 */
+	private static class Record {
+		private final Appendable out;
+		private final String text;
+		private final CountDownLatch written;
+
+		Record(Appendable out, String text, CountDownLatch written) {
+			this.out = out;
+			this.text = text;
+			this.written = written;
+		}
+	}
+}
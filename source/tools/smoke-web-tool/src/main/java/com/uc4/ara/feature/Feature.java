@@ -0,0 +1,26 @@
+package com.uc4.ara.feature;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class as a feature which can be called from the command line as
+ * <code>&lt;method group&gt; &lt;class name&gt;</code>, the method group is the
+ * name of its sub package. The features are listed in the
+ * {@link FeatureIndex} which is generated by the
+ * {@link FeatureIndexProcessor} at build time, so neither the help nor the
+ * dispatch of a call has to look into the jar.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Feature {
+
+	/**
+	 * The description printed by the help and the usage of the feature
+	 */
+	String description();
+}
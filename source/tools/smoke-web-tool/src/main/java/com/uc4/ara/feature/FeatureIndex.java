@@ -0,0 +1,200 @@
+package com.uc4.ara.feature;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The features of the tool, read from the index generated at build time by
+ * the {@link FeatureIndexProcessor}. The help lists the features and a call is
+ * dispatched to its class without scanning the jar or loading the classes of
+ * other features.
+ * <p>
+ * The index has one line per feature with the tab separated method group,
+ * class name, whether the feature is listed by the help and its description.
+ */
+public final class FeatureIndex {
+
+	static final String RESOURCE_NAME = "features.index";
+
+	private static final String LISTED = "public";
+	private static final String NOT_LISTED = "internal";
+
+	/**
+	 * A feature of the index.
+	 */
+	public static final class Entry {
+		private final String group;
+		private final String className;
+		private final boolean listed;
+		private final String description;
+
+		Entry(String group, String className, boolean listed, String description) {
+			this.group = group;
+			this.className = className;
+			this.listed = listed;
+			this.description = description;
+		}
+
+		/**
+		 * @return the method group, i.e. the sub package name
+		 */
+		public String getGroup() {
+			return group;
+		}
+
+		/**
+		 * @return the name the feature is called by, i.e. its simple class name
+		 */
+		public String getName() {
+			return className.substring(className.lastIndexOf('.') + 1);
+		}
+
+		public String getClassName() {
+			return className;
+		}
+
+		/**
+		 * @return true if the feature is listed by the help
+		 */
+		public boolean isListed() {
+			return listed;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+	}
+
+	private static final class Holder {
+		private static final List<Entry> ENTRIES = load();
+	}
+
+	private FeatureIndex() {
+	}
+
+	/**
+	 * @return the method groups with features listed by the help
+	 */
+	public static List<String> getGroups() {
+		List<String> groups = new ArrayList<String>();
+		for (Entry entry : Holder.ENTRIES) {
+			if (entry.isListed() && !groups.contains(entry.getGroup()))
+				groups.add(entry.getGroup());
+		}
+		return groups;
+	}
+
+	/**
+	 * @return the features of the method group listed by the help
+	 */
+	public static List<Entry> getFeatures(String group) {
+		List<Entry> features = new ArrayList<Entry>();
+		for (Entry entry : Holder.ENTRIES) {
+			if (entry.isListed() && entry.getGroup().equalsIgnoreCase(group))
+				features.add(entry);
+		}
+		return features;
+	}
+
+	/**
+	 * @return true if the method group has any feature, listed or not
+	 */
+	public static boolean hasGroup(String group) {
+		for (Entry entry : Holder.ENTRIES) {
+			if (entry.getGroup().equalsIgnoreCase(group))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Finds a feature, listed or not.
+	 *
+	 * @param group
+	 *            the method group, the case is ignored
+	 * @param name
+	 *            the simple class name of the feature
+	 * @return the feature, null if there is no such feature
+	 */
+	public static Entry find(String group, String name) {
+		for (Entry entry : Holder.ENTRIES) {
+			if (entry.getGroup().equalsIgnoreCase(group) && entry.getName().equals(name))
+				return entry;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the index line of a feature, without line separator
+	 */
+	static String format(String group, String className, boolean listed, String description) {
+		return group + '\t' + className + '\t' + (listed ? LISTED : NOT_LISTED) + '\t' + escape(description);
+	}
+
+	private static List<Entry> load() {
+		List<Entry> entries = new ArrayList<Entry>();
+		// the processor compiles this class as well, so it must not use FeatureUtil
+		InputStream in = FeatureIndex.class.getResourceAsStream(RESOURCE_NAME);
+		if (in == null)
+			return entries;
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] fields = line.split("\t", 4);
+					if (fields.length == 4)
+						entries.add(new Entry(fields[0], fields[1], LISTED.equals(fields[2]), unescape(fields[3])));
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot read the feature index " + RESOURCE_NAME, e);
+		}
+		return Collections.unmodifiableList(entries);
+	}
+
+	private static String escape(String text) {
+		StringBuilder builder = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '\\':
+				builder.append("\\\\");
+				break;
+			case '\t':
+				builder.append("\\t");
+				break;
+			case '\n':
+				builder.append("\\n");
+				break;
+			case '\r':
+				builder.append("\\r");
+				break;
+			default:
+				builder.append(c);
+			}
+		}
+		return builder.toString();
+	}
+
+	private static String unescape(String text) {
+		StringBuilder builder = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '\\' && i + 1 < text.length()) {
+				char next = text.charAt(++i);
+				builder.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+			} else {
+				builder.append(c);
+			}
+		}
+		return builder.toString();
+	}
+}
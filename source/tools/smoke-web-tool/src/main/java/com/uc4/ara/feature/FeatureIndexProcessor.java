@@ -0,0 +1,184 @@
+package com.uc4.ara.feature;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.NoSuchFileException;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates the {@link FeatureIndex} from the classes annotated with
+ * {@link Feature}. The processor is compiled together with {@link Feature}
+ * and {@link FeatureIndex} before the other classes, see the pom, so it refers
+ * to the feature classes by name only.
+ * <p>
+ * An incremental build compiles only some of the features, so the index of
+ * the previous build is merged: its features which still exist and are still
+ * annotated are kept.
+ */
+@SupportedAnnotationTypes(FeatureIndexProcessor.FEATURE_ANNOTATION)
+public class FeatureIndexProcessor extends AbstractProcessor {
+
+	static final String BASE_PACKAGE = "com.uc4.ara.feature";
+	static final String FEATURE_ANNOTATION = BASE_PACKAGE + ".Feature";
+
+	private static final String PUBLIC_FEATURE = BASE_PACKAGE + ".AbstractPublicFeature";
+	private static final String INTERNAL_FEATURE = BASE_PACKAGE + ".AbstractInternalFeature";
+	private static final String[] FEATURE_INTERFACES = { BASE_PACKAGE + ".IFeature", BASE_PACKAGE + ".IFeatureDeprecated" };
+
+	/**
+	 * The index lines by group and class name, collected over all rounds
+	 */
+	private final TreeMap<String, String> lines = new TreeMap<String, String>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		TypeElement annotation = processingEnv.getElementUtils().getTypeElement(FEATURE_ANNOTATION);
+		if (annotation != null) {
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation))
+				add(element);
+		}
+		if (roundEnv.processingOver() && !lines.isEmpty())
+			write();
+		return true;
+	}
+
+	private void add(Element element) {
+		if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)
+				|| !element.getModifiers().contains(Modifier.PUBLIC)) {
+			error(element, "A feature has to be a public, not abstract class");
+			return;
+		}
+		TypeElement type = (TypeElement) element;
+		if (!isFeature(type)) {
+			error(element, "A feature has to implement IFeature or IFeatureDeprecated");
+			return;
+		}
+		if (!hasDefaultConstructor(type)) {
+			error(element, "A feature needs a public constructor without parameters");
+			return;
+		}
+
+		String className = type.getQualifiedName().toString();
+		String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		if (!packageName.startsWith(BASE_PACKAGE + ".") || packageName.indexOf('.', BASE_PACKAGE.length() + 1) >= 0) {
+			error(element, "A feature has to be in a sub package of " + BASE_PACKAGE + ", which is its method group");
+			return;
+		}
+		String group = packageName.substring(BASE_PACKAGE.length() + 1);
+
+		// only public features which are not internal are listed by the help
+		boolean listed = isSubtype(type, PUBLIC_FEATURE) && !isSubtype(type, INTERNAL_FEATURE);
+		String description = type.getAnnotation(Feature.class).description();
+
+		lines.put(group + '\t' + className, FeatureIndex.format(group, className, listed, description));
+	}
+
+	private boolean isFeature(TypeElement type) {
+		for (String name : FEATURE_INTERFACES) {
+			if (isSubtype(type, name))
+				return true;
+		}
+		return false;
+	}
+
+	private boolean isSubtype(TypeElement type, String name) {
+		TypeElement other = processingEnv.getElementUtils().getTypeElement(name);
+		if (other == null)
+			return false;
+		TypeMirror otherType = processingEnv.getTypeUtils().erasure(other.asType());
+		return processingEnv.getTypeUtils().isAssignable(type.asType(), otherType);
+	}
+
+	private static boolean hasDefaultConstructor(TypeElement type) {
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC))
+				return true;
+		}
+		return false;
+	}
+
+	private void write() {
+		try {
+			readPreviousIndex();
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Cannot read the feature index of the previous build: " + e.getMessage());
+			return;
+		}
+		try {
+			FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, BASE_PACKAGE,
+					FeatureIndex.RESOURCE_NAME);
+			Writer writer = file.openWriter();
+			try {
+				for (String line : lines.values())
+					writer.write(line + "\n");
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Cannot write the feature index: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Adds the features of the index in the class output which were not
+	 * compiled in this build, as long as they are still features.
+	 */
+	private void readPreviousIndex() throws IOException {
+		Reader in;
+		try {
+			in = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, BASE_PACKAGE,
+					FeatureIndex.RESOURCE_NAME).openReader(true);
+		} catch (FileNotFoundException e) {
+			return;
+		} catch (NoSuchFileException e) {
+			return;
+		}
+		BufferedReader reader = new BufferedReader(in);
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", 3);
+				if (fields.length < 3)
+					throw new IOException("Invalid line: " + line);
+				String key = fields[0] + '\t' + fields[1];
+				if (lines.containsKey(key))
+					continue;
+				TypeElement type = processingEnv.getElementUtils().getTypeElement(fields[1]);
+				if (type != null && type.getAnnotation(Feature.class) != null)
+					lines.put(key, line);
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	private void error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+}
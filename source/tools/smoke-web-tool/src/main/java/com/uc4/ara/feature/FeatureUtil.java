@@ -11,24 +11,15 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
+import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
-import java.lang.reflect.Modifier;
 import java.net.URL;
-import java.net.URLDecoder;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Enumeration;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
 import java.util.jar.Attributes;
-import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
-import java.util.zip.ZipEntry;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -68,6 +59,33 @@ public class FeatureUtil {
      */
     private static final PrintWriter traceFile;
 
+    /**
+     * Replaces STDOUT for the current thread, see
+     * {@link #setThreadOutput(PrintStream)}. Not inherited, threads shared by
+     * the whole process (connection evictors, HTTP client pools) must not
+     * keep the output of the feature that happened to start them.
+     */
+    private static final ThreadLocal<PrintStream> threadOutput = new ThreadLocal<PrintStream>();
+
+    /**
+     * Maximum number of messages waiting to be written, see
+     * {@link AsyncLogWriter}.
+     */
+    private static final int LOG_QUEUE_CAPACITY = 8192;
+
+    /**
+     * Writes the messages to STDOUT, the log and the trace file.
+     */
+    private static final AsyncLogWriter logWriter = new AsyncLogWriter(LOG_QUEUE_CAPACITY, "log-writer");
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    /**
+     * Collects the messages of the current thread, see
+     * {@link #startLogBuffer()}.
+     */
+    private static final ThreadLocal<LogBuffer> logBuffer = new ThreadLocal<LogBuffer>();
+
     /**
      * The compiled version.
      */
@@ -90,11 +108,12 @@ public class FeatureUtil {
                 plog = new PrintWriter(logName);
             if (traceName != null)
                 ptrace = new PrintWriter(logName);
-            // close the log & trace files on exit
+            // write the queued messages and close the log & trace files on exit
             Runtime.getRuntime().addShutdownHook(new Thread() {
                 @Override
                 public void run() {
                     try {
+                        logWriter.close();
                         if (logFile != null)
                             logFile.close();
                         if (traceFile != null)
@@ -181,10 +200,15 @@ public class FeatureUtil {
      */
     public static void dbgMsg(String msg) {
         if (debug) {
-            msg = "D- " + msg;
-            System.out.println(msg);
+            msg = "D- " + msg + LINE_SEPARATOR;
+            LogBuffer buffer = logBuffer.get();
+            if (buffer != null) {
+                buffer.append(msg, false);
+                return;
+            }
+            logWriter.write(getOutput(), msg);
             if (traceFile != null)
-                traceFile.println(msg);
+                logWriter.write(traceFile, msg);
         }
     }
 
@@ -208,7 +232,8 @@ public class FeatureUtil {
     }
 
     /**
-     * write a message to STDOUT and the log file.
+     * write a message to STDOUT and the log file. The message is written
+     * asynchronously, see {@link #flushLog()}.
      * 
      * @param msg
      *            message text
@@ -216,12 +241,66 @@ public class FeatureUtil {
      *            the type {@link MsgTypes}
      */
     public static void logMsg(String msg, MsgTypes type) {
-        msg = type.prefix + msg;
-        System.out.println(msg);
+        msg = type.prefix + msg + LINE_SEPARATOR;
+        LogBuffer buffer = logBuffer.get();
+        if (buffer != null) {
+            buffer.append(msg, true);
+            return;
+        }
+        logWriter.write(getOutput(), msg);
         if (logFile != null)
-            logFile.println(msg);
+            logWriter.write(logFile, msg);
         if (traceFile != null)
-            traceFile.println(msg);
+            logWriter.write(traceFile, msg);
+    }
+
+    /**
+     * Waits until the messages logged so far are written. Needed before
+     * writing to an output directly or reading what was logged to it.
+     */
+    public static void flushLog() {
+        logWriter.flush();
+    }
+
+    /**
+     * Collects the messages of the current thread in memory instead of
+     * writing them, until {@link #endLogBuffer(boolean)} is called. Used to
+     * write the output of a check as one block while other checks are
+     * logging in parallel. Buffers can be nested.
+     */
+    public static void startLogBuffer() {
+        logBuffer.set(new LogBuffer(logBuffer.get()));
+    }
+
+    /**
+     * Ends the buffer started last by the current thread.
+     * 
+     * @param write
+     *            if true the collected messages are written at once, into
+     *            the enclosing buffer if there is one, otherwise they are
+     *            discarded
+     */
+    public static void endLogBuffer(boolean write) {
+        LogBuffer buffer = logBuffer.get();
+        if (buffer == null)
+            return;
+        if (buffer.parent != null)
+            logBuffer.set(buffer.parent);
+        else
+            logBuffer.remove();
+        if (!write || buffer.output.length() == 0)
+            return;
+
+        if (buffer.parent != null) {
+            buffer.parent.append(buffer);
+            return;
+        }
+        String output = buffer.output.toString();
+        logWriter.write(getOutput(), output);
+        if (logFile != null && buffer.log.length() > 0)
+            logWriter.write(logFile, buffer.log.toString());
+        if (traceFile != null)
+            logWriter.write(traceFile, output);
     }
 
     /**
@@ -240,7 +319,70 @@ public class FeatureUtil {
         /*for (StackTraceElement stackTraceElement : t.getStackTrace()) {
             logMsg(stackTraceElement.toString(), MsgTypes.ERROR);
         }*/
-        t.printStackTrace();
+        StringWriter stackTrace = new StringWriter();
+        t.printStackTrace(new PrintWriter(stackTrace));
+        LogBuffer buffer = logBuffer.get();
+        if (buffer != null) {
+            // keeps the stack trace within the output of the buffering check
+            buffer.append(stackTrace.toString(), false);
+            return;
+        }
+        logWriter.write(threadOutput.get() != null ? threadOutput.get() : System.err, stackTrace.toString());
+    }
+
+    /**
+     * Redirects the messages logged by the current thread to <code>out</code>
+     * instead of STDOUT. Used to send the output of a feature executed by the
+     * daemon back to the client. The messages logged before are written
+     * first, so the previous output is complete and can be closed or read.
+     * Worker threads of the feature get the output by
+     * {@link #runWithOutput(PrintStream, Runnable)}.
+     * 
+     * @param out
+     *            the stream to write to, null to log to STDOUT again
+     */
+    public static void setThreadOutput(PrintStream out) {
+        flushLog();
+        if (out == null)
+            threadOutput.remove();
+        else
+            threadOutput.set(out);
+    }
+
+    /**
+     * @return the stream set by {@link #setThreadOutput(PrintStream)} for the
+     *         current thread, null if it logs to STDOUT
+     */
+    public static PrintStream getThreadOutput() {
+        return threadOutput.get();
+    }
+
+    /**
+     * Runs a task of a feature in a worker thread of the feature, logging to
+     * the output of the feature.
+     * 
+     * @param out
+     *            the output of the feature, see {@link #getThreadOutput()},
+     *            null for STDOUT
+     * @param task
+     *            the task to run in the current thread
+     */
+    public static void runWithOutput(PrintStream out, Runnable task) {
+        PrintStream previous = threadOutput.get();
+        threadOutput.set(out);
+        try {
+            task.run();
+        } finally {
+            if (previous == null)
+                threadOutput.remove();
+            else
+                threadOutput.set(previous);
+        }
+    }
+
+    private static PrintStream getOutput() {
+        PrintStream out = threadOutput.get();
+        return out != null ? out : System.out;
     }
 
     /**
@@ -433,13 +575,15 @@ public class FeatureUtil {
     }
 
     /**
-     * Gets the compiled version. This is performed by scanning the manifest.mf
-     * files in the current jar and searching for the key
-     * <code>Application-Version</code>
+     * Gets the compiled version. This is performed by reading the manifest of
+     * the jar containing this class and searching for the key
+     * <code>Application-Version</code> in the section
+     * <code>manifestContentGroup</code>. The manifests of the other jars on the
+     * classpath are not read, the result is kept for the following calls.
      * 
      * @param manifestContentGroup
      *            the manifest content group
-     * @return the compiled version
+     * @return the compiled version, "unknown" if not run from the jar
      * @throws IOException
      *             Signals that an I/O exception has occurred.
      */
@@ -449,49 +593,31 @@ public class FeatureUtil {
         if (compiledVersion != null)
             return compiledVersion;
 
-        Enumeration<URL> resources = ClassLoader.getSystemClassLoader().getResources("META-INF/MANIFEST.MF");
-
         compiledVersion = "unknown";
         compiledDate = "unknown";
 
-        while (resources.hasMoreElements()) {
-            URL url = resources.nextElement();
-            // System.out.println("file: " + url.getFile());
-            String u = url.getFile();
-            int idx = u.indexOf("!");
-            if (idx > 0)
-                u = u.substring(0, idx);
-            if (u.startsWith("file:"))
-                u = u.substring(5);
-            try {
-                u = u.replace("%20", " ");
-                JarFile myJar = new JarFile(u); // various
-                // constructors
-                // available
-                Manifest manifest = myJar.getManifest();
-                Map<String, Attributes> manifestContents = manifest
-                        .getEntries();
-                for (Map.Entry<String, Attributes> entry : manifestContents
-                        .entrySet()) {
-                    // System.out.println("  key: " + key);
-                    Attributes attrs = entry.getValue();
-                    for (Map.Entry<Object, Object> entry2 : attrs.entrySet()) {
-                        // System.out.println("    k: " + key2 + ", "
-                        // + attrs.get(key2));
-                        if (entry.getKey().equals(manifestContentGroup) &&
-                                entry2.getKey().toString().equals("Application-BuildDate")) {
-                            compiledDate = entry2.getValue().toString();
-                        }
-
-                        if (entry.getKey().equals(manifestContentGroup)
-                                && entry2.getKey().toString().equals("Application-Version")) {
-                            compiledVersion = entry2.getValue().toString();
-                        }
-                    }
-                }
-            } catch (IOException e) {
-                FeatureUtil.logMsg(e);
+        // jar:file:/.../smoke-web-tool.jar!/com/uc4/ara/feature/FeatureUtil.class
+        URL classUrl = FeatureUtil.class.getResource(FeatureUtil.class.getSimpleName() + ".class");
+        String location = classUrl != null ? classUrl.toString() : "";
+        int idx = location.lastIndexOf("!/");
+        if (!location.startsWith("jar:") || idx < 0)
+            return compiledVersion;
+
+        InputStream in = null;
+        try {
+            in = new URL(location.substring(0, idx + 2) + JarFile.MANIFEST_NAME).openStream();
+            Attributes attrs = new Manifest(in).getAttributes(manifestContentGroup);
+            if (attrs != null) {
+                if (attrs.getValue("Application-Version") != null)
+                    compiledVersion = attrs.getValue("Application-Version");
+                if (attrs.getValue("Application-BuildDate") != null)
+                    compiledDate = attrs.getValue("Application-BuildDate");
             }
+        } catch (IOException e) {
+            FeatureUtil.logMsg(e);
+        } finally {
+            if (in != null)
+                in.close();
         }
 
         return compiledVersion;
@@ -534,156 +660,52 @@ public class FeatureUtil {
     }
 
     public static void printGeneralHelp(String basePackage) throws Exception {
-        Package pkg = Package.getPackage(basePackage);
-        List<String> packageNames = new ArrayList<String>();
-
         FeatureUtil.logMsg("Available Method Groups:");
         FeatureUtil.logMsg("=========================");
 
-        if(pkg != null)
-        {
-            for(String subPackage : getPackageNamesInPackage(basePackage)) {
-                Set<Class> classes = getClassesInPackage(basePackage, subPackage.replace(basePackage + ".", ""));
-                for(Class clazz : classes) {
-                    if(AbstractPublicFeature.class.isAssignableFrom(clazz) && !clazz.getSimpleName().equals(AbstractPublicFeature.class.getSimpleName())) {
-                        if(!AbstractInternalFeature.class.isAssignableFrom(clazz) && !packageNames.contains(subPackage.replace(basePackage + ".", ""))) {
-                            packageNames.add(subPackage.replace(basePackage + ".", ""));
-                        }
-                    }
-                }
-            }
-        }
-
-        for(String packageName : packageNames) {
+        for(String packageName : FeatureIndex.getGroups()) {
             FeatureUtil.logMsg(packageName);
         }
     }
 
     public static void printPackageHelp(String basePackage, String packageName) throws Exception {
-        Package pkg = Package.getPackage(basePackage);
-
         FeatureUtil.logMsg("Available Package Methods:");
         FeatureUtil.logMsg("===========================");
 
-        if(pkg != null)
-        {
-            Set<Class> classes = getClassesInPackage(basePackage, packageName);
-            for(Class clazz : classes) {
-                if(AbstractPublicFeature.class.isAssignableFrom(clazz) && !clazz.getSimpleName().equals(AbstractPublicFeature.class.getSimpleName())) {
-                    if(!AbstractInternalFeature.class.isAssignableFrom(clazz)) {
-                        if(!Modifier.isAbstract(clazz.getModifiers()))
-                        {
-                            IFeature feature = (IFeature) clazz.newInstance();
-                            feature.initialize();
-                            FeatureUtil.logMsg(feature.getClass().getSimpleName());
-                            feature.printDescription(true);
-                        }
-                    }
-                }
-            }
+        //the index holds the descriptions, the features are neither loaded nor initialized
+        for(FeatureIndex.Entry feature : FeatureIndex.getFeatures(packageName)) {
+            FeatureUtil.logMsg(feature.getName());
+            if(feature.getDescription().length() > 0)
+                FeatureUtil.logMsg(" - " + feature.getDescription());
         }
     }
 
     public static boolean packageExists(String basePackage, String packageName) {
-        Package pkg = Package.getPackage(String.format(basePackage, ".", packageName));
-        if(pkg != null)
-            return true;
-
-        return false;
+        return FeatureIndex.hasGroup(packageName);
     }
 
-    private static Set<String> getPackageNamesInPackage(String packageName) {
-        Set<String> packageNames = new HashSet<String>();
-        String packageNameSlashed = packageName.replace(".", "/");
-        // Get a File object for the package
-        URL directoryURL = Thread.currentThread().getContextClassLoader().getResource(packageNameSlashed);
-        if (directoryURL == null) {
-            FeatureUtil.logMsg("Could not retrieve URL resource: " + packageNameSlashed);
-            return packageNames;
-        }
-
-        JarFile jar;
-        try {
-            jar = new JarFile(URLDecoder.decode(FeatureUtil.class.getProtectionDomain().getCodeSource().getLocation().getPath()));
-
-            // Getting the files into the jar
-            Enumeration<? extends JarEntry> enumeration = jar.entries();
-
-            // Iterates into the files in the jar file
-            while (enumeration.hasMoreElements()) {
-                ZipEntry zipEntry = enumeration.nextElement();
-
-                if(zipEntry.getName().startsWith(packageNameSlashed))
-                {
-                    // Is this a class?
-                    if (zipEntry.getName().endsWith("/") && !zipEntry.getName().equals(packageNameSlashed + "/")) {
-
-                        // Relative path of file into the jar.
-                        String className = zipEntry.getName();
-                        // Complete class name
-                        className = className.replace(".class", "").replace("/", ".");
-                        // Load class definition from JVM
-                        String resultPackageName = className.replace(packageName + ".", "");
-                        resultPackageName = resultPackageName.trim().substring(0, resultPackageName.trim().length() - 1);
-                        if(!packageNames.contains(resultPackageName))
-                            packageNames.add(resultPackageName);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        }
-        return packageNames;
-    }
+    /**
+     * Messages collected for STDOUT and the trace file, and those for the log
+     * file, which does not receive debug messages and stack traces.
+     */
+    private static class LogBuffer {
+        private final LogBuffer parent;
+        private final StringBuilder output = new StringBuilder();
+        private final StringBuilder log = new StringBuilder();
 
-    private static Set<Class> getClassesInPackage(String packageName, String subPackageName) {
-        Set<Class> classes = new HashSet<Class>();
-        String packageNameSlashed = packageName.replace(".", "/");
-        // Get a File object for the package
-        URL directoryURL = Thread.currentThread().getContextClassLoader().getResource(packageNameSlashed);
-        if (directoryURL == null) {
-            FeatureUtil.logMsg("Could not retrieve URL resource: " + packageNameSlashed);
-            return classes;
+        LogBuffer(LogBuffer parent) {
+            this.parent = parent;
         }
 
-        String directoryString = directoryURL.getFile();
-        if (directoryString == null) {
-            FeatureUtil.logMsg("Could not find directory for URL resource: " + packageNameSlashed);
-            return classes;
+        void append(String msg, boolean toLogFile) {
+            output.append(msg);
+            if (toLogFile)
+                log.append(msg);
         }
-        JarFile jar;
-        try {
-            jar = new JarFile(URLDecoder.decode(FeatureUtil.class.getProtectionDomain().getCodeSource().getLocation().getPath()));
-            // Getting the files into the jar
-            Enumeration<? extends JarEntry> enumeration = jar.entries();
-
-            // Iterates into the files in the jar file
-            while (enumeration.hasMoreElements()) {
-                ZipEntry zipEntry = enumeration.nextElement();
-
-                if(zipEntry.getName().startsWith(packageNameSlashed + "/" + subPackageName))
-                {
-                    // Is this a class?
-                    if (zipEntry.getName().endsWith(".class")) {
-
-                        // Relative path of file into the jar.
-                        String className = zipEntry.getName();
-
-                        // Complete class name
-                        className = className.replace(".class", "").replace("/", ".");
-
-                        // Load class definition from JVM
-                        Class<?> clazz = FeatureUtil.class.getClassLoader().loadClass(className);
 
-                        classes.add(clazz);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+        void append(LogBuffer buffer) {
+            output.append(buffer.output);
+            log.append(buffer.log);
         }
-        return classes;
     }
 }
@@ -1,27 +1,29 @@
 package com.uc4.ara.feature.cipher;
 
 import com.uc4.ara.feature.AbstractFeature;
+import com.uc4.ara.feature.Feature;
 import com.uc4.ara.feature.FeatureUtil;
 import com.uc4.ara.feature.globalcodes.ErrorCodes;
 import com.uc4.ara.feature.utils.Maxim;
 
+@Feature(description = "Encrypts or decrypts a text or password.")
 public class Password extends AbstractFeature {
 
 	public int run(String[] args) throws Exception {
 		String command = args[0];
 		String argumentText = args[1];
 		
-		System.out.println("Length Input: " + argumentText.length());
+		FeatureUtil.logMsg("Length Input: " + argumentText.length());
 		
 		if(command.toLowerCase().trim().equals("encrypt")) {
 			String encrypted = Maxim.enMaxim(argumentText, true);
-			System.out.println("Encrypted: " + encrypted);
-			System.out.println("Length Encrypted: " + encrypted.length());
+			FeatureUtil.logMsg("Encrypted: " + encrypted);
+			FeatureUtil.logMsg("Length Encrypted: " + encrypted.length());
 		}
 		if(command.toLowerCase().trim().equals("decrypt")){
 			String decrypted = Maxim.deMaxim(argumentText);
-			System.out.println("Decrypted: " + decrypted);
-			System.out.println("Length Decrypted: " + decrypted.length());
+			FeatureUtil.logMsg("Decrypted: " + decrypted);
+			FeatureUtil.logMsg("Length Decrypted: " + decrypted.length());
 		}
 		
 		return ErrorCodes.OK;
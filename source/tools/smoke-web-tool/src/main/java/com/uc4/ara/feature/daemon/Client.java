@@ -0,0 +1,117 @@
+package com.uc4.ara.feature.daemon;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ConnectException;
+import java.net.Socket;
+
+import com.uc4.ara.feature.AbstractPublicFeature;
+import com.uc4.ara.feature.AraFileCmd;
+import com.uc4.ara.feature.Feature;
+import com.uc4.ara.feature.FeatureUtil;
+import com.uc4.ara.feature.IFeature;
+import com.uc4.ara.feature.globalcodes.ErrorCodes;
+import com.uc4.ara.feature.utils.CmdLineParser;
+import com.uc4.ara.util.Logger;
+
+@Feature(description = "Submits a method call to the server started by 'daemon Server' and returns the return code of the method. "
+    + "The arguments after '--' are the method group, the method and its arguments as they are passed to the tool.")
+public class Client extends AbstractPublicFeature {
+
+  private CmdLineParser.Option<String> port;
+  private CmdLineParser.Option<String> fallback;
+
+  @Override
+  public void initialize() {
+    super.initialize();
+    parser.setExamples("java -jar ARATools daemon Client -port " + DaemonProtocol.DEFAULT_PORT
+        + " -- websmoketest GetSite -url \"http://www.yoursite.com\" -t 10000");
+
+    port = parser.addHelp(parser.addStringOption("port", "port", false),
+        "The local TCP port of the server. Default: " + DaemonProtocol.DEFAULT_PORT + ".");
+    fallback = parser.addHelp(parser.addStringOption("fb", "fallback", false),
+        "If \"yes\" (default) the method runs within the client process if the server is not running.");
+  }
+
+  @Override
+  public int run(String[] args) throws Exception {
+    super.run(args);
+
+    int portValue = getIntOptionValue(port, DaemonProtocol.DEFAULT_PORT);
+    boolean fallbackValue = !"NO".equalsIgnoreCase(parser.getOptionValue(fallback));
+    String[] request = parser.getRemainingArgs();
+
+    if (request.length < 2) {
+      Logger.log("Method group and method expected after '--'.", this.loglevelValue);
+      return ErrorCodes.PARAMSMISMATCH;
+    }
+
+    // without token file the server is not running or was started by another user
+    String token = DaemonProtocol.readToken(portValue);
+    Socket socket = null;
+    if (token != null) {
+      try {
+        socket = DaemonProtocol.connect(portValue);
+      } catch (ConnectException e) {
+        // not running, see below
+      }
+    }
+    if (socket == null) {
+      if (!fallbackValue) {
+        Logger.log("Error: Failed to connect to the server on port " + portValue + ".", this.loglevelValue);
+        return ErrorCodes.EXCEPTION;
+      }
+      Logger.log("Server is not running on port " + portValue + ", running " + request[1] + " locally.", this.loglevelValue);
+      return runLocally(request);
+    }
+
+    try {
+      DaemonProtocol.sendRequest(socket, token, DaemonProtocol.encodeRequest(request));
+      return readResponse(socket);
+    } finally {
+      socket.close();
+    }
+  }
+
+  /**
+   * The output of the method, run by the server or locally, has its own
+   * header and footer.
+   */
+  @Override
+  protected boolean isLoggingBanners() {
+    return false;
+  }
+
+  /**
+   * Prints the output sent by the server.
+   *
+   * @return the return code sent by the server
+   */
+  static int readResponse(Socket socket) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), DaemonProtocol.CHARSET));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.startsWith(DaemonProtocol.OUTPUT_PREFIX)) {
+        FeatureUtil.logMsg(line.substring(DaemonProtocol.OUTPUT_PREFIX.length()));
+      } else if (line.startsWith(DaemonProtocol.RESULT_PREFIX)) {
+        return Integer.parseInt(line.substring(DaemonProtocol.RESULT_PREFIX.length()).trim());
+      }
+    }
+    FeatureUtil.logMsg("Connection to the server closed without return code.");
+    return ErrorCodes.EXCEPTION;
+  }
+
+  private int runLocally(String[] request) {
+    IFeature feature;
+    try {
+      feature = AraFileCmd.createFeature(request[0], request[1]);
+    } catch (Exception e) {
+      Logger.log("Could not find specified method: " + request[1], this.loglevelValue);
+      return ErrorCodes.EXCEPTION;
+    }
+    String[] params = new String[request.length - 2];
+    System.arraycopy(request, 2, params, 0, params.length);
+    return AraFileCmd.runFeature(feature, params);
+  }
+}
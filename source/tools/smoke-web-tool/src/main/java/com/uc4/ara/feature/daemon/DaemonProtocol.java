@@ -0,0 +1,219 @@
+package com.uc4.ara.feature.daemon;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.text.ParseException;
+import java.util.List;
+
+import com.uc4.ara.feature.utils.JsonParser;
+
+/**
+ * Line based protocol between {@link Client} and {@link Server}.
+ * <p>
+ * The client first sends <code>AUTH &lt;token&gt;</code> with the secret the
+ * server wrote to its token file, see {@link #getTokenFile(int)}. Only the user
+ * who started the server can read the file, so other local users cannot submit
+ * requests. Then it sends one line: the command line arguments of the feature
+ * to run as JSON array, i.e.
+ * <code>["websmoketest", "GetSite", "-url", "http://www.yoursite.com"]</code>,
+ * or <code>STOP</code> to shut the server down. The server answers with the
+ * output of the feature, each line prefixed by <code>O </code>, followed by a
+ * final line <code>R &lt;return code&gt;</code>.
+ */
+public final class DaemonProtocol {
+
+	public static final int DEFAULT_PORT = 17717;
+	public static final String CHARSET = "UTF-8";
+
+	public static final String OUTPUT_PREFIX = "O ";
+	public static final String RESULT_PREFIX = "R ";
+	public static final String STOP = "STOP";
+	public static final String AUTH_PREFIX = "AUTH ";
+
+	private static final String TOKEN_DIRECTORY = ".smoke-web-tool";
+	private static final int TOKEN_BYTES = 32;
+
+	private DaemonProtocol() {
+	}
+
+	/**
+	 * Connects to a server running on the local machine.
+	 */
+	public static Socket connect(int port) throws IOException {
+		return new Socket(InetAddress.getLoopbackAddress(), port);
+	}
+
+	/**
+	 * @return the file holding the secret of the server listening on
+	 *         <code>port</code>, in the home directory of the user
+	 */
+	public static File getTokenFile(int port) {
+		return new File(new File(System.getProperty("user.home"), TOKEN_DIRECTORY), "daemon-" + port + ".token");
+	}
+
+	/**
+	 * Generates a new secret and writes it to the token file of the port,
+	 * readable by the current user only.
+	 *
+	 * @return the secret
+	 */
+	public static String createToken(int port) throws IOException {
+		byte[] bytes = new byte[TOKEN_BYTES];
+		new SecureRandom().nextBytes(bytes);
+		StringBuilder token = new StringBuilder(2 * TOKEN_BYTES);
+		for (byte b : bytes)
+			token.append(String.format("%02x", b & 0xff));
+
+		File file = getTokenFile(port);
+		Path directory = file.getParentFile().toPath();
+		Path path = file.toPath();
+		boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+		if (posix)
+			Files.setPosixFilePermissions(Files.createDirectories(directory), PosixFilePermissions.fromString("rwx------"));
+		else
+			ownerOnly(Files.createDirectories(directory).toFile());
+		// a new file, so its permissions are set before the secret is written
+		Files.deleteIfExists(path);
+		try {
+			if (posix)
+				Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+			else
+				ownerOnly(Files.createFile(path).toFile());
+		} catch (FileAlreadyExistsException e) {
+			throw new IOException("The token file " + file + " was created by another process", e);
+		}
+		Files.write(path, token.toString().getBytes(CHARSET));
+		return token.toString();
+	}
+
+	/**
+	 * @return the secret of the server listening on <code>port</code>, null if
+	 *         there is no token file, i.e. the server was not started by the
+	 *         current user
+	 */
+	public static String readToken(int port) throws IOException {
+		File file = getTokenFile(port);
+		if (!file.isFile())
+			return null;
+		return new String(Files.readAllBytes(file.toPath()), CHARSET).trim();
+	}
+
+	/**
+	 * Deletes the token file of the port if it still holds the secret.
+	 */
+	public static void deleteToken(int port, String token) {
+		try {
+			if (token.equals(readToken(port)))
+				Files.deleteIfExists(getTokenFile(port).toPath());
+		} catch (IOException e) {
+			// the secret is replaced by the next server
+		}
+	}
+
+	/**
+	 * Compares the secrets in constant time.
+	 */
+	public static boolean isValidToken(String expected, String actual) {
+		if (actual == null)
+			return false;
+		Charset charset = Charset.forName(CHARSET);
+		return MessageDigest.isEqual(expected.getBytes(charset), actual.getBytes(charset));
+	}
+
+	private static void ownerOnly(File file) throws IOException {
+		boolean set = file.setReadable(false, false) && file.setReadable(true, true)
+				&& file.setWritable(false, false) && file.setWritable(true, true);
+		if (file.isDirectory())
+			set = set && file.setExecutable(false, false) && file.setExecutable(true, true);
+		if (!set)
+			throw new IOException("Cannot restrict the permissions of " + file + " to the current user");
+	}
+
+	/**
+	 * Sends the secret and the request line.
+	 */
+	public static void sendRequest(Socket socket, String token, String request) throws IOException {
+		Writer writer = new OutputStreamWriter(socket.getOutputStream(), CHARSET);
+		writer.write(AUTH_PREFIX + token + "\n");
+		writer.write(request + "\n");
+		writer.flush();
+	}
+
+	public static String encodeRequest(String[] args) {
+		StringBuilder builder = new StringBuilder("[");
+		for (int i = 0; i < args.length; i++) {
+			if (i > 0)
+				builder.append(", ");
+			builder.append(JsonParser.quote(args[i]));
+		}
+		return builder.append(']').toString();
+	}
+
+	public static String[] decodeRequest(String line) throws ParseException {
+		Object request = JsonParser.parse(line);
+		if (!(request instanceof List))
+			throw new ParseException("Expected an array of arguments", 0);
+		List<?> values = (List<?>) request;
+		String[] args = new String[values.size()];
+		for (int i = 0; i < args.length; i++) {
+			if (values.get(i) == null)
+				throw new ParseException("Argument " + (i + 1) + " is null", 0);
+			args[i] = values.get(i).toString();
+		}
+		return args;
+	}
+
+	/**
+	 * Writes every line written to it as output line of the protocol.
+	 */
+	static class OutputLineStream extends OutputStream {
+		private final Writer writer;
+		private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+		OutputLineStream(Writer writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		public synchronized void write(int b) throws IOException {
+			if (b == '\n') {
+				writeLine();
+			} else if (b != '\r') {
+				line.write(b);
+			}
+		}
+
+		@Override
+		public synchronized void flush() throws IOException {
+			writer.flush();
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			if (line.size() > 0)
+				writeLine();
+			writer.flush();
+		}
+
+		private void writeLine() throws IOException {
+			writer.write(OUTPUT_PREFIX);
+			writer.write(line.toString(CHARSET));
+			writer.write('\n');
+			line.reset();
+		}
+	}
+}
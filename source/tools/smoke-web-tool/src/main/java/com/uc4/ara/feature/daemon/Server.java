@@ -0,0 +1,188 @@
+package com.uc4.ara.feature.daemon;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.text.ParseException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.uc4.ara.feature.AbstractPublicFeature;
+import com.uc4.ara.feature.AraFileCmd;
+import com.uc4.ara.feature.Feature;
+import com.uc4.ara.feature.FeatureUtil;
+import com.uc4.ara.feature.IFeature;
+import com.uc4.ara.feature.globalcodes.ErrorCodes;
+import com.uc4.ara.feature.utils.CmdLineParser;
+import com.uc4.ara.util.Logger;
+
+@Feature(description = "Starts a resident server on the loopback interface which runs the features submitted by 'daemon Client' within its own process. "
+    + "Only the user who started the server can submit requests, they are authenticated by a secret in a token file readable by this user only. "
+    + "The server keeps running until 'daemon Stop' is called.")
+public class Server extends AbstractPublicFeature {
+
+  private static final String GROUP = "daemon";
+  private static final int REQUEST_READ_TIMEOUT = 30000;
+
+  private CmdLineParser.Option<String> port;
+  private CmdLineParser.Option<String> maxConcurrent;
+
+  private volatile boolean stopped = false;
+  private ServerSocket serverSocket;
+  private String token;
+
+  @Override
+  public void initialize() {
+    super.initialize();
+    parser.setExamples("java -jar ARATools daemon Server -port " + DaemonProtocol.DEFAULT_PORT + " -mc 16");
+
+    port = parser.addHelp(parser.addStringOption("port", "port", false),
+        "The local TCP port the server listens on. Default: " + DaemonProtocol.DEFAULT_PORT + ".");
+    maxConcurrent = parser.addHelp(parser.addStringOption("mc", "maxConcurrent", false),
+        "Maximum number of requests processed at the same time. Default: 16.");
+  }
+
+  @Override
+  public int run(String[] args) throws Exception {
+    super.run(args);
+
+    int portValue = getIntOptionValue(port, DaemonProtocol.DEFAULT_PORT);
+    int maxConcurrentValue = Math.max(1, getIntOptionValue(maxConcurrent, 16));
+
+    serverSocket = new ServerSocket(portValue, 50, InetAddress.getLoopbackAddress());
+    // every local user can connect to the port, only the owner can read the secret
+    try {
+      token = DaemonProtocol.createToken(portValue);
+    } catch (IOException e) {
+      serverSocket.close();
+      throw e;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(maxConcurrentValue);
+    Logger.log("Listening on " + serverSocket.getInetAddress().getHostAddress() + ":" + serverSocket.getLocalPort(), this.loglevelValue);
+    Logger.logInfo(this.logLevel, "Token file: {}", DaemonProtocol.getTokenFile(portValue));
+
+    try {
+      while (!stopped) {
+        final Socket socket = serverSocket.accept();
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            handle(socket);
+          }
+        });
+      }
+    } catch (SocketException e) {
+      if (!stopped)
+        throw e;
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(60, TimeUnit.SECONDS);
+      serverSocket.close();
+      DaemonProtocol.deleteToken(portValue, token);
+    }
+
+    Logger.log("Server stopped.", this.loglevelValue);
+    return ErrorCodes.OK;
+  }
+
+  private void handle(Socket socket) {
+    try {
+      socket.setSoTimeout(REQUEST_READ_TIMEOUT);
+      BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), DaemonProtocol.CHARSET));
+      Writer writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), DaemonProtocol.CHARSET));
+
+      String line = reader.readLine();
+      if (line == null)
+        return;
+      String clientToken = line.startsWith(DaemonProtocol.AUTH_PREFIX) ? line.substring(DaemonProtocol.AUTH_PREFIX.length()).trim() : null;
+      if (!DaemonProtocol.isValidToken(token, clientToken)) {
+        Logger.log("Rejected a request without valid token.", this.loglevelValue);
+        writer.write(DaemonProtocol.OUTPUT_PREFIX + "Authentication failed, the token does not match the token file of the server.\n");
+        writer.write(DaemonProtocol.RESULT_PREFIX + ErrorCodes.PARAMSMISMATCH + "\n");
+        writer.flush();
+        return;
+      }
+
+      line = reader.readLine();
+      if (line == null)
+        return;
+
+      int returnCode;
+      if (DaemonProtocol.STOP.equals(line.trim())) {
+        Logger.log("Received stop request.", this.loglevelValue);
+        stopped = true;
+        returnCode = ErrorCodes.OK;
+      } else {
+        returnCode = execute(line, writer);
+        Logger.logInfo(this.logLevel, "Request finished with return code {}", returnCode);
+      }
+
+      writer.write(DaemonProtocol.RESULT_PREFIX + returnCode + "\n");
+      writer.flush();
+
+      if (stopped)
+        serverSocket.close();
+    } catch (IOException e) {
+      Logger.log("Error while processing request: " + e.getMessage(), this.loglevelValue);
+      Logger.logDebug(this.logLevel, e);
+    } finally {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // ignore
+      }
+    }
+  }
+
+  /**
+   * Runs the feature of a request and writes its output to the client.
+   *
+   * @return the return code of the feature
+   */
+  private int execute(String line, Writer writer) throws IOException {
+    PrintStream out = new PrintStream(new DaemonProtocol.OutputLineStream(writer), true, DaemonProtocol.CHARSET);
+    FeatureUtil.setThreadOutput(out);
+    try {
+      String[] request;
+      try {
+        request = DaemonProtocol.decodeRequest(line);
+      } catch (ParseException e) {
+        FeatureUtil.logMsg("Invalid request: " + e.getMessage());
+        return ErrorCodes.PARAMSMISMATCH;
+      }
+
+      if (request.length < 2) {
+        FeatureUtil.logMsg("Invalid request: method group and method expected");
+        return ErrorCodes.PARAMSMISMATCH;
+      }
+      if (GROUP.equalsIgnoreCase(request[0])) {
+        FeatureUtil.logMsg("The daemon methods cannot be run by the server");
+        return ErrorCodes.PARAMSMISMATCH;
+      }
+
+      IFeature feature;
+      try {
+        feature = AraFileCmd.createFeature(request[0], request[1]);
+      } catch (Exception e) {
+        FeatureUtil.logMsg("Could not find specified method: " + request[1]);
+        return ErrorCodes.EXCEPTION;
+      }
+
+      String[] params = new String[request.length - 2];
+      System.arraycopy(request, 2, params, 0, params.length);
+      return AraFileCmd.runFeature(feature, params);
+    } finally {
+      FeatureUtil.setThreadOutput(null);
+      out.close();
+    }
+  }
+}
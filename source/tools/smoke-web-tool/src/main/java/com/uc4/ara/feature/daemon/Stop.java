@@ -0,0 +1,52 @@
+package com.uc4.ara.feature.daemon;
+
+import java.net.ConnectException;
+import java.net.Socket;
+
+import com.uc4.ara.feature.AbstractPublicFeature;
+import com.uc4.ara.feature.Feature;
+import com.uc4.ara.feature.globalcodes.ErrorCodes;
+import com.uc4.ara.feature.utils.CmdLineParser;
+import com.uc4.ara.util.Logger;
+
+@Feature(description = "Stops the server started by 'daemon Server' after the running requests have been processed.")
+public class Stop extends AbstractPublicFeature {
+
+  private CmdLineParser.Option<String> port;
+
+  @Override
+  public void initialize() {
+    super.initialize();
+    parser.setExamples("java -jar ARATools daemon Stop -port " + DaemonProtocol.DEFAULT_PORT);
+
+    port = parser.addHelp(parser.addStringOption("port", "port", false),
+        "The local TCP port of the server. Default: " + DaemonProtocol.DEFAULT_PORT + ".");
+  }
+
+  @Override
+  public int run(String[] args) throws Exception {
+    super.run(args);
+
+    int portValue = getIntOptionValue(port, DaemonProtocol.DEFAULT_PORT);
+    String token = DaemonProtocol.readToken(portValue);
+    if (token == null) {
+      Logger.log("Server is not running on port " + portValue + " or was started by another user, there is no token file "
+          + DaemonProtocol.getTokenFile(portValue) + ".", this.loglevelValue);
+      return ErrorCodes.OK;
+    }
+    Socket socket;
+    try {
+      socket = DaemonProtocol.connect(portValue);
+    } catch (ConnectException e) {
+      Logger.log("Server is not running on port " + portValue + ".", this.loglevelValue);
+      return ErrorCodes.OK;
+    }
+
+    try {
+      DaemonProtocol.sendRequest(socket, token, DaemonProtocol.STOP);
+      return Client.readResponse(socket);
+    } finally {
+      socket.close();
+    }
+  }
+}
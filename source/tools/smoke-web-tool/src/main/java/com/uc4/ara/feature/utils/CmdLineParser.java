@@ -481,16 +481,16 @@ public class CmdLineParser {
      */
     public final <T> Collection<T> getOptionValues(Option<T> option) throws Exception {
         Collection<T> result = new ArrayList<T>();
+        List<?> v = values.get(option.longForm());
 
-        while (true) {
+        while (v != null && !v.isEmpty()) {
             T o = getOptionValue(option, null);
 
-            if (o == null) {
-                return result;
-            } else {
+            if (o != null) {
                 result.add(o);
             }
         }
+        return result;
     }
 
     /**
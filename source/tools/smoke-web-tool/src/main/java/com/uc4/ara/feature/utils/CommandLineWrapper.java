@@ -39,6 +39,8 @@ public class CommandLineWrapper {
 					cmd.add(Maxim.deMaxim(s));
 			}
 		}
+		// the output of the command is written directly, after the messages logged before
+		FeatureUtil.flushLog();
 		ProcessBuilder builder = new ProcessBuilder(cmd);
 		builder.redirectErrorStream(true);
 		Process p = builder.start();
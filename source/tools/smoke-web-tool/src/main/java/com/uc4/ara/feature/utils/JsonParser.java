@@ -0,0 +1,220 @@
+package com.uc4.ara.feature.utils;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON reader. Objects are returned as <code>Map&lt;String, Object&gt;</code>
+ * (keeping the key order), arrays as <code>List&lt;Object&gt;</code>, strings as
+ * <code>String</code>, numbers as <code>Long</code> or <code>Double</code>,
+ * booleans as <code>Boolean</code> and null as <code>null</code>.
+ */
+public class JsonParser {
+
+    private final String json;
+    private int pos = 0;
+
+    private JsonParser(String json) {
+        this.json = json;
+    }
+
+    /**
+     * Parses a complete JSON document.
+     *
+     * @param json the JSON text
+     * @return the parsed value
+     * @throws ParseException if the text is not valid JSON
+     */
+    public static Object parse(String json) throws ParseException {
+        JsonParser parser = new JsonParser(json);
+        Object value = parser.readValue();
+        parser.skipWhitespace();
+        if (parser.pos < json.length())
+            throw parser.error("Unexpected trailing content");
+        return value;
+    }
+
+    /**
+     * Quotes and escapes a string so that it can be embedded in a JSON document.
+     */
+    public static String quote(String value) {
+        if (value == null)
+            return "null";
+        StringBuilder builder = new StringBuilder(value.length() + 2);
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':  builder.append("\\\""); break;
+            case '\\': builder.append("\\\\"); break;
+            case '\n': builder.append("\\n"); break;
+            case '\r': builder.append("\\r"); break;
+            case '\t': builder.append("\\t"); break;
+            default:
+                if (c < 0x20)
+                    builder.append(String.format("\\u%04x", (int) c));
+                else
+                    builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private Object readValue() throws ParseException {
+        skipWhitespace();
+        if (pos >= json.length())
+            throw error("Unexpected end of input");
+
+        char c = json.charAt(pos);
+        switch (c) {
+        case '{': return readObject();
+        case '[': return readArray();
+        case '"': return readString();
+        case 't': return readLiteral("true", Boolean.TRUE);
+        case 'f': return readLiteral("false", Boolean.FALSE);
+        case 'n': return readLiteral("null", null);
+        default:
+            if (c == '-' || (c >= '0' && c <= '9'))
+                return readNumber();
+            throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> readObject() throws ParseException {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        pos++; // '{'
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return result;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"')
+                throw error("Expected object key");
+            String key = readString();
+            skipWhitespace();
+            expect(':');
+            result.put(key, readValue());
+            skipWhitespace();
+            char c = next();
+            if (c == '}')
+                return result;
+            if (c != ',')
+                throw error("Expected ',' or '}'");
+        }
+    }
+
+    private List<Object> readArray() throws ParseException {
+        List<Object> result = new ArrayList<Object>();
+        pos++; // '['
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            return result;
+        }
+        while (true) {
+            result.add(readValue());
+            skipWhitespace();
+            char c = next();
+            if (c == ']')
+                return result;
+            if (c != ',')
+                throw error("Expected ',' or ']'");
+        }
+    }
+
+    private String readString() throws ParseException {
+        pos++; // '"'
+        StringBuilder builder = new StringBuilder();
+        while (true) {
+            char c = next();
+            if (c == '"')
+                return builder.toString();
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+            c = next();
+            switch (c) {
+            case '"':  builder.append('"'); break;
+            case '\\': builder.append('\\'); break;
+            case '/':  builder.append('/'); break;
+            case 'b':  builder.append('\b'); break;
+            case 'f':  builder.append('\f'); break;
+            case 'n':  builder.append('\n'); break;
+            case 'r':  builder.append('\r'); break;
+            case 't':  builder.append('\t'); break;
+            case 'u':
+                if (pos + 4 > json.length())
+                    throw error("Invalid unicode escape");
+                try {
+                    builder.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+                } catch (NumberFormatException e) {
+                    throw error("Invalid unicode escape");
+                }
+                pos += 4;
+                break;
+            default:
+                throw error("Invalid escape sequence '\\" + c + "'");
+            }
+        }
+    }
+
+    private Object readNumber() throws ParseException {
+        int start = pos;
+        boolean decimal = false;
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c == '.' || c == 'e' || c == 'E')
+                decimal = true;
+            else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9')))
+                break;
+            pos++;
+        }
+        String number = json.substring(start, pos);
+        try {
+            if (decimal)
+                return Double.valueOf(number);
+            return Long.valueOf(number);
+        } catch (NumberFormatException e) {
+            throw error("Invalid number '" + number + "'");
+        }
+    }
+
+    private Object readLiteral(String literal, Object value) throws ParseException {
+        if (!json.startsWith(literal, pos))
+            throw error("Unexpected token");
+        pos += literal.length();
+        return value;
+    }
+
+    private void skipWhitespace() {
+        while (pos < json.length() && Character.isWhitespace(json.charAt(pos)))
+            pos++;
+    }
+
+    private char peek() throws ParseException {
+        if (pos >= json.length())
+            throw error("Unexpected end of input");
+        return json.charAt(pos);
+    }
+
+    private char next() throws ParseException {
+        char c = peek();
+        pos++;
+        return c;
+    }
+
+    private void expect(char expected) throws ParseException {
+        if (next() != expected)
+            throw error("Expected '" + expected + "'");
+    }
+
+    private ParseException error(String message) {
+        return new ParseException(message + " at position " + pos, pos);
+    }
+}
@@ -1,9 +1,17 @@
 package com.uc4.ara.feature.websmoketest;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.commons.lang3.StringUtils;
 
 import com.uc4.ara.feature.AbstractPublicFeature;
+import com.uc4.ara.feature.FeatureUtil;
+import com.uc4.ara.feature.globalcodes.ErrorCodes;
 import com.uc4.ara.feature.utils.CmdLineParser;
+import com.uc4.ara.util.LogLevel;
 import com.uc4.ara.util.Logger;
 
 /**
@@ -25,8 +33,17 @@ public abstract class AbstractWebSmokeTest extends AbstractPublicFeature {
   public static final int TITLE_NOT_MATCH = 7;
   public static final int TEXT_NOT_FOUND = 7;
   public static final int ELEMENT_NOT_FOUND = 7;
+  public static final int STATUS_NOT_MATCH = 7;
+  public static final int HEADER_NOT_MATCH = 7;
   public static final int TEXT_NOT_FOUND_AFTER_SUBMIT = 10;
-  
+  public static final int LATENCY_SLA_EXCEEDED = 11;
+  public static final int ERROR_RATE_EXCEEDED = 12;
+
+  /**
+   * Number of DEBUG messages kept for failures if the option is "yes"
+   */
+  private static final int DEBUG_ON_FAILURE_DEFAULT = 256;
+
   /**
    * Common input parameters
    */
@@ -39,6 +56,36 @@ public abstract class AbstractWebSmokeTest extends AbstractPublicFeature {
   protected CmdLineParser.Option<String> proxyPort;
   protected CmdLineParser.Option<String> proxyUsername;
   protected CmdLineParser.Option<String> proxyPassword;
+  protected CmdLineParser.Option<String> timing;
+
+  protected String timingValue;
+
+  /**
+   * Probe options, only added by features supporting them
+   */
+  protected CmdLineParser.Option<String> transport;
+  protected CmdLineParser.Option<String> httpVersion;
+  protected CmdLineParser.Option<String> compression;
+  protected CmdLineParser.Option<String> probes;
+  protected CmdLineParser.Option<String> warmup;
+  protected CmdLineParser.Option<String> latencySla;
+  protected CmdLineParser.Option<String> debugOnFailure;
+
+  /**
+   * Timings of the last request, used as the latency of a probe
+   */
+  private RequestTimings lastTimings;
+  
+  /**
+   * Streaming options, only added by features supporting them
+   */
+  protected CmdLineParser.Option<String> streamMatch;
+  protected CmdLineParser.Option<String> maxBytes;
+
+  /**
+   * Cache option, only added by features supporting conditional requests
+   */
+  protected CmdLineParser.Option<String> cacheDir;
   
   @Override
   public void initialize() {
@@ -63,8 +110,260 @@ public abstract class AbstractWebSmokeTest extends AbstractPublicFeature {
     proxyPort = parser.addHelp(parser.addStringOption("pp", "proxyPort", false), "Proxy port to use.");  
     proxyUsername = parser.addHelp(parser.addStringOption("pu", "proxyUsername", false), "Username used to authenticate with proxy server.");  
     proxyPassword = parser.addHelp(parser.addPasswordOption("ppwd", "proxyPassword", false), "Password used to authenticate with proxy server.");  
+    
+    timing = parser.addHelp(parser.addStringOption("tm", "timing", false),
+        "If \"yes\", the durations of DNS lookup, TCP connect, TLS handshake, time to first byte, download and parsing are logged. "
+        + "If \"json\", they are additionally logged as one line of JSON.");
+
+    transport = parser.addHelp(parser.addStringOption("tr", "transport", false),
+        "HTTP client sending the requests. Possible values: apache (HTTP/1.1, all authentication schemes), "
+        + "jdk (requires Java 11, HTTP/2 with multiplexing, basic authentication only). Default: apache.");
+
+    httpVersion = parser.addHelp(parser.addStringOption("hv", "httpVersion", false),
+        "HTTP version preferred by the jdk transport. Possible values: 1.1, 2. Default: 2, falling back to 1.1 if the server does not support it.");
+
+    debugOnFailure = parser.addHelp(parser.addStringOption("dbf", "debugOnFailure", false),
+        "Number of DEBUG messages kept in memory if the log level is not DEBUG. They are written if the check fails, "
+        + "so failures are logged with their details without the cost of DEBUG output for successful checks. \"yes\" keeps " + DEBUG_ON_FAILURE_DEFAULT + ". Default: 0.");
+
+    compression = parser.addHelp(parser.addStringOption("cmp", "compression", false),
+        "If \"no\", compressed responses are not requested. Otherwise gzip and deflate are requested and decoded while the body is read. Default: yes.");
+  }
+
+  /**
+   * Adds the options for executing the check several times and evaluating
+   * its latency. Called by the features supporting probes in their
+   * <code>initialize</code>.
+   */
+  protected void addProbeOptions() {
+    probes = parser.addHelp(parser.addStringOption("pr", "probes", false),
+        "Number of times the check is executed. The latencies of all probes are summarized as min, median, p95, p99 and max. Default: 1.");
+
+    warmup = parser.addHelp(parser.addStringOption("wu", "warmup", false),
+        "Number of additional probes executed first whose latencies are discarded. Default: 0.");
+
+    addLatencySlaOption();
+  }
+
+  /**
+   * Adds the option for latency thresholds, see {@link #getLatencySlaValue()}.
+   */
+  protected void addLatencySlaOption() {
+    latencySla = parser.addHelp(parser.addStringOption("sla", "latencySla", false),
+        "Comma separated latency thresholds in milliseconds (i.e. \"p95<300,p99<800,max<2000\"). Supported are min, max, mean, median and pNN. "
+        + "If one is exceeded the return code is " + LATENCY_SLA_EXCEEDED + ".");
+  }
+
+  /**
+   * Parses the arguments and executes the check. The DEBUG messages not
+   * logged at the configured level are kept if requested and written if the
+   * check fails.
+   */
+  @Override
+  public int run(String[] args) throws Exception {
+    super.run(args);
+
+    String debugOnFailureValue = parser.getOptionValue(debugOnFailure);
+    int debugBufferSize = "YES".equalsIgnoreCase(debugOnFailureValue) ? DEBUG_ON_FAILURE_DEFAULT : 0;
+    if (debugBufferSize == 0 && !StringUtils.isBlank(debugOnFailureValue)) {
+      try {
+        debugBufferSize = Math.max(Integer.parseInt(debugOnFailureValue.trim()), 0);
+      } catch (NumberFormatException e) {
+        Logger.log("Cannot parse the debugOnFailure value, no DEBUG messages are kept", this.loglevelValue);
+      }
+    }
+    if (debugBufferSize == 0 || this.logLevel.isEnabled(LogLevel.DEBUG)) {
+      return runProbes(args);
+    }
+
+    int returnCode = ErrorCodes.EXCEPTION;
+    Logger.startDebugBuffer(debugBufferSize);
+    try {
+      returnCode = runProbes(args);
+      return returnCode;
+    } finally {
+      Logger.endDebugBuffer(returnCode != OK);
+    }
+  }
+
+  /**
+   * Executes the check once, or as many times as requested by the probe
+   * options. A probe failing functionally ends the probing with its return
+   * code.
+   */
+  private int runProbes(String[] args) throws Exception {
+    if (probes == null) {
+      return runCheck();
+    }
+
+    int probesValue = Math.max(getIntOptionValue(probes, 1), 1);
+    int warmupValue = Math.max(getIntOptionValue(warmup, 0), 0);
+    List<LatencySla> slas = getLatencySlaValue();
+    if (slas == null) {
+      return ErrorCodes.PARAMSMISMATCH;
+    }
+
+    if (probesValue == 1 && warmupValue == 0 && slas.isEmpty()) {
+      return runCheck();
+    }
+
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < warmupValue + probesValue; i++) {
+      boolean isWarmup = i < warmupValue;
+      // the options are consumed when read, so every probe parses them again
+      if (i > 0) {
+        parser.parse(args);
+      }
+
+      // only the first measured probe logs as usual, the others only if they fail
+      boolean quiet = i != warmupValue;
+      if (quiet) {
+        FeatureUtil.startLogBuffer();
+      }
+
+      lastTimings = null;
+      long start = System.nanoTime();
+      int returnCode = ErrorCodes.EXCEPTION;
+      try {
+        returnCode = runCheck();
+      } finally {
+        if (quiet) {
+          FeatureUtil.endLogBuffer(returnCode != OK);
+        }
+      }
+      long latency = lastTimings != null ? lastTimings.getTotalNanos() : System.nanoTime() - start;
+
+      String probeName = isWarmup ? "Warm-up probe " + (i + 1) + "/" + warmupValue : "Probe " + (i - warmupValue + 1) + "/" + probesValue;
+      if (returnCode != OK) {
+        Logger.log(probeName + " failed with return code " + returnCode, this.loglevelValue);
+        return returnCode;
+      }
+      Logger.log(probeName + ": " + LatencyHistogram.millis(latency), this.loglevelValue);
+      if (!isWarmup) {
+        histogram.recordValue(latency);
+      }
+    }
+
+    Logger.log("Latency of " + probesValue + " probes: " + histogram.toLogString(), this.loglevelValue);
+    return checkLatencySla(slas, histogram);
+  }
+
+  /**
+   * @return the thresholds of the latency SLA option, an empty list if none
+   *         are configured or null if they cannot be parsed
+   */
+  protected List<LatencySla> getLatencySlaValue() throws Exception {
+    String latencySlaValue = parser.getOptionValue(latencySla);
+    if (StringUtils.isBlank(latencySlaValue)) {
+      return new ArrayList<LatencySla>();
+    }
+    try {
+      return LatencySla.parse(latencySlaValue);
+    } catch (IllegalArgumentException e) {
+      Logger.log("Error: " + e.getMessage() + ". Expected i.e. \"p95<300,p99<800,max<2000\".", this.loglevelValue);
+      return null;
+    }
+  }
+
+  /**
+   * Logs whether the latencies stay below the thresholds.
+   *
+   * @return <code>OK</code> or <code>LATENCY_SLA_EXCEEDED</code>
+   */
+  protected int checkLatencySla(List<LatencySla> slas, LatencyHistogram histogram) {
+    int returnCode = OK;
+    for (LatencySla sla : slas) {
+      boolean met = sla.isMet(histogram);
+      Logger.log("Latency threshold " + sla + (met ? " met: " : " exceeded: ") + LatencyHistogram.millis(sla.getValue(histogram)), this.loglevelValue);
+      if (!met) {
+        returnCode = LATENCY_SLA_EXCEEDED;
+      }
+    }
+    return returnCode;
   }
+
+  /**
+   * Executes the check once. The arguments are already parsed.
+   *
+   * @return the return code of the check
+   */
+  protected abstract int runCheck() throws Exception;
+    
+  /**
+   * Adds the options for searching the response while it is downloaded.
+   * Called by the features supporting streaming in their <code>initialize</code>.
+   */
+  protected void addStreamingOptions() {
+    streamMatch = parser.addHelp(parser.addStringOption("sm", "streamMatch", false),
+        "If \"yes\", the page is searched while it is downloaded and the download stops as soon as the expected content is found. Default: no.");
     
+    maxBytes = parser.addHelp(parser.addStringOption("mb", "maxBytes", false),
+        "Maximum number of bytes of the page read in streaming mode. Content after this limit is not searched. Default: no limit.");
+  }
+  
+  /**
+   * @return true if the streaming options were added and streaming is enabled
+   */
+  protected boolean isStreamMatch() throws Exception {
+    return streamMatch != null && "YES".equalsIgnoreCase(parser.getOptionValue(streamMatch));
+  }
+  
+  /**
+   * @return the byte budget for streaming mode, 0 for no limit
+   */
+  protected int getMaxBytesValue() throws Exception {
+    return maxBytes != null ? getIntOptionValue(maxBytes, 0) : 0;
+  }
+  
+  /**
+   * Adds the option for the cache of conditional requests, see
+   * {@link ConditionalCache}. Called by the features supporting it in their
+   * <code>initialize</code>.
+   */
+  protected void addCacheOption() {
+    cacheDir = parser.addHelp(parser.addStringOption("cd", "cacheDir", false),
+        "Directory in which the validators (ETag, Last-Modified) and the evaluation of the page are stored. "
+        + "Later checks send a conditional request and reuse the evaluation if the server reports the page as not modified (304). Default: no cache.");
+  }
+  
+  /**
+   * @return the cached evaluation of the page, null if the cache option was
+   *         not added or not set
+   */
+  protected ConditionalCache.Entry getCacheEntry(WebTestInput input) throws Exception {
+    String cacheDirValue = cacheDir != null ? parser.getOptionValue(cacheDir) : null;
+    if (StringUtils.isBlank(cacheDirValue)) {
+      return null;
+    }
+    return new ConditionalCache(new File(cacheDirValue.trim())).get(input);
+  }
+  
+  /**
+   * Stores the result of the expectation in the cache entry, if there is
+   * one.
+   * 
+   * @return <code>returnCode</code>
+   */
+  protected int cacheResult(ConditionalCache.Entry cacheEntry, String expectation, int returnCode) {
+    if (cacheEntry != null) {
+      cacheEntry.putResult(expectation, returnCode);
+      saveCacheEntry(cacheEntry);
+    }
+    return returnCode;
+  }
+  
+  /**
+   * Writes the cache entry. A cache which cannot be written does not fail
+   * the check.
+   */
+  protected void saveCacheEntry(ConditionalCache.Entry cacheEntry) {
+    try {
+      cacheEntry.save();
+    } catch (IOException e) {
+      Logger.log("Cannot write the cache: " + e.getMessage(), this.loglevelValue);
+    }
+  }
+  
   /**
    * Utility method parses the common input parameters from command line
    * @return <code>WebTestInput</code> object
@@ -99,18 +398,61 @@ public abstract class AbstractWebSmokeTest extends AbstractPublicFeature {
       }
     } 
 
+    timingValue = parser.getOptionValue(timing);
+    
     String proxyUsernameValue = parser.getOptionValue(proxyUsername);
     String proxyPasswordValue = parser.getOptionValue(proxyPassword);
+
+    String transportValue = ApacheHttpTransport.NAME;
+    String transportStr = parser.getOptionValue(transport);
+    if (JdkSupport.JDK_TRANSPORT.equalsIgnoreCase(transportStr)) {
+      if (JdkSupport.hasHttpTransport()) {
+        transportValue = JdkSupport.JDK_TRANSPORT;
+      } else {
+        Logger.log("The jdk transport is not available (requires Java 11 or later), use the apache transport", this.loglevelValue);
+      }
+    } else if (!StringUtils.isBlank(transportStr) && !ApacheHttpTransport.NAME.equalsIgnoreCase(transportStr)) {
+      Logger.log("Unknown transport " + transportStr + ", use the apache transport", this.loglevelValue);
+    }
+
+    String httpVersionValue = StringUtils.trimToNull(parser.getOptionValue(httpVersion));
+    if (httpVersionValue != null && !"1.1".equals(httpVersionValue) && !"2".equals(httpVersionValue)) {
+      Logger.log("Unknown HTTP version " + httpVersionValue + ", use the default", this.loglevelValue);
+      httpVersionValue = null;
+    }
+
+    boolean compressionValue = !"NO".equalsIgnoreCase(parser.getOptionValue(compression));
     
     // input params
-    Logger.logDebug("Input parameters\nURL: " + urlValue, this.loglevelValue);
-    Logger.logDebug("Username: " + usernameValue, this.loglevelValue);
-    Logger.logDebug("Timeout: " + timeoutValue, this.loglevelValue);
-    Logger.logDebug("Ignore server certificate: " + ignoreServerCertValue, this.loglevelValue);
-    Logger.logDebug("Proxy host: " + proxyHostValue + ", proxy port: " + proxyPortValue, this.loglevelValue);
-    Logger.logDebug("Proxy username: " + proxyUsernameValue, this.loglevelValue);
+    Logger.logDebug(this.logLevel, "Input parameters\r\nURL: {}", urlValue);
+    Logger.logDebug(this.logLevel, "Username: {}", usernameValue);
+    Logger.logDebug(this.logLevel, "Timeout: {}", timeoutValue);
+    Logger.logDebug(this.logLevel, "Ignore server certificate: {}", ignoreServerCertValue);
+    Logger.logDebug(this.logLevel, "Proxy host: {}, proxy port: {}", proxyHostValue, proxyPortValue);
+    Logger.logDebug(this.logLevel, "Proxy username: {}", proxyUsernameValue);
+    Logger.logDebug(this.logLevel, "Transport: {}{}", transportValue, httpVersionValue != null ? ", HTTP version: " + httpVersionValue : "");
+    Logger.logDebug(this.logLevel, "Compression: {}", compressionValue);
         
-    return new WebTestInput(urlValue, usernameValue, passwordValue, timeoutValue, ignoreServerCertValue, proxyHostValue, proxyPortValue, proxyUsernameValue, proxyPasswordValue);
+    WebTestInput input = new WebTestInput(urlValue, usernameValue, passwordValue, timeoutValue, ignoreServerCertValue, proxyHostValue, proxyPortValue, proxyUsernameValue, proxyPasswordValue);
+    input.setTransport(transportValue);
+    input.setHttpVersion(httpVersionValue);
+    input.setCompression(compressionValue);
+    return input;
   }
  
+  /**
+   * Ends the measurement of the request phases and logs them if requested by
+   * the timing option.
+   */
+  protected void logTimings(RequestTimings timings, String urlValue) {
+    timings.finish();
+    lastTimings = timings;
+    if ("YES".equalsIgnoreCase(timingValue) || "JSON".equalsIgnoreCase(timingValue)) {
+      Logger.log(timings.toLogString(), this.loglevelValue);
+    }
+    if ("JSON".equalsIgnoreCase(timingValue)) {
+      Logger.log("TIMINGS: " + timings.toJson(urlValue), this.loglevelValue);
+    }
+  }
+  
 }
@@ -0,0 +1,104 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.Credentials;
+import org.apache.http.auth.NTCredentials;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.params.HttpClientParams;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.params.ConnRoutePNames;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Transport based on Apache HttpClient, sending HTTP/1.1 requests over the
+ * connection pools shared by all checks. Supports basic, digest, NTLM and
+ * Kerberos authentication.
+ */
+public class ApacheHttpTransport implements HttpTransport {
+
+	public static final String NAME = "apache";
+
+	private static final String KERBEROS_SCHEMA = "Kerberos";
+	private static final String DIGEST_SCHEMA = "digest";
+	private static final String NTLM_SCHEMA = "ntlm";
+	private static final String BASIC_SCHEMA = "basic";
+
+	/**
+	 * Keep-alive duration used if the server does not send a
+	 * <code>Keep-Alive</code> header.
+	 */
+	private static final long DEFAULT_KEEP_ALIVE = 30000;
+
+	private static final ConnectionKeepAliveStrategy KEEP_ALIVE_STRATEGY = new DefaultConnectionKeepAliveStrategy() {
+		@Override
+		public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+			long duration = super.getKeepAliveDuration(response, context);
+			return duration > 0 ? duration : DEFAULT_KEEP_ALIVE;
+		}
+	};
+
+
+	@Override
+	public HttpClient getHttpClient(WebTestInput input) throws MalformedURLException {
+		URL url = new URL(input.getUrl());
+		DefaultHttpClient httpclient = new DefaultHttpClient(WebTestUtils.getConnectionManager(input));
+		HttpParams params = httpclient.getParams();
+		HttpConnectionParams.setSoTimeout(params, input.getTimeout());
+		HttpClientParams.setRedirecting(params, true);
+		httpclient.setKeepAliveStrategy(KEEP_ALIVE_STRATEGY);
+		if (input.isCompression()) {
+			httpclient.addRequestInterceptor(ContentDecoding.REQUEST_INTERCEPTOR);
+			httpclient.addResponseInterceptor(ContentDecoding.RESPONSE_INTERCEPTOR);
+		}
+
+		CredentialsProvider credentialsProvider = httpclient.getCredentialsProvider();
+		HttpHost host = new HttpHost(url.getHost(), url.getPort(), url.getProtocol());
+		if (!StringUtils.isEmpty(input.getUsername())) {
+			if (input.getUsername().matches("[^\\\\]+\\\\[^\\\\]+")) {
+				Credentials ntlm = new NTCredentials(
+						input.getUsername().replaceAll("\\\\", "/") + ":" + input.getPassword());
+				credentialsProvider
+						.setCredentials(new AuthScope(host.getHostName(), host.getPort(), AuthScope.ANY_REALM), ntlm);
+			} else {
+				Credentials credentials = new UsernamePasswordCredentials(input.getUsername(), input.getPassword());
+				credentialsProvider.setCredentials(
+						new AuthScope(host.getHostName(), host.getPort(), AuthScope.ANY_REALM, BASIC_SCHEMA),
+						credentials);
+				credentialsProvider.setCredentials(
+						new AuthScope(host.getHostName(), host.getPort(), AuthScope.ANY_REALM, NTLM_SCHEMA),
+						credentials);
+				credentialsProvider.setCredentials(
+						new AuthScope(host.getHostName(), host.getPort(), AuthScope.ANY_REALM, DIGEST_SCHEMA),
+						credentials);
+				credentialsProvider.setCredentials(
+						new AuthScope(host.getHostName(), host.getPort(), AuthScope.ANY_REALM, KERBEROS_SCHEMA),
+						credentials);
+			}
+		}
+
+		if (!StringUtils.isEmpty(input.getProxyHost())) {
+			HttpHost proxy = new HttpHost(input.getProxyHost(), input.getProxyPort());
+			httpclient.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY, proxy);
+		}
+
+		if (!StringUtils.isEmpty(input.getProxyUsername())) {
+			credentialsProvider.setCredentials(
+					new AuthScope(input.getProxyHost(), input.getProxyPort(), AuthScope.ANY_REALM),
+					new UsernamePasswordCredentials(input.getProxyUsername(), input.getProxyPassword()));
+		}
+
+		return httpclient;
+	}
+}
@@ -0,0 +1,32 @@
+package com.uc4.ara.feature.websmoketest;
+
+/**
+ * Sends the GET request of a <code>GetSite</code> check without blocking the
+ * calling thread, so that many checks can be in flight on a few threads. The
+ * result is reported with the return codes of <code>GetSite</code>.
+ */
+public interface AsyncGetEngine {
+
+	/**
+	 * Receives the result of a request, called on a thread of the engine.
+	 */
+	interface Callback {
+		/**
+		 * @param returnCode
+		 *            the return code as reported by <code>GetSite</code>
+		 * @param message
+		 *            the received status or the error
+		 */
+		void completed(int returnCode, String message);
+	}
+
+	/**
+	 * Starts the request for the URL and settings of <code>input</code>.
+	 */
+	void get(WebTestInput input, Callback callback);
+
+	/**
+	 * Stops the threads of the engine, requests still in flight are abandoned.
+	 */
+	void close();
+}
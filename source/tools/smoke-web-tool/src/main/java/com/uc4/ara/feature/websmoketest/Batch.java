@@ -0,0 +1,378 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.uc4.ara.feature.AbstractPublicFeature;
+import com.uc4.ara.feature.AraFileCmd;
+import com.uc4.ara.feature.Feature;
+import com.uc4.ara.feature.FeatureUtil;
+import com.uc4.ara.feature.IFeature;
+import com.uc4.ara.feature.globalcodes.ErrorCodes;
+import com.uc4.ara.feature.utils.CmdLineParser;
+import com.uc4.ara.util.Logger;
+
+@Feature(description = "Runs a list of checks (GetSite, GetSearchText, GetSearchTitle, GetSearchElement, PostSearchText, GetMultiCheck) defined in a manifest file within one process. "
+    + "Returns 0 if all checks succeeded, otherwise the return code of the first failing check.")
+public class Batch extends AbstractPublicFeature {
+
+  private static final String GROUP = "websmoketest";
+
+  /**
+   * Threads handling the responses of the asynchronous engine
+   */
+  private static final int ASYNC_THREADS = 4;
+
+  /**
+   * Maximum number of threads for the checks which cannot run asynchronously
+   */
+  private static final int MAX_BLOCKING_THREADS = 100;
+
+  /**
+   * Maximum number of hosts resolved at the same time by the DNS prefetch
+   */
+  private static final int MAX_DNS_THREADS = 16;
+
+  /**
+   * Options of GetSite checks which the asynchronous engine supports
+   */
+  private static final Set<String> ASYNC_OPTIONS = new HashSet<String>(Arrays.asList("url", "username", "password",
+      "timeout", "ignoreServerCert", "proxyHost", "proxyPort", "proxyUsername", "proxyPassword", "loglevel"));
+
+  private CmdLineParser.Option<String> manifest;
+  private CmdLineParser.Option<String> format;
+  private CmdLineParser.Option<String> parallel;
+  private CmdLineParser.Option<String> maxPerHost;
+  private CmdLineParser.Option<String> globalTimeout;
+  private CmdLineParser.Option<String> engine;
+  private CmdLineParser.Option<String> threads;
+  private CmdLineParser.Option<String> dnsPrefetch;
+  private CmdLineParser.Option<String> checkOutput;
+
+  @Override
+  public void initialize() {
+    super.initialize();
+    parser.setExamples("java -jar ARATools websmoketest Batch -mf \"checks.csv\"\n\n"
+        + "checks.csv:\n"
+        + "name,feature,url,timeout,expectedText\n"
+        + "Home,GetSite,http://www.yoursite.com,10000,\n"
+        + "Search,GetSearchText,http://www.yoursite.com/search,10000,My expected text\n\n"
+        + "checks.json:\n"
+        + "[{\"feature\": \"GetSite\", \"url\": \"http://www.yoursite.com\", \"timeout\": 10000}]");
+
+    manifest = parser.addHelp(parser.addStringOption("mf", "manifest", true),
+        "Path of the manifest file listing the checks. Every check defines the 'feature' to run and the long names of its options (url, username, password, timeout, ...) with their values.");
+
+    format = parser.addHelp(parser.addStringOption("fmt", "format", false),
+        "Format of the manifest file. Possible values: csv, json. Default: chosen by the file extension.");
+
+    parallel = parser.addHelp(parser.addStringOption("par", "parallel", false),
+        "Maximum number of checks running at the same time. Default: 1 (checks run one after the other).");
+
+    maxPerHost = parser.addHelp(parser.addStringOption("mph", "maxPerHost", false),
+        "Maximum number of checks running at the same time against the same host. Default: no limit besides 'parallel'.");
+
+    globalTimeout = parser.addHelp(parser.addStringOption("gt", "globalTimeout", false),
+        "Time in milliseconds after which all unfinished checks are cancelled and reported with return code 1 (timeout). Default: no limit.");
+
+    engine = parser.addHelp(parser.addStringOption("eng", "engine", false),
+        "If \"async\", GetSite checks are sent without blocking a thread per check, so that thousands of checks can run in parallel. "
+        + "Requires Java 11, only basic authentication is supported. Other checks run in threads. Default: threads.");
+
+    threads = parser.addHelp(parser.addStringOption("thr", "threads", false),
+        "Kind of threads running the checks. Possible values: platform, virtual (requires Java 21, every check gets its own virtual thread). Default: platform.");
+
+    dnsPrefetch = parser.addHelp(parser.addStringOption("dns", "dnsPrefetch", false),
+        "If \"yes\", the hosts of all checks (or their proxies) are resolved in parallel before the checks start and the resolution time per host is logged. "
+        + "The checks then find the addresses in the DNS cache of the process. Default: no.");
+
+    checkOutput = parser.addHelp(parser.addStringOption("co", "checkOutput", false),
+        "Output of the checks. Possible values: all (the output of every check is written as one block when it finished, checks running in parallel do not interleave), "
+        + "failures (only the output of failed checks is written, the batch results list all checks). Default: all.");
+  }
+
+  @Override
+  public int run(String[] args) throws Exception {
+    super.run(args);
+
+    String manifestValue = parser.getOptionValue(manifest);
+    String formatValue = parser.getOptionValue(format);
+
+    List<BatchCheck> checks = BatchManifest.read(new File(manifestValue), formatValue);
+    if (checks.isEmpty()) {
+      Logger.log("The manifest " + manifestValue + " does not contain any checks.", this.loglevelValue);
+      return ErrorCodes.PARAMSMISMATCH;
+    }
+
+    int parallelValue = getIntOptionValue(parallel, 1);
+    int maxPerHostValue = getIntOptionValue(maxPerHost, 0);
+    int globalTimeoutValue = getIntOptionValue(globalTimeout, 0);
+    Logger.log("Running " + checks.size() + " checks from " + manifestValue
+        + (parallelValue > 1 ? " with up to " + parallelValue + " checks in parallel" : ""), this.loglevelValue);
+
+    if ("YES".equalsIgnoreCase(parser.getOptionValue(dnsPrefetch))) {
+      prefetchDns(checks, this.loglevelValue);
+    }
+
+    String checkOutputValue = parser.getOptionValue(checkOutput);
+    final boolean failuresOnly = "FAILURES".equalsIgnoreCase(checkOutputValue);
+    if (!failuresOnly && !StringUtils.isBlank(checkOutputValue) && !"ALL".equalsIgnoreCase(checkOutputValue)) {
+      Logger.log("Unknown check output " + checkOutputValue + ", write the output of all checks", this.loglevelValue);
+    }
+    // a single check at a time can write its output directly, unless it may
+    // still be running when the global timeout expired
+    final boolean buffered = failuresOnly || parallelValue > 1 || globalTimeoutValue > 0;
+
+    // the checks share connection pools sized for the requested concurrency
+    final int maxConnectionsTotal = Math.max(100, parallelValue);
+    final int maxConnectionsPerRoute = maxPerHostValue > 0 ? maxPerHostValue : parallelValue;
+
+    final String loglevel = this.loglevelValue;
+    CheckExecutor executor = new CheckExecutor(parallelValue, maxPerHostValue, globalTimeoutValue);
+    final CheckDeadline deadline = new CheckDeadline(globalTimeoutValue);
+    CheckExecutor.CheckRunner runner = new CheckExecutor.CheckRunner() {
+      @Override
+      public int run(BatchCheck check) {
+        deadline.enter();
+        WebTestUtils.setConnectionPoolLimits(maxConnectionsTotal, maxConnectionsPerRoute);
+        try {
+          if (!buffered) {
+            return runCheck(check, loglevel);
+          }
+          int returnCode = ErrorCodes.EXCEPTION;
+          FeatureUtil.startLogBuffer();
+          try {
+            returnCode = runCheck(check, loglevel);
+            return returnCode;
+          } finally {
+            endLogBuffer(deadline, !failuresOnly || returnCode != AbstractWebSmokeTest.OK);
+          }
+        } finally {
+          WebTestUtils.clearConnectionPoolLimits();
+          CheckDeadline.leave();
+        }
+      }
+    };
+
+    boolean async = "ASYNC".equalsIgnoreCase(parser.getOptionValue(engine));
+    if (async && !JdkSupport.hasAsyncGetEngine()) {
+      Logger.log("The asynchronous engine is not available (requires Java 11 or later), the checks run in threads.", this.loglevelValue);
+      async = false;
+    }
+
+    boolean virtual = "VIRTUAL".equalsIgnoreCase(parser.getOptionValue(threads));
+    if (virtual && !JdkSupport.hasVirtualThreads()) {
+      Logger.log("Virtual threads are not available (require Java 21 or later), the checks run in platform threads.", this.loglevelValue);
+      virtual = false;
+    }
+
+    // the executor limits the checks in flight, virtual threads need no pool limit
+    ExecutorService threadPool;
+    if (virtual) {
+      threadPool = JdkSupport.newVirtualThreadExecutor("check-");
+    } else {
+      threadPool = CheckExecutor.newThreadPool(Math.min(async ? Math.min(parallelValue, MAX_BLOCKING_THREADS) : parallelValue, checks.size()));
+    }
+    AsyncGetEngine asyncEngine = async ? JdkSupport.newAsyncGetEngine(ASYNC_THREADS) : null;
+
+    int[] returnCodes;
+    try {
+      CheckExecutor.AsyncCheckRunner blockingRunner = CheckExecutor.threaded(threadPool, runner);
+      returnCodes = executor.execute(checks, async ? asyncRunner(asyncEngine, blockingRunner, deadline, failuresOnly, loglevel) : blockingRunner);
+    } finally {
+      // global timeout exceeded or interrupted: cancel everything still running,
+      // the blocking socket reads ignore the interrupts but not the aborted requests
+      deadline.expire();
+      threadPool.shutdownNow();
+      if (asyncEngine != null) {
+        asyncEngine.close();
+      }
+    }
+
+    return logSummary(checks, returnCodes, this.loglevelValue);
+  }
+
+  /**
+   * Resolves the hosts the checks connect to, i.e. the host of the URL or the
+   * proxy, and logs the duration of every lookup.
+   */
+  static void prefetchDns(List<BatchCheck> checks, String loglevelValue) throws InterruptedException {
+    Set<String> hosts = new LinkedHashSet<String>();
+    for (BatchCheck check : checks) {
+      String proxyHost = check.getOptions().get("proxyHost");
+      if (!StringUtils.isEmpty(proxyHost)) {
+        hosts.add(proxyHost.trim().toLowerCase(Locale.ROOT));
+        continue;
+      }
+      try {
+        String host = new URL(check.getUrl()).getHost();
+        if (!StringUtils.isEmpty(host)) {
+          hosts.add(host.toLowerCase(Locale.ROOT));
+        }
+      } catch (MalformedURLException e) {
+        // reported by the check
+      }
+    }
+    if (hosts.isEmpty()) {
+      return;
+    }
+
+    long start = System.nanoTime();
+    ExecutorService dnsThreads = CheckExecutor.newThreadPool(Math.min(hosts.size(), MAX_DNS_THREADS));
+    List<DnsCache.Resolution> resolutions;
+    try {
+      resolutions = DnsCache.SHARED.prefetch(hosts, dnsThreads);
+    } finally {
+      dnsThreads.shutdownNow();
+    }
+
+    int failed = 0;
+    for (DnsCache.Resolution resolution : resolutions) {
+      if (resolution.getAddresses() != null) {
+        StringBuilder addresses = new StringBuilder();
+        for (InetAddress address : resolution.getAddresses()) {
+          addresses.append(addresses.length() > 0 ? ", " : "").append(address.getHostAddress());
+        }
+        Logger.log("Resolved " + resolution.getHost() + " in " + LatencyHistogram.millis(resolution.getNanos()) + ": " + addresses, loglevelValue);
+      } else {
+        Logger.log("Cannot resolve " + resolution.getHost() + " (" + LatencyHistogram.millis(resolution.getNanos()) + ")", loglevelValue);
+        failed++;
+      }
+    }
+    Logger.log("Resolved " + (resolutions.size() - failed) + " of " + resolutions.size() + " hosts in "
+        + LatencyHistogram.millis(System.nanoTime() - start), loglevelValue);
+  }
+
+  /**
+   * Sends GetSite checks with the asynchronous engine, all other checks are
+   * passed to <code>blockingRunner</code>. The output of the asynchronous
+   * checks is written like the one of the blocking checks.
+   */
+  static CheckExecutor.AsyncCheckRunner asyncRunner(final AsyncGetEngine asyncEngine,
+      final CheckExecutor.AsyncCheckRunner blockingRunner, final CheckDeadline deadline, final boolean failuresOnly,
+      final String loglevelValue) {
+    // the callbacks run in the threads of the engine, they log to the output of the calling feature
+    final PrintStream output = FeatureUtil.getThreadOutput();
+    return new CheckExecutor.AsyncCheckRunner() {
+      @Override
+      public void start(final BatchCheck check, final CheckExecutor.CheckCallback callback) {
+        if (!"GetSite".equals(check.getFeature()) || !ASYNC_OPTIONS.containsAll(check.getOptions().keySet())) {
+          blockingRunner.start(check, callback);
+          return;
+        }
+        WebTestInput input = toInput(check);
+        input.setTimeout(deadline.capTimeout(input.getTimeout()));
+        asyncEngine.get(input, new AsyncGetEngine.Callback() {
+          @Override
+          public void completed(final int returnCode, final String message) {
+            FeatureUtil.runWithOutput(output, new Runnable() {
+              @Override
+              public void run() {
+                FeatureUtil.startLogBuffer();
+                try {
+                  Logger.log("Check " + check + ": " + message + ", return code " + returnCode, loglevelValue);
+                } finally {
+                  endLogBuffer(deadline, !failuresOnly || returnCode != AbstractWebSmokeTest.OK);
+                }
+              }
+            });
+            callback.completed(returnCode);
+          }
+        });
+      }
+    };
+  }
+
+  /**
+   * Ends the output buffer of a check. The output of a check still running
+   * when the global timeout expired is dropped, it would follow the results.
+   */
+  static void endLogBuffer(CheckDeadline deadline, boolean write) {
+    synchronized (deadline) {
+      FeatureUtil.endLogBuffer(write && !deadline.isExpired());
+    }
+  }
+
+  /**
+   * Builds the input of a GetSite check like <code>parseInput</code> does.
+   */
+  static WebTestInput toInput(BatchCheck check) {
+    Map<String, String> options = check.getOptions();
+    int timeoutValue = 10000;
+    int proxyPortValue = 80;
+    try {
+      timeoutValue = Integer.parseInt(options.get("timeout"));
+    } catch (NumberFormatException e) {
+      // keep the default like GetSite
+    }
+    try {
+      proxyPortValue = Integer.parseInt(options.get("proxyPort"));
+    } catch (NumberFormatException e) {
+      // keep the default like GetSite
+    }
+    return new WebTestInput(options.get("url"), options.get("username"), options.get("password"), timeoutValue,
+        "YES".equalsIgnoreCase(options.get("ignoreServerCert")), options.get("proxyHost"), proxyPortValue,
+        options.get("proxyUsername"), options.get("proxyPassword"));
+  }
+
+  /**
+   * Runs a single check of the manifest within the current process.
+   *
+   * @return the return code of the check
+   */
+  static int runCheck(BatchCheck check, String loglevelValue) {
+    IFeature feature;
+    try {
+      feature = AraFileCmd.createFeature(GROUP, check.getFeature());
+    } catch (Exception e) {
+      Logger.log("Check " + check + ": Unknown feature " + check.getFeature(), loglevelValue);
+      return ErrorCodes.EXCEPTION;
+    }
+
+    if (!(feature instanceof AbstractWebSmokeTest)) {
+      Logger.log("Check " + check + ": " + check.getFeature() + " cannot be used within a batch", loglevelValue);
+      return ErrorCodes.EXCEPTION;
+    }
+
+    if (!check.getOptions().containsKey("loglevel")) {
+      check.getOptions().put("loglevel", loglevelValue);
+    }
+    return AraFileCmd.runFeature(feature, check.toArgs());
+  }
+
+  /**
+   * Logs the return codes of all checks.
+   *
+   * @return <code>OK</code> if all checks succeeded, otherwise the return code
+   *         of the first failing check in manifest order
+   */
+  static int logSummary(List<BatchCheck> checks, int[] returnCodes, String loglevelValue) {
+    int result = AbstractWebSmokeTest.OK;
+    int failed = 0;
+    StringBuilder builder = new StringBuilder("\r\nBatch results:\r\n");
+    for (int i = 0; i < checks.size(); i++) {
+      builder.append(checks.get(i)).append(": return code ").append(returnCodes[i]).append("\r\n");
+      if (returnCodes[i] != AbstractWebSmokeTest.OK) {
+        if (failed == 0)
+          result = returnCodes[i];
+        failed++;
+      }
+    }
+    builder.append(checks.size() - failed).append(" of ").append(checks.size()).append(" checks succeeded.");
+    Logger.log(builder.toString(), loglevelValue);
+    return result;
+  }
+}
@@ -0,0 +1,73 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single check of a batch manifest, i.e. a websmoketest feature and the
+ * options it is called with.
+ */
+public class BatchCheck {
+	private final int index;
+	private final String name;
+	private final String feature;
+	private final Map<String, String> options;
+
+	public BatchCheck(int index, String name, String feature, Map<String, String> options) {
+		this.index = index;
+		this.name = name;
+		this.feature = feature;
+		this.options = new LinkedHashMap<String, String>(options);
+	}
+
+	/**
+	 * @return the 1-based position of the check in the manifest
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the name of the check, falls back to the url if not set
+	 */
+	public String getName() {
+		if (name != null && name.length() > 0)
+			return name;
+		String url = getUrl();
+		return url != null ? url : feature + " #" + index;
+	}
+
+	public String getFeature() {
+		return feature;
+	}
+
+	public Map<String, String> getOptions() {
+		return options;
+	}
+
+	public String getUrl() {
+		return options.get("url");
+	}
+
+	/**
+	 * Builds the command line arguments of the feature. Options are passed in
+	 * their long form, i.e. <code>--url http://www.yoursite.com</code>.
+	 *
+	 * @return the arguments
+	 */
+	public String[] toArgs() {
+		List<String> args = new ArrayList<String>(options.size() * 2);
+		for (Map.Entry<String, String> option : options.entrySet()) {
+			args.add("--" + option.getKey());
+			args.add(option.getValue());
+		}
+		return args.toArray(new String[args.size()]);
+	}
+
+	@Override
+	public String toString() {
+		return "#" + index + " " + feature + " " + getName();
+	}
+}
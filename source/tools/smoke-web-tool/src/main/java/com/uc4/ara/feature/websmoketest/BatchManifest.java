@@ -0,0 +1,153 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.uc4.ara.feature.FeatureUtil;
+import com.uc4.ara.feature.utils.JsonParser;
+
+/**
+ * Reads the list of checks executed by the {@link Batch} feature.
+ * <p>
+ * CSV manifests start with a header row naming the columns. The column
+ * <code>feature</code> is required, <code>name</code> is optional and all
+ * other columns are the long names of the feature options
+ * (<code>url, username, password, timeout, expectedText, ...</code>). Empty
+ * cells are omitted, lines starting with <code>#</code> are ignored.
+ * <p>
+ * JSON manifests are an array of objects (or an object with a
+ * <code>checks</code> array) using the same keys.
+ */
+public final class BatchManifest {
+
+	public static final String FORMAT_CSV = "csv";
+	public static final String FORMAT_JSON = "json";
+
+	private static final String KEY_FEATURE = "feature";
+	private static final String KEY_NAME = "name";
+
+	private BatchManifest() {
+	}
+
+	/**
+	 * Reads a manifest file.
+	 *
+	 * @param file
+	 *            the manifest
+	 * @param format
+	 *            <code>csv</code>, <code>json</code> or null to choose by the
+	 *            file extension
+	 * @return the checks in manifest order
+	 * @throws IOException
+	 * @throws ParseException
+	 *             if the manifest is malformed
+	 */
+	public static List<BatchCheck> read(File file, String format) throws IOException, ParseException {
+		String content = new String(FeatureUtil.getFileBytes(file), "UTF-8");
+		if (format == null || format.length() == 0)
+			format = file.getName().toLowerCase().endsWith(".json") ? FORMAT_JSON : FORMAT_CSV;
+
+		if (FORMAT_JSON.equalsIgnoreCase(format))
+			return parseJson(content);
+		if (FORMAT_CSV.equalsIgnoreCase(format))
+			return parseCsv(content);
+		throw new IllegalArgumentException("Unknown manifest format '" + format + "'. Possible values: csv, json");
+	}
+
+	public static List<BatchCheck> parseJson(String content) throws ParseException {
+		Object root = JsonParser.parse(content);
+		if (root instanceof Map && ((Map<?, ?>) root).get("checks") instanceof List)
+			root = ((Map<?, ?>) root).get("checks");
+		if (!(root instanceof List))
+			throw new ParseException("Expected an array of checks", 0);
+
+		List<BatchCheck> checks = new ArrayList<BatchCheck>();
+		for (Object entry : (List<?>) root) {
+			if (!(entry instanceof Map))
+				throw new ParseException("Check #" + (checks.size() + 1) + " is not an object", 0);
+			Map<String, String> values = new LinkedHashMap<String, String>();
+			for (Map.Entry<?, ?> value : ((Map<?, ?>) entry).entrySet()) {
+				if (value.getValue() != null)
+					values.put(value.getKey().toString(), value.getValue().toString());
+			}
+			checks.add(createCheck(checks.size() + 1, values));
+		}
+		return checks;
+	}
+
+	public static List<BatchCheck> parseCsv(String content) throws ParseException {
+		List<BatchCheck> checks = new ArrayList<BatchCheck>();
+		String[] header = null;
+		int lineNumber = 0;
+		for (String line : content.split("\r?\n")) {
+			lineNumber++;
+			if (line.trim().length() == 0 || line.trim().startsWith("#"))
+				continue;
+
+			List<String> cells = splitCsvLine(line, lineNumber);
+			if (header == null) {
+				header = new String[cells.size()];
+				for (int i = 0; i < header.length; i++)
+					header[i] = cells.get(i).trim();
+				continue;
+			}
+
+			if (cells.size() > header.length)
+				throw new ParseException("Line " + lineNumber + " has more cells than the header", lineNumber);
+			Map<String, String> values = new LinkedHashMap<String, String>();
+			for (int i = 0; i < cells.size(); i++) {
+				if (cells.get(i).length() > 0)
+					values.put(header[i], cells.get(i));
+			}
+			checks.add(createCheck(checks.size() + 1, values));
+		}
+		return checks;
+	}
+
+	private static BatchCheck createCheck(int index, Map<String, String> values) throws ParseException {
+		String feature = values.remove(KEY_FEATURE);
+		String name = values.remove(KEY_NAME);
+		if (feature == null || feature.trim().length() == 0)
+			throw new ParseException("Check #" + index + " does not define a feature", index);
+		return new BatchCheck(index, name, feature.trim(), values);
+	}
+
+	/**
+	 * Splits a CSV line. Cells may be enclosed in double quotes, a double
+	 * quote within a quoted cell is escaped by another double quote.
+	 */
+	private static List<String> splitCsvLine(String line, int lineNumber) throws ParseException {
+		List<String> cells = new ArrayList<String>();
+		StringBuilder cell = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					cell.append('"');
+					i++;
+				} else if (c == '"') {
+					quoted = false;
+				} else {
+					cell.append(c);
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				cells.add(cell.toString());
+				cell.setLength(0);
+			} else {
+				cell.append(c);
+			}
+		}
+		if (quoted)
+			throw new ParseException("Unterminated quote in line " + lineNumber, lineNumber);
+		cells.add(cell.toString());
+		return cells;
+	}
+}
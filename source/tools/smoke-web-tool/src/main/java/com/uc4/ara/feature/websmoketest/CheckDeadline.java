@@ -0,0 +1,110 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * Global timeout of a batch. The checks of the batch run with the deadline
+ * set for their thread, their timeouts are capped by the remaining time and
+ * their requests are tracked while they are in flight. When the deadline is
+ * expired the requests still in flight are aborted, which also ends blocking
+ * socket reads that ignore the interrupts of the thread pool.
+ */
+public class CheckDeadline {
+
+	private static final ThreadLocal<CheckDeadline> CURRENT = new ThreadLocal<CheckDeadline>();
+
+	/**
+	 * Time left to a request started just before the deadline, so that it
+	 * fails with a timeout instead of waiting without a limit.
+	 */
+	private static final int MIN_TIMEOUT = 1;
+
+	private final long deadlineNanos;
+	private final Set<HttpUriRequest> inFlight = Collections
+			.newSetFromMap(new ConcurrentHashMap<HttpUriRequest, Boolean>());
+	private volatile boolean expired = false;
+
+	/**
+	 * @param timeout
+	 *            time in milliseconds from now, 0 for no limit
+	 */
+	public CheckDeadline(long timeout) {
+		this.deadlineNanos = timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
+	}
+
+	/**
+	 * @return the deadline set for the current thread or null
+	 */
+	public static CheckDeadline current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Sets the deadline for the current thread until {@link #leave()} is
+	 * called.
+	 */
+	public void enter() {
+		CURRENT.set(this);
+	}
+
+	public static void leave() {
+		CURRENT.remove();
+	}
+
+	/**
+	 * @return true once {@link #expire()} was called
+	 */
+	public boolean isExpired() {
+		return expired;
+	}
+
+	/**
+	 * Caps a timeout by the time left until the deadline.
+	 *
+	 * @param timeout
+	 *            timeout in milliseconds, 0 for no limit
+	 * @return the smaller of both, at least 1 millisecond
+	 */
+	public int capTimeout(int timeout) {
+		if (deadlineNanos == 0)
+			return timeout;
+		long remaining = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+		remaining = Math.max(MIN_TIMEOUT, Math.min(Integer.MAX_VALUE, remaining));
+		return timeout > 0 ? (int) Math.min(timeout, remaining) : (int) remaining;
+	}
+
+	/**
+	 * Tracks a request until it is released. A request registered after the
+	 * deadline expired is aborted right away.
+	 */
+	void register(HttpUriRequest request) {
+		inFlight.add(request);
+		if (expired && inFlight.remove(request))
+			request.abort();
+	}
+
+	void unregister(HttpUriRequest request) {
+		inFlight.remove(request);
+	}
+
+	/**
+	 * Marks the deadline as expired and aborts all requests in flight. The
+	 * method locks the deadline, callers writing the output of a check while
+	 * holding the lock never write it after the expiry.
+	 */
+	public synchronized void expire() {
+		expired = true;
+		List<HttpUriRequest> requests = new ArrayList<HttpUriRequest>(inFlight);
+		for (HttpUriRequest request : requests) {
+			if (inFlight.remove(request))
+				request.abort();
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.io.PrintStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.uc4.ara.feature.FeatureUtil;
+import com.uc4.ara.feature.globalcodes.ErrorCodes;
+
+/**
+ * Runs batch checks concurrently. At most <code>maxInFlight</code> checks run
+ * at the same time and at most <code>maxPerHost</code> of them against the
+ * same host. Checks are started in manifest order as soon as their host has a
+ * free slot, the return codes are collected in manifest order.
+ */
+public class CheckExecutor {
+
+	/**
+	 * Executes one check and returns its return code.
+	 */
+	public interface CheckRunner {
+		int run(BatchCheck check);
+	}
+
+	/**
+	 * Starts one check without blocking and reports its return code to the
+	 * callback when it finished.
+	 */
+	public interface AsyncCheckRunner {
+		void start(BatchCheck check, CheckCallback callback);
+	}
+
+	public interface CheckCallback {
+		void completed(int returnCode);
+	}
+
+	private final int maxInFlight;
+	private final int maxPerHost;
+	private final long globalTimeout;
+
+	/**
+	 * @param maxInFlight
+	 *            maximum number of concurrently running checks
+	 * @param maxPerHost
+	 *            maximum number of concurrently running checks per host, 0 for
+	 *            no limit
+	 * @param globalTimeout
+	 *            time in milliseconds after which all unfinished checks are
+	 *            cancelled, 0 for no limit
+	 */
+	public CheckExecutor(int maxInFlight, int maxPerHost, long globalTimeout) {
+		this.maxInFlight = Math.max(1, maxInFlight);
+		this.maxPerHost = maxPerHost > 0 ? maxPerHost : this.maxInFlight;
+		this.globalTimeout = Math.max(0, globalTimeout);
+	}
+
+	/**
+	 * Runs all checks, the runner starts them without blocking. Blocking
+	 * checks are adapted with {@link #threaded(ExecutorService, CheckRunner)}.
+	 *
+	 * @return the return codes in the order of <code>checks</code>. Checks
+	 *         which did not finish within the global timeout get the return
+	 *         code <code>TIMEOUT</code>.
+	 * @throws InterruptedException
+	 */
+	public int[] execute(List<BatchCheck> checks, AsyncCheckRunner runner) throws InterruptedException {
+		int[] returnCodes = new int[checks.size()];
+		boolean[] done = new boolean[checks.size()];
+
+		// finished checks as pairs of index and return code
+		final BlockingQueue<int[]> completed = new LinkedBlockingQueue<int[]>();
+		int running = 0;
+		Map<String, Integer> runningPerHost = new HashMap<String, Integer>();
+
+		LinkedList<Integer> pending = new LinkedList<Integer>();
+		for (int i = 0; i < checks.size(); i++)
+			pending.add(i);
+
+		long deadline = globalTimeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(globalTimeout) : 0;
+		int finished = 0;
+		while (finished < checks.size()) {
+			// start as many pending checks as the limits allow
+			Iterator<Integer> it = pending.iterator();
+			while (running < maxInFlight && it.hasNext()) {
+				final int index = it.next();
+				BatchCheck check = checks.get(index);
+				String host = hostOf(check);
+				Integer hostCount = runningPerHost.get(host);
+				if (hostCount != null && hostCount >= maxPerHost)
+					continue;
+
+				it.remove();
+				runningPerHost.put(host, hostCount == null ? 1 : hostCount + 1);
+				running++;
+				runner.start(check, new CheckCallback() {
+					@Override
+					public void completed(int returnCode) {
+						completed.add(new int[] { index, returnCode });
+					}
+				});
+			}
+
+			int[] result;
+			if (deadline > 0) {
+				result = completed.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+				if (result == null)
+					break;
+			} else {
+				result = completed.take();
+			}
+
+			int index = result[0];
+			String host = hostOf(checks.get(index));
+			runningPerHost.put(host, runningPerHost.get(host) - 1);
+			running--;
+			returnCodes[index] = result[1];
+			done[index] = true;
+			finished++;
+		}
+
+		for (int i = 0; i < returnCodes.length; i++) {
+			if (!done[i])
+				returnCodes[i] = AbstractWebSmokeTest.TIMEOUT;
+		}
+		return returnCodes;
+	}
+
+	/**
+	 * @return a pool of daemon threads for running blocking checks
+	 */
+	static ExecutorService newThreadPool(int threads) {
+		return Executors.newFixedThreadPool(Math.max(1, threads), new CheckThreadFactory());
+	}
+
+	/**
+	 * Adapts a blocking runner by executing its checks in a thread pool.
+	 */
+	static AsyncCheckRunner threaded(final ExecutorService executor, final CheckRunner runner) {
+		// the checks log to the output of the calling feature, i.e. to the daemon client
+		final PrintStream output = FeatureUtil.getThreadOutput();
+		return new AsyncCheckRunner() {
+			@Override
+			public void start(final BatchCheck check, final CheckCallback callback) {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						FeatureUtil.runWithOutput(output, new Runnable() {
+							@Override
+							public void run() {
+								int returnCode = ErrorCodes.EXCEPTION;
+								try {
+									returnCode = runner.run(check);
+								} catch (RuntimeException e) {
+									returnCode = ErrorCodes.EXCEPTION;
+								} finally {
+									callback.completed(returnCode);
+								}
+							}
+						});
+					}
+				});
+			}
+		};
+	}
+
+	private static String hostOf(BatchCheck check) {
+		if (check.getUrl() == null)
+			return "";
+		try {
+			return new URL(check.getUrl()).getHost().toLowerCase();
+		} catch (MalformedURLException e) {
+			return "";
+		}
+	}
+
+	/**
+	 * Creates daemon threads so that checks which cannot be interrupted do not
+	 * keep the process alive after the global timeout.
+	 */
+	private static class CheckThreadFactory implements ThreadFactory {
+		private final AtomicInteger counter = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "check-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
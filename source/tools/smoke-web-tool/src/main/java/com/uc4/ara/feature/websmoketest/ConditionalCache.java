@@ -0,0 +1,245 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+
+/**
+ * Cache of page evaluations on disk for conditional requests. For every URL
+ * and connection settings the validators of the last response (<code>ETag</code>,
+ * <code>Last-Modified</code>) are stored together with the results derived
+ * from the page: the title, a digest of the content and the return codes of
+ * the checked expectations. A check finding the result of its expectation
+ * sends the validators, if the server answers with 304 (not modified) the
+ * stored result is used without downloading and parsing the page again.
+ * <p>
+ * The results of other expectations are kept as long as the digest of the
+ * page stays the same. Responses with <code>Cache-Control: no-store</code>
+ * are not cached.
+ */
+public class ConditionalCache {
+
+	private static final String ETAG = "etag";
+	private static final String LAST_MODIFIED = "lastModified";
+	private static final String URL = "url";
+	private static final String DIGEST = "digest";
+	private static final String TITLE = "title";
+	private static final String RESULT_PREFIX = "result.";
+
+	private final File directory;
+
+	/**
+	 * @param directory
+	 *            directory of the cache files, created if missing
+	 */
+	public ConditionalCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Loads the entry of the URL and connection settings of
+	 * <code>input</code>. An unreadable entry is treated as missing.
+	 *
+	 * @return the entry, empty if nothing is cached
+	 */
+	public Entry get(WebTestInput input) {
+		File file = new File(directory, key(input) + ".properties");
+		Properties properties = new Properties();
+		if (file.isFile()) {
+			InputStream in = null;
+			try {
+				in = new FileInputStream(file);
+				properties.load(in);
+			} catch (IOException e) {
+				properties.clear();
+			} finally {
+				closeQuietly(in);
+			}
+		}
+		properties.setProperty(URL, input.getUrl());
+		return new Entry(file, properties);
+	}
+
+	/**
+	 * @return the name of the entry, a digest of the URL and of every setting
+	 *         which can change the response: credentials, proxy, certificate
+	 *         check, transport, HTTP version and compression
+	 */
+	static String key(WebTestInput input) {
+		String proxy = StringUtils.isEmpty(input.getProxyHost()) ? "" : input.getProxyHost() + ":" + input.getProxyPort();
+		return digest(input.getUrl() + "\n" + proxy + "\n"
+				+ input.isIgnoreServerCert() + "|" + input.getTransport() + "|" + input.getHttpVersion() + "|"
+				+ input.isCompression() + "\n"
+				+ WebTestUtils.credentialsDigest(input.getUsername(), input.getPassword(), input.getProxyUsername(),
+						input.getProxyPassword()));
+	}
+
+	/**
+	 * @return the SHA-256 digest of the text as hex string
+	 */
+	public static String digest(String text) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes("UTF-8"));
+			StringBuilder builder = new StringBuilder(hash.length * 2);
+			for (byte b : hash)
+				builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			return builder.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void closeQuietly(java.io.Closeable closeable) {
+		if (closeable == null)
+			return;
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			// nothing to do
+		}
+	}
+
+	/**
+	 * The cached evaluation of one page.
+	 */
+	public static class Entry {
+		private final File file;
+		private final Properties properties;
+		private boolean storable = true;
+
+		Entry(File file, Properties properties) {
+			this.file = file;
+			this.properties = properties;
+		}
+
+		/**
+		 * @return the result stored for the expectation, null if there is
+		 *         none or the page has no validators
+		 */
+		public Integer getResult(String expectation) {
+			if (!hasValidators())
+				return null;
+			try {
+				String result = properties.getProperty(RESULT_PREFIX + expectation);
+				return result != null ? Integer.valueOf(result) : null;
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+
+		/**
+		 * @return the stored title, null if there is none or the page has no
+		 *         validators
+		 */
+		public String getTitle() {
+			return hasValidators() ? properties.getProperty(TITLE) : null;
+		}
+
+		private boolean hasValidators() {
+			return properties.getProperty(ETAG) != null || properties.getProperty(LAST_MODIFIED) != null;
+		}
+
+		/**
+		 * Makes the request conditional on the stored validators.
+		 */
+		public void addValidators(HttpRequest request) {
+			if (properties.getProperty(ETAG) != null)
+				request.setHeader("If-None-Match", properties.getProperty(ETAG));
+			if (properties.getProperty(LAST_MODIFIED) != null)
+				request.setHeader("If-Modified-Since", properties.getProperty(LAST_MODIFIED));
+		}
+
+		/**
+		 * Takes the validators of a new version of the page. The stored
+		 * results are dropped unless the content has the same digest.
+		 *
+		 * @param digest
+		 *            digest of the page content, null if the page was not read
+		 *            completely
+		 */
+		public void update(HttpResponse response, String digest) {
+			Header cacheControl = response.getFirstHeader("Cache-Control");
+			storable = cacheControl == null || !cacheControl.getValue().toLowerCase().contains("no-store");
+
+			if (digest == null || !digest.equals(properties.getProperty(DIGEST))) {
+				List<String> names = new ArrayList<String>(properties.stringPropertyNames());
+				for (String name : names) {
+					if (name.startsWith(RESULT_PREFIX) || name.equals(TITLE) || name.equals(DIGEST))
+						properties.remove(name);
+				}
+				if (digest != null)
+					properties.setProperty(DIGEST, digest);
+			}
+
+			setOrRemove(ETAG, response.getFirstHeader("ETag"));
+			setOrRemove(LAST_MODIFIED, response.getFirstHeader("Last-Modified"));
+		}
+
+		private void setOrRemove(String name, Header header) {
+			if (header != null && !StringUtils.isBlank(header.getValue()))
+				properties.setProperty(name, header.getValue());
+			else
+				properties.remove(name);
+		}
+
+		public void putResult(String expectation, int returnCode) {
+			properties.setProperty(RESULT_PREFIX + expectation, String.valueOf(returnCode));
+		}
+
+		public void putTitle(String title) {
+			if (title != null)
+				properties.setProperty(TITLE, title);
+		}
+
+		/**
+		 * Writes the entry, an entry of a page without validators or not to
+		 * be stored is removed. The file is replaced atomically where the
+		 * file system supports it, so concurrent checks read either version.
+		 *
+		 * @throws IOException
+		 *             if the entry cannot be written
+		 */
+		public void save() throws IOException {
+			if (!storable || !hasValidators()) {
+				if (file.exists() && !file.delete())
+					throw new IOException("Cannot delete " + file);
+				return;
+			}
+
+			File directory = file.getParentFile();
+			if (!directory.isDirectory() && !directory.mkdirs())
+				throw new IOException("Cannot create the cache directory " + directory);
+			File temp = File.createTempFile(file.getName(), ".tmp", directory);
+			OutputStream out = new FileOutputStream(temp);
+			try {
+				properties.store(out, null);
+			} finally {
+				out.close();
+			}
+			if (!temp.renameTo(file)) {
+				// Windows does not replace existing files
+				file.delete();
+				if (!temp.renameTo(file)) {
+					temp.delete();
+					throw new IOException("Cannot write " + file);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Negotiates compressed responses (gzip, deflate) and decodes them while the
+ * body is read, so the features reading only the beginning of a page stop
+ * downloading early on compressed pages as well. The bytes received on the
+ * wire and the decoded bytes are recorded in the {@link RequestTimings} of the
+ * current thread.
+ * <p>
+ * Responses with other codings (e.g. br, which the JDK cannot decode) are not
+ * requested and passed on unchanged.
+ */
+public final class ContentDecoding {
+
+	public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+	/**
+	 * Adds the <code>Accept-Encoding</code> header to the requests of an
+	 * Apache client.
+	 */
+	public static final HttpRequestInterceptor REQUEST_INTERCEPTOR = new HttpRequestInterceptor() {
+		@Override
+		public void process(HttpRequest request, HttpContext context) {
+			accept(request);
+		}
+	};
+
+	/**
+	 * Decodes the responses of an Apache client.
+	 */
+	public static final HttpResponseInterceptor RESPONSE_INTERCEPTOR = new HttpResponseInterceptor() {
+		@Override
+		public void process(HttpResponse response, HttpContext context) {
+			decode(response);
+		}
+	};
+
+	private ContentDecoding() {
+	}
+
+	/**
+	 * Asks for a compressed response unless the request names the accepted
+	 * codings itself.
+	 */
+	public static void accept(HttpRequest request) {
+		if (!request.containsHeader("Accept-Encoding"))
+			request.addHeader("Accept-Encoding", ACCEPT_ENCODING);
+	}
+
+	/**
+	 * Replaces the entity of the response by one decoding and counting the
+	 * body. The headers stay as received.
+	 */
+	public static void decode(HttpResponse response) {
+		HttpEntity entity = response.getEntity();
+		if (entity == null || entity instanceof DecodingEntity)
+			return;
+		Header encoding = entity.getContentEncoding();
+		String coding = encoding != null ? encoding.getValue().trim().toLowerCase(Locale.ROOT) : "identity";
+		if ("x-gzip".equals(coding))
+			coding = "gzip";
+		if (!"gzip".equals(coding) && !"deflate".equals(coding) && !"identity".equals(coding) && coding.length() > 0)
+			return;
+		response.setEntity(new DecodingEntity(entity, coding.length() > 0 ? coding : "identity",
+				RequestTimings.current()));
+	}
+
+	/**
+	 * Entity returning the decoded body. The content stream is created once,
+	 * so reading and releasing the entity work on the same stream.
+	 */
+	private static class DecodingEntity extends HttpEntityWrapper {
+		private final String coding;
+		private final RequestTimings timings;
+		private InputStream content;
+
+		DecodingEntity(HttpEntity wrapped, String coding, RequestTimings timings) {
+			super(wrapped);
+			this.coding = coding;
+			this.timings = timings;
+			if (timings != null)
+				timings.setContentEncoding(coding);
+		}
+
+		@Override
+		public InputStream getContent() throws IOException {
+			if (content == null)
+				content = new DecodingInputStream(new WireInputStream(wrappedEntity.getContent(), timings), coding,
+						timings);
+			return content;
+		}
+
+		@Override
+		public long getContentLength() {
+			return "identity".equals(coding) ? wrappedEntity.getContentLength() : -1;
+		}
+
+		@Override
+		public Header getContentEncoding() {
+			return "identity".equals(coding) ? wrappedEntity.getContentEncoding() : null;
+		}
+
+		@Override
+		public boolean isRepeatable() {
+			return false;
+		}
+
+		@Override
+		public boolean isStreaming() {
+			return true;
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			InputStream in = getContent();
+			try {
+				byte[] buffer = new byte[8192];
+				int read;
+				while ((read = in.read(buffer)) != -1)
+					out.write(buffer, 0, read);
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+	/**
+	 * Counts the bytes received on the wire.
+	 */
+	private static class WireInputStream extends FilterInputStream {
+		private final RequestTimings timings;
+
+		WireInputStream(InputStream in, RequestTimings timings) {
+			super(in);
+			this.timings = timings;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1 && timings != null)
+				timings.addWireBytes(1);
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read > 0 && timings != null)
+				timings.addWireBytes(read);
+			return read;
+		}
+	}
+
+	/**
+	 * Decodes the body on the first read, so that empty bodies (e.g. of HEAD
+	 * requests) do not fail, and counts the decoded bytes.
+	 */
+	private static class DecodingInputStream extends InputStream {
+		private final PushbackInputStream wire;
+		private final String coding;
+		private final RequestTimings timings;
+		private InputStream decoder;
+		private Inflater inflater;
+
+		DecodingInputStream(InputStream wire, String coding, RequestTimings timings) {
+			this.wire = new PushbackInputStream(wire, 2);
+			this.coding = coding;
+			this.timings = timings;
+		}
+
+		private InputStream decoder() throws IOException {
+			if (decoder != null)
+				return decoder;
+			if ("identity".equals(coding)) {
+				decoder = wire;
+				return decoder;
+			}
+
+			byte[] header = new byte[2];
+			int length = 0;
+			int read;
+			while (length < header.length && (read = wire.read(header, length, header.length - length)) != -1)
+				length += read;
+			if (length == 0) {
+				decoder = wire;
+				return decoder;
+			}
+			wire.unread(header, 0, length);
+
+			if ("gzip".equals(coding)) {
+				decoder = new GZIPInputStream(wire, 8192);
+			} else {
+				// "deflate" should be zlib wrapped, some servers send raw deflate data
+				boolean zlib = length == 2 && (header[0] & 0x0f) == 8
+						&& (((header[0] & 0xff) << 8) | (header[1] & 0xff)) % 31 == 0;
+				inflater = new Inflater(!zlib);
+				decoder = new InflaterInputStream(wire, inflater, 8192);
+			}
+			return decoder;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = decoder().read();
+			if (b != -1 && timings != null)
+				timings.addDecodedBytes(1);
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = decoder().read(b, off, len);
+			if (read > 0 && timings != null)
+				timings.addDecodedBytes(read);
+			return read;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return decoder != null ? decoder.available() : 0;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				if (decoder != null)
+					decoder.close();
+				else
+					wire.close();
+			} finally {
+				if (inflater != null)
+					inflater.end();
+			}
+		}
+	}
+}
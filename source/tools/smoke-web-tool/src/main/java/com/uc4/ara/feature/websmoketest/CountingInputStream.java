@@ -0,0 +1,71 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from a stream and reports end of stream once a byte
+ * budget is exhausted.
+ */
+public class CountingInputStream extends FilterInputStream {
+	private final long limit;
+	private long count = 0;
+	private boolean limitReached = false;
+
+	/**
+	 * @param in
+	 *            the stream to read from
+	 * @param limit
+	 *            maximum number of bytes to read, 0 or less for no limit
+	 */
+	public CountingInputStream(InputStream in, long limit) {
+		super(in);
+		this.limit = limit > 0 ? limit : Long.MAX_VALUE;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (count >= limit) {
+			limitReached = true;
+			return -1;
+		}
+		int b = super.read();
+		if (b != -1)
+			count++;
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (count >= limit) {
+			limitReached = true;
+			return -1;
+		}
+		int read = super.read(b, off, (int) Math.min(len, limit - count));
+		if (read > 0)
+			count += read;
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = super.skip(Math.min(n, limit - count));
+		count += skipped;
+		return skipped;
+	}
+
+	/**
+	 * @return the number of bytes read so far
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return true if reading stopped because the byte budget was exhausted
+	 */
+	public boolean isLimitReached() {
+		return limitReached;
+	}
+}
@@ -0,0 +1,248 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+
+/**
+ * Caches the addresses of host names within the process. Concurrent lookups
+ * of the same host wait for one resolution, so checks started at the same
+ * time against a host resolve it only once. Failed lookups are cached as
+ * well.
+ * <p>
+ * The system resolver does not report the TTL of the records, the entries
+ * expire after the TTLs configured for the JVM
+ * (<code>networkaddress.cache.ttl</code>, default 30 s, and
+ * <code>networkaddress.cache.negative.ttl</code>, default 10 s, -1 caches
+ * forever). These TTLs stack on top of the JVM's own address cache, which
+ * the system resolver consults, so an answer can be used for up to twice the
+ * TTL after it was resolved. Expired entries are removed whenever a host is
+ * added, so the cache only holds the hosts looked up within the last TTL.
+ */
+public class DnsCache implements DnsResolver {
+
+	/**
+	 * Cache shared by all connection managers of the process.
+	 */
+	public static final DnsCache SHARED = new DnsCache(new SystemDefaultDnsResolver(), ttlSeconds(
+			"networkaddress.cache.ttl", "sun.net.inetaddr.ttl", 30), ttlSeconds("networkaddress.cache.negative.ttl",
+			"sun.net.inetaddr.negative.ttl", 10));
+
+	private final DnsResolver delegate;
+	private final long ttlNanos;
+	private final long negativeTtlNanos;
+	private final ConcurrentMap<String, Lookup> lookups = new ConcurrentHashMap<String, Lookup>();
+
+	/**
+	 * @param delegate
+	 *            resolver queried for hosts not in the cache
+	 * @param ttlSeconds
+	 *            time successful lookups are kept, negative for forever
+	 * @param negativeTtlSeconds
+	 *            time failed lookups are kept, negative for forever
+	 */
+	public DnsCache(DnsResolver delegate, long ttlSeconds, long negativeTtlSeconds) {
+		this.delegate = delegate;
+		this.ttlNanos = ttlSeconds < 0 ? -1 : TimeUnit.SECONDS.toNanos(ttlSeconds);
+		this.negativeTtlNanos = negativeTtlSeconds < 0 ? -1 : TimeUnit.SECONDS.toNanos(negativeTtlSeconds);
+	}
+
+	@Override
+	public InetAddress[] resolve(String host) throws UnknownHostException {
+		String key = host.toLowerCase(Locale.ROOT);
+		Lookup lookup = lookups.get(key);
+		if (lookup != null && lookup.isExpired()) {
+			lookups.remove(key, lookup);
+			lookup = null;
+		}
+		if (lookup == null) {
+			Lookup created = new Lookup(host);
+			lookup = lookups.putIfAbsent(key, created);
+			if (lookup == null) {
+				lookup = created;
+				pruneExpired();
+				created.run();
+			}
+		}
+
+		try {
+			return lookup.get().clone();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UnknownHostException(host + ": interrupted");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof UnknownHostException)
+				throw (UnknownHostException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public void clear() {
+		lookups.clear();
+	}
+
+	/**
+	 * @return the number of entries, including expired ones not yet removed
+	 */
+	int size() {
+		return lookups.size();
+	}
+
+	private void pruneExpired() {
+		for (Map.Entry<String, Lookup> entry : lookups.entrySet()) {
+			if (entry.getValue().isExpired())
+				lookups.remove(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Resolves the hosts in parallel and keeps them in the cache.
+	 *
+	 * @param hosts
+	 *            the host names, duplicates are resolved once
+	 * @param executor
+	 *            runs the lookups
+	 * @return the results in the order of the hosts
+	 */
+	public List<Resolution> prefetch(Collection<String> hosts, ExecutorService executor) throws InterruptedException {
+		List<Future<Resolution>> futures = new ArrayList<Future<Resolution>>();
+		for (final String host : new LinkedHashSet<String>(hosts)) {
+			futures.add(executor.submit(new Callable<Resolution>() {
+				@Override
+				public Resolution call() {
+					long start = System.nanoTime();
+					try {
+						InetAddress[] addresses = resolve(host);
+						return new Resolution(host, System.nanoTime() - start, addresses, null);
+					} catch (UnknownHostException e) {
+						return new Resolution(host, System.nanoTime() - start, null, e);
+					}
+				}
+			}));
+		}
+
+		List<Resolution> resolutions = new ArrayList<Resolution>();
+		for (Future<Resolution> future : futures) {
+			try {
+				resolutions.add(future.get());
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return resolutions;
+	}
+
+	/**
+	 * Gets a TTL from the security property or, like the JVM, from the system
+	 * property.
+	 */
+	static long ttlSeconds(String securityProperty, String systemProperty, long defaultValue) {
+		String value = Security.getProperty(securityProperty);
+		if (value == null)
+			value = System.getProperty(systemProperty);
+		if (value == null)
+			return defaultValue;
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * The result of a prefetched host.
+	 */
+	public static class Resolution {
+		private final String host;
+		private final long nanos;
+		private final InetAddress[] addresses;
+		private final UnknownHostException error;
+
+		Resolution(String host, long nanos, InetAddress[] addresses, UnknownHostException error) {
+			this.host = host;
+			this.nanos = nanos;
+			this.addresses = addresses;
+			this.error = error;
+		}
+
+		public String getHost() {
+			return host;
+		}
+
+		/**
+		 * @return the duration of the lookup, close to 0 if it was cached
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+
+		/**
+		 * @return the addresses, null if the host could not be resolved
+		 */
+		public InetAddress[] getAddresses() {
+			return addresses;
+		}
+
+		public UnknownHostException getError() {
+			return error;
+		}
+	}
+
+	/**
+	 * One resolution of a host, shared by the threads asking for it while it
+	 * runs and until it expires.
+	 */
+	private class Lookup extends FutureTask<InetAddress[]> {
+		private long expiresNanos;
+		private boolean forever = false;
+		private volatile boolean completed = false;
+
+		Lookup(final String host) {
+			super(new Callable<InetAddress[]>() {
+				@Override
+				public InetAddress[] call() throws UnknownHostException {
+					return delegate.resolve(host);
+				}
+			});
+		}
+
+		@Override
+		protected void done() {
+			boolean failed;
+			try {
+				get();
+				failed = false;
+			} catch (Exception e) {
+				failed = true;
+			}
+			long ttl = failed ? negativeTtlNanos : ttlNanos;
+			forever = ttl < 0;
+			expiresNanos = System.nanoTime() + Math.max(ttl, 0);
+			completed = true;
+		}
+
+		boolean isExpired() {
+			return completed && !forever && System.nanoTime() - expiresNanos >= 0;
+		}
+	}
+}
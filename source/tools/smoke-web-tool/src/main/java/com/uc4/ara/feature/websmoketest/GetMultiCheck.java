@@ -0,0 +1,349 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.net.ConnectException;
+import java.net.MalformedURLException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import javax.net.ssl.SSLException;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import com.uc4.ara.feature.Feature;
+import com.uc4.ara.feature.globalcodes.ErrorCodes;
+import com.uc4.ara.feature.utils.CmdLineParser;
+import com.uc4.ara.util.Logger;
+
+@Feature(description = "Opens a page ('URL') once and checks any number of assertions against it: status code, response headers, title, text, "
+    + "XPath and CSS elements. Every option except 'url' may be given several times. All assertions are evaluated, "
+    + "the return code is the one of the first failing assertion in the order status, header, title, text, regex, element, css.")
+public class GetMultiCheck extends AbstractWebSmokeTest {
+
+  private CmdLineParser.Option<String> status;
+  private CmdLineParser.Option<String> header;
+  private CmdLineParser.Option<String> title;
+  private CmdLineParser.Option<String> expectedText;
+  private CmdLineParser.Option<String> expectedRegex;
+  private CmdLineParser.Option<String> expectedElement;
+  private CmdLineParser.Option<String> cssSelector;
+
+  @Override
+  public void initialize() {
+    super.initialize();
+    parser.setExamples("java -jar ARATools websmoketest GetMultiCheck -url \"http://www.yoursite.com\" -st 200-299 -hd \"Content-Type: text/html\" "
+        + "-tl \"Welcome.*\" -et \"My expected text\" -el \"//div[@id='main-content']\" -css \"a[href=/login]\" -t 10000");
+
+    status = parser.addHelp(parser.addStringOption("st", "status", false),
+        "Expected status code, range (200-299) or class (2xx). If given several times one of them has to match. Default: 200-299.");
+
+    header = parser.addHelp(parser.addStringOption("hd", "header", false),
+        "Expected response header as \"Name\" or \"Name: regular expression\". The header has to exist and its value has to contain a match of the regular expression.");
+
+    title = parser.addHelp(parser.addStringOption("tl", "title", false),
+        "Regular expression the title of the page has to match.");
+
+    expectedText = parser.addHelp(parser.addStringOption("et", "expectedText", false),
+        "Text which has to appear somewhere on the page (case insensitive). HTML tags are stripped before evaluation.");
+
+    expectedRegex = parser.addHelp(parser.addStringOption("er", "expectedRegex", false),
+        "Regular expression which has to match part of the page text. HTML tags are stripped before evaluation.");
+
+    expectedElement = parser.addHelp(parser.addStringOption("el", "expectedElement", false),
+        "Expected element identified by XPath expression.");
+
+    cssSelector = parser.addHelp(parser.addStringOption("css", "cssSelector", false),
+        "Expected element identified by CSS selector.");
+
+    addProbeOptions();
+  }
+
+  @Override
+  protected int runCheck() throws Exception {
+
+    WebTestInput input = parseInput();
+
+    if (input.isIgnoreServerCert()) {
+      Logger.logInfo(this.logLevel, "SSL Certificate validation is ignored");
+    }
+
+    Collection<String> statusValues = parser.getOptionValues(status);
+    Collection<String> headerValues = parser.getOptionValues(header);
+    Collection<String> titleValues = parser.getOptionValues(title);
+    Collection<String> expectedTextValues = parser.getOptionValues(expectedText);
+    Collection<String> expectedRegexValues = parser.getOptionValues(expectedRegex);
+    Collection<String> expectedElementValues = parser.getOptionValues(expectedElement);
+    Collection<String> cssSelectorValues = parser.getOptionValues(cssSelector);
+
+    // validate all assertions before making the request
+    List<int[]> statusRanges = new ArrayList<int[]>();
+    for (String value : statusValues) {
+      int[] range = parseStatusRange(value);
+      if (range == null) {
+        Logger.log("Error: Invalid status " + value + ". Expected a status code (200), a range (200-299) or a class (2xx).", this.loglevelValue);
+        return ErrorCodes.PARAMSMISMATCH;
+      }
+      statusRanges.add(range);
+    }
+    if (statusRanges.isEmpty()) {
+      statusRanges.add(new int[] { 200, 299 });
+    }
+
+    List<String> headerNames = new ArrayList<String>();
+    List<Pattern> headerPatterns = new ArrayList<Pattern>();
+    List<Pattern> titlePatterns = new ArrayList<Pattern>();
+    List<Pattern> textPatterns = new ArrayList<Pattern>();
+    try {
+      for (String value : headerValues) {
+        int colon = value.indexOf(':');
+        headerNames.add((colon < 0 ? value : value.substring(0, colon)).trim());
+        headerPatterns.add(colon < 0 ? null : Pattern.compile(value.substring(colon + 1).trim(), Pattern.CASE_INSENSITIVE));
+      }
+      for (String value : titleValues) {
+        titlePatterns.add(Pattern.compile(value));
+      }
+      for (String value : expectedRegexValues) {
+        textPatterns.add(Pattern.compile(value, Pattern.CASE_INSENSITIVE | Pattern.DOTALL));
+      }
+    } catch (PatternSyntaxException e) {
+      Logger.log("The pattern " + e.getPattern() + " is not valid", this.loglevelValue);
+      return ErrorCodes.EXCEPTION;
+    }
+
+    XPath xpath = XPathFactory.newInstance().newXPath();
+    List<XPathExpression> xpathExprs = new ArrayList<XPathExpression>();
+    for (String value : expectedElementValues) {
+      try {
+        xpathExprs.add(xpath.compile(value));
+      } catch (XPathExpressionException e) {
+        Logger.log("Error: Invalid XPath expression " + value, this.loglevelValue);
+        return ErrorCodes.EXCEPTION;
+      }
+    }
+
+    for (String value : cssSelectorValues) {
+      try {
+        Jsoup.parse("").select(value);
+      } catch (RuntimeException e) {
+        // jsoup reports invalid selectors with parse and validation exceptions
+        Logger.log("Error: Invalid CSS selector " + value + ". " + e.getMessage(), this.loglevelValue);
+        return ErrorCodes.EXCEPTION;
+      }
+    }
+
+    boolean needsBody = !titlePatterns.isEmpty() || !expectedTextValues.isEmpty() || !textPatterns.isEmpty()
+        || !xpathExprs.isEmpty() || !cssSelectorValues.isEmpty();
+
+    HttpClient httpclient = null;
+    int statusCode = ErrorCodes.EXCEPTION;
+    try {
+      httpclient = WebTestUtils.getHttpClient(input);
+    } catch (MalformedURLException e) {
+      Logger.log("Error-Message: Invalid URL.", this.loglevelValue);
+      return statusCode;
+    }
+
+    Logger.logInfo(this.logLevel, "Making the GET request to {} ...", input.getUrl());
+
+    if (!StringUtils.isEmpty(input.getUsername())) {
+      Logger.logInfo(this.logLevel, "Authentication username: {}", input.getUsername());
+    }
+
+    if (!StringUtils.isEmpty(input.getProxyHost())) {
+      Logger.logInfo(this.logLevel, "Use proxy server: {}:{}", input.getProxyHost(), input.getProxyPort());
+    }
+
+    HttpGet httpGet = new HttpGet(input.getUrl());
+
+    HttpResponse response = null;
+    RequestTimings timings = RequestTimings.start();
+    try {
+      response = WebTestUtils.execute(httpclient, httpGet);
+      timings.responseReceived();
+      statusCode = response.getStatusLine().getStatusCode();
+      Logger.logInfo(this.logLevel, "Received status code {}", statusCode);
+
+      // the status assertion is evaluated first, an expected 401 or 407 is no authentication failure
+      boolean statusMatches = false;
+      for (int[] range : statusRanges) {
+        statusMatches |= statusCode >= range[0] && statusCode <= range[1];
+      }
+
+      if (!statusMatches && statusCode == 401) {
+        Logger.log("Server authentication failed!", this.loglevelValue);
+        return WRONG_CREDENTIALS;
+      }
+
+      if (!statusMatches && statusCode == 407) {
+        Logger.log("Proxy server authentication failed!", this.loglevelValue);
+        return WRONG_PROXY_CREDENTIALS;
+      }
+
+      int result = OK;
+      int failed = 0;
+
+      if (!statusMatches) {
+        Logger.log("Status code " + statusCode + " does not match the expected status.", this.loglevelValue);
+        result = STATUS_NOT_MATCH;
+        failed++;
+      }
+
+      for (int i = 0; i < headerNames.size(); i++) {
+        boolean headerMatches = false;
+        for (Header responseHeader : response.getHeaders(headerNames.get(i))) {
+          headerMatches |= headerPatterns.get(i) == null || headerPatterns.get(i).matcher(responseHeader.getValue()).find();
+        }
+        Pattern headerPattern = headerPatterns.get(i);
+        if (headerMatches && headerPattern != null) {
+          Logger.logInfo(this.logLevel, "Header {} matching {} found.", headerNames.get(i), headerPattern.pattern());
+        } else if (headerMatches) {
+          Logger.logInfo(this.logLevel, "Header {} found.", headerNames.get(i));
+        } else {
+          Logger.log("Header " + headerNames.get(i) + (headerPattern != null ? " matching " + headerPattern.pattern() : "")
+              + " not found.", this.loglevelValue);
+          result = failed++ == 0 ? HEADER_NOT_MATCH : result;
+        }
+      }
+
+      if (needsBody) {
+        // the page is downloaded and parsed once for all assertions
+        HttpEntity entity = response.getEntity();
+        String content = entity != null ? EntityUtils.toString(entity, "UTF-8") : "";
+        timings.bodyReceived();
+        Document doc = Jsoup.parse(content, input.getUrl());
+
+        String titleValue = doc.title();
+        if (!titlePatterns.isEmpty()) {
+          Logger.logInfo(this.logLevel, "TITLE: {}", titleValue);
+        }
+        for (Pattern titlePattern : titlePatterns) {
+          boolean titleMatches = titlePattern.matcher(titleValue).matches();
+          if (titleMatches) {
+            Logger.logInfo(this.logLevel, "Title matches {}", titlePattern.pattern());
+          } else {
+            Logger.log("Title does not match " + titlePattern.pattern(), this.loglevelValue);
+            result = failed++ == 0 ? TITLE_NOT_MATCH : result;
+          }
+        }
+
+        String text = doc.body() != null ? doc.body().text() : "";
+        String lowerCaseText = expectedTextValues.isEmpty() ? null : text.toLowerCase();
+        for (String value : expectedTextValues) {
+          boolean textFound = lowerCaseText.contains(value.toLowerCase());
+          if (textFound) {
+            Logger.logInfo(this.logLevel, "Found the text in page content: {}", value);
+          } else {
+            Logger.log("Couldn't find the text in page content: " + value, this.loglevelValue);
+            result = failed++ == 0 ? TEXT_NOT_FOUND : result;
+          }
+        }
+        for (Pattern textPattern : textPatterns) {
+          boolean textFound = textPattern.matcher(text).find();
+          if (textFound) {
+            Logger.logInfo(this.logLevel, "The regular expression {} matches.", textPattern.pattern());
+          } else {
+            Logger.log("The regular expression " + textPattern.pattern() + " does not match.", this.loglevelValue);
+            result = failed++ == 0 ? TEXT_NOT_FOUND : result;
+          }
+        }
+
+        org.w3c.dom.Document w3cDoc = xpathExprs.isEmpty() ? null : WebTestUtils.toW3cDocument(doc);
+        int index = 0;
+        for (String value : expectedElementValues) {
+          boolean elementFound = xpathExprs.get(index++).evaluate(w3cDoc, XPathConstants.NODE) != null;
+          if (elementFound) {
+            Logger.logInfo(this.logLevel, "Element exists: {}", value);
+          } else {
+            Logger.log("Cannot find element: " + value, this.loglevelValue);
+            result = failed++ == 0 ? ELEMENT_NOT_FOUND : result;
+          }
+        }
+
+        for (String value : cssSelectorValues) {
+          boolean elementFound = !doc.select(value).isEmpty();
+          if (elementFound) {
+            Logger.logInfo(this.logLevel, "Element exists: {}", value);
+          } else {
+            Logger.log("Cannot find element: " + value, this.loglevelValue);
+            result = failed++ == 0 ? ELEMENT_NOT_FOUND : result;
+          }
+        }
+      }
+
+      Logger.log(failed == 0 ? "All assertions passed." : failed + " assertion(s) failed.", this.loglevelValue);
+      return result;
+
+    } catch (SocketTimeoutException e) {
+      Logger.log("Socket read timeout! Runbook failed.", this.loglevelValue);
+      return TIMEOUT;
+    } catch (UnknownHostException e) {
+      Logger.log("Error: Unknown host.", this.loglevelValue);
+      return SERVER_NOT_AVAILABLE;
+    } catch (NoRouteToHostException e) {
+      if (!StringUtils.isEmpty(input.getProxyHost())) {
+        Logger.log("Error: Not able to connect to the proxy server.", this.loglevelValue);
+        return PROXY_SERVER_NOT_AVAILABLE;
+      } else {
+        Logger.log("Error-Message: " + e.getMessage(), this.loglevelValue);
+        return statusCode;
+      }
+    } catch(SSLException e) {
+      Logger.log("SSL error: Not trusted server certificate", this.loglevelValue);
+      return SERVER_CERTIFICATE_FAILED;
+    } catch (ConnectException e) {
+      Logger.log("Error: Failed to connect to the server.", this.loglevelValue);
+      if (StringUtils.isEmpty(input.getProxyHost())) return SERVER_NOT_AVAILABLE;
+      else return PROXY_SERVER_NOT_AVAILABLE;
+    } catch (Exception e) {
+      Logger.logDebug(this.logLevel, e);
+      Logger.log("Error-Message: " + e.getMessage(), this.loglevelValue);
+      return statusCode;
+    } finally {
+      logTimings(timings, input.getUrl());
+      WebTestUtils.releaseConnection(httpGet, response);
+    }
+  }
+
+  /**
+   * Parses "200", "200-299" or "2xx".
+   *
+   * @return the inclusive range or null if the value is invalid
+   */
+  static int[] parseStatusRange(String value) {
+    String trimmed = value.trim().toLowerCase();
+    try {
+      if (trimmed.length() == 3 && trimmed.endsWith("xx")) {
+        int statusClass = Integer.parseInt(trimmed.substring(0, 1));
+        return new int[] { statusClass * 100, statusClass * 100 + 99 };
+      }
+      int dash = trimmed.indexOf('-');
+      if (dash > 0) {
+        int from = Integer.parseInt(trimmed.substring(0, dash).trim());
+        int to = Integer.parseInt(trimmed.substring(dash + 1).trim());
+        return from <= to ? new int[] { from, to } : null;
+      }
+      int code = Integer.parseInt(trimmed);
+      return new int[] { code, code };
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
@@ -14,9 +14,9 @@ import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.util.EntityUtils;
@@ -27,10 +27,13 @@ import org.htmlcleaner.TagNode;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 
+import com.uc4.ara.feature.Feature;
 import com.uc4.ara.feature.globalcodes.ErrorCodes;
 import com.uc4.ara.feature.utils.CmdLineParser;
 import com.uc4.ara.util.Logger;
 
+@Feature(description = "Opens a page ('URL') and checks if a certain HTML-element appears on the page. The search pattern is defined as an XPath expression. " +
+    "For example you can check the existence of links, paragraphs, divisions <div>, etc..")
 public class GetSearchElement extends AbstractWebSmokeTest {
   
   private CmdLineParser.Option<String> expectedElement;
@@ -38,22 +41,23 @@ public class GetSearchElement extends AbstractWebSmokeTest {
   @Override
   public void initialize() {
     super.initialize();
-    parser.setDescription("Opens a page ('URL') and checks if a certain HTML-element appears on the page. The search pattern is defined as an XPath expression. " +
-    		"For example you can check the existence of links, paragraphs, divisions <div>, etc..");
     parser.setExamples("java -jar ARATools websmoketest GetSearchElement -url \"http://www.yoursite.com\" -el \"//div[@id='main-content']\" -t 10000");
     
     expectedElement = parser.addHelp(parser.addStringOption("el", "expectedElement", true), "Expected element identified by XPath expression."); 
     
+    addStreamingOptions();
+    addCacheOption();
+    addProbeOptions();
+
   }
   
   @Override
-  public int run(String[] args) throws Exception {
-    super.run(args);
+  protected int runCheck() throws Exception {
     
     WebTestInput input = parseInput();
 
     if (input.isIgnoreServerCert()) {
-      Logger.logInfo("SSL Certificate validation is ignored", this.loglevelValue);
+      Logger.logInfo(this.logLevel, "SSL Certificate validation is ignored");
     }
     
     String expectedElementValue = parser.getOptionValue(expectedElement);
@@ -69,6 +73,16 @@ public class GetSearchElement extends AbstractWebSmokeTest {
       return ErrorCodes.EXCEPTION;
     }
     
+    // the streaming matcher supports a subset of XPath only
+    StreamingElementMatcher streamingMatcher = null;
+    if (isStreamMatch()) {
+      streamingMatcher = StreamingElementMatcher.compile(expectedElementValue);
+      if (streamingMatcher == null) {
+        Logger.log("The XPath expression is not supported in streaming mode, the whole page is parsed.", this.loglevelValue);
+      }
+    }
+    int maxBytesValue = getMaxBytesValue();
+    
     HttpClient httpclient = null;
     int statusCode = ErrorCodes.EXCEPTION;
     try {
@@ -78,22 +92,33 @@ public class GetSearchElement extends AbstractWebSmokeTest {
       return statusCode;
     }
         
-    Logger.log("Making the request to " + input.getUrl() + " ...", this.loglevelValue);
+    Logger.logInfo(this.logLevel, "Making the request to {} ...", input.getUrl());
     
     if (!StringUtils.isEmpty(input.getUsername())) {
-      Logger.log("Authentication username: " + input.getUsername(), this.loglevelValue);
+      Logger.logInfo(this.logLevel, "Authentication username: {}", input.getUsername());
     }
     
     if (!StringUtils.isEmpty(input.getProxyHost())) {
-      Logger.log("Use proxy server: " + input.getProxyHost() + ":" + input.getProxyPort(), this.loglevelValue);
+      Logger.logInfo(this.logLevel, "Use proxy server: {}:{}", input.getProxyHost(), input.getProxyPort());
     }
     
     HttpGet httpGet = new HttpGet(input.getUrl());
     
-    try {      
-      HttpResponse response = httpclient.execute(httpGet);
+    // a stored result of the same expectation allows a conditional request
+    ConditionalCache.Entry cacheEntry = getCacheEntry(input);
+    String expectation = "element|" + (streamingMatcher != null ? "stream:" + maxBytesValue : "page") + "|" + expectedElementValue;
+    Integer cachedResult = cacheEntry != null ? cacheEntry.getResult(expectation) : null;
+    if (cachedResult != null) {
+      cacheEntry.addValidators(httpGet);
+    }
+    
+    HttpResponse response = null;
+    RequestTimings timings = RequestTimings.start();
+    try {
+      response = WebTestUtils.execute(httpclient, httpGet);
+      timings.responseReceived();
       statusCode = response.getStatusLine().getStatusCode();
-      Logger.log("Received status code " + statusCode, this.loglevelValue);
+      Logger.logInfo(this.logLevel, "Received status code {}", statusCode);
       
       if (statusCode == 401) {
         Logger.log("Server authentication failed!", this.loglevelValue);
@@ -105,11 +130,33 @@ public class GetSearchElement extends AbstractWebSmokeTest {
         return WRONG_PROXY_CREDENTIALS;
       }
       
+      if (statusCode == HttpStatus.SC_NOT_MODIFIED && cachedResult != null) {
+        Logger.logInfo(this.logLevel, "The page was not modified, use the cached result: return code {}", cachedResult);
+        return cachedResult;
+      }
+      
       if (statusCode >= 200 && statusCode < 300) {
-        Logger.log("Successfully get site " + input.getUrl(), this.loglevelValue);
+        Logger.logInfo(this.logLevel, "Successfully get site {}", input.getUrl());
         HttpEntity entity = response.getEntity();
+        if (streamingMatcher != null) {
+          if (cacheEntry != null) {
+            cacheEntry.update(response, null);
+          }
+          Logger.logInfo(this.logLevel, "Evaluating XPath expression while downloading: {}", expectedElementValue);
+          boolean found = streamingMatcher.match(entity, maxBytesValue);
+          timings.bodyReceived();
+          Logger.logDebug(this.logLevel, "Read {} bytes of the page{}", streamingMatcher.getBytesRead(),
+              streamingMatcher.isLimitReached() ? ", stopped at the byte limit" : "");
+          Logger.log(found ? "Element given by XPath exists." : "Cannot find element given by XPath.", this.loglevelValue);
+          return cacheResult(cacheEntry, expectation, found ? OK : ELEMENT_NOT_FOUND);
+        }
+        
         HtmlCleaner htmlCleaner = new HtmlCleaner();
         String content = EntityUtils.toString(entity, "UTF-8");
+        timings.bodyReceived();
+        if (cacheEntry != null) {
+          cacheEntry.update(response, ConditionalCache.digest(content));
+        }
         //Logger.logDebug("Page content: " + content, this.loglevelValue);
         TagNode tagnode = htmlCleaner.clean(content);
         EntityUtils.consume(entity);
@@ -117,14 +164,14 @@ public class GetSearchElement extends AbstractWebSmokeTest {
         CleanerProperties prop = new CleanerProperties();
         prop.setNamespacesAware(false);
         Document doc = new DomSerializer(prop).createDOM(tagnode);
-        Logger.log("Evaluating XPath expression: " + expectedElementValue, this.loglevelValue);
+        Logger.logInfo(this.logLevel, "Evaluating XPath expression: {}", expectedElementValue);
         Node node = (Node) xpathExpr.evaluate(doc, XPathConstants.NODE);
         if (node != null) {
           Logger.log("Element given by XPath exists.", this.loglevelValue);
-          return OK;
+          return cacheResult(cacheEntry, expectation, OK);
         } else {
           Logger.log("Cannot find element given by XPath.", this.loglevelValue);
-          return ELEMENT_NOT_FOUND;
+          return cacheResult(cacheEntry, expectation, ELEMENT_NOT_FOUND);
         }
       } else {
         Logger.log("Get site finished unsuccessfully. The status code is " + statusCode, this.loglevelValue);
@@ -153,11 +200,12 @@ public class GetSearchElement extends AbstractWebSmokeTest {
       if (StringUtils.isEmpty(input.getProxyHost())) return SERVER_NOT_AVAILABLE;
       else return PROXY_SERVER_NOT_AVAILABLE;
     } catch (Exception e) {
-      Logger.logDebug(ExceptionUtils.getStackTrace(e), this.loglevelValue);
+      Logger.logDebug(this.logLevel, e);
       Logger.log("Error-Message: " + e.getMessage(), this.loglevelValue);
       return statusCode;
     } finally {
-       if (httpclient != null) httpclient.getConnectionManager().shutdown();
+      logTimings(timings, input.getUrl());
+      WebTestUtils.releaseConnection(httpGet, response);
     }
   }
 }
@@ -12,17 +12,19 @@ import java.util.regex.PatternSyntaxException;
 import javax.net.ssl.SSLException;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.util.EntityUtils;
 
+import com.uc4.ara.feature.Feature;
 import com.uc4.ara.feature.globalcodes.ErrorCodes;
 import com.uc4.ara.feature.utils.CmdLineParser;
 import com.uc4.ara.util.Logger;
 
+@Feature(description = "Opens a page ('URL') and checks if the 'Expected text' appears somewhere on the side. HTML tags will be stripped before evaluation.")
 public class GetSearchText extends AbstractWebSmokeTest {
 
   private CmdLineParser.Option<String> expectedText;
@@ -31,7 +33,6 @@ public class GetSearchText extends AbstractWebSmokeTest {
   @Override
   public void initialize() {
     super.initialize();
-    parser.setDescription("Opens a page ('URL') and checks if the 'Expected text' appears somewhere on the side. HTML tags will be stripped before evaluation.");
     parser.setExamples("java -jar ARATools websmoketest GetSearchText -url \"http://www.yoursite.com\" -et \"My expected text\" -t 10000");
     
     expectedText = parser.addHelp(parser.addStringOption("et", "expectedText", true),
@@ -42,11 +43,14 @@ public class GetSearchText extends AbstractWebSmokeTest {
     
     isRegex = parser.addHelp(parser.addStringOption("re", "regex", false), 
         "If set to \"yes\", than the text is treated as regular expression. Otherwise an exact matching is expected.");
+    
+    addStreamingOptions();
+    addCacheOption();
+    addProbeOptions();
   }
   
   @Override
-  public int run(String[] args) throws Exception {
-    super.run(args);
+  protected int runCheck() throws Exception {
     
     WebTestInput input = parseInput();
 
@@ -58,11 +62,14 @@ public class GetSearchText extends AbstractWebSmokeTest {
       isRegexValue = "YES".equalsIgnoreCase(isRegexStr) || "TRUE".equalsIgnoreCase(isRegexStr);
     } catch (Exception e) {}
     
+    boolean streamMatchValue = isStreamMatch();
+    int maxBytesValue = getMaxBytesValue();
+    
     if (input.isIgnoreServerCert()) {
-      Logger.logInfo("SSL Certificate validation is ignored.", this.loglevelValue);
+      Logger.logInfo(this.logLevel, "SSL Certificate validation is ignored.");
     }
     
-    Logger.log("Regular expression is " + (isRegexValue?"enabled":"disabled"), this.loglevelValue);
+    Logger.logInfo(this.logLevel, isRegexValue ? "Regular expression is enabled" : "Regular expression is disabled");
     
     // check the regex
     if (isRegexValue) {
@@ -84,26 +91,37 @@ public class GetSearchText extends AbstractWebSmokeTest {
       return statusCode;
     }
     
-    Logger.log("Making the request to " + input.getUrl() + " ...", this.loglevelValue);   
+    Logger.logInfo(this.logLevel, "Making the request to {} ...", input.getUrl());   
     
     if (!StringUtils.isEmpty(input.getUsername())) {
-      Logger.log("Authentication username: " + input.getUsername(), this.loglevelValue);
+      Logger.logInfo(this.logLevel, "Authentication username: {}", input.getUsername());
     }
     
     if (!StringUtils.isEmpty(input.getProxyHost())) {
-      Logger.log("Use proxy server: " + input.getProxyHost() + ":" + input.getProxyPort(), this.loglevelValue);
+      Logger.logInfo(this.logLevel, "Use proxy server: {}:{}", input.getProxyHost(), input.getProxyPort());
     }
     
     HttpGet httpGet = new HttpGet(input.getUrl());
     
+    // a stored result of the same expectation allows a conditional request
+    ConditionalCache.Entry cacheEntry = getCacheEntry(input);
+    String expectation = "text|" + isRegexValue + "|" + (streamMatchValue ? "stream:" + maxBytesValue : "page") + "|" + expectedTextValue;
+    Integer cachedResult = cacheEntry != null ? cacheEntry.getResult(expectation) : null;
+    if (cachedResult != null) {
+      cacheEntry.addValidators(httpGet);
+    }
+    
     if (!StringUtils.isEmpty(input.getProxyHost())) {
-      Logger.log("Use proxy server: " + input.getProxyHost() + ":" + input.getProxyPort(), this.loglevelValue);
+      Logger.logInfo(this.logLevel, "Use proxy server: {}:{}", input.getProxyHost(), input.getProxyPort());
     }
     
-    try {           
-      HttpResponse response = httpclient.execute(httpGet);
+    HttpResponse response = null;
+    RequestTimings timings = RequestTimings.start();
+    try {
+      response = WebTestUtils.execute(httpclient, httpGet);
+      timings.responseReceived();
       statusCode = response.getStatusLine().getStatusCode();
-      Logger.log("Received status code " + statusCode, this.loglevelValue);
+      Logger.logInfo(this.logLevel, "Received status code {}", statusCode);
       
       if (statusCode == 401) {
         Logger.log("Server authentication failed!", this.loglevelValue);
@@ -114,31 +132,67 @@ public class GetSearchText extends AbstractWebSmokeTest {
         Logger.log("Proxy server authentication failed!", this.loglevelValue);
         return WRONG_PROXY_CREDENTIALS;
       }
+      
+      if (statusCode == HttpStatus.SC_NOT_MODIFIED && cachedResult != null) {
+        Logger.logInfo(this.logLevel, "The page was not modified, use the cached result: return code {}", cachedResult);
+        return cachedResult;
+      }
            
       if (statusCode >= 200 && statusCode < 300) {
-        Logger.log("Successfully get site " + input.getUrl(), this.loglevelValue);
+        Logger.logInfo(this.logLevel, "Successfully get site {}", input.getUrl());
         HttpEntity entity = response.getEntity();
+        if (streamMatchValue) {
+          if (cacheEntry != null) {
+            cacheEntry.update(response, null);
+          }
+          Logger.logInfo(this.logLevel, isRegexValue ? "Check if part of page content matches the regular expression: {} while downloading"
+              : "Check if page content contains expected text: {} while downloading", expectedTextValue);
+          
+          StreamingTextMatcher matcher = isRegexValue ? StreamingTextMatcher.forRegex(expectedTextValue)
+              : StreamingTextMatcher.forText(expectedTextValue);
+          boolean found = matcher.match(entity, maxBytesValue);
+          timings.bodyReceived();
+          Logger.logDebug(this.logLevel, "Read {} bytes of the page{}", matcher.getBytesRead(),
+              matcher.isLimitReached() ? ", stopped at the byte limit" : "");
+          if (!found && !matcher.hasText()) {
+            Logger.log("Received empty content page. Return now..", this.loglevelValue);
+            return cacheResult(cacheEntry, expectation, TEXT_NOT_FOUND);
+          }
+          
+          statusCode = found ? OK : TEXT_NOT_FOUND;
+          if (isRegexValue) {
+            Logger.log(statusCode == OK ? "The given regular expression matches.": "The given regular expression does not match.", this.loglevelValue);
+          } else {
+            Logger.log(statusCode == OK ? "Found the given text in page content.":"Couldn't find the given text in page content.",  this.loglevelValue);
+          }
+          return cacheResult(cacheEntry, expectation, statusCode);
+        }
+        
         String content = EntityUtils.toString(entity, "UTF-8");
+        timings.bodyReceived();
+        if (cacheEntry != null) {
+          cacheEntry.update(response, ConditionalCache.digest(content));
+        }
         String cleanedContent = WebTestUtils.html2text(content);
         if (StringUtils.isEmpty(cleanedContent)) {
           Logger.log("Received empty content page. Return now..", this.loglevelValue);
-          return TEXT_NOT_FOUND;
+          return cacheResult(cacheEntry, expectation, TEXT_NOT_FOUND);
         }
         
         //Logger.logDebug("Page content: " + cleanedContent, this.loglevelValue);        
-        Logger.log("Check if " + (isRegexValue ? "part of page content matches the regular expression: "
-                : "page content contains expected text: ") + expectedTextValue, this.loglevelValue);
+        Logger.logInfo(this.logLevel, isRegexValue ? "Check if part of page content matches the regular expression: {}"
+            : "Check if page content contains expected text: {}", expectedTextValue);
         
         if (isRegexValue) {
           Pattern p = Pattern.compile(expectedTextValue, Pattern.CASE_INSENSITIVE | Pattern.DOTALL); 
           Matcher m = p.matcher(cleanedContent);
           statusCode = m.find() ? OK : TEXT_NOT_FOUND;
           Logger.log(statusCode == OK ? "The given regular expression matches.": "The given regular expression does not match.", this.loglevelValue);
-          return statusCode;
+          return cacheResult(cacheEntry, expectation, statusCode);
         } else {
           statusCode = cleanedContent.toLowerCase().contains(expectedTextValue.toLowerCase()) ? OK : TEXT_NOT_FOUND;
           Logger.log(statusCode == OK ? "Found the given text in page content.":"Couldn't find the given text in page content.",  this.loglevelValue);
-          return statusCode; 
+          return cacheResult(cacheEntry, expectation, statusCode);
         }
       } else {
         Logger.log("Get site finished unsuccessfully. The status code is " + statusCode, this.loglevelValue);
@@ -167,11 +221,12 @@ public class GetSearchText extends AbstractWebSmokeTest {
       if (StringUtils.isEmpty(input.getProxyHost())) return SERVER_NOT_AVAILABLE;
       else return PROXY_SERVER_NOT_AVAILABLE;
     } catch (Exception e) {
-      Logger.logDebug(ExceptionUtils.getStackTrace(e), this.loglevelValue);
+      Logger.logDebug(this.logLevel, e);
       Logger.log("Error-Message: " + e.getMessage(), this.loglevelValue);
       return statusCode;
     } finally {
-      httpclient.getConnectionManager().shutdown();
+      logTimings(timings, input.getUrl());
+      WebTestUtils.releaseConnection(httpGet, response);
     }  
   }
   
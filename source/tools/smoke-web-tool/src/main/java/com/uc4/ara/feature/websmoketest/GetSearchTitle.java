@@ -11,17 +11,19 @@ import java.util.regex.PatternSyntaxException;
 import javax.net.ssl.SSLException;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.util.EntityUtils;
 
+import com.uc4.ara.feature.Feature;
 import com.uc4.ara.feature.globalcodes.ErrorCodes;
 import com.uc4.ara.feature.utils.CmdLineParser;
 import com.uc4.ara.util.Logger;
 
+@Feature(description = "Opens a page ('URL') and checks if a page has an expected title ('Expected title').")
 public class GetSearchTitle extends AbstractWebSmokeTest {
 
   private CmdLineParser.Option<String> expectedTitle;
@@ -30,7 +32,6 @@ public class GetSearchTitle extends AbstractWebSmokeTest {
   @Override
   public void initialize() {
     super.initialize();
-    parser.setDescription("Opens a page ('URL') and checks if a page has an expected title ('Expected title').");
     parser.setExamples("java -jar ARATools websmoketest GetSearchTitle -url \"http://www.yoursite.com\" -u \"yourusername\" -p \"yourpassword\" -t 10000 -tl \"Welcome to your site\"");
     
     expectedTitle = parser.addHelp(parser.addStringOption("tl", "title", true),
@@ -41,11 +42,14 @@ public class GetSearchTitle extends AbstractWebSmokeTest {
     
     isRegex = parser.addHelp(parser.addStringOption("re", "regex", false), 
         "If set to \"yes\", than the title is treated as regular expression. Otherwise an exact matching is expected");
+    
+    addStreamingOptions();
+    addCacheOption();
+    addProbeOptions();
   }
   
   @Override
-  public int run(String[] args) throws Exception {
-    super.run(args);
+  protected int runCheck() throws Exception {
     
     // parse the common input parameters
     WebTestInput input = parseInput();
@@ -57,8 +61,11 @@ public class GetSearchTitle extends AbstractWebSmokeTest {
       isRegexValue = "YES".equalsIgnoreCase(isRegexStr) || "TRUE".equalsIgnoreCase(isRegexStr);
     } catch (Exception e) {}
     
+    boolean streamMatchValue = isStreamMatch();
+    int maxBytesValue = getMaxBytesValue();
+    
     if (input.isIgnoreServerCert()) {
-      Logger.logInfo("SSL Certificate validation is ignored", this.loglevelValue);
+      Logger.logInfo(this.logLevel, "SSL Certificate validation is ignored");
     }
     
     // check the regex
@@ -80,28 +87,38 @@ public class GetSearchTitle extends AbstractWebSmokeTest {
       return statusCode;
     }
     
-    Logger.log("Making the GET request to " + input.getUrl() + " ...", this.loglevelValue);
+    Logger.logInfo(this.logLevel, "Making the GET request to {} ...", input.getUrl());
     
     if (!StringUtils.isEmpty(input.getUsername())) {
-      Logger.log("Authentication username: " + input.getUsername(), this.loglevelValue);
+      Logger.logInfo(this.logLevel, "Authentication username: {}", input.getUsername());
     }
     
     if (!StringUtils.isEmpty(input.getProxyHost())) {
-      Logger.log("Use proxy server: " + input.getProxyHost() + ":" + input.getProxyPort(), this.loglevelValue);
+      Logger.logInfo(this.logLevel, "Use proxy server: {}:{}", input.getProxyHost(), input.getProxyPort());
     }
     
     // make GET request
     HttpGet httpGet = new HttpGet(input.getUrl());  
     
+    // a stored title allows a conditional request
+    ConditionalCache.Entry cacheEntry = getCacheEntry(input);
+    String cachedTitle = cacheEntry != null ? cacheEntry.getTitle() : null;
+    if (cachedTitle != null) {
+      cacheEntry.addValidators(httpGet);
+    }
+    
     if (!StringUtils.isEmpty(input.getProxyHost())) {
-      Logger.log("Use proxy server: " + input.getProxyHost() + ":" + input.getProxyPort(), this.loglevelValue);
+      Logger.logInfo(this.logLevel, "Use proxy server: {}:{}", input.getProxyHost(), input.getProxyPort());
     }
     
-    try {  
-      HttpResponse response = httpclient.execute(httpGet);
+    HttpResponse response = null;
+    RequestTimings timings = RequestTimings.start();
+    try {
+      response = WebTestUtils.execute(httpclient, httpGet);
+      timings.responseReceived();
       statusCode = response.getStatusLine().getStatusCode();
            
-      Logger.log("Received status code " + statusCode, this.loglevelValue);
+      Logger.logInfo(this.logLevel, "Received status code {}", statusCode);
       
       if (statusCode == 401) {
         Logger.log("Server authentication failed!", this.loglevelValue);
@@ -113,14 +130,38 @@ public class GetSearchTitle extends AbstractWebSmokeTest {
         return WRONG_PROXY_CREDENTIALS;
       }
       
-      if (statusCode >= 200 && statusCode < 300) {
-        Logger.log("Successfully get site " + input.getUrl(), this.loglevelValue);
-        HttpEntity entity = response.getEntity();
-        String content = EntityUtils.toString(entity, "UTF-8");
-        String title = WebTestUtils.extractTitle(content);
-        Logger.log("TITLE: " + title, this.loglevelValue);
-        Logger.log("Check if the title matches the " + (isRegexValue?"regex: " : "expected title: ") + expectedTitleValue , this.loglevelValue);
-        EntityUtils.consume(entity);
+      boolean notModified = statusCode == HttpStatus.SC_NOT_MODIFIED && cachedTitle != null;
+      if (notModified || (statusCode >= 200 && statusCode < 300)) {
+        String title;
+        if (notModified) {
+          Logger.log("The page was not modified, use the cached title", this.loglevelValue);
+          title = cachedTitle;
+        } else {
+          Logger.logInfo(this.logLevel, "Successfully get site {}", input.getUrl());
+          HttpEntity entity = response.getEntity();
+          String digest = null;
+          if (streamMatchValue) {
+            // read the head only, the rest of the page is not downloaded
+            StreamingTitleExtractor extractor = new StreamingTitleExtractor();
+            title = extractor.extract(entity, maxBytesValue);
+            timings.bodyReceived();
+            Logger.logDebug(this.logLevel, "Read {} bytes of the page{}", extractor.getBytesRead(),
+                extractor.isLimitReached() ? ", stopped at the byte limit" : "");
+          } else {
+            String content = EntityUtils.toString(entity, "UTF-8");
+            timings.bodyReceived();
+            title = WebTestUtils.extractTitle(content);
+            digest = ConditionalCache.digest(content);
+          }
+          if (cacheEntry != null) {
+            cacheEntry.update(response, digest);
+            cacheEntry.putTitle(title);
+            saveCacheEntry(cacheEntry);
+          }
+        }
+        Logger.logInfo(this.logLevel, "TITLE: {}", title);
+        Logger.logInfo(this.logLevel, isRegexValue ? "Check if the title matches the regex: {}" : "Check if the title matches the expected title: {}",
+            expectedTitleValue);
         statusCode = isRegexValue ? (title != null && title.matches(expectedTitleValue) ? OK : TITLE_NOT_MATCH) : (title != null
             && title.equalsIgnoreCase(expectedTitleValue) ? OK : TITLE_NOT_MATCH);
         Logger.log(statusCode == OK ? "Title matches.":"Title does not match.", this.loglevelValue);
@@ -152,11 +193,12 @@ public class GetSearchTitle extends AbstractWebSmokeTest {
       if (StringUtils.isEmpty(input.getProxyHost())) return SERVER_NOT_AVAILABLE;
       else return PROXY_SERVER_NOT_AVAILABLE;
     } catch (Exception e) {
-      Logger.logDebug(ExceptionUtils.getStackTrace(e), this.loglevelValue);
+      Logger.logDebug(this.logLevel, e);
       Logger.log("Error-Message: " + e.getMessage(), this.loglevelValue);
       return statusCode;
     } finally {
-      httpclient.getConnectionManager().shutdown();
+      logTimings(timings, input.getUrl());
+      WebTestUtils.releaseConnection(httpGet, response);
     }    
   }
   
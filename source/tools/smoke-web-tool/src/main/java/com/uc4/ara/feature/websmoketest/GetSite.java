@@ -1,5 +1,7 @@
 package com.uc4.ara.feature.websmoketest;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.ConnectException;
 import java.net.MalformedURLException;
 import java.net.NoRouteToHostException;
@@ -9,34 +11,63 @@ import java.net.UnknownHostException;
 import javax.net.ssl.SSLException;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpUriRequest;
 
+import com.uc4.ara.feature.Feature;
 import com.uc4.ara.feature.globalcodes.ErrorCodes;
+import com.uc4.ara.feature.utils.CmdLineParser;
 import com.uc4.ara.util.Logger;
 
+@Feature(description = "Checks if a page ('URL') can be opened and downloaded within a certain period of time ('Open timeout').\n"
+    + "3xx Redirect return codes should be resolved and the redirect destination called.")
 public class GetSite extends AbstractWebSmokeTest {
+
+  static final String METHOD_GET = "GET";
+  static final String METHOD_HEAD = "HEAD";
+  static final String METHOD_RANGE = "RANGE";
+
+  private CmdLineParser.Option<String> requestMethod;
+  private CmdLineParser.Option<String> discardBody;
     
   @Override
   public void initialize() {
     super.initialize();
-    parser.setDescription("Checks if a page ('URL') can be opened and downloaded within a certain period of time ('Open timeout').\n"
-        + "3xx Redirect return codes should be resolved and the redirect destination called.");
     parser.setExamples("java -jar ARATools websmoketest GetSite -url \"http://www.yoursite.com\" -u \"yourusername\" -p \"yourpassword\" -t 10000");
+    
+    requestMethod = parser.addHelp(parser.addStringOption("rm", "requestMethod", false),
+        "Request sent to check the page. Possible values: GET, HEAD (no body, falls back to RANGE if the server rejects HEAD with 405 or 501), "
+        + "RANGE (GET of the first byte only, falls back to GET if the server answers 416). Default: GET.");
+
+    discardBody = parser.addHelp(parser.addStringOption("db", "discardBody", false),
+        "If \"yes\", the whole body is read and discarded without buffering it, so its download is measured and the connection is reused. "
+        + "Otherwise the download of bodies larger than 64 KB is aborted once the status code is received.");
+
+    addProbeOptions();
   }
   
   @Override
-  public int run(String[] args) throws Exception {
-    super.run(args);
+  protected int runCheck() throws Exception {
         
     // parse the common input parameters
     WebTestInput input = parseInput();
+
+    String requestMethodValue = METHOD_GET;
+    String requestMethodStr = parser.getOptionValue(requestMethod);
+    if (METHOD_HEAD.equalsIgnoreCase(requestMethodStr) || METHOD_RANGE.equalsIgnoreCase(requestMethodStr)) {
+      requestMethodValue = METHOD_HEAD.equalsIgnoreCase(requestMethodStr) ? METHOD_HEAD : METHOD_RANGE;
+    } else if (!StringUtils.isBlank(requestMethodStr) && !METHOD_GET.equalsIgnoreCase(requestMethodStr)) {
+      Logger.log("Unknown request method " + requestMethodStr + ", use GET", this.loglevelValue);
+    }
+
+    boolean discardBodyValue = "YES".equalsIgnoreCase(parser.getOptionValue(discardBody));
     
     if (input.isIgnoreServerCert()) {
-      Logger.logInfo("SSL Certificate validation is ignored", this.loglevelValue);
+      Logger.logInfo(this.logLevel, "SSL Certificate validation is ignored");
     }
     
     HttpClient httpclient = null;
@@ -48,26 +79,47 @@ public class GetSite extends AbstractWebSmokeTest {
       return statusCode;
     }
     
-    Logger.log("Making the GET request to " + input.getUrl() + " ...", this.loglevelValue);
+    Logger.logInfo(this.logLevel, "Making the {} request to {} ...", requestMethodValue, input.getUrl());
     
     if (!StringUtils.isEmpty(input.getUsername())) {
-      Logger.log("Authentication username: " + input.getUsername(), this.loglevelValue);
+      Logger.logInfo(this.logLevel, "Authentication username: {}", input.getUsername());
     }
     
     if (!StringUtils.isEmpty(input.getProxyHost())) {
-      Logger.log("Use proxy server: " + input.getProxyHost() + ":" + input.getProxyPort(), this.loglevelValue);
+      Logger.logInfo(this.logLevel, "Use proxy server: {}:{}", input.getProxyHost(), input.getProxyPort());
     }
     
-    // make GET request
-    HttpUriRequest httpGet = new HttpGet(input.getUrl());
+    HttpUriRequest request = newRequest(requestMethodValue, input.getUrl());
     
+    HttpResponse response = null;
+    RequestTimings timings = RequestTimings.start();
     try {
-      HttpResponse response = httpclient.execute(httpGet);
+      response = WebTestUtils.execute(httpclient, request);
       statusCode = response.getStatusLine().getStatusCode();
-      Logger.log("Received status code " + statusCode, this.loglevelValue);
+
+      // servers not implementing HEAD or ranges get the next simpler request
+      String fallbackMethod = fallbackMethod(requestMethodValue, statusCode);
+      while (fallbackMethod != null) {
+        Logger.logInfo(this.logLevel, "Received status code {} for {}, retry with {}", statusCode, requestMethodValue, fallbackMethod);
+        WebTestUtils.releaseConnection(request, response);
+        response = null;
+        requestMethodValue = fallbackMethod;
+        request = newRequest(requestMethodValue, input.getUrl());
+        response = WebTestUtils.execute(httpclient, request);
+        statusCode = response.getStatusLine().getStatusCode();
+        fallbackMethod = fallbackMethod(requestMethodValue, statusCode);
+      }
+      timings.responseReceived();
+      Logger.logInfo(this.logLevel, "Received status code {}", statusCode);
+
+      if (discardBodyValue) {
+        long bytes = discard(response.getEntity());
+        timings.bodyReceived();
+        Logger.logDebug(this.logLevel, "Discarded {} bytes of the body", bytes);
+      }
       
       if (statusCode >= 200 && statusCode < 300) {
-        Logger.log("Successfully get site " + input.getUrl(), this.loglevelValue);
+        Logger.logInfo(this.logLevel, "Successfully get site {}", input.getUrl());
         return OK;
       }
       
@@ -106,12 +158,68 @@ public class GetSite extends AbstractWebSmokeTest {
       if (StringUtils.isEmpty(input.getProxyHost())) return SERVER_NOT_AVAILABLE;
       else return PROXY_SERVER_NOT_AVAILABLE;
     } catch (Exception e) {
-      Logger.logDebug(ExceptionUtils.getStackTrace(e), this.loglevelValue);
+      Logger.logDebug(this.logLevel, e);
       Logger.log("Error-Message: " + e.getMessage(), this.loglevelValue);
       return statusCode;
     } finally {
-      httpclient.getConnectionManager().shutdown();
+      logTimings(timings, input.getUrl());
+      WebTestUtils.releaseConnection(request, response);
     }    
   }
 
+  /**
+   * Creates the request, a RANGE request is a GET of the first byte. It asks
+   * for the uncompressed body, a range of a compressed body cannot be
+   * decoded.
+   */
+  static HttpUriRequest newRequest(String method, String url) {
+    if (METHOD_HEAD.equals(method)) {
+      return new HttpHead(url);
+    }
+    HttpGet httpGet = new HttpGet(url);
+    if (METHOD_RANGE.equals(method)) {
+      httpGet.setHeader("Range", "bytes=0-0");
+      httpGet.setHeader("Accept-Encoding", "identity");
+    }
+    return httpGet;
+  }
+
+  /**
+   * @return the method to retry with if the server does not support the
+   *         request, null otherwise
+   */
+  static String fallbackMethod(String method, int statusCode) {
+    if (METHOD_HEAD.equals(method) && (statusCode == 405 || statusCode == 501)) {
+      return METHOD_RANGE;
+    }
+    // an empty resource has no first byte
+    if (METHOD_RANGE.equals(method) && statusCode == 416) {
+      return METHOD_GET;
+    }
+    return null;
+  }
+
+  /**
+   * Reads the body to its end without keeping it.
+   *
+   * @return the number of bytes read
+   */
+  private static long discard(HttpEntity entity) throws IOException {
+    if (entity == null) {
+      return 0;
+    }
+    InputStream in = entity.getContent();
+    long bytes = 0;
+    try {
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        bytes += read;
+      }
+    } finally {
+      in.close();
+    }
+    return bytes;
+  }
+
 }
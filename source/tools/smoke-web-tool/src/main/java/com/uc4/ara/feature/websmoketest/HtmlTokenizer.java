@@ -0,0 +1,448 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.jsoup.nodes.Entities;
+
+/**
+ * Incremental, lenient HTML tokenizer. Reads start tags, end tags and text
+ * from a <code>Reader</code> without building a document, so a caller can
+ * stop reading as soon as it found what it is looking for.
+ * <p>
+ * Comments, doctype declarations and processing instructions are skipped,
+ * character references in text and attribute values are decoded with the
+ * entities jsoup knows. The content
+ * of <code>script</code> and <code>style</code> elements is skipped, the
+ * content of <code>title</code> and <code>textarea</code> is returned as text.
+ */
+public class HtmlTokenizer {
+
+	public static final int EOF = 0;
+	public static final int START_TAG = 1;
+	public static final int END_TAG = 2;
+	public static final int TEXT = 3;
+
+	/**
+	 * Text is returned in chunks of at most this size.
+	 */
+	private static final int MAX_TEXT_CHUNK = 4096;
+
+	/**
+	 * Longest character reference read, the longest entity name has 31
+	 * characters.
+	 */
+	private static final int MAX_REFERENCE_LENGTH = 32;
+
+	private final Reader reader;
+	private final CountingInputStream counter;
+	private final int[] pushedBack = new int[2];
+	private int pushedBackCount = 0;
+
+	private String tagName;
+	private Map<String, String> attributes;
+	private boolean selfClosing;
+	private String text;
+
+	/**
+	 * Name of the element whose raw content is read next (script, style,
+	 * title, textarea), null otherwise.
+	 */
+	private String rawTextElement;
+	private boolean pendingRawTextEnd = false;
+
+	public HtmlTokenizer(Reader reader) {
+		this(reader, null);
+	}
+
+	private HtmlTokenizer(Reader reader, CountingInputStream counter) {
+		this.reader = reader;
+		this.counter = counter;
+	}
+
+	/**
+	 * Creates a tokenizer for the body of a response, decoded with the charset
+	 * of its content type or UTF-8. The content stream is not closed.
+	 *
+	 * @param entity
+	 *            the response entity
+	 * @param maxBytes
+	 *            maximum number of body bytes to read, 0 or less for no limit
+	 * @return the tokenizer, reporting the end of the stream once the byte
+	 *         budget is exhausted
+	 * @throws IOException
+	 */
+	public static HtmlTokenizer forEntity(HttpEntity entity, long maxBytes) throws IOException {
+		Charset charset = ContentType.getOrDefault(entity).getCharset();
+		CountingInputStream in = new CountingInputStream(entity.getContent(), maxBytes);
+		return new HtmlTokenizer(new InputStreamReader(in, charset != null ? charset : Charset.forName("UTF-8")), in);
+	}
+
+	/**
+	 * Reads the next token.
+	 *
+	 * @return <code>START_TAG</code>, <code>END_TAG</code>, <code>TEXT</code>
+	 *         or <code>EOF</code>
+	 * @throws IOException
+	 */
+	public int next() throws IOException {
+		tagName = null;
+		attributes = null;
+		selfClosing = false;
+		text = null;
+
+		if (pendingRawTextEnd) {
+			pendingRawTextEnd = false;
+			tagName = rawTextElement;
+			rawTextElement = null;
+			return END_TAG;
+		}
+		if (rawTextElement != null)
+			return readRawText();
+
+		while (true) {
+			int c = read();
+			if (c == -1)
+				return EOF;
+
+			if (c == '<') {
+				int n = read();
+				if (n == '/' || n == '!' || n == '?' || isLetter(n)) {
+					int token = readMarkup(n);
+					if (token != -1)
+						return token;
+					continue;
+				}
+				// a plain '<' within the text
+				unread(n);
+			}
+			unread(c);
+			return readText();
+		}
+	}
+
+	/**
+	 * @return the lower case name of the current start or end tag
+	 */
+	public String getTagName() {
+		return tagName;
+	}
+
+	/**
+	 * @return the attributes of the current start tag, names in lower case
+	 */
+	public Map<String, String> getAttributes() {
+		return attributes;
+	}
+
+	/**
+	 * @return true if the current start tag is written as
+	 *         <code>&lt;tag/&gt;</code>
+	 */
+	public boolean isSelfClosing() {
+		return selfClosing;
+	}
+
+	/**
+	 * @return the decoded text of the current text token
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * @return the number of body bytes read so far, 0 if the tokenizer was
+	 *         not created by {@link #forEntity(HttpEntity, long)}
+	 */
+	public long getBytesRead() {
+		return counter != null ? counter.getCount() : 0;
+	}
+
+	/**
+	 * @return true if reading stopped because the byte budget was exhausted
+	 */
+	public boolean isLimitReached() {
+		return counter != null && counter.isLimitReached();
+	}
+
+	private int readText() throws IOException {
+		StringBuilder builder = new StringBuilder();
+		while (builder.length() < MAX_TEXT_CHUNK) {
+			int c = read();
+			if (c == -1)
+				break;
+			if (c == '<') {
+				int n = read();
+				unread(n);
+				if (n == '/' || n == '!' || n == '?' || isLetter(n)) {
+					// leave the markup for the next call
+					unread('<');
+					break;
+				}
+				builder.append('<');
+			} else if (c == '&') {
+				readCharacterReference(builder);
+			} else {
+				builder.append((char) c);
+			}
+		}
+		text = builder.toString();
+		return TEXT;
+	}
+
+	/**
+	 * Reads the markup after '&lt;'.
+	 *
+	 * @return the token or -1 if the markup is skipped
+	 */
+	private int readMarkup(int first) throws IOException {
+		if (first == '!') {
+			int c1 = read();
+			int c2 = c1 == '-' ? read() : -1;
+			if (c1 == '-' && c2 == '-') {
+				skipComment();
+			} else {
+				unread(c2 == -1 ? c1 : c2);
+				skipUntil('>');
+			}
+			return -1;
+		}
+		if (first == '?') {
+			skipUntil('>');
+			return -1;
+		}
+		if (first == '/') {
+			int c = read();
+			if (!isLetter(c)) {
+				unread(c);
+				skipUntil('>');
+				return -1;
+			}
+			tagName = readName(c);
+			skipUntil('>');
+			return END_TAG;
+		}
+
+		tagName = readName(first);
+		attributes = new LinkedHashMap<String, String>();
+		readAttributes();
+		if (!selfClosing && ("script".equals(tagName) || "style".equals(tagName) || "title".equals(tagName)
+				|| "textarea".equals(tagName)))
+			rawTextElement = tagName;
+		return START_TAG;
+	}
+
+	private void readAttributes() throws IOException {
+		while (true) {
+			int c = skipWhitespace();
+			if (c == -1 || c == '>')
+				return;
+			if (c == '/') {
+				int n = read();
+				if (n == '>') {
+					selfClosing = true;
+					return;
+				}
+				unread(n);
+				continue;
+			}
+
+			StringBuilder name = new StringBuilder();
+			while (c != -1 && c != '=' && c != '>' && c != '/' && !Character.isWhitespace(c)) {
+				name.append((char) c);
+				c = read();
+			}
+			if (Character.isWhitespace(c))
+				c = skipWhitespace();
+
+			String value = "";
+			if (c == '=') {
+				value = readAttributeValue();
+			} else {
+				unread(c);
+			}
+			String key = name.toString().toLowerCase();
+			if (key.length() > 0 && !attributes.containsKey(key))
+				attributes.put(key, value);
+		}
+	}
+
+	private String readAttributeValue() throws IOException {
+		StringBuilder value = new StringBuilder();
+		int c = skipWhitespace();
+		if (c == '"' || c == '\'') {
+			int quote = c;
+			while ((c = read()) != -1 && c != quote) {
+				if (c == '&')
+					readCharacterReference(value);
+				else
+					value.append((char) c);
+			}
+		} else {
+			while (c != -1 && c != '>' && !Character.isWhitespace(c)) {
+				if (c == '&')
+					readCharacterReference(value);
+				else
+					value.append((char) c);
+				c = read();
+			}
+			unread(c);
+		}
+		return value.toString();
+	}
+
+	/**
+	 * Reads the content of script, style, title and textarea elements up to
+	 * their end tag.
+	 */
+	private int readRawText() throws IOException {
+		boolean emit = "title".equals(rawTextElement) || "textarea".equals(rawTextElement);
+		StringBuilder builder = emit ? new StringBuilder() : null;
+		while (true) {
+			int c = read();
+			if (c == -1) {
+				rawTextElement = null;
+				break;
+			}
+			if (c == '<' && matchesEndTag(builder)) {
+				pendingRawTextEnd = true;
+				break;
+			}
+			if (builder != null) {
+				if (c == '&')
+					readCharacterReference(builder);
+				else
+					builder.append((char) c);
+				if (builder.length() >= MAX_TEXT_CHUNK)
+					break;
+			}
+		}
+		if (builder != null && builder.length() > 0) {
+			text = builder.toString();
+			return TEXT;
+		}
+		// the end tag or the end of the stream
+		return next();
+	}
+
+	/**
+	 * Checks whether the characters after '&lt;' close the current raw text
+	 * element. If not, the consumed characters are appended to
+	 * <code>builder</code>.
+	 */
+	private boolean matchesEndTag(StringBuilder builder) throws IOException {
+		String expected = "/" + rawTextElement;
+		StringBuilder consumed = new StringBuilder("<");
+		for (int i = 0; i < expected.length(); i++) {
+			int c = read();
+			if (c == -1 || Character.toLowerCase((char) c) != expected.charAt(i)) {
+				unread(c);
+				if (builder != null)
+					builder.append(consumed);
+				return false;
+			}
+			consumed.append((char) c);
+		}
+		int c = read();
+		if (c == '>' || c == '/' || Character.isWhitespace(c)) {
+			if (c != '>')
+				skipUntil('>');
+			return true;
+		}
+		unread(c);
+		if (builder != null)
+			builder.append(consumed);
+		return false;
+	}
+
+	private void readCharacterReference(StringBuilder builder) throws IOException {
+		StringBuilder reference = new StringBuilder();
+		int c = read();
+		while (c != -1 && c != ';' && reference.length() < MAX_REFERENCE_LENGTH
+				&& (Character.isLetterOrDigit(c) || c == '#')) {
+			reference.append((char) c);
+			c = read();
+		}
+		String name = reference.toString();
+		if (c != ';') {
+			unread(c);
+			// like jsoup, the basic entities are also decoded without ';'
+			if (Entities.isBaseNamedEntity(name))
+				builder.append(Entities.getCharacterByName(name).charValue());
+			else
+				builder.append('&').append(reference);
+			return;
+		}
+
+		if (Entities.isNamedEntity(name)) {
+			builder.append(Entities.getCharacterByName(name).charValue());
+			return;
+		}
+		if (name.startsWith("#")) {
+			try {
+				int codePoint = name.startsWith("#x") || name.startsWith("#X") ? Integer.parseInt(name.substring(2), 16)
+						: Integer.parseInt(name.substring(1));
+				builder.appendCodePoint(codePoint);
+				return;
+			} catch (IllegalArgumentException e) {
+				// not a valid reference, keep it as it is
+			}
+		}
+		builder.append('&').append(name).append(';');
+	}
+
+	private String readName(int first) throws IOException {
+		StringBuilder name = new StringBuilder();
+		int c = first;
+		while (c != -1 && c != '>' && c != '/' && !Character.isWhitespace(c)) {
+			name.append(Character.toLowerCase((char) c));
+			c = read();
+		}
+		unread(c);
+		return name.toString();
+	}
+
+	private void skipComment() throws IOException {
+		int dashes = 0;
+		int c;
+		while ((c = read()) != -1) {
+			if (c == '>' && dashes >= 2)
+				return;
+			dashes = c == '-' ? dashes + 1 : 0;
+		}
+	}
+
+	private void skipUntil(char end) throws IOException {
+		int c;
+		while ((c = read()) != -1 && c != end)
+			;
+	}
+
+	private int skipWhitespace() throws IOException {
+		int c;
+		while ((c = read()) != -1 && Character.isWhitespace(c))
+			;
+		return c;
+	}
+
+	private static boolean isLetter(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	private int read() throws IOException {
+		if (pushedBackCount > 0)
+			return pushedBack[--pushedBackCount];
+		return reader.read();
+	}
+
+	private void unread(int c) {
+		if (c != -1)
+			pushedBack[pushedBackCount++] = c;
+	}
+}
@@ -0,0 +1,29 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.net.MalformedURLException;
+
+import org.apache.http.client.HttpClient;
+
+/**
+ * Sends the requests of the checks. The checks build their requests and read
+ * the responses with the httpcore model, the transport decides how they are
+ * sent on the wire. The transport is selected per run by name, see
+ * {@link WebTestUtils#getTransport(String)}.
+ * <p>
+ * The returned client is only used to execute requests and to read its
+ * parameters. Other parts of the Apache <code>HttpClient</code> interface,
+ * like the connection manager, are only provided by the
+ * {@link ApacheHttpTransport}.
+ */
+public interface HttpTransport {
+
+	/**
+	 * Gets a client for the URL, credentials, TLS and proxy settings of
+	 * <code>input</code>. Clients of the same transport share their
+	 * connections.
+	 * 
+	 * @throws MalformedURLException
+	 *             if the URL of the input is invalid
+	 */
+	HttpClient getHttpClient(WebTestInput input) throws MalformedURLException;
+}
@@ -0,0 +1,119 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Creates the implementations based on APIs of newer Java versions. They are
+ * compiled into the multi-release layers of the jar (src/main/java11 and
+ * src/main/java21) and only loaded by name. On older Java versions and from a
+ * classpath which is not a multi-release jar, e.g. target/classes, they are
+ * not found and the factory methods return null.
+ */
+final class JdkSupport {
+
+	/**
+	 * Name of the transport based on <code>java.net.http.HttpClient</code>
+	 */
+	static final String JDK_TRANSPORT = "jdk";
+
+	private static final String HTTP_TRANSPORT_CLASS = "com.uc4.ara.feature.websmoketest.JdkHttpTransport";
+	private static final String ASYNC_GET_ENGINE_CLASS = "com.uc4.ara.feature.websmoketest.JdkAsyncGetEngine";
+	private static final String VIRTUAL_THREADS_CLASS = "com.uc4.ara.feature.websmoketest.VirtualThreads";
+
+	private JdkSupport() {
+	}
+
+	/**
+	 * @return true if the jdk transport can be created (Java 11 or later)
+	 */
+	static boolean hasHttpTransport() {
+		return load(HTTP_TRANSPORT_CLASS) != null;
+	}
+
+	/**
+	 * @return true if the asynchronous engine can be created (Java 11 or
+	 *         later)
+	 */
+	static boolean hasAsyncGetEngine() {
+		return load(ASYNC_GET_ENGINE_CLASS) != null;
+	}
+
+	/**
+	 * @return true if virtual threads are supported (Java 21 or later)
+	 */
+	static boolean hasVirtualThreads() {
+		return load(VIRTUAL_THREADS_CLASS) != null;
+	}
+
+	/**
+	 * @return the transport based on <code>java.net.http.HttpClient</code>,
+	 *         null if it is not supported
+	 */
+	static HttpTransport newHttpTransport() {
+		Class<?> type = load(HTTP_TRANSPORT_CLASS);
+		if (type == null)
+			return null;
+		try {
+			return (HttpTransport) type.getConstructor().newInstance();
+		} catch (InvocationTargetException e) {
+			throw failed(type, e.getCause());
+		} catch (ReflectiveOperationException e) {
+			throw failed(type, e);
+		}
+	}
+
+	/**
+	 * @param threads
+	 *            number of threads handling the responses
+	 * @return the asynchronous engine, null if it is not supported
+	 */
+	static AsyncGetEngine newAsyncGetEngine(int threads) {
+		Class<?> type = load(ASYNC_GET_ENGINE_CLASS);
+		if (type == null)
+			return null;
+		try {
+			return (AsyncGetEngine) type.getConstructor(int.class).newInstance(threads);
+		} catch (InvocationTargetException e) {
+			throw failed(type, e.getCause());
+		} catch (ReflectiveOperationException e) {
+			throw failed(type, e);
+		}
+	}
+
+	/**
+	 * @param name
+	 *            prefix of the thread names
+	 * @return an executor starting a new virtual thread for every task, null
+	 *         if virtual threads are not supported
+	 */
+	static ExecutorService newVirtualThreadExecutor(String name) {
+		Class<?> type = load(VIRTUAL_THREADS_CLASS);
+		if (type == null)
+			return null;
+		try {
+			return (ExecutorService) type.getMethod("newExecutor", String.class).invoke(null, name);
+		} catch (InvocationTargetException e) {
+			throw failed(type, e.getCause());
+		} catch (ReflectiveOperationException e) {
+			throw failed(type, e);
+		}
+	}
+
+	private static Class<?> load(String className) {
+		try {
+			return Class.forName(className, true, JdkSupport.class.getClassLoader());
+		} catch (ClassNotFoundException e) {
+			return null;
+		} catch (LinkageError e) {
+			// compiled for a newer Java version
+			return null;
+		}
+	}
+
+	private static RuntimeException failed(Class<?> type, Throwable cause) {
+		if (cause instanceof RuntimeException)
+			return (RuntimeException) cause;
+		return new IllegalStateException("Cannot create " + type.getSimpleName(), cause);
+	}
+}
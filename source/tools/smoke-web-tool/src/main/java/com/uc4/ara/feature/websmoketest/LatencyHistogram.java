@@ -0,0 +1,159 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.util.Locale;
+
+/**
+ * Histogram of latencies in nanoseconds with a fixed memory footprint.
+ * <p>
+ * Values below 128 are counted exactly, larger values in log-linear buckets
+ * of 64 sub-buckets per power of two, so every reported value is within 1.6%
+ * of the recorded one. Percentiles are reported as the highest value of their
+ * bucket (capped by the maximum), i.e. they are never lower than the exact
+ * percentile.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int EXACT_COUNT = 2 * SUB_BUCKET_COUNT;
+	private static final int BUCKET_COUNT = EXACT_COUNT + (63 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+	private static final double[] DISTRIBUTION_PERCENTILES = { 50, 75, 90, 95, 99, 99.9, 99.99 };
+
+	private final long[] counts = new long[BUCKET_COUNT];
+	private long totalCount = 0;
+	private long min = Long.MAX_VALUE;
+	private long max = 0;
+	private double sum = 0;
+
+	/**
+	 * Records one value. Negative values are recorded as 0.
+	 */
+	public void recordValue(long value) {
+		if (value < 0)
+			value = 0;
+		counts[bucketIndex(value)]++;
+		totalCount++;
+		sum += value;
+		if (value < min)
+			min = value;
+		if (value > max)
+			max = value;
+	}
+
+	/**
+	 * Adds all values recorded by another histogram.
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < BUCKET_COUNT; i++)
+			counts[i] += other.counts[i];
+		totalCount += other.totalCount;
+		sum += other.sum;
+		if (other.totalCount > 0) {
+			min = Math.min(min, other.min);
+			max = Math.max(max, other.max);
+		}
+	}
+
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	/**
+	 * @return the smallest recorded value, 0 if nothing was recorded
+	 */
+	public long getMin() {
+		return totalCount == 0 ? 0 : min;
+	}
+
+	/**
+	 * @return the largest recorded value, 0 if nothing was recorded
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * @return the mean of the recorded values, 0 if nothing was recorded
+	 */
+	public double getMean() {
+		return totalCount == 0 ? 0 : sum / totalCount;
+	}
+
+	/**
+	 * @param percentile
+	 *            between 0 and 100
+	 * @return the value at the given percentile, 0 if nothing was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (totalCount == 0)
+			return 0;
+		if (percentile <= 0)
+			return getMin();
+		long rank = (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * totalCount);
+		if (rank < 1)
+			rank = 1;
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.max(Math.min(highestValueInBucket(i), max), min);
+		}
+		return max;
+	}
+
+	/**
+	 * @return min, median, p95, p99 and max in milliseconds as one log line
+	 */
+	public String toLogString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("min ").append(millis(getMin()));
+		builder.append(", median ").append(millis(getValueAtPercentile(50)));
+		builder.append(", p95 ").append(millis(getValueAtPercentile(95)));
+		builder.append(", p99 ").append(millis(getValueAtPercentile(99)));
+		builder.append(", max ").append(millis(getMax()));
+		return builder.toString();
+	}
+
+	/**
+	 * @return the values at increasing percentiles from the minimum to the
+	 *         maximum, one per line. Percentiles needing more values than
+	 *         recorded are left out.
+	 */
+	public String toPercentileDistribution() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(String.format(Locale.ROOT, "%12s %14s%n", "Percentile", "Value"));
+		builder.append(String.format(Locale.ROOT, "%12s %14s%n", "min", millis(getMin())));
+		for (double percentile : DISTRIBUTION_PERCENTILES) {
+			if (percentile > 99 && 100 - percentile < 100.0 / totalCount)
+				continue;
+			builder.append(String.format(Locale.ROOT, "%12s %14s%n", formatPercentile(percentile),
+					millis(getValueAtPercentile(percentile))));
+		}
+		builder.append(String.format(Locale.ROOT, "%12s %14s", "max", millis(getMax())));
+		return builder.toString();
+	}
+
+	private static String formatPercentile(double percentile) {
+		return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+	}
+
+	static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f ms", nanos / 1000000.0);
+	}
+
+	private static int bucketIndex(long value) {
+		if (value < EXACT_COUNT)
+			return (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+		return EXACT_COUNT + (shift - 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	private static long highestValueInBucket(int index) {
+		if (index < EXACT_COUNT)
+			return index;
+		int shift = (index - EXACT_COUNT) / SUB_BUCKET_COUNT + 1;
+		long subBucket = (index - EXACT_COUNT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,79 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One latency threshold like <code>p95&lt;300</code>: the metric (min, max,
+ * mean, median or a percentile pNN) has to stay below the given number of
+ * milliseconds.
+ */
+public class LatencySla {
+
+	private static final Pattern SLA_PATTERN = Pattern.compile(
+			"(min|max|mean|median|p(\\d{1,2}(?:\\.\\d+)?|100))\\s*<\\s*(\\d+(?:\\.\\d+)?)", Pattern.CASE_INSENSITIVE);
+
+	private final String metric;
+	private final double percentile;
+	private final long thresholdNanos;
+
+	private LatencySla(String metric, double percentile, long thresholdNanos) {
+		this.metric = metric;
+		this.percentile = percentile;
+		this.thresholdNanos = thresholdNanos;
+	}
+
+	/**
+	 * Parses a comma separated list of thresholds, e.g.
+	 * <code>p95&lt;300,p99&lt;800,max&lt;2000</code>.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if one of the thresholds cannot be parsed
+	 */
+	public static List<LatencySla> parse(String value) {
+		List<LatencySla> slas = new ArrayList<LatencySla>();
+		for (String part : value.split(",")) {
+			if (part.trim().length() == 0)
+				continue;
+			Matcher matcher = SLA_PATTERN.matcher(part.trim());
+			if (!matcher.matches())
+				throw new IllegalArgumentException("Invalid latency threshold: " + part.trim());
+			String metric = matcher.group(1).toLowerCase();
+			double percentile = -1;
+			if (matcher.group(2) != null)
+				percentile = Double.parseDouble(matcher.group(2));
+			else if ("median".equals(metric))
+				percentile = 50;
+			long thresholdNanos = (long) (Double.parseDouble(matcher.group(3)) * 1000000);
+			slas.add(new LatencySla(metric, percentile, thresholdNanos));
+		}
+		return slas;
+	}
+
+	/**
+	 * @return the value of the metric in nanoseconds
+	 */
+	public long getValue(LatencyHistogram histogram) {
+		if ("min".equals(metric))
+			return histogram.getMin();
+		if ("max".equals(metric))
+			return histogram.getMax();
+		if ("mean".equals(metric))
+			return (long) histogram.getMean();
+		return histogram.getValueAtPercentile(percentile);
+	}
+
+	/**
+	 * @return true if the metric stays below the threshold
+	 */
+	public boolean isMet(LatencyHistogram histogram) {
+		return getValue(histogram) < thresholdNanos;
+	}
+
+	@Override
+	public String toString() {
+		return metric + " < " + LatencyHistogram.millis(thresholdNanos);
+	}
+}
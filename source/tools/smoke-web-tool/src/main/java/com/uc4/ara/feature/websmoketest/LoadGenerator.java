@@ -0,0 +1,345 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.net.ssl.SSLException;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+
+import com.uc4.ara.feature.FeatureUtil;
+import com.uc4.ara.feature.globalcodes.ErrorCodes;
+import com.uc4.ara.util.Logger;
+
+/**
+ * Sends GET requests to one URL for a limited time, either with a fixed number
+ * of concurrent requests (closed loop, every worker sends the next request as
+ * soon as the previous one finished) or with a fixed arrival rate (open loop).
+ * <p>
+ * In open loop mode the requests are scheduled in fixed intervals and their
+ * latency is measured from the scheduled start. A slow response delaying the
+ * following requests therefore counts for all of them instead of hiding them
+ * (coordinated omission). Requests which could not be started within the
+ * duration are recorded with the time from their scheduled start to the end of
+ * the duration, the least they would have taken. The time from the actual
+ * start is reported separately as service time.
+ */
+public class LoadGenerator {
+
+	private final HttpClient httpclient;
+	private final WebTestInput input;
+	private final int concurrency;
+	private final double rate;
+	private final long durationNanos;
+	private final boolean virtualThreads;
+
+	private final LatencyHistogram latencies = new LatencyHistogram();
+	private final LatencyHistogram serviceTimes = new LatencyHistogram();
+	private final Map<Integer, Integer> failures = new TreeMap<Integer, Integer>();
+	private long requestCount = 0;
+	private long failedCount = 0;
+	private long missedCount = 0;
+	private int firstFailure = AbstractWebSmokeTest.OK;
+	private long elapsedNanos = 0;
+
+	/**
+	 * The output of the feature, the workers log to it
+	 */
+	private PrintStream output;
+
+	/**
+	 * The types of the unexpected errors logged so far, each one is logged
+	 * once only
+	 */
+	private final Set<String> loggedErrors = new HashSet<String>();
+
+	/**
+	 * @param httpclient
+	 *            client shared by all workers, using a pooling connection
+	 *            manager
+	 * @param input
+	 *            the URL and connection settings
+	 * @param concurrency
+	 *            number of workers, i.e. maximum number of requests in flight
+	 * @param rate
+	 *            requests per second for open loop mode, 0 for closed loop
+	 * @param durationNanos
+	 *            time during which new requests are started
+	 * @param virtualThreads
+	 *            whether the workers run in virtual threads, see
+	 *            {@link JdkSupport#newVirtualThreadExecutor(String)}
+	 */
+	public LoadGenerator(HttpClient httpclient, WebTestInput input, int concurrency, double rate, long durationNanos,
+			boolean virtualThreads) {
+		this.httpclient = httpclient;
+		this.input = input;
+		this.concurrency = Math.max(1, concurrency);
+		this.rate = rate;
+		this.durationNanos = durationNanos;
+		this.virtualThreads = virtualThreads;
+	}
+
+	/**
+	 * Sends the requests and waits until all of them finished.
+	 */
+	public void run() throws InterruptedException {
+		output = FeatureUtil.getThreadOutput();
+		ExecutorService executor = virtualThreads ? JdkSupport.newVirtualThreadExecutor("load-") : null;
+		if (executor == null)
+			executor = Executors.newFixedThreadPool(concurrency, new LoadThreadFactory());
+		List<Future<Worker>> futures = new ArrayList<Future<Worker>>();
+		long start = System.nanoTime();
+		AtomicLong sequence = new AtomicLong();
+		try {
+			for (int i = 0; i < concurrency; i++)
+				futures.add(executor.submit(new Worker(start, sequence)));
+			for (Future<Worker> future : futures)
+				merge(future.get());
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Load worker failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		elapsedNanos = System.nanoTime() - start;
+	}
+
+	private void merge(Worker worker) {
+		latencies.add(worker.latencies);
+		serviceTimes.add(worker.serviceTimes);
+		requestCount += worker.requestCount;
+		failedCount += worker.failedCount;
+		missedCount += worker.missedCount;
+		for (Map.Entry<Integer, Integer> entry : worker.failures.entrySet()) {
+			Integer count = failures.get(entry.getKey());
+			failures.put(entry.getKey(), (count != null ? count : 0) + entry.getValue());
+		}
+		if (firstFailure == AbstractWebSmokeTest.OK)
+			firstFailure = worker.firstFailure;
+	}
+
+	public boolean isOpenLoop() {
+		return rate > 0;
+	}
+
+	/**
+	 * @return the latencies of all requests, in open loop mode measured from
+	 *         the scheduled start and including the missed requests
+	 */
+	public LatencyHistogram getLatencies() {
+		return latencies;
+	}
+
+	/**
+	 * @return the latencies of all requests measured from their actual start
+	 */
+	public LatencyHistogram getServiceTimes() {
+		return serviceTimes;
+	}
+
+	public long getRequestCount() {
+		return requestCount;
+	}
+
+	public long getFailedCount() {
+		return failedCount;
+	}
+
+	/**
+	 * @return the number of requests scheduled in open loop mode but not
+	 *         started within the duration because all workers were busy
+	 */
+	public long getMissedCount() {
+		return missedCount;
+	}
+
+	/**
+	 * @return the number of failed requests per return code
+	 */
+	public Map<Integer, Integer> getFailures() {
+		return failures;
+	}
+
+	/**
+	 * @return the return code of the first failed request found, OK if none
+	 *         failed
+	 */
+	public int getFirstFailure() {
+		return firstFailure;
+	}
+
+	/**
+	 * @return the time from the first request until the last one finished
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * Sends one request and reads the complete response.
+	 *
+	 * @param buffer
+	 *            buffer for skipping the response body
+	 * @return the return code as reported by <code>GetSite</code>
+	 */
+	private int execute(byte[] buffer) {
+		HttpGet httpGet = new HttpGet(input.getUrl());
+		HttpResponse response = null;
+		try {
+			response = httpclient.execute(httpGet);
+			HttpEntity entity = response.getEntity();
+			if (entity != null) {
+				// read to the end so that the connection is reused
+				InputStream in = entity.getContent();
+				while (in.read(buffer) != -1)
+					;
+				in.close();
+			}
+			int statusCode = response.getStatusLine().getStatusCode();
+			if (statusCode >= 200 && statusCode < 300)
+				return AbstractWebSmokeTest.OK;
+			if (statusCode == 401)
+				return AbstractWebSmokeTest.WRONG_CREDENTIALS;
+			if (statusCode == 407)
+				return AbstractWebSmokeTest.WRONG_PROXY_CREDENTIALS;
+			return statusCode;
+		} catch (SocketTimeoutException e) {
+			return AbstractWebSmokeTest.TIMEOUT;
+		} catch (UnknownHostException e) {
+			return AbstractWebSmokeTest.SERVER_NOT_AVAILABLE;
+		} catch (NoRouteToHostException e) {
+			return StringUtils.isEmpty(input.getProxyHost()) ? ErrorCodes.EXCEPTION
+					: AbstractWebSmokeTest.PROXY_SERVER_NOT_AVAILABLE;
+		} catch (SSLException e) {
+			return AbstractWebSmokeTest.SERVER_CERTIFICATE_FAILED;
+		} catch (ConnectException e) {
+			return StringUtils.isEmpty(input.getProxyHost()) ? AbstractWebSmokeTest.SERVER_NOT_AVAILABLE
+					: AbstractWebSmokeTest.PROXY_SERVER_NOT_AVAILABLE;
+		} catch (Exception e) {
+			logError(e);
+			return ErrorCodes.EXCEPTION;
+		} finally {
+			WebTestUtils.releaseConnection(httpGet, response);
+		}
+	}
+
+	/**
+	 * Logs an unexpected error of a request, the first one of each type only
+	 * so that a failing server does not flood the output.
+	 */
+	private void logError(Exception e) {
+		synchronized (loggedErrors) {
+			if (!loggedErrors.add(e.getClass().getName()))
+				return;
+		}
+		Logger.log("Error-Message: " + e, null);
+	}
+
+	/**
+	 * Sends requests until the duration is over and collects their results.
+	 * Only the scheduling sequence is shared between the workers.
+	 */
+	private class Worker implements Callable<Worker> {
+		private final long start;
+		private final AtomicLong sequence;
+
+		private final LatencyHistogram latencies = new LatencyHistogram();
+		private final LatencyHistogram serviceTimes = new LatencyHistogram();
+		private final Map<Integer, Integer> failures = new TreeMap<Integer, Integer>();
+		private final byte[] buffer = new byte[8192];
+		private long requestCount = 0;
+		private long failedCount = 0;
+		private long missedCount = 0;
+		private int firstFailure = AbstractWebSmokeTest.OK;
+
+		Worker(long start, AtomicLong sequence) {
+			this.start = start;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public Worker call() {
+			FeatureUtil.runWithOutput(output, new Runnable() {
+				@Override
+				public void run() {
+					sendRequests();
+				}
+			});
+			return this;
+		}
+
+		private void sendRequests() {
+			long end = start + durationNanos;
+			double interval = isOpenLoop() ? 1000000000.0 / rate : 0;
+			while (!Thread.currentThread().isInterrupted()) {
+				long scheduled;
+				if (isOpenLoop()) {
+					scheduled = start + (long) (sequence.getAndIncrement() * interval);
+					if (scheduled - end >= 0)
+						break;
+					for (long wait = scheduled - System.nanoTime(); wait > 0; wait = scheduled - System.nanoTime())
+						LockSupport.parkNanos(wait);
+					// requests delayed beyond the end of the duration are missed,
+					// the worker goes on with the next slots to record them as well
+					if (System.nanoTime() - end >= 0) {
+						latencies.recordValue(end - scheduled);
+						missedCount++;
+						continue;
+					}
+				} else {
+					scheduled = System.nanoTime();
+					if (scheduled - end >= 0)
+						break;
+				}
+
+				long requestStart = System.nanoTime();
+				int returnCode = execute(buffer);
+				long requestEnd = System.nanoTime();
+
+				latencies.recordValue(requestEnd - scheduled);
+				serviceTimes.recordValue(requestEnd - requestStart);
+				requestCount++;
+				if (returnCode != AbstractWebSmokeTest.OK) {
+					failedCount++;
+					Integer count = failures.get(returnCode);
+					failures.put(returnCode, (count != null ? count : 0) + 1);
+					if (firstFailure == AbstractWebSmokeTest.OK)
+						firstFailure = returnCode;
+				}
+			}
+		}
+	}
+
+	private static class LoadThreadFactory implements ThreadFactory {
+		private final AtomicInteger counter = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "load-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.net.MalformedURLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.client.HttpClient;
+
+import com.uc4.ara.feature.Feature;
+import com.uc4.ara.feature.globalcodes.ErrorCodes;
+import com.uc4.ara.feature.utils.CmdLineParser;
+import com.uc4.ara.util.Logger;
+
+@Feature(description = "Sends GET requests to a page ('URL') for a limited time and reports the throughput, the error rate and the latency distribution.\n"
+    + "Either a fixed number of requests runs concurrently ('concurrency', closed loop) or the requests are started at a fixed rate ('rate', open loop). "
+    + "In open loop mode the latency is measured from the scheduled start, so requests delayed by slow responses are not left out.")
+public class LoadProbe extends AbstractWebSmokeTest {
+
+  private static final int DEFAULT_DURATION = 30;
+  private static final int DEFAULT_OPEN_LOOP_CONCURRENCY = 100;
+
+  private CmdLineParser.Option<String> concurrency;
+  private CmdLineParser.Option<String> rate;
+  private CmdLineParser.Option<String> duration;
+  private CmdLineParser.Option<String> maxErrorRate;
+  private CmdLineParser.Option<String> threads;
+
+  @Override
+  public void initialize() {
+    super.initialize();
+    parser.setExamples("java -jar ARATools websmoketest LoadProbe -url \"http://www.yoursite.com\" -c 10 -d 30 -sla \"p99<800\"\n"
+        + "java -jar ARATools websmoketest LoadProbe -url \"http://www.yoursite.com\" -rt 50 -d 30 -mer 1");
+
+    concurrency = parser.addHelp(parser.addStringOption("c", "concurrency", false),
+        "Number of requests running at the same time. In open loop mode the maximum number of requests in flight. "
+        + "Default: 1, in open loop mode " + DEFAULT_OPEN_LOOP_CONCURRENCY + ".");
+
+    rate = parser.addHelp(parser.addStringOption("rt", "rate", false),
+        "Requests started per second. If set, the requests are sent in open loop mode. Default: closed loop mode.");
+
+    duration = parser.addHelp(parser.addStringOption("d", "duration", false),
+        "Time in seconds during which requests are started. Default: " + DEFAULT_DURATION + ".");
+
+    maxErrorRate = parser.addHelp(parser.addStringOption("mer", "maxErrorRate", false),
+        "Maximum percentage of failed requests. If exceeded the return code is " + ERROR_RATE_EXCEEDED + ". Default: no limit.");
+
+    threads = parser.addHelp(parser.addStringOption("thr", "threads", false),
+        "Kind of threads sending the requests. Possible values: platform, virtual (requires Java 21). Default: platform.");
+
+    addLatencySlaOption();
+  }
+
+  @Override
+  protected int runCheck() throws Exception {
+
+    // parse the common input parameters
+    WebTestInput input = parseInput();
+
+    double rateValue = 0;
+    double maxErrorRateValue = -1;
+    try {
+      String rateStr = parser.getOptionValue(rate);
+      if (!StringUtils.isBlank(rateStr)) {
+        rateValue = Double.parseDouble(rateStr.trim());
+      }
+      String maxErrorRateStr = parser.getOptionValue(maxErrorRate);
+      if (!StringUtils.isBlank(maxErrorRateStr)) {
+        maxErrorRateValue = Double.parseDouble(maxErrorRateStr.trim());
+      }
+    } catch (NumberFormatException e) {
+      Logger.log("Error: Invalid number " + e.getMessage(), this.loglevelValue);
+      return ErrorCodes.PARAMSMISMATCH;
+    }
+    int concurrencyValue = Math.max(getIntOptionValue(concurrency, rateValue > 0 ? DEFAULT_OPEN_LOOP_CONCURRENCY : 1), 1);
+    int durationValue = Math.max(getIntOptionValue(duration, DEFAULT_DURATION), 1);
+    List<LatencySla> slas = getLatencySlaValue();
+    if (slas == null) {
+      return ErrorCodes.PARAMSMISMATCH;
+    }
+
+    boolean virtual = "VIRTUAL".equalsIgnoreCase(parser.getOptionValue(threads));
+    if (virtual && !JdkSupport.hasVirtualThreads()) {
+      Logger.log("Virtual threads are not available (require Java 21 or later), the requests are sent by platform threads.", this.loglevelValue);
+      virtual = false;
+    }
+
+    if (input.isIgnoreServerCert()) {
+      Logger.logInfo(this.logLevel, "SSL Certificate validation is ignored");
+    }
+
+    HttpClient httpclient = null;
+    // every worker needs its own connection to the host
+    WebTestUtils.setConnectionPoolLimits(Math.max(100, concurrencyValue), concurrencyValue);
+    try {
+      httpclient = WebTestUtils.getHttpClient(input);
+    } catch (MalformedURLException e) {
+      Logger.log("Error-Message: Invalid URL.", this.loglevelValue);
+      return ErrorCodes.EXCEPTION;
+    } finally {
+      WebTestUtils.clearConnectionPoolLimits();
+    }
+
+    if (rateValue > 0) {
+      Logger.log(String.format(Locale.ROOT, "Sending %.1f requests/s with up to %d requests in flight to %s for %d s ...",
+          rateValue, concurrencyValue, input.getUrl(), durationValue), this.loglevelValue);
+    } else {
+      Logger.log("Sending " + concurrencyValue + " concurrent requests to " + input.getUrl() + " for " + durationValue + " s ...", this.loglevelValue);
+    }
+
+    LoadGenerator generator = new LoadGenerator(httpclient, input, concurrencyValue, rateValue,
+        TimeUnit.SECONDS.toNanos(durationValue), virtual);
+    generator.run();
+
+    long requests = generator.getRequestCount();
+    long failed = generator.getFailedCount();
+    long missed = generator.getMissedCount();
+    // missed requests count as errors, the server could not keep up with the rate
+    double errorRate = requests + missed > 0 ? 100.0 * (failed + missed) / (requests + missed) : 0;
+    double elapsedSeconds = generator.getElapsedNanos() / 1000000000.0;
+    Logger.log(String.format(Locale.ROOT, "Requests: %d in %.3f s, %d failed, %d missed (error rate %.2f %%)",
+        requests, elapsedSeconds, failed, missed, errorRate), this.loglevelValue);
+    Logger.log(String.format(Locale.ROOT, "Throughput: %.2f requests/s", requests / elapsedSeconds), this.loglevelValue);
+    if (missed > 0) {
+      Logger.log(missed + " scheduled requests were not started within the duration because " + concurrencyValue
+          + " requests were in flight.", this.loglevelValue);
+    }
+    for (Map.Entry<Integer, Integer> entry : generator.getFailures().entrySet()) {
+      Logger.log("Failed with return code " + entry.getKey() + ": " + entry.getValue() + " requests", this.loglevelValue);
+    }
+    if (requests == 0) {
+      Logger.log("No request was finished.", this.loglevelValue);
+      return TIMEOUT;
+    }
+
+    LatencyHistogram latencies = generator.getLatencies();
+    Logger.log("Latency: " + latencies.toLogString() + ", mean " + LatencyHistogram.millis((long) latencies.getMean()), this.loglevelValue);
+    if (generator.isOpenLoop()) {
+      Logger.log("Service time: " + generator.getServiceTimes().toLogString(), this.loglevelValue);
+    }
+    Logger.log("Latency distribution:\n" + latencies.toPercentileDistribution(), this.loglevelValue);
+
+    if (failed == requests) {
+      return generator.getFirstFailure();
+    }
+    int returnCode = checkLatencySla(slas, latencies);
+    if (maxErrorRateValue >= 0 && errorRate > maxErrorRateValue) {
+      Logger.log(String.format(Locale.ROOT, "Error rate %.2f %% exceeds the maximum of %s %%", errorRate, maxErrorRateValue), this.loglevelValue);
+      return ERROR_RATE_EXCEEDED;
+    }
+    return returnCode;
+  }
+
+}
@@ -14,7 +14,6 @@ import java.util.regex.Pattern;
 import javax.net.ssl.SSLException;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
@@ -24,10 +23,12 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.util.EntityUtils;
 
+import com.uc4.ara.feature.Feature;
 import com.uc4.ara.feature.globalcodes.ErrorCodes;
 import com.uc4.ara.feature.utils.CmdLineParser;
 import com.uc4.ara.util.Logger;
 
+@Feature(description = "Submits a POST request to 'URL' and awaits the upcoming page. You may check if a certain text pattern is available on the page - HTML tags will be stripped before evaluation")
 public class PostSearchText extends AbstractWebSmokeTest {
 
   private CmdLineParser.Option<String> keyValues;
@@ -37,7 +38,6 @@ public class PostSearchText extends AbstractWebSmokeTest {
   @Override
   public void initialize() {
     super.initialize();
-    parser.setDescription("Submits a POST request to 'URL' and awaits the upcoming page. You may check if a certain text pattern is available on the page - HTML tags will be stripped before evaluation");
     parser.setExamples("java -jar ARATools websmoketest PostSearchText -url \"http://www.yoursite.com\" -kv \"Name=Jonathan Doe, Age=23\" -t 10000");
 
     keyValues = parser.addHelp(parser.addStringOption("kv", "keyvalue", true), "List of key-value pairs passed to the web server within the POST message. " +
@@ -49,16 +49,21 @@ public class PostSearchText extends AbstractWebSmokeTest {
         
     isRegex = parser.addHelp(parser.addStringOption("re", "regex", false), 
         "If set to \"yes\", than the text is treated as regular expression. Otherwise the text.");
+    
+    addStreamingOptions();
+    addProbeOptions();
   }
   
   @Override
-  public int run(String[] args) throws Exception {
-    super.run(args);
+  protected int runCheck() throws Exception {
     
     WebTestInput input = parseInput();
     
+    boolean streamMatchValue = isStreamMatch();
+    int maxBytesValue = getMaxBytesValue();
+    
     if (input.isIgnoreServerCert()) {
-      Logger.logInfo("SSL Certificate validation is ignored.", this.loglevelValue);
+      Logger.logInfo(this.logLevel, "SSL Certificate validation is ignored.");
     }
     
     String expectedTextValue = parser.getOptionValue(expectedText);
@@ -92,14 +97,14 @@ public class PostSearchText extends AbstractWebSmokeTest {
       return statusCode;
     }
     
-    Logger.log("Making the POST request to " + input.getUrl() + " ...", this.loglevelValue);
+    Logger.logInfo(this.logLevel, "Making the POST request to {} ...", input.getUrl());
     
     if (!StringUtils.isEmpty(input.getUsername())) {
-      Logger.log("Authentication username: " + input.getUsername(), this.loglevelValue);
+      Logger.logInfo(this.logLevel, "Authentication username: {}", input.getUsername());
     }
         
     if (!StringUtils.isEmpty(input.getProxyHost())) {
-      Logger.log("Use proxy server: " + input.getProxyHost() + ":" + input.getProxyPort(), this.loglevelValue);
+      Logger.logInfo(this.logLevel, "Use proxy server: {}:{}", input.getProxyHost(), input.getProxyPort());
     }
     
     HttpPost httpPost = new HttpPost(input.getUrl());
@@ -110,10 +115,13 @@ public class PostSearchText extends AbstractWebSmokeTest {
       // nothing to do, continue to execute request with empty body
     }
     
-    try {      
-      HttpResponse response = httpclient.execute(httpPost);
+    HttpResponse response = null;
+    RequestTimings timings = RequestTimings.start();
+    try {
+      response = WebTestUtils.execute(httpclient, httpPost);
+      timings.responseReceived();
       statusCode = response.getStatusLine().getStatusCode();
-      Logger.log("Received status code " + statusCode, this.loglevelValue);
+      Logger.logInfo(this.logLevel, "Received status code {}", statusCode);
       
       if (statusCode == 401) {
         Logger.log("Server authentication failed!", this.loglevelValue);
@@ -126,9 +134,34 @@ public class PostSearchText extends AbstractWebSmokeTest {
       }
       
       if (statusCode >= 200 && statusCode < 300) {
-        Logger.log("Successfully submit POST to site " + input.getUrl(), this.loglevelValue);
+        Logger.logInfo(this.logLevel, "Successfully submit POST to site {}", input.getUrl());
         HttpEntity entity = response.getEntity();
+        if (streamMatchValue) {
+          Logger.logInfo(this.logLevel, isRegexValue ? "Check if part of page content matches the regular expression: {} while downloading"
+              : "Check if page content contains expected text: {} while downloading", expectedTextValue);
+          
+          StreamingTextMatcher matcher = isRegexValue ? StreamingTextMatcher.forRegex(expectedTextValue)
+              : StreamingTextMatcher.forText(expectedTextValue);
+          boolean found = matcher.match(entity, maxBytesValue);
+          timings.bodyReceived();
+          Logger.logDebug(this.logLevel, "Read {} bytes of the page{}", matcher.getBytesRead(),
+              matcher.isLimitReached() ? ", stopped at the byte limit" : "");
+          if (!found && !matcher.hasText()) {
+            Logger.log("Received an empty content page.", this.loglevelValue);
+            return TEXT_NOT_FOUND_AFTER_SUBMIT;
+          }
+          
+          statusCode = found ? OK : TEXT_NOT_FOUND_AFTER_SUBMIT;
+          if (isRegexValue) {
+            Logger.log(statusCode == OK ? "The given text matches.": "The given text does not match.", this.loglevelValue);
+          } else {
+            Logger.log(statusCode == OK ? "Found the given text in page content.":"Couldn't find the given text in page content.",  this.loglevelValue);
+          }
+          return statusCode;
+        }
+        
         String content = EntityUtils.toString(entity, "UTF-8");
+        timings.bodyReceived();
         String cleanedContent = WebTestUtils.html2text(content);
         if (StringUtils.isEmpty(cleanedContent)) {
           Logger.log("Received an empty content page.", this.loglevelValue);
@@ -136,8 +169,8 @@ public class PostSearchText extends AbstractWebSmokeTest {
         }
         
         //Logger.logDebug("Page content: " + cleanedContent, this.loglevelValue); 
-        Logger.log("Check if " + (isRegexValue ? "part of page content matches the regular expression: "
-            : "page content contains expected text: ") + expectedTextValue, this.loglevelValue);
+        Logger.logInfo(this.logLevel, isRegexValue ? "Check if part of page content matches the regular expression: {}"
+            : "Check if page content contains expected text: {}", expectedTextValue);
         
         if (isRegexValue) {
           Pattern p = Pattern.compile(expectedTextValue, Pattern.CASE_INSENSITIVE | Pattern.DOTALL); 
@@ -177,11 +210,12 @@ public class PostSearchText extends AbstractWebSmokeTest {
       if (StringUtils.isEmpty(input.getProxyHost())) return SERVER_NOT_AVAILABLE;
       else return PROXY_SERVER_NOT_AVAILABLE;
     } catch (Exception e) {
-      Logger.logDebug(ExceptionUtils.getStackTrace(e), this.loglevelValue);
+      Logger.logDebug(this.logLevel, e);
       Logger.log("Error-Message: " + e.getMessage(), this.loglevelValue);
       return statusCode;
     } finally {
-       if (httpclient != null) httpclient.getConnectionManager().shutdown();
+      logTimings(timings, input.getUrl());
+      WebTestUtils.releaseConnection(httpPost, response);
     }    
   }
 }
@@ -0,0 +1,259 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.util.Locale;
+
+import com.uc4.ara.feature.utils.JsonParser;
+
+/**
+ * Durations of the phases of one check: DNS lookup, TCP connect, TLS
+ * handshake, time to first byte, body download and parsing / evaluation.
+ * <p>
+ * The timings of the current thread are collected by the connection layer
+ * (DNS, connect, TLS), the features mark when the response headers and the
+ * body were received. Phases which did not happen (e.g. connect on a reused
+ * connection) are reported as 0, phases which were not reached as missing.
+ * The size of a body which was read is reported as received on the wire and
+ * decoded.
+ */
+public class RequestTimings {
+
+	private static final ThreadLocal<RequestTimings> CURRENT = new ThreadLocal<RequestTimings>();
+
+	private final long startNanos = System.nanoTime();
+	private long dnsNanos = 0;
+	private long connectNanos = 0;
+	private long tlsNanos = 0;
+	private boolean connected = false;
+	private boolean tlsResumed = false;
+	private boolean connectionMeasured = true;
+	private long responseNanos = -1;
+	private long bodyNanos = -1;
+	private long endNanos = -1;
+	private long wireBytes = 0;
+	private long decodedBytes = 0;
+	private String contentEncoding = null;
+
+	/**
+	 * Starts collecting the timings of the current thread.
+	 */
+	public static RequestTimings start() {
+		RequestTimings timings = new RequestTimings();
+		CURRENT.set(timings);
+		return timings;
+	}
+
+	/**
+	 * @return the timings collected for the current thread or null
+	 */
+	static RequestTimings current() {
+		return CURRENT.get();
+	}
+
+	void addDns(long nanos) {
+		dnsNanos += nanos;
+	}
+
+	void addConnect(long nanos) {
+		connectNanos += nanos;
+		connected = true;
+	}
+
+	void addTls(long nanos, boolean resumed) {
+		tlsNanos += nanos;
+		tlsResumed = resumed;
+	}
+
+	/**
+	 * Marks that the transport does not report the DNS, connect and TLS
+	 * phases, they are then left out.
+	 */
+	void connectionNotMeasured() {
+		connectionMeasured = false;
+	}
+
+	void addWireBytes(long bytes) {
+		wireBytes += bytes;
+	}
+
+	void addDecodedBytes(long bytes) {
+		decodedBytes += bytes;
+	}
+
+	void setContentEncoding(String contentEncoding) {
+		this.contentEncoding = contentEncoding;
+	}
+
+	/**
+	 * Marks that the response headers were received.
+	 */
+	public void responseReceived() {
+		responseNanos = System.nanoTime();
+	}
+
+	/**
+	 * Marks that the response body was read. Everything until
+	 * {@link #finish()} counts as parsing and evaluation.
+	 */
+	public void bodyReceived() {
+		bodyNanos = System.nanoTime();
+	}
+
+	/**
+	 * Ends the measurement and stops collecting for the current thread.
+	 */
+	public void finish() {
+		if (endNanos < 0)
+			endNanos = System.nanoTime();
+		if (CURRENT.get() == this)
+			CURRENT.remove();
+	}
+
+	public long getDnsNanos() {
+		return dnsNanos;
+	}
+
+	public long getConnectNanos() {
+		return connectNanos;
+	}
+
+	public long getTlsNanos() {
+		return tlsNanos;
+	}
+
+	/**
+	 * @return the time from sending the request to receiving the response
+	 *         headers without DNS, connect and TLS, -1 if no response was
+	 *         received
+	 */
+	public long getTtfbNanos() {
+		return responseNanos < 0 ? -1 : responseNanos - startNanos - dnsNanos - connectNanos - tlsNanos;
+	}
+
+	/**
+	 * @return the time to read the body, -1 if the body was not read
+	 */
+	public long getDownloadNanos() {
+		return bodyNanos < 0 || responseNanos < 0 ? -1 : bodyNanos - responseNanos;
+	}
+
+	/**
+	 * @return the time to parse and evaluate the body, -1 if the body was not
+	 *         read
+	 */
+	public long getParseNanos() {
+		return bodyNanos < 0 ? -1 : end() - bodyNanos;
+	}
+
+	public long getTotalNanos() {
+		return end() - startNanos;
+	}
+
+	/**
+	 * @return the body bytes received on the wire
+	 */
+	public long getWireBytes() {
+		return wireBytes;
+	}
+
+	/**
+	 * @return the body bytes after decoding the content encoding
+	 */
+	public long getDecodedBytes() {
+		return decodedBytes;
+	}
+
+	/**
+	 * @return the content encoding of the response, null if the body was not
+	 *         counted
+	 */
+	public String getContentEncoding() {
+		return contentEncoding;
+	}
+
+	/**
+	 * @return true if the last TLS handshake probably resumed a cached
+	 *         session. This is a best-effort guess from the creation time of
+	 *         the session, it is not verified for TLS 1.3 resumption with a
+	 *         pre-shared key and depends on the JSSE provider.
+	 */
+	public boolean isTlsResumed() {
+		return tlsResumed;
+	}
+
+	/**
+	 * @return true if the request was sent over a pooled connection
+	 */
+	public boolean isConnectionReused() {
+		return connectionMeasured && !connected && responseNanos >= 0;
+	}
+
+	/**
+	 * @return the timings as one log line
+	 */
+	public String toLogString() {
+		StringBuilder builder = new StringBuilder("Timings: ");
+		if (connectionMeasured) {
+			builder.append("DNS ").append(millis(dnsNanos));
+			builder.append(", connect ").append(millis(connectNanos));
+			builder.append(", TLS ").append(millis(tlsNanos)).append(", ");
+		}
+		if (getTtfbNanos() >= 0)
+			builder.append("TTFB ").append(millis(getTtfbNanos())).append(", ");
+		if (getDownloadNanos() >= 0)
+			builder.append("download ").append(millis(getDownloadNanos())).append(", ");
+		if (getParseNanos() >= 0)
+			builder.append("parse ").append(millis(getParseNanos())).append(", ");
+		builder.append("total ").append(millis(getTotalNanos()));
+		if (contentEncoding != null && bodyNanos >= 0) {
+			builder.append(", body ").append(decodedBytes).append(" bytes");
+			if (!"identity".equals(contentEncoding))
+				builder.append(" (").append(wireBytes).append(" on the wire, ").append(contentEncoding).append(')');
+		}
+		if (isConnectionReused())
+			builder.append(" (connection reused)");
+		else if (tlsResumed)
+			builder.append(" (TLS session probably resumed)");
+		return builder.toString();
+	}
+
+	/**
+	 * @return the timings in milliseconds as a JSON object
+	 */
+	public String toJson(String url) {
+		StringBuilder builder = new StringBuilder("{");
+		builder.append("\"url\":").append(JsonParser.quote(url));
+		if (connectionMeasured) {
+			appendJson(builder, "dnsMs", dnsNanos);
+			appendJson(builder, "connectMs", connectNanos);
+			appendJson(builder, "tlsMs", tlsNanos);
+		}
+		appendJson(builder, "ttfbMs", getTtfbNanos());
+		appendJson(builder, "downloadMs", getDownloadNanos());
+		appendJson(builder, "parseMs", getParseNanos());
+		appendJson(builder, "totalMs", getTotalNanos());
+		if (connectionMeasured) {
+			builder.append(",\"connectionReused\":").append(isConnectionReused());
+			// best-effort, see isTlsResumed()
+			builder.append(",\"tlsResumedBestEffort\":").append(tlsResumed);
+		}
+		if (contentEncoding != null && bodyNanos >= 0) {
+			builder.append(",\"wireBytes\":").append(wireBytes);
+			builder.append(",\"decodedBytes\":").append(decodedBytes);
+			builder.append(",\"contentEncoding\":").append(JsonParser.quote(contentEncoding));
+		}
+		return builder.append('}').toString();
+	}
+
+	private long end() {
+		return endNanos < 0 ? System.nanoTime() : endNanos;
+	}
+
+	private static void appendJson(StringBuilder builder, String name, long nanos) {
+		builder.append(",\"").append(name).append("\":");
+		builder.append(nanos < 0 ? "null" : String.format(Locale.ROOT, "%.3f", nanos / 1000000.0));
+	}
+
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f ms", nanos / 1000000.0);
+	}
+}
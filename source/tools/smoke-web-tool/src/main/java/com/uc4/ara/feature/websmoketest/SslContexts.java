@@ -0,0 +1,105 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+
+/**
+ * SSL contexts shared by all checks of the process, one per trust
+ * configuration. TLS sessions are cached per context, so a check connecting
+ * to a host again resumes the session of a previous connection with an
+ * abbreviated handshake instead of a full handshake with chain validation.
+ */
+public final class SslContexts {
+
+	/**
+	 * Maximum number of cached client sessions per context
+	 */
+	static final int SESSION_CACHE_SIZE = 1000;
+
+	/**
+	 * Time in seconds a cached session is offered for resumption
+	 */
+	static final int SESSION_TIMEOUT = 3600;
+
+	private static SSLContext defaultContext;
+	private static SSLContext trustAllContext;
+
+	private SslContexts() {
+	}
+
+	/**
+	 * Gets the shared context.
+	 *
+	 * @param ignoreServerCert
+	 *            if true the context accepts every certificate and host name,
+	 *            otherwise it is the default context of the JVM validating
+	 *            against its trust store
+	 * @return the context
+	 * @throws GeneralSecurityException
+	 *             if the context cannot be initialized
+	 */
+	public static synchronized SSLContext getContext(boolean ignoreServerCert) throws GeneralSecurityException {
+		if (ignoreServerCert) {
+			if (trustAllContext == null) {
+				SSLContext context = SSLContext.getInstance("TLS");
+				context.init(null, new TrustManager[] { new TrustAllManager() }, null);
+				trustAllContext = configureSessionCache(context);
+			}
+			return trustAllContext;
+		}
+		if (defaultContext == null)
+			defaultContext = configureSessionCache(SSLContext.getDefault());
+		return defaultContext;
+	}
+
+	private static SSLContext configureSessionCache(SSLContext context) {
+		SSLSessionContext sessionContext = context.getClientSessionContext();
+		if (sessionContext != null) {
+			sessionContext.setSessionCacheSize(SESSION_CACHE_SIZE);
+			sessionContext.setSessionTimeout(SESSION_TIMEOUT);
+		}
+		return context;
+	}
+
+	/**
+	 * Accepts every certificate and host name. An extended trust manager is
+	 * used because the endpoint identification is then left to it.
+	 */
+	private static class TrustAllManager extends X509ExtendedTrustManager {
+		@Override
+		public void checkClientTrusted(X509Certificate[] chain, String authType) {
+		}
+
+		@Override
+		public void checkServerTrusted(X509Certificate[] chain, String authType) {
+		}
+
+		@Override
+		public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) {
+		}
+
+		@Override
+		public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) {
+		}
+
+		@Override
+		public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+		}
+
+		@Override
+		public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+		}
+
+		@Override
+		public X509Certificate[] getAcceptedIssuers() {
+			return new X509Certificate[0];
+		}
+	}
+}
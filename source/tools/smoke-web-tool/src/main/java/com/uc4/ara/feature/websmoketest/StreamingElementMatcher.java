@@ -0,0 +1,568 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.http.HttpEntity;
+
+/**
+ * Evaluates a subset of XPath while an HTML response is downloaded, without
+ * building a document. Reading stops at the first matching element.
+ * <p>
+ * Supported are absolute (<code>/</code>) and descendant (<code>//</code>)
+ * location paths of element names or <code>*</code> with the predicates
+ * <code>[n]</code>, <code>[@a]</code>, <code>[@a='v']</code>,
+ * <code>[contains(@a,'v')]</code>, <code>[contains(text(),'v')]</code>,
+ * <code>[contains(.,'v')]</code> and <code>[text()='v']</code>. Text
+ * predicates are only supported in the last step, behind any positional
+ * predicate. {@link #compile(String)} returns null for other expressions.
+ * <p>
+ * Like HtmlCleaner the matcher implies missing <code>html</code>,
+ * <code>head</code> and <code>body</code> elements, closes void elements and
+ * implicitly closes <code>p</code>, <code>li</code>, table cells and similar
+ * elements.
+ */
+public class StreamingElementMatcher extends StreamingHtmlReader {
+
+	private static final int POSITION = 0;
+	private static final int HAS_ATTRIBUTE = 1;
+	private static final int ATTRIBUTE_EQUALS = 2;
+	private static final int ATTRIBUTE_CONTAINS = 3;
+	private static final int TEXT_CONTAINS = 4;
+	private static final int TEXT_EQUALS = 5;
+	private static final int STRING_CONTAINS = 6;
+
+	private static final Set<String> VOID_ELEMENTS = new HashSet<String>(Arrays.asList("area", "base", "br", "col",
+			"embed", "hr", "img", "input", "link", "meta", "param", "source", "track", "wbr"));
+
+	private static final Set<String> HEAD_ELEMENTS = new HashSet<String>(Arrays.asList("base", "link", "meta",
+			"script", "style", "title"));
+
+	private static final Set<String> CLOSES_P = new HashSet<String>(Arrays.asList("address", "article", "aside",
+			"blockquote", "div", "dl", "fieldset", "footer", "form", "h1", "h2", "h3", "h4", "h5", "h6", "header",
+			"hr", "main", "nav", "ol", "p", "pre", "section", "table", "ul"));
+
+	private final List<Step> steps;
+
+	private List<Frame> stack;
+	private boolean found;
+	private int stringValueCandidates;
+
+	private StreamingElementMatcher(List<Step> steps) {
+		this.steps = steps;
+	}
+
+	/**
+	 * Compiles an XPath expression.
+	 *
+	 * @return the matcher or null if the expression is outside of the
+	 *         supported subset
+	 */
+	public static StreamingElementMatcher compile(String xpath) {
+		List<Step> steps = new PathParser(xpath.trim()).parse();
+		return steps != null ? new StreamingElementMatcher(steps) : null;
+	}
+
+	/**
+	 * Reads the entity until an element matches, the end of the body or the
+	 * byte budget is reached. The content stream is not closed.
+	 *
+	 * @param entity
+	 *            the response entity
+	 * @param maxBytes
+	 *            maximum number of body bytes to read, 0 or less for no limit
+	 * @return true if an element matches
+	 * @throws IOException
+	 */
+	public boolean match(HttpEntity entity, long maxBytes) throws IOException {
+		stack = new ArrayList<Frame>();
+		stack.add(new Frame(null, steps.size()));
+		found = false;
+		stringValueCandidates = 0;
+
+		HtmlTokenizer tokenizer = open(entity, maxBytes);
+		int token;
+		while (!found && (token = tokenizer.next()) != HtmlTokenizer.EOF) {
+			if (token == HtmlTokenizer.START_TAG)
+				startElement(tokenizer.getTagName(), tokenizer.getAttributes(), tokenizer.isSelfClosing());
+			else if (token == HtmlTokenizer.END_TAG)
+				endElement(tokenizer.getTagName());
+			else
+				text(tokenizer.getText());
+		}
+		// the elements still open end with the document
+		while (!found && stack.size() > 1)
+			pop();
+		return found;
+	}
+
+	private void startElement(String name, Map<String, String> attributes, boolean selfClosing) {
+		finishTextNode(top());
+		impliedStructure(name);
+		if (found)
+			return;
+		push(name, attributes);
+		if (!found && (selfClosing || VOID_ELEMENTS.contains(name)))
+			pop();
+	}
+
+	private void endElement(String name) {
+		finishTextNode(top());
+		// like HtmlCleaner, content after </body> or </html> stays in the body
+		if ("body".equals(name) || "html".equals(name))
+			return;
+		for (int i = stack.size() - 1; i > 0; i--) {
+			if (name.equals(stack.get(i).name)) {
+				while (!found && stack.size() > i)
+					pop();
+				return;
+			}
+		}
+	}
+
+	private void text(String text) {
+		Frame top = top();
+		if (top.directText != null)
+			top.directText.append(text);
+		if (stringValueCandidates == 0)
+			return;
+		for (int i = stack.size() - 1; i > 0; i--) {
+			Candidate candidate = stack.get(i).candidate;
+			if (candidate != null)
+				candidate.appendStringValue(text);
+		}
+	}
+
+	/**
+	 * Adds missing html, head and body elements and closes elements which end
+	 * implicitly with the new element.
+	 */
+	private void impliedStructure(String name) {
+		if (stack.size() == 1 && !"html".equals(name))
+			push("html", Collections.<String, String> emptyMap());
+		String parent = top().name;
+		if ("html".equals(parent) && !"head".equals(name) && !"body".equals(name))
+			push(HEAD_ELEMENTS.contains(name) ? "head" : "body", Collections.<String, String> emptyMap());
+		else if ("head".equals(parent) && !HEAD_ELEMENTS.contains(name)) {
+			pop();
+			if (!"body".equals(name))
+				push("body", Collections.<String, String> emptyMap());
+		}
+
+		if ("li".equals(name))
+			closeImplied(new String[] { "li" }, new String[] { "ul", "ol" });
+		else if ("dt".equals(name) || "dd".equals(name))
+			closeImplied(new String[] { "dt", "dd" }, new String[] { "dl" });
+		else if ("td".equals(name) || "th".equals(name))
+			closeImplied(new String[] { "td", "th" }, new String[] { "tr", "table" });
+		else if ("tr".equals(name))
+			closeImplied(new String[] { "tr" }, new String[] { "table", "tbody", "thead", "tfoot" });
+		else if ("option".equals(name))
+			closeImplied(new String[] { "option" }, new String[] { "select", "datalist" });
+		if (CLOSES_P.contains(name) && "p".equals(top().name))
+			pop();
+	}
+
+	/**
+	 * Closes the nearest open element named one of <code>names</code> unless
+	 * one of the <code>boundaries</code> is open in between.
+	 */
+	private void closeImplied(String[] names, String[] boundaries) {
+		List<String> nameList = Arrays.asList(names);
+		List<String> boundaryList = Arrays.asList(boundaries);
+		for (int i = stack.size() - 1; i > 0; i--) {
+			String open = stack.get(i).name;
+			if (boundaryList.contains(open))
+				return;
+			if (nameList.contains(open)) {
+				while (!found && stack.size() > i)
+					pop();
+				return;
+			}
+		}
+	}
+
+	private void push(String name, Map<String, String> attributes) {
+		Frame parent = top();
+		Frame frame = new Frame(name, steps.size());
+		int last = steps.size() - 1;
+		for (int i = 0; i <= last; i++) {
+			Step step = steps.get(i);
+			boolean context;
+			if (i == 0)
+				context = step.descendant || parent.name == null;
+			else
+				context = step.descendant ? parent.inherited.get(i - 1) : parent.matched.get(i - 1);
+			if (!context || (step.name != null && !step.name.equals(name)))
+				continue;
+
+			boolean matches = true;
+			boolean pendingText = false;
+			for (int p = 0; matches && p < step.predicates.size(); p++) {
+				Predicate predicate = step.predicates.get(p);
+				String value = predicate.attribute != null ? attributes.get(predicate.attribute) : null;
+				switch (predicate.type) {
+				case POSITION:
+					matches = parent.nextPosition(i, p) == predicate.position;
+					break;
+				case HAS_ATTRIBUTE:
+					matches = value != null;
+					break;
+				case ATTRIBUTE_EQUALS:
+					matches = predicate.value.equals(value);
+					break;
+				case ATTRIBUTE_CONTAINS:
+					matches = value != null && value.contains(predicate.value);
+					break;
+				default:
+					pendingText = true;
+				}
+			}
+			if (!matches)
+				continue;
+
+			if (i < last) {
+				frame.matched.set(i);
+			} else if (!pendingText) {
+				found = true;
+				return;
+			} else {
+				frame.candidate = new Candidate(step.predicates);
+				if (frame.candidate.needsDirectText)
+					frame.directText = new StringBuilder();
+				if (frame.candidate.needsStringValue)
+					stringValueCandidates++;
+			}
+		}
+		frame.inherited.or(parent.inherited);
+		frame.inherited.or(frame.matched);
+		stack.add(frame);
+	}
+
+	private void pop() {
+		Frame frame = stack.remove(stack.size() - 1);
+		if (frame.candidate == null)
+			return;
+		finishTextNode(frame);
+		if (frame.candidate.needsStringValue)
+			stringValueCandidates--;
+		if (frame.candidate.isSatisfied())
+			found = true;
+	}
+
+	private void finishTextNode(Frame frame) {
+		if (frame.directText == null || frame.directText.length() == 0)
+			return;
+		frame.candidate.textNode(frame.directText.toString());
+		frame.directText.setLength(0);
+	}
+
+	private Frame top() {
+		return stack.get(stack.size() - 1);
+	}
+
+	/**
+	 * An open element with the steps of the path it matches.
+	 */
+	private static class Frame {
+		final String name;
+		/** steps (except the last one) matched by this element */
+		final BitSet matched;
+		/** steps matched by this element or one of its ancestors */
+		final BitSet inherited;
+		/** counters of positional predicates for the children */
+		Map<Integer, Integer> positions;
+		/** the pending text predicates if this element matches the last step */
+		Candidate candidate;
+		StringBuilder directText;
+
+		Frame(String name, int steps) {
+			this.name = name;
+			this.matched = new BitSet(steps);
+			this.inherited = new BitSet(steps);
+		}
+
+		int nextPosition(int step, int predicate) {
+			if (positions == null)
+				positions = new HashMap<Integer, Integer>();
+			Integer key = step * 64 + predicate;
+			Integer position = positions.get(key);
+			position = position == null ? 1 : position + 1;
+			positions.put(key, position);
+			return position;
+		}
+	}
+
+	/**
+	 * Tracks the text predicates of an element matching the last step until
+	 * the element ends.
+	 */
+	private static class Candidate {
+		final List<Predicate> predicates = new ArrayList<Predicate>();
+		final boolean[] satisfied;
+		final StringBuilder[] windows;
+		boolean needsDirectText;
+		boolean needsStringValue;
+		boolean firstTextNode = true;
+
+		Candidate(List<Predicate> stepPredicates) {
+			for (Predicate predicate : stepPredicates) {
+				if (predicate.type >= TEXT_CONTAINS)
+					predicates.add(predicate);
+			}
+			satisfied = new boolean[predicates.size()];
+			windows = new StringBuilder[predicates.size()];
+			for (int i = 0; i < satisfied.length; i++) {
+				Predicate predicate = predicates.get(i);
+				if (predicate.type == STRING_CONTAINS) {
+					needsStringValue = true;
+					windows[i] = new StringBuilder();
+					satisfied[i] = predicate.value.length() == 0;
+				} else {
+					needsDirectText = true;
+					satisfied[i] = predicate.type == TEXT_CONTAINS && predicate.value.length() == 0;
+				}
+			}
+		}
+
+		/**
+		 * A complete text node directly below the element.
+		 */
+		void textNode(String text) {
+			for (int i = 0; i < satisfied.length; i++) {
+				Predicate predicate = predicates.get(i);
+				if (predicate.type == TEXT_CONTAINS && firstTextNode)
+					satisfied[i] = text.contains(predicate.value);
+				else if (predicate.type == TEXT_EQUALS && text.equals(predicate.value))
+					satisfied[i] = true;
+			}
+			firstTextNode = false;
+		}
+
+		/**
+		 * Text anywhere below the element.
+		 */
+		void appendStringValue(String text) {
+			for (int i = 0; i < satisfied.length; i++) {
+				if (windows[i] == null || satisfied[i])
+					continue;
+				String value = predicates.get(i).value;
+				StringBuilder window = windows[i];
+				window.append(text);
+				if (window.indexOf(value) >= 0) {
+					satisfied[i] = true;
+					window.setLength(0);
+				} else if (window.length() >= value.length()) {
+					window.delete(0, window.length() - value.length() + 1);
+				}
+			}
+		}
+
+		boolean isSatisfied() {
+			for (boolean value : satisfied) {
+				if (!value)
+					return false;
+			}
+			return true;
+		}
+	}
+
+	private static class Step {
+		boolean descendant;
+		/** element name, null for any element */
+		String name;
+		final List<Predicate> predicates = new ArrayList<Predicate>();
+	}
+
+	private static class Predicate {
+		int type;
+		String attribute;
+		String value;
+		int position;
+	}
+
+	/**
+	 * Parses the supported subset of XPath, returns null for everything else.
+	 */
+	private static class PathParser {
+		private final String xpath;
+		private int pos = 0;
+
+		PathParser(String xpath) {
+			this.xpath = xpath;
+		}
+
+		List<Step> parse() {
+			List<Step> steps = new ArrayList<Step>();
+			while (pos < xpath.length()) {
+				Step step = new Step();
+				if (xpath.startsWith("//", pos)) {
+					step.descendant = true;
+					pos += 2;
+				} else if (xpath.startsWith("/", pos)) {
+					pos++;
+				} else {
+					return null;
+				}
+
+				if (xpath.startsWith("*", pos)) {
+					pos++;
+				} else {
+					step.name = readName();
+					if (step.name == null)
+						return null;
+				}
+
+				skipWhitespace();
+				while (xpath.startsWith("[", pos)) {
+					pos++;
+					Predicate predicate = readPredicate();
+					skipWhitespace();
+					if (predicate == null || !xpath.startsWith("]", pos))
+						return null;
+					pos++;
+					skipWhitespace();
+					step.predicates.add(predicate);
+				}
+				steps.add(step);
+			}
+			return steps.isEmpty() || !validTextPredicates(steps) ? null : steps;
+		}
+
+		/**
+		 * Text predicates can only be evaluated when the element ends, so they
+		 * are limited to the last step and must not be followed by a position.
+		 */
+		private static boolean validTextPredicates(List<Step> steps) {
+			for (int i = 0; i < steps.size(); i++) {
+				boolean text = false;
+				for (Predicate predicate : steps.get(i).predicates) {
+					if (predicate.type >= TEXT_CONTAINS) {
+						if (i < steps.size() - 1)
+							return false;
+						text = true;
+					} else if (predicate.type == POSITION && text) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		private Predicate readPredicate() {
+			skipWhitespace();
+			Predicate predicate = new Predicate();
+			if (pos < xpath.length() && Character.isDigit(xpath.charAt(pos))) {
+				int start = pos;
+				while (pos < xpath.length() && Character.isDigit(xpath.charAt(pos)))
+					pos++;
+				try {
+					predicate.type = POSITION;
+					predicate.position = Integer.parseInt(xpath.substring(start, pos));
+				} catch (NumberFormatException e) {
+					return null;
+				}
+				return predicate.position > 0 ? predicate : null;
+			}
+
+			if (xpath.startsWith("@", pos)) {
+				pos++;
+				predicate.attribute = readName();
+				if (predicate.attribute == null)
+					return null;
+				skipWhitespace();
+				if (!xpath.startsWith("=", pos)) {
+					predicate.type = HAS_ATTRIBUTE;
+					return predicate;
+				}
+				pos++;
+				predicate.type = ATTRIBUTE_EQUALS;
+				predicate.value = readLiteral();
+				return predicate.value != null ? predicate : null;
+			}
+
+			if (xpath.startsWith("text()", pos)) {
+				pos += 6;
+				skipWhitespace();
+				if (!xpath.startsWith("=", pos))
+					return null;
+				pos++;
+				predicate.type = TEXT_EQUALS;
+				predicate.value = readLiteral();
+				return predicate.value != null ? predicate : null;
+			}
+
+			if (xpath.startsWith("contains(", pos)) {
+				pos += 9;
+				skipWhitespace();
+				if (xpath.startsWith("@", pos)) {
+					pos++;
+					predicate.type = ATTRIBUTE_CONTAINS;
+					predicate.attribute = readName();
+					if (predicate.attribute == null)
+						return null;
+				} else if (xpath.startsWith("text()", pos)) {
+					pos += 6;
+					predicate.type = TEXT_CONTAINS;
+				} else if (xpath.startsWith(".", pos)) {
+					pos++;
+					predicate.type = STRING_CONTAINS;
+				} else {
+					return null;
+				}
+				skipWhitespace();
+				if (!xpath.startsWith(",", pos))
+					return null;
+				pos++;
+				predicate.value = readLiteral();
+				skipWhitespace();
+				if (predicate.value == null || !xpath.startsWith(")", pos))
+					return null;
+				pos++;
+				return predicate;
+			}
+			return null;
+		}
+
+		private String readName() {
+			int start = pos;
+			while (pos < xpath.length()) {
+				char c = xpath.charAt(pos);
+				if (!(Character.isLetterOrDigit(c) || c == '_' || c == '-' || (c == '.' && pos > start)))
+					break;
+				pos++;
+			}
+			if (pos == start || !Character.isLetter(xpath.charAt(start)))
+				return null;
+			return xpath.substring(start, pos);
+		}
+
+		private String readLiteral() {
+			skipWhitespace();
+			if (pos >= xpath.length())
+				return null;
+			char quote = xpath.charAt(pos);
+			if (quote != '\'' && quote != '"')
+				return null;
+			int end = xpath.indexOf(quote, pos + 1);
+			if (end < 0)
+				return null;
+			String literal = xpath.substring(pos + 1, end);
+			pos = end + 1;
+			return literal;
+		}
+
+		private void skipWhitespace() {
+			while (pos < xpath.length() && Character.isWhitespace(xpath.charAt(pos)))
+				pos++;
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.io.IOException;
+
+import org.apache.http.HttpEntity;
+
+/**
+ * Base of the readers which search an HTML response while it is downloaded.
+ * They stop reading as soon as they found what they are looking for or the
+ * byte budget is exhausted, the caller releases (and thereby aborts) the rest
+ * of the download. The content stream is not closed.
+ */
+public abstract class StreamingHtmlReader {
+
+	private HtmlTokenizer tokenizer;
+
+	/**
+	 * Starts reading a response, see
+	 * {@link HtmlTokenizer#forEntity(HttpEntity, long)}.
+	 */
+	protected HtmlTokenizer open(HttpEntity entity, long maxBytes) throws IOException {
+		tokenizer = HtmlTokenizer.forEntity(entity, maxBytes);
+		return tokenizer;
+	}
+
+	/**
+	 * @return the number of body bytes read from the last response
+	 */
+	public long getBytesRead() {
+		return tokenizer != null ? tokenizer.getBytesRead() : 0;
+	}
+
+	/**
+	 * @return true if reading the last response stopped because the byte
+	 *         budget was exhausted
+	 */
+	public boolean isLimitReached() {
+		return tokenizer != null && tokenizer.isLimitReached();
+	}
+}
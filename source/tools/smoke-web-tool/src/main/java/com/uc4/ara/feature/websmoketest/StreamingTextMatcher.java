@@ -0,0 +1,192 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.http.HttpEntity;
+
+/**
+ * Searches the text of an HTML response while it is downloaded. The body is
+ * decoded incrementally, markup is stripped on the fly and whitespace is
+ * collapsed the same way as {@link WebTestUtils#html2text(String)} does.
+ * Reading stops as soon as the expected text is found.
+ */
+public class StreamingTextMatcher extends StreamingHtmlReader {
+
+	/**
+	 * Characters kept in front of the unmatched text for look-behind and word
+	 * boundaries of regular expressions.
+	 */
+	private static final int REGEX_CONTEXT = 256;
+
+	/**
+	 * Maximum length of a regular expression match spanning text which was
+	 * already searched. Longer partial matches are dropped to keep the buffer
+	 * and the repeated search bounded.
+	 */
+	private static final int MAX_REGEX_SPAN = 64 * 1024;
+
+	/**
+	 * A regular expression is searched again once this many characters were
+	 * appended.
+	 */
+	private static final int REGEX_SEARCH_CHUNK = 4096;
+
+	private static final Set<String> BLOCK_TAGS = new HashSet<String>(Arrays.asList("address", "article", "aside",
+			"blockquote", "body", "br", "caption", "dd", "div", "dl", "dt", "fieldset", "figcaption", "figure",
+			"footer", "form", "h1", "h2", "h3", "h4", "h5", "h6", "header", "hr", "li", "main", "nav", "ol", "p",
+			"pre", "section", "table", "tbody", "td", "tfoot", "th", "thead", "tr", "ul"));
+
+	private final String literal;
+	private final Pattern pattern;
+
+	private StringBuilder buffer;
+	private int regionStart;
+	private int searchedLength;
+	private boolean lastWasSpace;
+	private boolean hasText;
+
+	private StreamingTextMatcher(String literal, Pattern pattern) {
+		this.literal = literal;
+		this.pattern = pattern;
+	}
+
+	/**
+	 * Creates a matcher for a case insensitive literal text.
+	 */
+	public static StreamingTextMatcher forText(String text) {
+		return new StreamingTextMatcher(text.toLowerCase(), null);
+	}
+
+	/**
+	 * Creates a matcher for a regular expression, compiled case insensitive
+	 * and with <code>DOTALL</code> like the non-streaming search.
+	 */
+	public static StreamingTextMatcher forRegex(String regex) {
+		return new StreamingTextMatcher(null, Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.DOTALL));
+	}
+
+	/**
+	 * Reads the entity until the text is found, the end of the body or the
+	 * byte budget is reached. The content stream is not closed.
+	 *
+	 * @param entity
+	 *            the response entity
+	 * @param maxBytes
+	 *            maximum number of body bytes to read, 0 or less for no limit
+	 * @return true if the text was found
+	 * @throws IOException
+	 */
+	public boolean match(HttpEntity entity, long maxBytes) throws IOException {
+		buffer = new StringBuilder();
+		regionStart = 0;
+		searchedLength = 0;
+		lastWasSpace = true;
+		hasText = false;
+
+		HtmlTokenizer tokenizer = open(entity, maxBytes);
+		boolean inHead = false;
+		int token;
+		while ((token = tokenizer.next()) != HtmlTokenizer.EOF) {
+			if (token == HtmlTokenizer.START_TAG) {
+				String tagName = tokenizer.getTagName();
+				if ("head".equals(tagName))
+					inHead = true;
+				else if ("body".equals(tagName))
+					inHead = false;
+				if (BLOCK_TAGS.contains(tagName) && append(" "))
+					return true;
+			} else if (token == HtmlTokenizer.END_TAG) {
+				String tagName = tokenizer.getTagName();
+				if ("head".equals(tagName))
+					inHead = false;
+				if (BLOCK_TAGS.contains(tagName) && append(" "))
+					return true;
+			} else if (!inHead && append(tokenizer.getText())) {
+				return true;
+			}
+		}
+		return pattern != null && findAtEnd();
+	}
+
+	/**
+	 * @return true if the page contained any text outside of the head
+	 */
+	public boolean hasText() {
+		return hasText;
+	}
+
+	/**
+	 * Appends text with collapsed whitespace and searches the new part.
+	 *
+	 * @return true if the text was found
+	 */
+	private boolean append(String text) {
+		int start = buffer.length();
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (Character.isWhitespace(c)) {
+				if (!lastWasSpace)
+					buffer.append(' ');
+				lastWasSpace = true;
+			} else {
+				buffer.append(literal != null ? Character.toLowerCase(c) : c);
+				lastWasSpace = false;
+				hasText = true;
+			}
+		}
+		if (buffer.length() == start)
+			return false;
+		return literal != null ? findLiteral() : findRegex();
+	}
+
+	private boolean findLiteral() {
+		if (buffer.indexOf(literal) >= 0)
+			return true;
+		// keep what could be the beginning of a match
+		int keep = Math.max(0, literal.length() - 1);
+		if (buffer.length() > keep)
+			buffer.delete(0, buffer.length() - keep);
+		return false;
+	}
+
+	private boolean findRegex() {
+		if (buffer.length() - searchedLength < REGEX_SEARCH_CHUNK)
+			return false;
+
+		Matcher m = regionMatcher();
+		boolean found = m.find();
+		// a match which does not depend on the following text is final
+		if (found && !m.requireEnd())
+			return true;
+
+		// keep the text where a match could still start plus some context
+		int keep = found || m.hitEnd() ? MAX_REGEX_SPAN + REGEX_CONTEXT : REGEX_CONTEXT;
+		if (buffer.length() > keep) {
+			int drop = buffer.length() - keep;
+			buffer.delete(0, drop);
+			regionStart = Math.max(Math.min(REGEX_CONTEXT, buffer.length()), regionStart - drop);
+		}
+		searchedLength = buffer.length();
+		return false;
+	}
+
+	private boolean findAtEnd() {
+		// the text is trimmed like the text of the parsed document
+		if (buffer.length() > regionStart && buffer.charAt(buffer.length() - 1) == ' ')
+			buffer.setLength(buffer.length() - 1);
+		return regionMatcher().find();
+	}
+
+	private Matcher regionMatcher() {
+		Matcher m = pattern.matcher(buffer);
+		m.region(regionStart, buffer.length());
+		m.useTransparentBounds(true);
+		m.useAnchoringBounds(false);
+		return m;
+	}
+}
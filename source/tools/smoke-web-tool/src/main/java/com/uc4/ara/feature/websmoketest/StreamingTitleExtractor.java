@@ -0,0 +1,71 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.io.IOException;
+
+import org.apache.http.HttpEntity;
+
+/**
+ * Reads the title of an HTML response without downloading the whole page.
+ * Reading stops at <code>&lt;/title&gt;</code> or at the end of the head (
+ * <code>&lt;/head&gt;</code> or <code>&lt;body&gt;</code>). Character
+ * references are decoded and whitespace is collapsed.
+ */
+public class StreamingTitleExtractor extends StreamingHtmlReader {
+
+	/**
+	 * Reads the entity up to the end of the title. The content stream is not
+	 * closed.
+	 *
+	 * @param entity
+	 *            the response entity
+	 * @param maxBytes
+	 *            maximum number of body bytes to read, 0 or less for no limit
+	 * @return the normalized title or null if the head does not contain a
+	 *         title
+	 * @throws IOException
+	 */
+	public String extract(HttpEntity entity, long maxBytes) throws IOException {
+		HtmlTokenizer tokenizer = open(entity, maxBytes);
+		StringBuilder title = null;
+		int token;
+		while ((token = tokenizer.next()) != HtmlTokenizer.EOF) {
+			String tagName = tokenizer.getTagName();
+			if (title != null) {
+				if (token == HtmlTokenizer.TEXT)
+					title.append(tokenizer.getText());
+				else if (token == HtmlTokenizer.END_TAG && "title".equals(tagName))
+					return normalize(title);
+			} else if (token == HtmlTokenizer.START_TAG && "title".equals(tagName)) {
+				title = new StringBuilder();
+			} else if ((token == HtmlTokenizer.START_TAG && "body".equals(tagName))
+					|| (token == HtmlTokenizer.END_TAG && "head".equals(tagName))) {
+				return null;
+			}
+		}
+		// unterminated title, use what was read
+		return title != null ? normalize(title) : null;
+	}
+
+	/**
+	 * Collapses whitespace (including non-breaking spaces) to single spaces
+	 * and trims the result.
+	 */
+	private static String normalize(CharSequence text) {
+		StringBuilder builder = new StringBuilder(text.length());
+		boolean lastWasSpace = true;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (Character.isWhitespace(c) || c == '\u00a0') {
+				if (!lastWasSpace)
+					builder.append(' ');
+				lastWasSpace = true;
+			} else {
+				builder.append(c);
+				lastWasSpace = false;
+			}
+		}
+		if (builder.length() > 0 && lastWasSpace)
+			builder.setLength(builder.length() - 1);
+		return builder.toString();
+	}
+}
@@ -0,0 +1,142 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.HttpInetSocketAddress;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.SchemeLayeredSocketFactory;
+import org.apache.http.conn.scheme.SchemeSocketFactory;
+import org.apache.http.params.HttpParams;
+
+/**
+ * Socket factory recording the TCP connect and TLS handshake durations into
+ * the {@link RequestTimings} of the current thread. Secure sockets are
+ * created by connecting a plain socket first and layering TLS on top, so both
+ * phases can be measured separately.
+ */
+public class TimingSocketFactory implements SchemeSocketFactory {
+
+	/**
+	 * Resolver recording the DNS lookup duration, hosts found in the
+	 * {@link DnsCache} take no time.
+	 */
+	public static final DnsResolver DNS_RESOLVER = new DnsResolver() {
+		private final DnsResolver delegate = DnsCache.SHARED;
+
+		@Override
+		public InetAddress[] resolve(String host) throws UnknownHostException {
+			long start = System.nanoTime();
+			try {
+				return delegate.resolve(host);
+			} finally {
+				RequestTimings timings = RequestTimings.current();
+				if (timings != null)
+					timings.addDns(System.nanoTime() - start);
+			}
+		}
+	};
+
+	protected final SchemeSocketFactory delegate;
+
+	private TimingSocketFactory(SchemeSocketFactory delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Wraps a socket factory. Layered (TLS) factories stay layered so that
+	 * the routes keep being planned as secure.
+	 */
+	public static SchemeSocketFactory wrap(SchemeSocketFactory delegate) {
+		if (delegate instanceof SchemeLayeredSocketFactory)
+			return new Layered((SchemeLayeredSocketFactory) delegate);
+		return new TimingSocketFactory(delegate);
+	}
+
+	@Override
+	public Socket createSocket(HttpParams params) throws IOException {
+		return delegate.createSocket(params);
+	}
+
+	@Override
+	public Socket connectSocket(Socket socket, InetSocketAddress remoteAddress, InetSocketAddress localAddress,
+			HttpParams params) throws IOException, UnknownHostException, ConnectTimeoutException {
+		long start = System.nanoTime();
+		try {
+			return delegate.connectSocket(socket, remoteAddress, localAddress, params);
+		} finally {
+			RequestTimings timings = RequestTimings.current();
+			if (timings != null)
+				timings.addConnect(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public boolean isSecure(Socket socket) throws IllegalArgumentException {
+		return delegate.isSecure(socket);
+	}
+
+	private static class Layered extends TimingSocketFactory implements SchemeLayeredSocketFactory {
+		private final PlainSocketFactory plainSocketFactory = PlainSocketFactory.getSocketFactory();
+
+		Layered(SchemeLayeredSocketFactory delegate) {
+			super(delegate);
+		}
+
+		@Override
+		public Socket createSocket(HttpParams params) throws IOException {
+			return plainSocketFactory.createSocket(params);
+		}
+
+		@Override
+		public Socket connectSocket(Socket socket, InetSocketAddress remoteAddress, InetSocketAddress localAddress,
+				HttpParams params) throws IOException, UnknownHostException, ConnectTimeoutException {
+			long start = System.nanoTime();
+			Socket connected = plainSocketFactory.connectSocket(socket, remoteAddress, localAddress, params);
+			RequestTimings timings = RequestTimings.current();
+			if (timings != null)
+				timings.addConnect(System.nanoTime() - start);
+
+			String host = remoteAddress instanceof HttpInetSocketAddress ? ((HttpInetSocketAddress) remoteAddress)
+					.getHttpHost().getHostName() : remoteAddress.getHostName();
+			try {
+				return createLayeredSocket(connected, host, remoteAddress.getPort(), params);
+			} catch (IOException e) {
+				connected.close();
+				throw e;
+			}
+		}
+
+		@Override
+		public Socket createLayeredSocket(Socket socket, String target, int port, HttpParams params)
+				throws IOException, UnknownHostException {
+			long start = System.nanoTime();
+			long startMillis = System.currentTimeMillis();
+			boolean resumed = false;
+			try {
+				Socket layered = ((SchemeLayeredSocketFactory) delegate).createLayeredSocket(socket, target, port,
+						params);
+				// waits for the handshake unless the host name verification did already
+				if (layered instanceof SSLSocket) {
+					// best-effort: a resumed session was created by an earlier
+					// handshake, not verified for TLS 1.3 resumption with a PSK
+					SSLSession session = ((SSLSocket) layered).getSession();
+					resumed = session.isValid() && session.getCreationTime() < startMillis;
+				}
+				return layered;
+			} finally {
+				RequestTimings timings = RequestTimings.current();
+				if (timings != null)
+					timings.addTls(System.nanoTime() - start, resumed);
+			}
+		}
+	}
+}
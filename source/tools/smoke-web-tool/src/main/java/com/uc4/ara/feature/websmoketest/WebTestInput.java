@@ -10,6 +10,9 @@ public class WebTestInput {
 	private int proxyPort;
 	private String proxyUsername;
 	private String proxyPassword;
+	private String transport = ApacheHttpTransport.NAME;
+	private String httpVersion;
+	private boolean compression = true;
 
 	public WebTestInput(String url) {
 		this.url = url;
@@ -112,4 +115,38 @@ public class WebTestInput {
 		this.proxyPassword = proxyPassword;
 	}
 
+	/**
+	 * @return the name of the {@link HttpTransport} sending the requests
+	 */
+	public String getTransport() {
+		return transport;
+	}
+
+	public void setTransport(String transport) {
+		this.transport = transport;
+	}
+
+	/**
+	 * @return the preferred HTTP version (1.1 or 2), null for the default of
+	 *         the transport
+	 */
+	public String getHttpVersion() {
+		return httpVersion;
+	}
+
+	public void setHttpVersion(String httpVersion) {
+		this.httpVersion = httpVersion;
+	}
+
+	/**
+	 * @return true if compressed responses are requested and decoded
+	 */
+	public boolean isCompression() {
+		return compression;
+	}
+
+	public void setCompression(boolean compression) {
+		this.compression = compression;
+	}
+
 }
@@ -1,41 +1,89 @@
 package com.uc4.ara.feature.websmoketest;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
-import java.net.URL;
-import java.security.cert.CertificateException;
-import java.security.cert.X509Certificate;
+import java.security.GeneralSecurityException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
-
-import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpHost;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.Credentials;
-import org.apache.http.auth.NTCredentials;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
-import org.apache.http.client.params.HttpClientParams;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.conn.ClientConnectionManager;
-import org.apache.http.conn.params.ConnRoutePNames;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
-import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
 import org.apache.http.params.HttpConnectionParams;
-import org.apache.http.params.HttpParams;
 import org.jsoup.Jsoup;
+import org.jsoup.nodes.DataNode;
+import org.jsoup.nodes.TextNode;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 
 public final class WebTestUtils {
 
-	private static final String KERBEROS_SCHEMA = "Kerberos";
-	private static final String DIGEST_SCHEMA = "digest";
-	private static final String NTLM_SCHEMA = "ntlm";
-	private static final String BASIC_SCHEMA = "basic";
+	private static final Pattern TITLE_PATTERN = Pattern.compile("<head.*?>.*?<title.*?>(.*?)</title>.*?</head>",
+			Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+	/**
+	 * Connections idle for longer than this are closed by the eviction thread.
+	 */
+	private static final long MAX_IDLE_TIME = 60000;
+
+	/**
+	 * Up to this number of unread response bytes are read on release to keep
+	 * the connection reusable, larger responses are aborted.
+	 */
+	private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+	private static final int MAX_CONNECTION_MANAGERS = 32;
+
+	/**
+	 * Connection managers shared by all checks of the process with the same
+	 * TLS, proxy and authentication settings and pool limits. Tunnels through
+	 * a proxy and connections authenticated with connection based schemes
+	 * (NTLM, Kerberos) are never shared between different credentials, and
+	 * the limits of one caller do not change the pools of others. The
+	 * credentials are only part of the key as a digest. The least recently
+	 * used pool is shut down once there are more than
+	 * {@link #MAX_CONNECTION_MANAGERS}.
+	 */
+	private static final Map<String, PoolingClientConnectionManager> connectionManagers = new LinkedHashMap<String, PoolingClientConnectionManager>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, PoolingClientConnectionManager> eldest) {
+			if (size() <= MAX_CONNECTION_MANAGERS)
+				return false;
+			eldest.getValue().shutdown();
+			return true;
+		}
+	};
+	private static Thread idleConnectionEvictor;
+
+	private static final int DEFAULT_MAX_CONNECTIONS_TOTAL = 100;
+	private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 10;
+
+	/**
+	 * Pool limits of the clients created by the current thread, see
+	 * {@link #setConnectionPoolLimits(int, int)}.
+	 */
+	private static final ThreadLocal<int[]> connectionPoolLimits = new ThreadLocal<int[]>();
+
+	private static final HttpTransport APACHE_TRANSPORT = new ApacheHttpTransport();
+	private static HttpTransport jdkTransport;
 
 	private WebTestUtils() {
 	}
@@ -47,9 +95,7 @@ public final class WebTestUtils {
 	 * @return
 	 */
 	public static String extractTitle(String html) {
-		Pattern p = Pattern.compile("<head.*?>.*?<title.*?>(.*?)</title>.*?</head>",
-				Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-		Matcher m = p.matcher(html);
+		Matcher m = TITLE_PATTERN.matcher(html);
 		while (m.find()) {
 			return m.group(1).trim();
 		}
@@ -67,59 +113,248 @@ public final class WebTestUtils {
 	}
 
 	/**
-	 * Builds a new <code>HttpClient</code> object from input information
+	 * Converts a parsed jsoup document into a W3C DOM for XPath evaluation.
+	 * Attributes whose names are not valid XML names are left out.
+	 * 
+	 * @param document
+	 *            the jsoup document
+	 * @return the W3C document
+	 * @throws ParserConfigurationException
+	 */
+	public static Document toW3cDocument(org.jsoup.nodes.Document document) throws ParserConfigurationException {
+		Document w3cDocument = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+		for (org.jsoup.nodes.Node child : document.childNodes())
+			appendW3cNode(w3cDocument, w3cDocument, child);
+		return w3cDocument;
+	}
+
+	private static void appendW3cNode(Document w3cDocument, org.w3c.dom.Node parent, org.jsoup.nodes.Node node) {
+		if (node instanceof org.jsoup.nodes.Element) {
+			org.jsoup.nodes.Element element = (org.jsoup.nodes.Element) node;
+			Element w3cElement;
+			try {
+				w3cElement = w3cDocument.createElement(element.tagName());
+			} catch (DOMException e) {
+				// not a valid element name, keep the content only
+				w3cElement = null;
+			}
+			if (w3cElement != null) {
+				for (org.jsoup.nodes.Attribute attribute : element.attributes()) {
+					try {
+						w3cElement.setAttribute(attribute.getKey(), attribute.getValue());
+					} catch (DOMException e) {
+						// not a valid attribute name
+					}
+				}
+				parent.appendChild(w3cElement);
+			}
+			for (org.jsoup.nodes.Node child : element.childNodes())
+				appendW3cNode(w3cDocument, w3cElement != null ? w3cElement : parent, child);
+		} else if (node instanceof TextNode && parent != w3cDocument) {
+			parent.appendChild(w3cDocument.createTextNode(((TextNode) node).getWholeText()));
+		} else if (node instanceof DataNode && parent != w3cDocument) {
+			parent.appendChild(w3cDocument.createTextNode(((DataNode) node).getWholeData()));
+		}
+	}
+
+	/**
+	 * Builds a new <code>HttpClient</code> object from input information,
+	 * using the transport selected in the input
 	 * 
 	 * @param
 	 * @return
 	 * @throws MalformedURLException
 	 */
 	public static HttpClient getHttpClient(WebTestInput input) throws MalformedURLException {
-		URL url = new URL(input.getUrl());
-		DefaultHttpClient httpclient = new DefaultHttpClient();
-		HttpParams params = httpclient.getParams();
-		HttpConnectionParams.setSoTimeout(params, input.getTimeout());
-		HttpClientParams.setRedirecting(params, true);
-
-		if (input.isIgnoreServerCert())
-			httpclient = wrapClient(httpclient);
-
-		CredentialsProvider credentialsProvider = httpclient.getCredentialsProvider();
-		HttpHost host = new HttpHost(url.getHost(), url.getPort(), url.getProtocol());
-		if (!StringUtils.isEmpty(input.getUsername())) {
-			if (input.getUsername().matches("[^\\\\]+\\\\[^\\\\]+")) {
-				Credentials ntlm = new NTCredentials(
-						input.getUsername().replaceAll("\\\\", "/") + ":" + input.getPassword());
-				credentialsProvider
-						.setCredentials(new AuthScope(host.getHostName(), host.getPort(), AuthScope.ANY_REALM), ntlm);
-			} else {
-				Credentials credentials = new UsernamePasswordCredentials(input.getUsername(), input.getPassword());
-				credentialsProvider.setCredentials(
-						new AuthScope(host.getHostName(), host.getPort(), AuthScope.ANY_REALM, BASIC_SCHEMA),
-						credentials);
-				credentialsProvider.setCredentials(
-						new AuthScope(host.getHostName(), host.getPort(), AuthScope.ANY_REALM, NTLM_SCHEMA),
-						credentials);
-				credentialsProvider.setCredentials(
-						new AuthScope(host.getHostName(), host.getPort(), AuthScope.ANY_REALM, DIGEST_SCHEMA),
-						credentials);
-				credentialsProvider.setCredentials(
-						new AuthScope(host.getHostName(), host.getPort(), AuthScope.ANY_REALM, KERBEROS_SCHEMA),
-						credentials);
+		CheckDeadline deadline = CheckDeadline.current();
+		if (deadline != null)
+			input.setTimeout(deadline.capTimeout(input.getTimeout()));
+		return getTransport(input.getTransport()).getHttpClient(input);
+	}
+
+	/**
+	 * Executes a request. Within a batch the request is tracked until
+	 * {@link #releaseConnection(HttpUriRequest, HttpResponse)}, which the
+	 * caller has to call even if the request failed, so that it is aborted
+	 * when the global timeout expires. Its connect and socket timeouts are
+	 * capped by the time left.
+	 * 
+	 * @param httpclient
+	 *            the client of the check
+	 * @param request
+	 *            the request, released by the caller
+	 * @return the response
+	 * @throws IOException
+	 */
+	public static HttpResponse execute(HttpClient httpclient, HttpUriRequest request) throws IOException {
+		CheckDeadline deadline = CheckDeadline.current();
+		if (deadline == null)
+			return httpclient.execute(request);
+
+		int timeout = deadline.capTimeout(HttpConnectionParams.getSoTimeout(httpclient.getParams()));
+		HttpConnectionParams.setSoTimeout(request.getParams(), timeout);
+		HttpConnectionParams.setConnectionTimeout(request.getParams(),
+				deadline.capTimeout(HttpConnectionParams.getConnectionTimeout(httpclient.getParams())));
+		deadline.register(request);
+		return httpclient.execute(request);
+	}
+
+	/**
+	 * Gets the transport registered under the name, the Apache transport for
+	 * unknown names and if the jdk transport is not supported.
+	 * 
+	 * @param name
+	 *            {@link ApacheHttpTransport#NAME} or {@link JdkSupport#JDK_TRANSPORT}
+	 * @return the transport, shared by all checks of the process
+	 */
+	public static synchronized HttpTransport getTransport(String name) {
+		if (JdkSupport.JDK_TRANSPORT.equals(name)) {
+			if (jdkTransport == null)
+				jdkTransport = JdkSupport.newHttpTransport();
+			if (jdkTransport != null)
+				return jdkTransport;
+		}
+		return APACHE_TRANSPORT;
+	}
+
+	/**
+	 * Sets the limits of the connection pools used by the clients the current
+	 * thread creates until {@link #clearConnectionPoolLimits()}. Clients with
+	 * other limits use other pools, so the limits of a batch do not change the
+	 * ones of checks running concurrently in the same process.
+	 * 
+	 * @param maxTotal
+	 *            maximum number of connections per pool
+	 * @param maxPerRoute
+	 *            maximum number of connections per route (host and proxy)
+	 */
+	public static void setConnectionPoolLimits(int maxTotal, int maxPerRoute) {
+		int total = Math.max(1, maxTotal);
+		connectionPoolLimits.set(new int[] { total, Math.max(1, Math.min(maxPerRoute, total)) });
+	}
+
+	/**
+	 * Restores the default pool limits for the current thread.
+	 */
+	public static void clearConnectionPoolLimits() {
+		connectionPoolLimits.remove();
+	}
+
+	/**
+	 * Gets the connection manager shared by all checks using the same TLS,
+	 * proxy and authentication settings and the same pool limits.
+	 * 
+	 * @param input
+	 *            the settings of the check
+	 * @return the connection manager
+	 */
+	static synchronized ClientConnectionManager getConnectionManager(WebTestInput input) {
+		int[] limits = connectionPoolLimits.get();
+		int maxTotal = limits != null ? limits[0] : DEFAULT_MAX_CONNECTIONS_TOTAL;
+		int maxPerRoute = limits != null ? limits[1] : DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+		boolean ignoreServerCert = input.isIgnoreServerCert();
+		String key = ignoreServerCert + "|" + input.getProxyHost() + ":" + input.getProxyPort() + "|" + maxTotal
+				+ "/" + maxPerRoute + "|" + credentialsDigest(input.getProxyUsername(), input.getProxyPassword(),
+						input.getUsername(), input.getPassword());
+		PoolingClientConnectionManager connectionManager = connectionManagers.get(key);
+		if (connectionManager == null) {
+			SchemeRegistry schemeRegistry = SchemeRegistryFactory.createDefault();
+			// shared SSL context, so that sessions are resumed by later checks
+			SSLSocketFactory sslSocketFactory = createSocketFactory(ignoreServerCert);
+			if (sslSocketFactory != null)
+				schemeRegistry.register(new Scheme("https", 443, sslSocketFactory));
+			// record connect and TLS handshake durations
+			for (String name : schemeRegistry.getSchemeNames()) {
+				Scheme scheme = schemeRegistry.getScheme(name);
+				schemeRegistry.register(new Scheme(name, scheme.getDefaultPort(), TimingSocketFactory.wrap(scheme
+						.getSchemeSocketFactory())));
 			}
+			connectionManager = new PoolingClientConnectionManager(schemeRegistry, TimingSocketFactory.DNS_RESOLVER);
+			connectionManager.setMaxTotal(maxTotal);
+			connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+			connectionManagers.put(key, connectionManager);
+			startIdleConnectionEvictor();
 		}
+		return connectionManager;
+	}
 
-		if (!StringUtils.isEmpty(input.getProxyHost())) {
-			HttpHost proxy = new HttpHost(input.getProxyHost(), input.getProxyPort());
-			httpclient.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY, proxy);
+	/**
+	 * Digests credentials for the keys of shared clients and pools, so that
+	 * the keys do not keep the secrets in memory.
+	 * 
+	 * @param values
+	 *            user names and passwords, null for none
+	 * @return the SHA-256 digest as hex string
+	 */
+	static String credentialsDigest(String... values) {
+		StringBuilder builder = new StringBuilder();
+		for (String value : values) {
+			if (value != null)
+				builder.append(value.length()).append(':').append(value);
+			builder.append('|');
 		}
+		return ConditionalCache.digest(builder.toString());
+	}
 
-		if (!StringUtils.isEmpty(input.getProxyUsername())) {
-			credentialsProvider.setCredentials(
-					new AuthScope(input.getProxyHost(), input.getProxyPort(), AuthScope.ANY_REALM),
-					new UsernamePasswordCredentials(input.getProxyUsername(), input.getProxyPassword()));
+	/**
+	 * Releases the connection of a request back to the shared pool. Small
+	 * unread response bodies are read so that the connection can be reused,
+	 * otherwise the connection is closed.
+	 * 
+	 * @param request
+	 *            the executed request
+	 * @param response
+	 *            the response or null if the request failed
+	 */
+	public static void releaseConnection(HttpUriRequest request, HttpResponse response) {
+		CheckDeadline deadline = CheckDeadline.current();
+		if (deadline != null)
+			deadline.unregister(request);
+		HttpEntity entity = response != null ? response.getEntity() : null;
+		if (entity != null) {
+			try {
+				InputStream in = entity.getContent();
+				byte[] buffer = new byte[8192];
+				int remaining = MAX_DRAIN_BYTES;
+				int read = 0;
+				while (remaining > 0 && (read = in.read(buffer, 0, Math.min(buffer.length, remaining))) != -1)
+					remaining -= read;
+				if (read == -1) {
+					in.close();
+					return;
+				}
+			} catch (IOException e) {
+				// the content has already been consumed or the connection is broken
+			} catch (IllegalStateException e) {
+				// the content has already been consumed
+			}
 		}
+		request.abort();
+	}
 
-		return httpclient;
+	private static void startIdleConnectionEvictor() {
+		if (idleConnectionEvictor != null)
+			return;
+		idleConnectionEvictor = new Thread("idle-connection-evictor") {
+			@Override
+			public void run() {
+				while (true) {
+					try {
+						Thread.sleep(5000);
+					} catch (InterruptedException e) {
+						return;
+					}
+					synchronized (WebTestUtils.class) {
+						for (PoolingClientConnectionManager connectionManager : connectionManagers.values()) {
+							connectionManager.closeExpiredConnections();
+							connectionManager.closeIdleConnections(MAX_IDLE_TIME, TimeUnit.MILLISECONDS);
+						}
+					}
+				}
+			}
+		};
+		idleConnectionEvictor.setDaemon(true);
+		idleConnectionEvictor.start();
 	}
 
 	/**
@@ -175,34 +410,19 @@ public final class WebTestUtils {
 	 */
 
 	/**
-	 * Wraps an <code>HttpClient</code> instance to allow it ignores the server
-	 * certificate
+	 * Creates a socket factory on the shared SSL context of the trust
+	 * configuration, see {@link SslContexts}.
 	 * 
-	 * @param base
-	 *            the original <code>HttpClient</code> object
-	 * @return <code>HttpClient</code> object
+	 * @param ignoreServerCert
+	 *            whether any server certificate and host name is accepted
+	 * @return the socket factory or null if it cannot be created
 	 */
-	public static DefaultHttpClient wrapClient(HttpClient base) {
+	private static SSLSocketFactory createSocketFactory(boolean ignoreServerCert) {
 		try {
-			SSLContext ctx = SSLContext.getInstance("TLS");
-			X509TrustManager tm = new X509TrustManager() {
-				public void checkClientTrusted(X509Certificate[] xcs, String string) throws CertificateException {
-				}
-
-				public void checkServerTrusted(X509Certificate[] xcs, String string) throws CertificateException {
-				}
-
-				public X509Certificate[] getAcceptedIssuers() {
-					return null;
-				}
-			};
-			ctx.init(null, new TrustManager[] { tm }, null);
-			SSLSocketFactory ssf = new SSLSocketFactory(ctx, SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
-			ClientConnectionManager ccm = base.getConnectionManager();
-			SchemeRegistry sr = ccm.getSchemeRegistry();
-			sr.register(new Scheme("https", 443, ssf));
-			return new DefaultHttpClient(ccm, base.getParams());
-		} catch (Exception ex) {
+			return new SSLSocketFactory(SslContexts.getContext(ignoreServerCert),
+					ignoreServerCert ? SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER
+							: SSLSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER);
+		} catch (GeneralSecurityException ex) {
 			return null;
 		}
 	}
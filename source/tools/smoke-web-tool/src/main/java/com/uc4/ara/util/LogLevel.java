@@ -0,0 +1,35 @@
+package com.uc4.ara.util;
+
+/**
+ * The log levels of the <code>loglevel</code> parameter, from the least to the
+ * most detailed. A message is logged if its level is not more detailed than
+ * the configured level.
+ */
+public enum LogLevel {
+
+	ERROR, INFO, DEBUG;
+
+	/**
+	 * Parses the value of the <code>loglevel</code> parameter, ignoring the
+	 * case.
+	 *
+	 * @return the level, {@link #ERROR} if the value is null or unknown
+	 */
+	public static LogLevel parse(String value) {
+		if (value != null) {
+			for (LogLevel level : values()) {
+				if (level.name().equalsIgnoreCase(value.trim()))
+					return level;
+			}
+		}
+		return ERROR;
+	}
+
+	/**
+	 * @return true if messages of <code>level</code> are logged when this is
+	 *         the configured level
+	 */
+	public boolean isEnabled(LogLevel level) {
+		return level.ordinal() <= ordinal();
+	}
+}
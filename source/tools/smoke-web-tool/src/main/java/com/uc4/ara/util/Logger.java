@@ -1,23 +1,26 @@
 package com.uc4.ara.util;
 
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.lang3.time.FastDateFormat;
+
 import com.uc4.ara.feature.FeatureUtil;
 
 public class Logger {
 
 	public final static String DATE_FORMAT_NOW = "yyyy-MM-dd HH:mm:ss";
+
+	// thread safe, unlike SimpleDateFormat, so one instance serves all features
+	private final static FastDateFormat DATE_FORMAT = FastDateFormat.getInstance(DATE_FORMAT_NOW);
 	
 	public static void logHeader(String className, Calendar cal) {
-		SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT_NOW);
-		
 		String timeOfExecution = "";
 		if(cal != null)
-			timeOfExecution = sdf.format(cal.getTime());
+			timeOfExecution = DATE_FORMAT.format(cal.getTime());
 		else
-			timeOfExecution = sdf.format(Calendar.getInstance().getTime());
+			timeOfExecution = DATE_FORMAT.format(Calendar.getInstance().getTime());
 		
 		StringBuilder builder = new StringBuilder();
 		
@@ -31,13 +34,11 @@ public class Logger {
 	public static void logFooter(String packageName, String className, Calendar startTime, Calendar endTime, int errorCode) {
 		StringBuilder builder = new StringBuilder();
 		
-		SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT_NOW);
-		
 		String endOfExecution = ""; 
 		if(endTime != null)
-			endOfExecution = sdf.format(endTime.getTime());
+			endOfExecution = DATE_FORMAT.format(endTime.getTime());
 		else
-			endOfExecution = sdf.format(Calendar.getInstance().getTime());
+			endOfExecution = DATE_FORMAT.format(Calendar.getInstance().getTime());
 		
 		String elapsedTimeString = "0 min, 0 sec";
 		if(startTime != null) {
@@ -76,12 +77,219 @@ public class Logger {
 	}
 	
 	public static void logDebug(String message, String logLevel) {
-		if(logLevel.equals("DEBUG"))
-			FeatureUtil.logMsg(message);
+		logDebug(LogLevel.parse(logLevel), message);
 	}
 	
 	public static void logInfo(String message, String logLevel) {
-		if(logLevel.equals("DEBUG") || logLevel.equals("INFO"))
-			FeatureUtil.logMsg(message);
+		logInfo(LogLevel.parse(logLevel), message);
+	}
+
+	/**
+	 * Builds a message only when it is logged, i.e. for messages which are
+	 * expensive to create.
+	 */
+	public interface MessageSupplier {
+		String get();
+	}
+
+	/*
+	 * The messages below are patterns whose "{}" are replaced by the
+	 * arguments, the message is only built if the level is enabled. The
+	 * overloads for one and two arguments avoid the varargs array and the one
+	 * for a long argument avoids boxing it. Other primitive arguments are
+	 * boxed by the caller, in hot paths such calls are guarded by
+	 * LogLevel.isEnabled.
+	 */
+
+	public static void logInfo(LogLevel configured, String pattern) {
+		if (configured.isEnabled(LogLevel.INFO))
+			FeatureUtil.logMsg(pattern);
+	}
+
+	public static void logInfo(LogLevel configured, String pattern, Object arg) {
+		if (configured.isEnabled(LogLevel.INFO))
+			FeatureUtil.logMsg(format(pattern, 1, arg, null, null));
+	}
+
+	public static void logInfo(LogLevel configured, String pattern, long arg) {
+		if (configured.isEnabled(LogLevel.INFO))
+			FeatureUtil.logMsg(format(pattern, 1, Long.valueOf(arg), null, null));
+	}
+
+	public static void logInfo(LogLevel configured, String pattern, Object arg1, Object arg2) {
+		if (configured.isEnabled(LogLevel.INFO))
+			FeatureUtil.logMsg(format(pattern, 2, arg1, arg2, null));
+	}
+
+	public static void logInfo(LogLevel configured, String pattern, Object... args) {
+		if (configured.isEnabled(LogLevel.INFO))
+			FeatureUtil.logMsg(format(pattern, args.length, null, null, args));
+	}
+
+	public static void logInfo(LogLevel configured, MessageSupplier message) {
+		if (configured.isEnabled(LogLevel.INFO))
+			FeatureUtil.logMsg(message.get());
+	}
+
+	public static void logDebug(LogLevel configured, String pattern) {
+		if (configured.isEnabled(LogLevel.DEBUG))
+			FeatureUtil.logMsg(pattern);
+		else if (DEBUG_BUFFER.get() != null)
+			record(pattern);
+	}
+
+	public static void logDebug(LogLevel configured, String pattern, Object arg) {
+		if (configured.isEnabled(LogLevel.DEBUG))
+			FeatureUtil.logMsg(format(pattern, 1, arg, null, null));
+		else if (DEBUG_BUFFER.get() != null)
+			record(format(pattern, 1, arg, null, null));
+	}
+
+	public static void logDebug(LogLevel configured, String pattern, long arg) {
+		if (configured.isEnabled(LogLevel.DEBUG))
+			FeatureUtil.logMsg(format(pattern, 1, Long.valueOf(arg), null, null));
+		else if (DEBUG_BUFFER.get() != null)
+			record(format(pattern, 1, Long.valueOf(arg), null, null));
+	}
+
+	public static void logDebug(LogLevel configured, String pattern, Object arg1, Object arg2) {
+		if (configured.isEnabled(LogLevel.DEBUG))
+			FeatureUtil.logMsg(format(pattern, 2, arg1, arg2, null));
+		else if (DEBUG_BUFFER.get() != null)
+			record(format(pattern, 2, arg1, arg2, null));
+	}
+
+	public static void logDebug(LogLevel configured, String pattern, Object... args) {
+		if (configured.isEnabled(LogLevel.DEBUG))
+			FeatureUtil.logMsg(format(pattern, args.length, null, null, args));
+		else if (DEBUG_BUFFER.get() != null)
+			record(format(pattern, args.length, null, null, args));
+	}
+
+	public static void logDebug(LogLevel configured, MessageSupplier message) {
+		if (configured.isEnabled(LogLevel.DEBUG))
+			FeatureUtil.logMsg(message.get());
+		else if (DEBUG_BUFFER.get() != null)
+			record(message.get());
+	}
+
+	/**
+	 * Logs the stack trace of <code>t</code> at DEBUG level, it is only
+	 * rendered if it is written.
+	 */
+	public static void logDebug(LogLevel configured, Throwable t) {
+		if (configured.isEnabled(LogLevel.DEBUG))
+			FeatureUtil.logMsg(ExceptionUtils.getStackTrace(t));
+		else
+			record(t);
+	}
+
+	/**
+	 * Keeps the DEBUG messages of the current thread which are not logged at
+	 * the configured level, see {@link #startDebugBuffer(int)}.
+	 */
+	private static final ThreadLocal<DebugBuffer> DEBUG_BUFFER = new ThreadLocal<DebugBuffer>();
+
+	/**
+	 * Starts keeping the last DEBUG messages of the current thread which are
+	 * not logged because of the log level. The messages are formatted when
+	 * they are recorded, so later changes of the arguments do not show and
+	 * the arguments are not kept alive. Only stack traces are rendered when
+	 * they are written by {@link #endDebugBuffer(boolean)}.
+	 *
+	 * @param capacity
+	 *            maximum number of messages kept, older ones are dropped
+	 */
+	public static void startDebugBuffer(int capacity) {
+		DEBUG_BUFFER.set(new DebugBuffer(capacity));
+	}
+
+	/**
+	 * Stops keeping DEBUG messages for the current thread.
+	 *
+	 * @param write
+	 *            if true the kept messages are logged, otherwise they are
+	 *            discarded
+	 */
+	public static void endDebugBuffer(boolean write) {
+		DebugBuffer buffer = DEBUG_BUFFER.get();
+		DEBUG_BUFFER.remove();
+		if (write && buffer != null && buffer.size > 0)
+			FeatureUtil.logMsg(buffer.toString());
+	}
+
+	/**
+	 * @param message
+	 *            the formatted message or a {@link Throwable}
+	 */
+	private static void record(Object message) {
+		DebugBuffer buffer = DEBUG_BUFFER.get();
+		if (buffer != null)
+			buffer.add(message);
+	}
+
+	/**
+	 * Ring buffer of DEBUG messages kept in preallocated arrays.
+	 */
+	private static class DebugBuffer {
+		private final long[] times;
+		private final Object[] messages;
+		private int next = 0;
+		private int size = 0;
+		private long dropped = 0;
+
+		DebugBuffer(int capacity) {
+			times = new long[capacity];
+			messages = new Object[capacity];
+		}
+
+		void add(Object message) {
+			times[next] = System.currentTimeMillis();
+			messages[next] = message;
+			next = (next + 1) % messages.length;
+			if (size < messages.length)
+				size++;
+			else
+				dropped++;
+		}
+
+		@Override
+		public String toString() {
+			FastDateFormat timeFormat = FastDateFormat.getInstance("HH:mm:ss.SSS");
+			StringBuilder builder = new StringBuilder("DEBUG messages before the failure");
+			if (dropped > 0)
+				builder.append(" (").append(dropped).append(" older messages dropped)");
+			builder.append(":\r\n");
+			for (int i = 0; i < size; i++) {
+				int index = (next - size + i + messages.length) % messages.length;
+				builder.append(timeFormat.format(times[index])).append(' ');
+				Object message = messages[index];
+				if (message instanceof Throwable)
+					builder.append(ExceptionUtils.getStackTrace((Throwable) message));
+				else
+					builder.append(message);
+				builder.append("\r\n");
+			}
+			return builder.toString();
+		}
+	}
+
+	/**
+	 * Replaces the first <code>count</code> "{}" of the pattern by
+	 * <code>arg1</code> and <code>arg2</code> or, if <code>args</code> is
+	 * given, by its elements. Surplus placeholders are kept.
+	 */
+	static String format(String pattern, int count, Object arg1, Object arg2, Object[] args) {
+		StringBuilder builder = new StringBuilder(pattern.length() + 32);
+		int start = 0;
+		for (int i = 0; i < count; i++) {
+			int index = pattern.indexOf("{}", start);
+			if (index < 0)
+				break;
+			builder.append(pattern, start, index);
+			builder.append(args != null ? args[i] : i == 0 ? arg1 : arg2);
+			start = index + 2;
+		}
+		return builder.append(pattern, start, pattern.length()).toString();
 	}
 }
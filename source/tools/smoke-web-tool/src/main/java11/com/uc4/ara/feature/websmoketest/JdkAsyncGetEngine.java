@@ -0,0 +1,162 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.net.Authenticator;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.PasswordAuthentication;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.channels.UnresolvedAddressException;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLException;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.uc4.ara.feature.globalcodes.ErrorCodes;
+
+/**
+ * Asynchronous engine based on <code>java.net.http.HttpClient</code>. The
+ * connections are served by the selector thread of the client, the responses
+ * are handled by a small pool, so thousands of requests can be in flight at
+ * the same time. The engine is created by {@link JdkSupport}.
+ * <p>
+ * Compared to the blocking checks only basic authentication is supported.
+ */
+public class JdkAsyncGetEngine implements AsyncGetEngine {
+
+	private final ExecutorService executor;
+	private final Map<String, HttpClient> clients = new ConcurrentHashMap<String, HttpClient>();
+
+	/**
+	 * @param threads
+	 *            number of threads handling the responses
+	 */
+	public JdkAsyncGetEngine(int threads) {
+		final AtomicInteger counter = new AtomicInteger();
+		executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+			Thread thread = new Thread(r, "async-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public void get(WebTestInput input, Callback callback) {
+		HttpRequest.Builder builder;
+		HttpRequest request;
+		try {
+			builder = HttpRequest.newBuilder(URI.create(input.getUrl())).GET();
+			if (input.getTimeout() > 0)
+				builder.timeout(Duration.ofMillis(input.getTimeout()));
+			// the body is discarded, compressed it is just shorter on the wire
+			if (input.isCompression())
+				builder.header("Accept-Encoding", ContentDecoding.ACCEPT_ENCODING);
+			request = builder.build();
+		} catch (IllegalArgumentException e) {
+			callback.completed(ErrorCodes.EXCEPTION, "Invalid URL");
+			return;
+		}
+
+		HttpClient client;
+		try {
+			client = getClient(input);
+		} catch (GeneralSecurityException e) {
+			callback.completed(ErrorCodes.EXCEPTION, e.getMessage());
+			return;
+		}
+
+		client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).thenCompose(response -> {
+			if (!JdkHttpTransport.isBasicChallenge(response, input))
+				return CompletableFuture.completedFuture(response);
+			// the credentials are sent after the challenge like by the blocking checks
+			HttpRequest.Builder retry = builder.copy().uri(response.uri());
+			retry.header("Authorization", JdkHttpTransport.basicAuthorization(input.getUsername(), input.getPassword()));
+			return client.sendAsync(retry.build(), HttpResponse.BodyHandlers.discarding());
+		}).whenComplete((response, error) -> {
+			if (error != null) {
+				failed(input, error, callback);
+				return;
+			}
+			int statusCode = response.statusCode();
+			String message = "Received status code " + statusCode;
+			if (statusCode >= 200 && statusCode < 300)
+				callback.completed(AbstractWebSmokeTest.OK, message);
+			else if (statusCode == 401)
+				callback.completed(AbstractWebSmokeTest.WRONG_CREDENTIALS, message);
+			else if (statusCode == 407)
+				callback.completed(AbstractWebSmokeTest.WRONG_PROXY_CREDENTIALS, message);
+			else
+				callback.completed(statusCode, message);
+		});
+	}
+
+	private static void failed(WebTestInput input, Throwable error, Callback callback) {
+		while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null)
+			error = error.getCause();
+
+		boolean proxy = !StringUtils.isEmpty(input.getProxyHost());
+		if (error instanceof HttpTimeoutException)
+			callback.completed(AbstractWebSmokeTest.TIMEOUT, "Timeout");
+		else if (error instanceof SSLException)
+			callback.completed(AbstractWebSmokeTest.SERVER_CERTIFICATE_FAILED, "SSL error: " + error.getMessage());
+		else if (error instanceof ConnectException && error.getCause() instanceof UnresolvedAddressException)
+			callback.completed(proxy ? AbstractWebSmokeTest.PROXY_SERVER_NOT_AVAILABLE
+					: AbstractWebSmokeTest.SERVER_NOT_AVAILABLE, "Unknown host");
+		else if (error instanceof ConnectException)
+			callback.completed(proxy ? AbstractWebSmokeTest.PROXY_SERVER_NOT_AVAILABLE
+					: AbstractWebSmokeTest.SERVER_NOT_AVAILABLE, "Failed to connect");
+		else
+			callback.completed(ErrorCodes.EXCEPTION, String.valueOf(error));
+	}
+
+	/**
+	 * Gets the client shared by all requests with the same TLS and proxy
+	 * settings. The proxy credentials are part of the key, the authenticator
+	 * of a client keeps the ones it was created with.
+	 */
+	private HttpClient getClient(WebTestInput input) throws GeneralSecurityException {
+		String key = input.isIgnoreServerCert() + "|" + input.getProxyHost() + ":" + input.getProxyPort() + "|"
+				+ input.getProxyUsername() + ":" + input.getProxyPassword();
+		HttpClient client = clients.get(key);
+		if (client != null)
+			return client;
+
+		HttpClient.Builder builder = HttpClient.newBuilder().executor(executor).version(HttpClient.Version.HTTP_1_1)
+				.followRedirects(HttpClient.Redirect.NORMAL);
+		builder.sslContext(SslContexts.getContext(input.isIgnoreServerCert()));
+		if (!StringUtils.isEmpty(input.getProxyHost()))
+			builder.proxy(ProxySelector.of(new InetSocketAddress(input.getProxyHost(), input.getProxyPort())));
+		if (!StringUtils.isEmpty(input.getProxyUsername())) {
+			final PasswordAuthentication credentials = new PasswordAuthentication(input.getProxyUsername(),
+					StringUtils.defaultString(input.getProxyPassword()).toCharArray());
+			builder.authenticator(new Authenticator() {
+				@Override
+				protected PasswordAuthentication getPasswordAuthentication() {
+					return getRequestorType() == RequestorType.PROXY ? credentials : null;
+				}
+			});
+		}
+		client = builder.build();
+		HttpClient existing = clients.putIfAbsent(key, client);
+		return existing != null ? existing : client;
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,554 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.Authenticator;
+import java.net.ConnectException;
+import java.net.CookieManager;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.PasswordAuthentication;
+import java.net.ProxySelector;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpTimeoutException;
+import java.nio.channels.UnresolvedAddressException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.AbortableHttpRequest;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionReleaseTrigger;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Transport based on <code>java.net.http.HttpClient</code>. HTTP/2 is
+ * negotiated with ALPN for https and with an upgrade for http, servers not
+ * supporting it are served with HTTP/1.1. All checks with the same TLS, proxy
+ * and version settings share one client, so their requests to a host are
+ * multiplexed over one HTTP/2 connection.
+ * <p>
+ * The checks get an adapter implementing the Apache <code>HttpClient</code>
+ * interface. The transport is created by {@link JdkSupport} under the name
+ * {@link JdkSupport#JDK_TRANSPORT}. The connections are managed by the JDK
+ * client, the connection manager of the adapter does not hand out any.
+ * Compared to the Apache transport only basic authentication is supported.
+ * <p>
+ * Aborting a request cancels the exchange also while it waits for the
+ * response headers. The timeout of the input limits the wait for the headers
+ * and every read of the body.
+ */
+public class JdkHttpTransport implements HttpTransport {
+
+	/**
+	 * Headers set by the JDK client itself, it rejects them in requests.
+	 */
+	private static final Set<String> RESTRICTED_HEADERS = new HashSet<String>(Arrays.asList("connection",
+			"content-length", "date", "expect", "from", "host", "upgrade", "via", "warning", "keep-alive",
+			"transfer-encoding"));
+
+	/**
+	 * Maximum number of clients kept, the least recently used one is dropped.
+	 */
+	private static final int MAX_CLIENTS = 32;
+
+	/**
+	 * Closes the body streams whose read exceeds the timeout.
+	 */
+	private static final ScheduledExecutorService READ_TIMEOUTS = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "jdk-transport-read-timeout");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	private static final ClientConnectionManager NO_CONNECTION_MANAGER = new NoConnectionManager();
+
+	private final Map<String, java.net.http.HttpClient> clients = new LinkedHashMap<String, java.net.http.HttpClient>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, java.net.http.HttpClient> eldest) {
+			return size() > MAX_CLIENTS;
+		}
+	};
+
+	public JdkHttpTransport() {
+	}
+
+	@Override
+	public HttpClient getHttpClient(WebTestInput input) throws MalformedURLException {
+		new URL(input.getUrl());
+		try {
+			return new JdkClientAdapter(getClient(input), input);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("Cannot initialize TLS", e);
+		}
+	}
+
+	/**
+	 * Gets the client shared by all checks with the same TLS, proxy and
+	 * version settings. The authenticator of a client keeps the proxy
+	 * credentials it was created with, so they are part of the key as a
+	 * digest.
+	 */
+	private synchronized java.net.http.HttpClient getClient(WebTestInput input) throws GeneralSecurityException {
+		String key = input.isIgnoreServerCert() + "|" + input.getProxyHost() + ":" + input.getProxyPort() + "|"
+				+ input.getHttpVersion() + "|" + WebTestUtils.credentialsDigest(input.getProxyUsername(),
+						input.getProxyPassword());
+		java.net.http.HttpClient client = clients.get(key);
+		if (client != null)
+			return client;
+
+		java.net.http.HttpClient.Builder builder = java.net.http.HttpClient.newBuilder()
+				.version("1.1".equals(input.getHttpVersion()) ? java.net.http.HttpClient.Version.HTTP_1_1
+						: java.net.http.HttpClient.Version.HTTP_2)
+				.followRedirects(java.net.http.HttpClient.Redirect.NORMAL);
+		builder.sslContext(SslContexts.getContext(input.isIgnoreServerCert()));
+		if (!StringUtils.isEmpty(input.getProxyHost()))
+			builder.proxy(ProxySelector.of(new InetSocketAddress(input.getProxyHost(), input.getProxyPort())));
+		if (!StringUtils.isEmpty(input.getProxyUsername())) {
+			final PasswordAuthentication credentials = new PasswordAuthentication(input.getProxyUsername(),
+					StringUtils.defaultString(input.getProxyPassword()).toCharArray());
+			builder.authenticator(new Authenticator() {
+				@Override
+				protected PasswordAuthentication getPasswordAuthentication() {
+					return getRequestorType() == RequestorType.PROXY ? credentials : null;
+				}
+			});
+		}
+		client = builder.build();
+		clients.put(key, client);
+		return client;
+	}
+
+	static String basicAuthorization(String username, String password) {
+		String credentials = username + ":" + StringUtils.defaultString(password);
+		return "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Checks whether a response challenges the check for basic credentials.
+	 * Like the Apache transport the credentials are only sent after such a
+	 * challenge and only to the host and port of the check URL, not to the
+	 * host of a redirect.
+	 *
+	 * @return true if the request has to be repeated with the credentials of
+	 *         the input
+	 */
+	static boolean isBasicChallenge(java.net.http.HttpResponse<?> response, WebTestInput input) {
+		if (response.statusCode() != 401 || StringUtils.isEmpty(input.getUsername()))
+			return false;
+		try {
+			URI target = new URI(input.getUrl());
+			URI challenger = response.uri();
+			if (!StringUtils.equalsIgnoreCase(target.getHost(), challenger.getHost())
+					|| port(target) != port(challenger))
+				return false;
+		} catch (URISyntaxException e) {
+			return false;
+		}
+		for (String challenge : response.headers().allValues("WWW-Authenticate")) {
+			if (challenge.trim().regionMatches(true, 0, "Basic", 0, 5))
+				return true;
+		}
+		return false;
+	}
+
+	private static int port(URI uri) {
+		if (uri.getPort() != -1)
+			return uri.getPort();
+		return "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+	}
+
+	/**
+	 * Sends the requests of one check with the shared JDK client. Like the
+	 * Apache client the adapter keeps the cookies of the check.
+	 */
+	private static class JdkClientAdapter implements HttpClient {
+
+		private final java.net.http.HttpClient client;
+		private final WebTestInput input;
+		private final CookieManager cookies = new CookieManager();
+		private final HttpParams params = new BasicHttpParams();
+
+		JdkClientAdapter(java.net.http.HttpClient client, WebTestInput input) {
+			this.client = client;
+			this.input = input;
+		}
+
+		@Override
+		public HttpParams getParams() {
+			return params;
+		}
+
+		/**
+		 * @return a connection manager without connections, the connections
+		 *         are managed by the JDK client
+		 */
+		@Override
+		public ClientConnectionManager getConnectionManager() {
+			return NO_CONNECTION_MANAGER;
+		}
+
+		@Override
+		public HttpResponse execute(HttpUriRequest request) throws IOException {
+			return execute(request, (HttpContext) null);
+		}
+
+		@Override
+		public HttpResponse execute(HttpUriRequest request, HttpContext context) throws IOException {
+			return send(request.getURI(), request);
+		}
+
+		@Override
+		public HttpResponse execute(HttpHost target, HttpRequest request) throws IOException {
+			return execute(target, request, (HttpContext) null);
+		}
+
+		@Override
+		public HttpResponse execute(HttpHost target, HttpRequest request, HttpContext context) throws IOException {
+			try {
+				URI uri = new URI(request.getRequestLine().getUri());
+				if (!uri.isAbsolute() && target != null)
+					uri = new URI(target.toURI()).resolve(uri);
+				return send(uri, request);
+			} catch (URISyntaxException e) {
+				throw new ClientProtocolException(e);
+			}
+		}
+
+		@Override
+		public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> handler) throws IOException {
+			return execute(request, handler, null);
+		}
+
+		@Override
+		public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> handler, HttpContext context)
+				throws IOException {
+			return handle(execute(request, context), handler);
+		}
+
+		@Override
+		public <T> T execute(HttpHost target, HttpRequest request, ResponseHandler<? extends T> handler)
+				throws IOException {
+			return execute(target, request, handler, null);
+		}
+
+		@Override
+		public <T> T execute(HttpHost target, HttpRequest request, ResponseHandler<? extends T> handler,
+				HttpContext context) throws IOException {
+			return handle(execute(target, request, context), handler);
+		}
+
+		private static <T> T handle(HttpResponse response, ResponseHandler<? extends T> handler) throws IOException {
+			try {
+				return handler.handleResponse(response);
+			} finally {
+				EntityUtils.consume(response.getEntity());
+			}
+		}
+
+		private HttpResponse send(URI uri, HttpRequest request) throws IOException {
+			// connections are opened by the selector thread of the client
+			RequestTimings timings = RequestTimings.current();
+			if (timings != null)
+				timings.connectionNotMeasured();
+
+			java.net.http.HttpRequest.Builder builder = java.net.http.HttpRequest.newBuilder(uri);
+			if (input.getTimeout() > 0)
+				builder.timeout(Duration.ofMillis(input.getTimeout()));
+			for (Header header : request.getAllHeaders()) {
+				if (!RESTRICTED_HEADERS.contains(header.getName().toLowerCase(Locale.ROOT)))
+					builder.header(header.getName(), header.getValue());
+			}
+			if (input.isCompression() && !request.containsHeader("Accept-Encoding"))
+				builder.header("Accept-Encoding", ContentDecoding.ACCEPT_ENCODING);
+			for (Map.Entry<String, List<String>> cookie : cookies.get(uri, new LinkedHashMap<String, List<String>>())
+					.entrySet()) {
+				for (String value : cookie.getValue())
+					builder.header(cookie.getKey(), value);
+			}
+
+			BodyPublisher body = BodyPublishers.noBody();
+			if (request instanceof HttpEntityEnclosingRequest) {
+				HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+				if (entity != null) {
+					body = BodyPublishers.ofByteArray(EntityUtils.toByteArray(entity));
+					if (entity.getContentType() != null && !request.containsHeader("Content-Type"))
+						builder.header("Content-Type", entity.getContentType().getValue());
+				}
+			}
+			builder.method(request.getRequestLine().getMethod(), body);
+
+			java.net.http.HttpResponse<InputStream> response = send(uri, builder, request);
+			if (!request.containsHeader("Authorization") && isBasicChallenge(response, input)) {
+				cookies.put(response.uri(), response.headers().map());
+				response.body().close();
+				builder = builder.copy().uri(response.uri());
+				builder.header("Authorization", basicAuthorization(input.getUsername(), input.getPassword()));
+				response = send(uri, builder, request);
+			}
+			cookies.put(response.uri(), response.headers().map());
+			HttpResponse result = toHttpResponse(request, response, input.getTimeout());
+			if (input.isCompression())
+				ContentDecoding.decode(result);
+			return result;
+		}
+
+		/**
+		 * Sends the request asynchronously, so that aborting
+		 * <code>request</code> cancels the exchange while it waits for the
+		 * response.
+		 */
+		private java.net.http.HttpResponse<InputStream> send(URI uri, java.net.http.HttpRequest.Builder builder,
+				HttpRequest request) throws IOException {
+			final CompletableFuture<java.net.http.HttpResponse<InputStream>> future;
+			try {
+				future = client.sendAsync(builder.build(), BodyHandlers.ofInputStream());
+			} catch (IllegalArgumentException e) {
+				throw new ClientProtocolException(e.getMessage(), e);
+			}
+			if (request instanceof AbortableHttpRequest) {
+				try {
+					((AbortableHttpRequest) request).setReleaseTrigger(new ConnectionReleaseTrigger() {
+						@Override
+						public void releaseConnection() {
+							future.cancel(true);
+						}
+
+						@Override
+						public void abortConnection() {
+							future.cancel(true);
+						}
+					});
+				} catch (IOException e) {
+					// already aborted
+					future.cancel(true);
+					throw e;
+				}
+			}
+
+			try {
+				return future.get();
+			} catch (CancellationException e) {
+				throw new InterruptedIOException("Request aborted");
+			} catch (InterruptedException e) {
+				future.cancel(true);
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Request interrupted");
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof HttpTimeoutException) {
+					SocketTimeoutException timeout = new SocketTimeoutException(cause.getMessage());
+					timeout.initCause(cause);
+					throw timeout;
+				}
+				if (cause instanceof ConnectException && cause.getCause() instanceof UnresolvedAddressException)
+					throw new UnknownHostException(uri.getHost());
+				if (cause instanceof IOException)
+					throw (IOException) cause;
+				if (cause instanceof IllegalArgumentException)
+					throw new ClientProtocolException(cause.getMessage(), cause);
+				throw new IOException(cause);
+			}
+		}
+
+		/**
+		 * Converts the response, the body is streamed from the connection.
+		 * Aborting the request closes the stream, which resets an HTTP/2
+		 * stream or closes an HTTP/1.1 connection.
+		 */
+		private static HttpResponse toHttpResponse(HttpRequest request,
+				java.net.http.HttpResponse<InputStream> response, int timeout) {
+			ProtocolVersion version = response.version() == java.net.http.HttpClient.Version.HTTP_2 ? new ProtocolVersion(
+					"HTTP", 2, 0) : HttpVersion.HTTP_1_1;
+			int statusCode = response.statusCode();
+			BasicHttpResponse result = new BasicHttpResponse(version, statusCode,
+					EnglishReasonPhraseCatalog.INSTANCE.getReason(statusCode, Locale.ENGLISH));
+			for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+				// HTTP/2 pseudo headers
+				if (header.getKey().startsWith(":"))
+					continue;
+				for (String value : header.getValue())
+					result.addHeader(header.getKey(), value);
+			}
+
+			final InputStream content = timeout > 0 ? new ReadTimeoutInputStream(response.body(), timeout)
+					: response.body();
+			InputStreamEntity entity = new InputStreamEntity(content, response.headers()
+					.firstValueAsLong("Content-Length").orElse(-1));
+			entity.setContentType(response.headers().firstValue("Content-Type").orElse(null));
+			entity.setContentEncoding(response.headers().firstValue("Content-Encoding").orElse(null));
+			result.setEntity(entity);
+
+			if (request instanceof AbortableHttpRequest) {
+				try {
+					((AbortableHttpRequest) request).setReleaseTrigger(new ConnectionReleaseTrigger() {
+						@Override
+						public void releaseConnection() throws IOException {
+							content.close();
+						}
+
+						@Override
+						public void abortConnection() throws IOException {
+							content.close();
+						}
+					});
+				} catch (IOException e) {
+					// already aborted
+					try {
+						content.close();
+					} catch (IOException ignored) {
+					}
+				}
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Closes the body stream if a read does not return within the timeout, a
+	 * blocked read then fails. The JDK client has no read timeout of its own.
+	 */
+	private static class ReadTimeoutInputStream extends FilterInputStream {
+		private final int timeout;
+		private volatile boolean timedOut = false;
+
+		ReadTimeoutInputStream(InputStream in, int timeout) {
+			super(in);
+			this.timeout = timeout;
+		}
+
+		@Override
+		public int read() throws IOException {
+			ScheduledFuture<?> watchdog = startWatchdog();
+			try {
+				return super.read();
+			} catch (IOException e) {
+				throw timedOut ? timeoutException() : e;
+			} finally {
+				watchdog.cancel(false);
+			}
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			ScheduledFuture<?> watchdog = startWatchdog();
+			try {
+				return super.read(b, off, len);
+			} catch (IOException e) {
+				throw timedOut ? timeoutException() : e;
+			} finally {
+				watchdog.cancel(false);
+			}
+		}
+
+		private ScheduledFuture<?> startWatchdog() throws IOException {
+			if (timedOut)
+				throw timeoutException();
+			return READ_TIMEOUTS.schedule(new Runnable() {
+				@Override
+				public void run() {
+					timedOut = true;
+					try {
+						in.close();
+					} catch (IOException e) {
+						// the reader fails anyway
+					}
+				}
+			}, timeout, TimeUnit.MILLISECONDS);
+		}
+
+		private SocketTimeoutException timeoutException() {
+			return new SocketTimeoutException("Read timed out");
+		}
+	}
+
+	/**
+	 * Connection manager of the adapter. The JDK client manages its
+	 * connections itself, so there are none to hand out, release or close.
+	 */
+	private static class NoConnectionManager implements ClientConnectionManager {
+		private final SchemeRegistry schemeRegistry = SchemeRegistryFactory.createDefault();
+
+		@Override
+		public SchemeRegistry getSchemeRegistry() {
+			return schemeRegistry;
+		}
+
+		@Override
+		public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+			throw new IllegalStateException("The connections of the jdk transport are managed by the JDK client");
+		}
+
+		@Override
+		public void releaseConnection(ManagedClientConnection conn, long validDuration, TimeUnit timeUnit) {
+		}
+
+		@Override
+		public void closeIdleConnections(long idletime, TimeUnit tunit) {
+		}
+
+		@Override
+		public void closeExpiredConnections() {
+		}
+
+		@Override
+		public void shutdown() {
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executors running every task in its own virtual thread. A check blocked on
+ * the network only occupies its virtual thread, the carrier thread is released
+ * for other checks. The executors are created through {@link JdkSupport}.
+ */
+public class VirtualThreads {
+
+	private VirtualThreads() {
+	}
+
+	/**
+	 * @param name
+	 *            prefix of the thread names
+	 * @return an executor starting a new virtual thread for every task
+	 */
+	public static ExecutorService newExecutor(String name) {
+		return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name, 1).factory());
+	}
+}
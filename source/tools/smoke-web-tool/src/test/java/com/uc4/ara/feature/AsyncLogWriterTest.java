@@ -0,0 +1,150 @@
+package com.uc4.ara.feature;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Flushable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class AsyncLogWriterTest {
+
+	private AsyncLogWriter writer;
+
+	@After
+	public void tearDown() {
+		if (writer != null)
+			writer.close();
+	}
+
+	@Test
+	public void testFlushWritesInOrder() {
+		writer = new AsyncLogWriter(16, "test-log-writer");
+		Output out = new Output(null);
+		for (int i = 0; i < 1000; i++)
+			writer.write(out, i + "\n");
+		writer.flush();
+		assertEquals(lines(0, 1000), out.toString());
+		assertTrue(out.flushes > 0);
+	}
+
+	@Test
+	public void testInterruptedThreadDoesNotLoseMessages() {
+		writer = new AsyncLogWriter(16, "test-log-writer");
+		Output out = new Output(null);
+		Thread.currentThread().interrupt();
+		writer.write(out, "cancelled check\n");
+		assertTrue("interrupt kept", Thread.interrupted());
+		writer.flush();
+		assertEquals("cancelled check\n", out.toString());
+	}
+
+	@Test
+	public void testCloseDrainsQueue() throws Exception {
+		final CountDownLatch blocked = new CountDownLatch(1);
+		writer = new AsyncLogWriter(4, "test-log-writer");
+		final Output out = new Output(blocked);
+
+		// the writer thread hangs in the output, the producer waits for the full queue
+		Thread producer = new Thread() {
+			@Override
+			public void run() {
+				for (int i = 0; i < 50; i++)
+					writer.write(out, i + "\n");
+			}
+		};
+		producer.start();
+		assertTrue(out.entered.await(5, TimeUnit.SECONDS));
+		Thread.sleep(50);
+		assertTrue(out.toString().isEmpty());
+
+		// like the shutdown hook: the output continues while close waits for the thread
+		new Thread() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					// release anyway
+				}
+				blocked.countDown();
+			}
+		}.start();
+		writer.close();
+		producer.join(5000);
+		assertEquals(lines(0, 50), out.toString());
+
+		// after closing the messages are written directly
+		writer.write(out, "late\n");
+		writer.flush();
+		assertEquals(lines(0, 50) + "late\n", out.toString());
+	}
+
+	private static String lines(int from, int to) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = from; i < to; i++)
+			builder.append(i).append('\n');
+		return builder.toString();
+	}
+
+	/**
+	 * Output which can hold the writer thread on its first message.
+	 */
+	private static class Output implements Appendable, Flushable {
+		private final StringBuilder text = new StringBuilder();
+		private final CountDownLatch blocked;
+		private final CountDownLatch entered = new CountDownLatch(1);
+		private volatile int flushes;
+
+		Output(CountDownLatch blocked) {
+			this.blocked = blocked;
+		}
+
+		@Override
+		public Appendable append(CharSequence csq) {
+			entered.countDown();
+			if (blocked != null) {
+				boolean interrupted = false;
+				while (true) {
+					try {
+						blocked.await();
+						break;
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+				if (interrupted)
+					Thread.currentThread().interrupt();
+			}
+			synchronized (text) {
+				text.append(csq);
+			}
+			return this;
+		}
+
+		@Override
+		public Appendable append(CharSequence csq, int start, int end) {
+			return append(csq.subSequence(start, end));
+		}
+
+		@Override
+		public Appendable append(char c) {
+			return append(String.valueOf(c));
+		}
+
+		@Override
+		public void flush() {
+			flushes++;
+		}
+
+		@Override
+		public String toString() {
+			synchronized (text) {
+				return text.toString();
+			}
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package com.uc4.ara.feature;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compiles small features with the processor and checks the generated index.
+ */
+public class FeatureIndexProcessorTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private File directory;
+	private File sources;
+	private File classes;
+	private List<String> errors;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("feature-index").toFile();
+		sources = new File(directory, "src");
+		classes = new File(directory, "classes");
+		classes.mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		delete(directory);
+	}
+
+	@Test
+	public void testIndexLinesAreSorted() throws Exception {
+		File beta = source("testgroup", "Beta", "extends AbstractPublicFeature", "Second\tfeature");
+		File alpha = source("testgroup", "Alpha", "extends AbstractInternalFeature", "First");
+		assertCompiles(beta, alpha);
+
+		assertEquals(Arrays.asList(
+				"testgroup\tcom.uc4.ara.feature.testgroup.Alpha\tinternal\tFirst",
+				"testgroup\tcom.uc4.ara.feature.testgroup.Beta\tpublic\tSecond\\tfeature"), index());
+	}
+
+	@Test
+	public void testIncrementalBuildMergesPreviousIndex() throws Exception {
+		File alpha = source("testgroup", "Alpha", "extends AbstractPublicFeature", "First");
+		File beta = source("testgroup", "Beta", "extends AbstractPublicFeature", "Second");
+		File gamma = source("othergroup", "Gamma", "extends AbstractPublicFeature", "Third");
+		assertCompiles(alpha, beta, gamma);
+		assertEquals(3, index().size());
+
+		// only Beta is compiled again, Gamma was deleted
+		new File(classes, "com/uc4/ara/feature/othergroup/Gamma.class").delete();
+		beta = source("testgroup", "Beta", "extends AbstractPublicFeature", "Changed");
+		assertCompiles(beta);
+
+		assertEquals(Arrays.asList(
+				"testgroup\tcom.uc4.ara.feature.testgroup.Alpha\tpublic\tFirst",
+				"testgroup\tcom.uc4.ara.feature.testgroup.Beta\tpublic\tChanged"), index());
+	}
+
+	@Test
+	public void testInvalidPreviousIndexFailsTheBuild() throws Exception {
+		File index = new File(classes, "com/uc4/ara/feature/" + FeatureIndex.RESOURCE_NAME);
+		index.getParentFile().mkdirs();
+		Files.write(index.toPath(), "no index\n".getBytes(UTF8));
+
+		assertFalse(compile(source("testgroup", "Alpha", "extends AbstractPublicFeature", "First")));
+		assertTrue(errors.toString(), errors.get(0).contains("Cannot read the feature index"));
+	}
+
+	@Test
+	public void testInvalidFeatures() throws Exception {
+		assertFalse(compile(source("testgroup", "Alpha", "", "No feature")));
+		assertTrue(errors.toString(), errors.get(0).contains("has to implement IFeature"));
+
+		File nested = new File(sources, "com/uc4/ara/feature/testgroup/sub/Beta.java");
+		write(nested, "package com.uc4.ara.feature.testgroup.sub;\n"
+				+ "import com.uc4.ara.feature.*;\n"
+				+ "@Feature(description = \"Nested\")\n"
+				+ "public class Beta extends AbstractPublicFeature {}\n");
+		assertFalse(compile(nested));
+		assertTrue(errors.toString(), errors.get(0).contains("sub package of com.uc4.ara.feature"));
+	}
+
+	private File source(String group, String name, String superclass, String description) throws IOException {
+		File file = new File(sources, "com/uc4/ara/feature/" + group + "/" + name + ".java");
+		write(file, "package com.uc4.ara.feature." + group + ";\n"
+				+ "import com.uc4.ara.feature.*;\n"
+				+ "@Feature(description = \"" + description.replace("\t", "\\t") + "\")\n"
+				+ "public class " + name + " " + superclass + " {}\n");
+		return file;
+	}
+
+	private void assertCompiles(File... files) throws IOException {
+		boolean success = compile(files);
+		assertTrue(errors.toString(), success);
+	}
+
+	private boolean compile(File... files) throws IOException {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, UTF8);
+		try {
+			String classPath = classes.getPath() + File.pathSeparator + System.getProperty("java.class.path");
+			List<String> options = Arrays.asList("-d", classes.getPath(), "-classpath", classPath,
+					"-processor", FeatureIndexProcessor.class.getName());
+			boolean success = compiler.getTask(null, fileManager, diagnostics, options, null,
+					fileManager.getJavaFileObjects(files)).call();
+			errors = new ArrayList<String>();
+			for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+				if (diagnostic.getKind() == Diagnostic.Kind.ERROR)
+					errors.add(diagnostic.getMessage(null));
+			}
+			return success;
+		} finally {
+			fileManager.close();
+		}
+	}
+
+	private List<String> index() throws IOException {
+		return Files.readAllLines(new File(classes, "com/uc4/ara/feature/" + FeatureIndex.RESOURCE_NAME).toPath(), UTF8);
+	}
+
+	private static void write(File file, String text) throws IOException {
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), text.getBytes(UTF8));
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files)
+				delete(child);
+		}
+		file.delete();
+	}
+}
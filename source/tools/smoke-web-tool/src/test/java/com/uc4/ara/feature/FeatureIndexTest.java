@@ -0,0 +1,67 @@
+package com.uc4.ara.feature;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.uc4.ara.feature.daemon.Server;
+import com.uc4.ara.feature.websmoketest.GetSite;
+
+/**
+ * Dispatches calls through the index generated for the features of the tool.
+ */
+public class FeatureIndexTest {
+
+	@Test
+	public void testFind() {
+		FeatureIndex.Entry entry = FeatureIndex.find("websmoketest", "GetSite");
+		assertNotNull(entry);
+		assertEquals(GetSite.class.getName(), entry.getClassName());
+		assertEquals("websmoketest", entry.getGroup());
+		assertTrue(entry.isListed());
+		assertEquals(GetSite.class.getAnnotation(Feature.class).description(), entry.getDescription());
+
+		// the group is case insensitive, the feature name is not
+		assertNotNull(FeatureIndex.find("WebSmokeTest", "GetSite"));
+		assertNull(FeatureIndex.find("websmoketest", "getsite"));
+		assertNull(FeatureIndex.find("websmoketest", "AbstractWebSmokeTest"));
+		assertNull(FeatureIndex.find("nogroup", "GetSite"));
+	}
+
+	@Test
+	public void testGroups() {
+		assertTrue(FeatureIndex.getGroups().contains("websmoketest"));
+		assertTrue(FeatureIndex.getGroups().contains("daemon"));
+		assertTrue(FeatureIndex.hasGroup("DAEMON"));
+		assertFalse(FeatureIndex.hasGroup("nogroup"));
+
+		List<String> names = new ArrayList<String>();
+		for (FeatureIndex.Entry entry : FeatureIndex.getFeatures("daemon"))
+			names.add(entry.getName());
+		assertEquals(3, names.size());
+		assertTrue(names.containsAll(Arrays.asList("Client", "Server", "Stop")));
+	}
+
+	@Test
+	public void testCreateFeature() throws Exception {
+		assertTrue(AraFileCmd.createFeature("websmoketest", "GetSite") instanceof GetSite);
+		assertTrue(AraFileCmd.createFeature("daemon", "Server") instanceof Server);
+		assertTrue(AraFileCmd.createFeature("daemon", "Server") != AraFileCmd.createFeature("daemon", "Server"));
+
+		try {
+			AraFileCmd.createFeature("websmoketest", "NoFeature");
+			fail();
+		} catch (ClassNotFoundException e) {
+			assertEquals("websmoketest NoFeature", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.uc4.ara.feature;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Buffers the output of checks so that checks running in parallel write
+ * their output as blocks.
+ */
+public class FeatureUtilTest {
+
+	private static final String NL = System.getProperty("line.separator");
+
+	private ByteArrayOutputStream output;
+
+	@Before
+	public void setUp() throws UnsupportedEncodingException {
+		output = new ByteArrayOutputStream();
+		FeatureUtil.setThreadOutput(new PrintStream(output, true, "UTF-8"));
+	}
+
+	@After
+	public void tearDown() {
+		FeatureUtil.endLogBuffer(false);
+		FeatureUtil.setThreadOutput(null);
+	}
+
+	@Test
+	public void testBufferIsWrittenAtTheEnd() throws Exception {
+		FeatureUtil.logMsg("before");
+		FeatureUtil.startLogBuffer();
+		FeatureUtil.logMsg("first");
+		FeatureUtil.logMsg(new IllegalStateException("failed"));
+		FeatureUtil.logMsg("second");
+		assertEquals("before" + NL, text());
+
+		FeatureUtil.endLogBuffer(true);
+		String text = text();
+		assertTrue(text, text.startsWith("before" + NL + "first" + NL));
+		// the stack trace stays within the block of the check
+		assertTrue(text, text.contains("java.lang.IllegalStateException: failed"));
+		assertTrue(text, text.endsWith("second" + NL));
+
+		FeatureUtil.logMsg("after");
+		assertTrue(text().endsWith("second" + NL + "after" + NL));
+	}
+
+	@Test
+	public void testDiscardedBuffer() throws Exception {
+		FeatureUtil.startLogBuffer();
+		FeatureUtil.logMsg("passed check");
+		FeatureUtil.endLogBuffer(false);
+		assertEquals("", text());
+
+		// ending without a buffer does nothing
+		FeatureUtil.endLogBuffer(true);
+		FeatureUtil.logMsg("next");
+		assertEquals("next" + NL, text());
+	}
+
+	@Test
+	public void testNestedBuffers() throws Exception {
+		FeatureUtil.startLogBuffer();
+		FeatureUtil.logMsg("batch");
+		FeatureUtil.startLogBuffer();
+		FeatureUtil.logMsg("failed check");
+		FeatureUtil.endLogBuffer(true);
+		FeatureUtil.startLogBuffer();
+		FeatureUtil.logMsg("passed check");
+		FeatureUtil.endLogBuffer(false);
+		assertEquals("", text());
+
+		FeatureUtil.endLogBuffer(true);
+		assertEquals("batch" + NL + "failed check" + NL, text());
+	}
+
+	@Test
+	public void testParallelBuffersDoNotInterleave() throws Exception {
+		final PrintStream out = FeatureUtil.getThreadOutput();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			final String name = "check" + t;
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					FeatureUtil.runWithOutput(out, new Runnable() {
+						@Override
+						public void run() {
+							FeatureUtil.startLogBuffer();
+							for (int i = 0; i < 100; i++) {
+								FeatureUtil.logMsg(name + " " + i);
+								Thread.yield();
+							}
+							FeatureUtil.endLogBuffer(true);
+						}
+					});
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads)
+			thread.join(5000);
+
+		String[] lines = text().split(NL);
+		assertEquals(400, lines.length);
+		for (int block = 0; block < 4; block++) {
+			String name = lines[block * 100].split(" ")[0];
+			for (int i = 0; i < 100; i++)
+				assertEquals(name + " " + i, lines[block * 100 + i]);
+		}
+	}
+
+	private String text() throws UnsupportedEncodingException {
+		FeatureUtil.flushLog();
+		return output.toString("UTF-8");
+	}
+}
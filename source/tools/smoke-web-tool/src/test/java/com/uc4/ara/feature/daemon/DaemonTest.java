@@ -0,0 +1,166 @@
+package com.uc4.ara.feature.daemon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.uc4.ara.feature.AraFileCmd;
+import com.uc4.ara.feature.FeatureUtil;
+import com.uc4.ara.feature.globalcodes.ErrorCodes;
+import com.uc4.ara.feature.websmoketest.AbstractWebSmokeTest;
+
+/**
+ * Runs the server, the client and the stop request over the loopback
+ * interface. The token files are written to a temporary home directory.
+ */
+public class DaemonTest {
+
+	private String userHome;
+	private File home;
+	private int port;
+
+	@Before
+	public void setUp() throws IOException {
+		userHome = System.getProperty("user.home");
+		home = Files.createTempDirectory("daemon-test").toFile();
+		System.setProperty("user.home", home.getPath());
+		port = freePort();
+	}
+
+	@After
+	public void tearDown() {
+		System.setProperty("user.home", userHome);
+		File directory = DaemonProtocol.getTokenFile(port).getParentFile();
+		File[] files = new File(home, directory.getName()).listFiles();
+		if (files != null) {
+			for (File file : files)
+				file.delete();
+		}
+		new File(home, directory.getName()).delete();
+		home.delete();
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		Thread server = startServer();
+		String closedUrl = "http://127.0.0.1:" + freePort() + "/";
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		int returnCode = runWithOutput(output, new Client(), "-port", String.valueOf(port), "-fb", "no", "--",
+				"websmoketest", "GetSite", "-url", closedUrl);
+		assertEquals(AbstractWebSmokeTest.SERVER_NOT_AVAILABLE, returnCode);
+
+		String text = output.toString("UTF-8");
+		// the banners of the method are sent by the server, the client adds none
+		assertEquals(text, 1, count(text, "Executing GetSite started"));
+		assertEquals(text, 1, count(text, "Executing websmoketest GetSite finished"));
+		assertEquals(text, 0, count(text, "Executing Client started"));
+		assertEquals(text, 0, count(text, "Executing daemon Client finished"));
+
+		assertEquals(ErrorCodes.OK, AraFileCmd.runFeature(new Stop(), new String[] { "-port", String.valueOf(port) }));
+		server.join(10000);
+		assertFalse(server.isAlive());
+		assertFalse(DaemonProtocol.getTokenFile(port).exists());
+	}
+
+	@Test
+	public void testRequestWithoutValidTokenIsRejected() throws Exception {
+		Thread server = startServer();
+		try {
+			Socket socket = DaemonProtocol.connect(port);
+			try {
+				DaemonProtocol.sendRequest(socket, "0123", DaemonProtocol.STOP);
+				ByteArrayOutputStream output = new ByteArrayOutputStream();
+				PrintStream out = new PrintStream(output, true, "UTF-8");
+				FeatureUtil.setThreadOutput(out);
+				try {
+					assertEquals(ErrorCodes.PARAMSMISMATCH, Client.readResponse(socket));
+				} finally {
+					FeatureUtil.setThreadOutput(null);
+				}
+				assertTrue(output.toString("UTF-8").contains("Authentication failed"));
+			} finally {
+				socket.close();
+			}
+			assertTrue(server.isAlive());
+		} finally {
+			AraFileCmd.runFeature(new Stop(), new String[] { "-port", String.valueOf(port) });
+			server.join(10000);
+		}
+		assertFalse(server.isAlive());
+	}
+
+	@Test
+	public void testLocalFallback() throws Exception {
+		String closedUrl = "http://127.0.0.1:" + freePort() + "/";
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		int returnCode = runWithOutput(output, new Client(), "-port", String.valueOf(port), "--", "websmoketest", "GetSite",
+				"-url", closedUrl);
+		assertEquals(AbstractWebSmokeTest.SERVER_NOT_AVAILABLE, returnCode);
+		String text = output.toString("UTF-8");
+		assertTrue(text, text.contains("running GetSite locally"));
+		assertEquals(text, 1, count(text, "Executing GetSite started"));
+
+		returnCode = runWithOutput(new ByteArrayOutputStream(), new Client(), "-port", String.valueOf(port), "-fb", "no",
+				"--", "websmoketest", "GetSite", "-url", closedUrl);
+		assertEquals(ErrorCodes.EXCEPTION, returnCode);
+	}
+
+	private Thread startServer() throws Exception {
+		Thread server = new Thread("daemon-test-server") {
+			@Override
+			public void run() {
+				AraFileCmd.runFeature(new Server(), new String[] { "-port", String.valueOf(port), "-mc", "2" });
+			}
+		};
+		server.setDaemon(true);
+		server.start();
+
+		// the token file is written after the server socket is bound
+		long deadline = System.currentTimeMillis() + 10000;
+		while (DaemonProtocol.readToken(port) == null && System.currentTimeMillis() < deadline)
+			Thread.sleep(20);
+		assertNotNull("server not started", DaemonProtocol.readToken(port));
+		return server;
+	}
+
+	private static int runWithOutput(ByteArrayOutputStream output, Client client, String... args) throws Exception {
+		PrintStream out = new PrintStream(output, true, "UTF-8");
+		FeatureUtil.setThreadOutput(out);
+		try {
+			return AraFileCmd.runFeature(client, args);
+		} finally {
+			FeatureUtil.setThreadOutput(null);
+		}
+	}
+
+	private static int count(String text, String part) {
+		int count = 0;
+		for (int index = text.indexOf(part); index >= 0; index = text.indexOf(part, index + part.length()))
+			count++;
+		return count;
+	}
+
+	private static int freePort() throws IOException {
+		ServerSocket socket = new ServerSocket(0);
+		try {
+			return socket.getLocalPort();
+		} finally {
+			socket.close();
+		}
+	}
+}
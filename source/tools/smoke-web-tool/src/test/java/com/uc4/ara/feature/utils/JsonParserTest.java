@@ -0,0 +1,113 @@
+package com.uc4.ara.feature.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class JsonParserTest {
+
+    @Test
+    public void testLiterals() throws Exception {
+        assertEquals(Boolean.TRUE, JsonParser.parse("true"));
+        assertEquals(Boolean.FALSE, JsonParser.parse(" false "));
+        assertNull(JsonParser.parse("null"));
+    }
+
+    @Test
+    public void testNumbers() throws Exception {
+        assertEquals(Long.valueOf(42), JsonParser.parse("42"));
+        assertEquals(Long.valueOf(-7), JsonParser.parse("-7"));
+        assertEquals(Double.valueOf(1.5), JsonParser.parse("1.5"));
+        assertEquals(Double.valueOf(2e3), JsonParser.parse("2e3"));
+        assertEquals(Double.valueOf(-1.25E-2), JsonParser.parse("-1.25E-2"));
+    }
+
+    @Test
+    public void testObjectKeepsKeyOrder() throws Exception {
+        Map<?, ?> object = (Map<?, ?>) JsonParser.parse("{\"b\": 1, \"a\": \"x\", \"c\": [true, null]}");
+        assertEquals(Arrays.asList("b", "a", "c"), Arrays.asList(object.keySet().toArray()));
+        assertEquals(Long.valueOf(1), object.get("b"));
+        assertEquals("x", object.get("a"));
+        assertEquals(Arrays.asList(Boolean.TRUE, null), object.get("c"));
+    }
+
+    @Test
+    public void testEmptyContainers() throws Exception {
+        assertEquals(Collections.emptyMap(), JsonParser.parse("{ }"));
+        assertEquals(Collections.emptyList(), JsonParser.parse("[\n]"));
+    }
+
+    @Test
+    public void testNested() throws Exception {
+        List<?> array = (List<?>) JsonParser.parse("[{\"checks\": [{\"url\": \"http://a\"}]}, [1, [2]]]");
+        Map<?, ?> first = (Map<?, ?>) array.get(0);
+        Map<?, ?> check = (Map<?, ?>) ((List<?>) first.get("checks")).get(0);
+        assertEquals("http://a", check.get("url"));
+        assertEquals(Arrays.asList(Long.valueOf(1), Arrays.asList(Long.valueOf(2))), array.get(1));
+    }
+
+    @Test
+    public void testStringEscapes() throws Exception {
+        assertEquals("a\"b\\c/d\b\f\n\r\t", JsonParser.parse("\"a\\\"b\\\\c\\/d\\b\\f\\n\\r\\t\""));
+        assertEquals("\u00e9\u20ac", JsonParser.parse("\"\\u00e9\\u20AC\""));
+        assertEquals("", JsonParser.parse("\"\""));
+    }
+
+    @Test
+    public void testQuoteRoundTrip() throws Exception {
+        String value = "quote \" backslash \\ newline \n tab \t control \u0001 umlaut \u00fc";
+        String quoted = JsonParser.quote(value);
+        assertTrue(quoted, quoted.contains("\\u0001"));
+        assertEquals(value, JsonParser.parse(quoted));
+        assertEquals("null", JsonParser.quote(null));
+    }
+
+    @Test
+    public void testMalformed() {
+        assertMalformed("");
+        assertMalformed("   ");
+        assertMalformed("{");
+        assertMalformed("{\"a\" 1}");
+        assertMalformed("{\"a\": 1,}");
+        assertMalformed("{a: 1}");
+        assertMalformed("[1 2]");
+        assertMalformed("[1,");
+        assertMalformed("\"unterminated");
+        assertMalformed("\"bad escape \\x\"");
+        assertMalformed("\"short unicode \\u12\"");
+        assertMalformed("\"bad unicode \\u12zz\"");
+        assertMalformed("tru");
+        assertMalformed("nul");
+        assertMalformed("1-2");
+        assertMalformed("'single'");
+        assertMalformed("[] []");
+    }
+
+    @Test
+    public void testErrorPosition() {
+        try {
+            JsonParser.parse("[1, x]");
+            fail();
+        } catch (ParseException e) {
+            assertEquals(4, e.getErrorOffset());
+        }
+    }
+
+    private static void assertMalformed(String json) {
+        try {
+            Object value = JsonParser.parse(json);
+            fail("Parsed " + json + " as " + value);
+        } catch (ParseException e) {
+            // expected
+        }
+    }
+}
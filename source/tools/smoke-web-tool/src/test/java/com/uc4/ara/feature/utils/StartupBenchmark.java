@@ -0,0 +1,105 @@
+package com.uc4.ara.feature.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.uc4.ara.feature.AraFileCmd;
+
+/**
+ * Measures the startup time of the tool by running it repeatedly in new
+ * processes, each one from the start of the process until it exits.
+ *
+ * <pre>
+ * java -cp target/test-classes:target/smoke-web-tool.jar com.uc4.ara.feature.utils.StartupBenchmark [-n runs] [-w warmup runs] [-cp extra classpath] [-- tool arguments]
+ * </pre>
+ *
+ * The processes run with the same java and the jar of the tool on the
+ * classpath followed by the extra classpath, e.g. the jars of an agent. Without
+ * tool arguments the general help is printed. The output of the processes is
+ * discarded. The benchmark is a development tool, it is not part of the jar.
+ */
+public class StartupBenchmark {
+
+	private static final int RUNS_DEFAULT = 20;
+	private static final int WARMUP_RUNS_DEFAULT = 3;
+
+	public static void main(String argv[]) throws Exception {
+		int runs = RUNS_DEFAULT;
+		int warmupRuns = WARMUP_RUNS_DEFAULT;
+		String extraClasspath = null;
+		List<String> toolArgs = new ArrayList<String>();
+		for (int i = 0; i < argv.length; i++) {
+			if ("--".equals(argv[i])) {
+				toolArgs.addAll(Arrays.asList(argv).subList(i + 1, argv.length));
+				break;
+			} else if ("-n".equals(argv[i]) && i + 1 < argv.length) {
+				runs = Integer.parseInt(argv[++i]);
+			} else if ("-w".equals(argv[i]) && i + 1 < argv.length) {
+				warmupRuns = Integer.parseInt(argv[++i]);
+			} else if ("-cp".equals(argv[i]) && i + 1 < argv.length) {
+				extraClasspath = argv[++i];
+			} else {
+				System.err.println("Usage: StartupBenchmark [-n runs] [-w warmup runs] [-cp extra classpath] [-- tool arguments]");
+				System.exit(1);
+			}
+		}
+
+		if (runs < 1) {
+			System.err.println("The number of runs has to be positive");
+			System.exit(1);
+		}
+
+		String classpath = new File(AraFileCmd.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+		if (extraClasspath != null && extraClasspath.length() > 0)
+			classpath += File.pathSeparator + extraClasspath;
+
+		List<String> cmd = new ArrayList<String>();
+		cmd.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		cmd.add("-cp");
+		cmd.add(classpath);
+		cmd.add(AraFileCmd.class.getName());
+		cmd.addAll(toolArgs);
+
+		// the first runs fill the file system cache
+		for (int i = 0; i < warmupRuns; i++)
+			run(cmd);
+
+		long[] millis = new long[runs];
+		for (int i = 0; i < runs; i++)
+			millis[i] = run(cmd);
+		Arrays.sort(millis);
+
+		System.out.println("Command: " + cmd);
+		System.out.println("Runs: " + runs + " (" + warmupRuns + " warmup runs)");
+		System.out.println("Startup [ms]: min " + millis[0] + ", median " + percentile(millis, 50) + ", p90 "
+				+ percentile(millis, 90) + ", max " + millis[runs - 1]);
+	}
+
+	/**
+	 * @return the wall time of the process in milliseconds
+	 */
+	private static long run(List<String> cmd) throws IOException, InterruptedException {
+		long start = System.nanoTime();
+		ProcessBuilder builder = new ProcessBuilder(cmd);
+		builder.redirectErrorStream(true);
+		Process p = builder.start();
+		p.getOutputStream().close();
+		InputStream in = p.getInputStream();
+		byte[] buffer = new byte[8192];
+		while (in.read(buffer) != -1) {
+			// discard the output
+		}
+		p.waitFor();
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	private static long percentile(long[] sorted, int percent) {
+		int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+}
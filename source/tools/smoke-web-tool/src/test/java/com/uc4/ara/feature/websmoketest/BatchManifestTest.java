@@ -0,0 +1,166 @@
+package com.uc4.ara.feature.websmoketest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.text.ParseException;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BatchManifestTest {
+
+	@Test
+	public void testCsv() throws Exception {
+		List<BatchCheck> checks = BatchManifest.parseCsv("name,feature,url,timeout,expectedText\r\n"
+				+ "Home,GetSite,http://www.example.com,10000,\r\n"
+				+ "Search, GetSearchText ,http://www.example.com/search,,My text\n");
+		assertEquals(2, checks.size());
+
+		BatchCheck home = checks.get(0);
+		assertEquals(1, home.getIndex());
+		assertEquals("Home", home.getName());
+		assertEquals("GetSite", home.getFeature());
+		assertEquals("http://www.example.com", home.getUrl());
+		assertEquals("10000", home.getOptions().get("timeout"));
+		assertFalse("empty cells are omitted", home.getOptions().containsKey("expectedText"));
+		assertFalse(home.getOptions().containsKey("name"));
+		assertFalse(home.getOptions().containsKey("feature"));
+
+		BatchCheck search = checks.get(1);
+		assertEquals(2, search.getIndex());
+		assertEquals("GetSearchText", search.getFeature());
+		assertEquals("My text", search.getOptions().get("expectedText"));
+		assertFalse(search.getOptions().containsKey("timeout"));
+	}
+
+	@Test
+	public void testCsvQuotes() throws Exception {
+		List<BatchCheck> checks = BatchManifest.parseCsv("feature,url,expectedText\n"
+				+ "GetSearchText,http://a,\"comma, and \"\"quotes\"\"\"\n"
+				+ "GetSearchText,\"http://b\",\"\"\n");
+		assertEquals("comma, and \"quotes\"", checks.get(0).getOptions().get("expectedText"));
+		assertEquals("http://b", checks.get(1).getUrl());
+		assertFalse(checks.get(1).getOptions().containsKey("expectedText"));
+	}
+
+	@Test
+	public void testCsvCommentsAndBlankLines() throws Exception {
+		List<BatchCheck> checks = BatchManifest.parseCsv("# checks of the web site\n\nfeature,url\n  # disabled\n"
+				+ "GetSite,http://a\n\n   \nGetSite,http://b");
+		assertEquals(2, checks.size());
+		assertEquals(2, checks.get(1).getIndex());
+		assertEquals("http://b", checks.get(1).getUrl());
+	}
+
+	@Test
+	public void testCsvShorterLine() throws Exception {
+		List<BatchCheck> checks = BatchManifest.parseCsv("feature,url,timeout\nGetSite,http://a\n");
+		assertEquals("http://a", checks.get(0).getUrl());
+		assertFalse(checks.get(0).getOptions().containsKey("timeout"));
+	}
+
+	@Test
+	public void testCsvNameFallsBackToUrl() throws Exception {
+		BatchCheck check = BatchManifest.parseCsv("feature,url\nGetSite,http://a\n").get(0);
+		assertEquals("http://a", check.getName());
+		assertEquals("#1 GetSite http://a", check.toString());
+	}
+
+	@Test
+	public void testCsvMalformed() {
+		assertMalformedCsv("feature,url\nGetSite,http://a,extra\n");
+		assertMalformedCsv("feature,url\nGetSite,\"http://a\n");
+		assertMalformedCsv("name,url\nHome,http://a\n");
+		assertMalformedCsv("feature,url\n ,http://a\n");
+	}
+
+	@Test
+	public void testJsonArray() throws Exception {
+		List<BatchCheck> checks = BatchManifest.parseJson("[{\"feature\": \"GetSite\", \"url\": \"http://a\", \"timeout\": 10000},"
+				+ " {\"name\": \"Search\", \"feature\": \"GetSearchText\", \"url\": \"http://b\", \"expectedText\": \"say \\\"hi\\\"\\n\", \"proxyHost\": null}]");
+		assertEquals(2, checks.size());
+		assertEquals("GetSite", checks.get(0).getFeature());
+		assertEquals("10000", checks.get(0).getOptions().get("timeout"));
+		assertEquals("Search", checks.get(1).getName());
+		assertEquals("say \"hi\"\n", checks.get(1).getOptions().get("expectedText"));
+		assertFalse("null values are omitted", checks.get(1).getOptions().containsKey("proxyHost"));
+	}
+
+	@Test
+	public void testJsonChecksObject() throws Exception {
+		List<BatchCheck> checks = BatchManifest.parseJson("{\"checks\": [{\"feature\": \"GetSite\", \"url\": \"http://a\"}]}");
+		assertEquals(1, checks.size());
+		assertEquals("http://a", checks.get(0).getUrl());
+	}
+
+	@Test
+	public void testJsonMalformed() {
+		assertMalformedJson("[{\"feature\": \"GetSite\"");
+		assertMalformedJson("{\"feature\": \"GetSite\"}");
+		assertMalformedJson("[\"GetSite\"]");
+		assertMalformedJson("[{\"url\": \"http://a\"}]");
+		assertMalformedJson("{\"checks\": {}}");
+	}
+
+	@Test
+	public void testToArgs() throws Exception {
+		BatchCheck check = BatchManifest.parseCsv("feature,url,timeout\nGetSite,http://a,500\n").get(0);
+		assertArrayEquals(new String[] { "--url", "http://a", "--timeout", "500" }, check.toArgs());
+	}
+
+	@Test
+	public void testReadChoosesFormatByExtension() throws Exception {
+		File json = write("manifest", ".json", "[{\"feature\": \"GetSite\", \"url\": \"http://a\"}]");
+		File csv = write("manifest", ".txt", "feature,url\nGetSite,http://b\n");
+		try {
+			assertEquals("http://a", BatchManifest.read(json, null).get(0).getUrl());
+			assertEquals("http://b", BatchManifest.read(csv, "").get(0).getUrl());
+			assertEquals("http://b", BatchManifest.read(csv, "CSV").get(0).getUrl());
+			try {
+				BatchManifest.read(csv, "xml");
+				fail();
+			} catch (IllegalArgumentException e) {
+				assertTrue(e.getMessage().contains("xml"));
+			}
+		} finally {
+			json.delete();
+			csv.delete();
+		}
+	}
+
+	private static File write(String prefix, String suffix, String content) throws Exception {
+		File file = File.createTempFile(prefix, suffix);
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static void assertMalformedCsv(String csv) {
+		try {
+			List<BatchCheck> checks = BatchManifest.parseCsv(csv);
+			fail("Parsed " + checks.size() + " checks");
+		} catch (ParseException e) {
+			// expected
+		}
+	}
+
+	private static void assertMalformedJson(String json) {
+		try {
+			List<BatchCheck> checks = BatchManifest.parseJson(json);
+			fail("Parsed " + checks.size() + " checks");
+		} catch (ParseException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package com.uc4.ara.feature.websmoketest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.uc4.ara.feature.AraFileCmd;
+import com.uc4.ara.feature.FeatureUtil;
+
+public class BatchTest {
+
+	private TestHttpServer server;
+	private File manifest;
+
+	@After
+	public void tearDown() {
+		if (server != null)
+			server.stop();
+		if (manifest != null)
+			manifest.delete();
+	}
+
+	@Test
+	public void testAsyncEngineFallsBackToThreads() throws Exception {
+		// the engine is only found in the multi-release jar, not in target/classes
+		assumeFalse(JdkSupport.hasAsyncGetEngine());
+		assertNull(JdkSupport.newAsyncGetEngine(1));
+
+		server = new TestHttpServer(new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				TestHttpServer.respond(exchange, 200, "text/html", "<html><body>hello</body></html>".getBytes());
+			}
+		});
+		manifest = File.createTempFile("batch", ".csv");
+		Files.write(manifest.toPath(), ("name,feature,url,expectedText\n"
+				+ "One,GetSite," + server.url("/one") + ",\n"
+				+ "Two,GetSite," + server.url("/two") + ",\n"
+				+ "Three,GetSearchText," + server.url("/three") + ",hello\n").getBytes("UTF-8"));
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		int returnCode = runWithOutput(output, "-mf", manifest.getPath(), "-eng", "async", "-par", "2");
+		String text = output.toString("UTF-8");
+		assertEquals(text, AbstractWebSmokeTest.OK, returnCode);
+		assertTrue(text, text.contains("The asynchronous engine is not available"));
+		assertEquals(3, server.getRequestCount());
+	}
+
+	@Test
+	public void testAsyncRunnerSendsOnlySupportedChecks() throws Exception {
+		final List<WebTestInput> sent = Collections.synchronizedList(new ArrayList<WebTestInput>());
+		final AsyncGetEngine engine = new AsyncGetEngine() {
+			@Override
+			public void get(WebTestInput input, Callback callback) {
+				sent.add(input);
+				callback.completed(AbstractWebSmokeTest.OK, "received status 200");
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		final List<BatchCheck> blocked = Collections.synchronizedList(new ArrayList<BatchCheck>());
+		final CheckExecutor.AsyncCheckRunner blockingRunner = new CheckExecutor.AsyncCheckRunner() {
+			@Override
+			public void start(BatchCheck check, CheckExecutor.CheckCallback callback) {
+				blocked.add(check);
+				callback.completed(AbstractWebSmokeTest.TIMEOUT);
+			}
+		};
+
+		List<BatchCheck> checks = new ArrayList<BatchCheck>();
+		checks.add(check(1, "GetSite", "timeout", "5000"));
+		checks.add(check(2, "GetSite", "transport", "jdk"));
+		checks.add(check(3, "GetSearchText", "expectedText", "hello"));
+
+		// the runner takes the output of the calling feature for the callbacks
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final CheckExecutor.AsyncCheckRunner[] runner = new CheckExecutor.AsyncCheckRunner[1];
+		FeatureUtil.runWithOutput(new PrintStream(output, true, "UTF-8"), new Runnable() {
+			@Override
+			public void run() {
+				runner[0] = Batch.asyncRunner(engine, blockingRunner, new CheckDeadline(0), false, "");
+			}
+		});
+		int[] returnCodes = new CheckExecutor(2, 0, 0).execute(checks, runner[0]);
+
+		assertEquals(1, sent.size());
+		assertEquals(5000, sent.get(0).getTimeout());
+		assertEquals(2, blocked.size());
+		assertEquals(AbstractWebSmokeTest.OK, returnCodes[0]);
+		assertEquals(AbstractWebSmokeTest.TIMEOUT, returnCodes[1]);
+		assertEquals(AbstractWebSmokeTest.TIMEOUT, returnCodes[2]);
+		FeatureUtil.flushLog();
+		String text = output.toString("UTF-8");
+		assertTrue(text, text.contains("Check #1 GetSite One: received status 200, return code 0"));
+	}
+
+	private static BatchCheck check(int index, String feature, String option, String value) {
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("url", "http://localhost/" + index);
+		options.put(option, value);
+		return new BatchCheck(index, index == 1 ? "One" : null, feature, options);
+	}
+
+	private static int runWithOutput(ByteArrayOutputStream output, String... args) throws Exception {
+		PrintStream out = new PrintStream(output, true, "UTF-8");
+		FeatureUtil.setThreadOutput(out);
+		try {
+			return AraFileCmd.runFeature(new Batch(), args);
+		} finally {
+			FeatureUtil.setThreadOutput(null);
+		}
+	}
+}
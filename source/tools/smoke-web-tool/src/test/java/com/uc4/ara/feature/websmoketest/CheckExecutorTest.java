@@ -0,0 +1,201 @@
+package com.uc4.ara.feature.websmoketest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class CheckExecutorTest {
+
+	private final FakeRunner runner = new FakeRunner();
+
+	@After
+	public void tearDown() {
+		runner.completer.shutdownNow();
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		assertEquals(0, new CheckExecutor(4, 0, 0).execute(new ArrayList<BatchCheck>(), runner).length);
+	}
+
+	@Test
+	public void testReturnCodesInManifestOrder() throws Exception {
+		List<BatchCheck> checks = checks("a", "b", "c", "a", "b", "c", "a");
+		int[] returnCodes = new CheckExecutor(3, 0, 0).execute(checks, runner);
+		assertArrayEquals(new int[] { 101, 102, 103, 104, 105, 106, 107 }, returnCodes);
+	}
+
+	@Test
+	public void testMaxInFlight() throws Exception {
+		List<BatchCheck> checks = checks("a", "b", "c", "d", "e", "a", "b", "c", "d", "e", "a", "b", "c", "d", "e");
+		new CheckExecutor(4, 0, 0).execute(checks, runner);
+		assertEquals(15, runner.started.size());
+		assertEquals(4, runner.maxInFlight);
+	}
+
+	@Test
+	public void testMaxInFlightOne() throws Exception {
+		new CheckExecutor(1, 0, 0).execute(checks("a", "b", "c", "a"), runner);
+		assertEquals(1, runner.maxInFlight);
+		assertEquals(Integer.valueOf(1), runner.started.get(0));
+		assertEquals(Integer.valueOf(4), runner.started.get(3));
+	}
+
+	@Test
+	public void testMaxPerHost() throws Exception {
+		List<BatchCheck> checks = checks("a", "a", "a", "a", "a", "a", "b", "b", "b", "b", "b", "b");
+		new CheckExecutor(6, 2, 0).execute(checks, runner);
+		assertEquals(12, runner.started.size());
+		assertEquals(2, (int) runner.maxPerHost.get("a.example.com"));
+		assertEquals(2, (int) runner.maxPerHost.get("b.example.com"));
+		assertTrue(runner.maxInFlight <= 4);
+	}
+
+	@Test
+	public void testHostIsCaseInsensitive() throws Exception {
+		List<BatchCheck> checks = new ArrayList<BatchCheck>();
+		checks.add(check(1, "http://host.example.com/"));
+		checks.add(check(2, "http://HOST.example.com/other"));
+		new CheckExecutor(2, 1, 0).execute(checks, runner);
+		assertEquals(1, runner.maxInFlight);
+	}
+
+	@Test
+	public void testBusyHostDoesNotBlockOtherHosts() throws Exception {
+		runner.hold = true;
+		final CheckExecutor executor = new CheckExecutor(4, 1, 0);
+		final List<BatchCheck> checks = checks("a", "a", "b");
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					executor.execute(checks, runner);
+				} catch (InterruptedException e) {
+					// ends the test
+				}
+			}
+		};
+		thread.start();
+		try {
+			// the second check of host a waits for the first, the check of host b starts
+			runner.awaitStarted(2);
+			assertEquals(Integer.valueOf(1), runner.started.get(0));
+			assertEquals(Integer.valueOf(3), runner.started.get(1));
+			runner.release();
+			thread.join(5000);
+			assertEquals(Integer.valueOf(2), runner.started.get(2));
+		} finally {
+			thread.interrupt();
+		}
+	}
+
+	@Test
+	public void testGlobalTimeout() throws Exception {
+		runner.neverComplete.add(2);
+		runner.neverComplete.add(4);
+		long start = System.nanoTime();
+		int[] returnCodes = new CheckExecutor(4, 0, 300).execute(checks("a", "b", "c", "d"), runner);
+		long millis = (System.nanoTime() - start) / 1000000;
+		assertArrayEquals(new int[] { 101, AbstractWebSmokeTest.TIMEOUT, 103, AbstractWebSmokeTest.TIMEOUT },
+				returnCodes);
+		assertTrue("returned after " + millis + " ms", millis >= 250 && millis < 5000);
+	}
+
+	@Test
+	public void testGlobalTimeoutLeavesPendingChecks() throws Exception {
+		runner.neverComplete.add(1);
+		int[] returnCodes = new CheckExecutor(1, 0, 200).execute(checks("a", "b"), runner);
+		assertArrayEquals(new int[] { AbstractWebSmokeTest.TIMEOUT, AbstractWebSmokeTest.TIMEOUT }, returnCodes);
+		assertEquals(1, runner.started.size());
+	}
+
+	private static List<BatchCheck> checks(String... hosts) {
+		List<BatchCheck> checks = new ArrayList<BatchCheck>();
+		for (String host : hosts)
+			checks.add(check(checks.size() + 1, "http://" + host + ".example.com/" + checks.size()));
+		return checks;
+	}
+
+	private static BatchCheck check(int index, String url) {
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("url", url);
+		return new BatchCheck(index, null, "GetSite", options);
+	}
+
+	/**
+	 * Completes the checks in another thread with the return code 100 plus
+	 * their index and records how many of them were in flight.
+	 */
+	private static class FakeRunner implements CheckExecutor.AsyncCheckRunner {
+
+		final ExecutorService completer = Executors.newSingleThreadExecutor();
+		final List<Integer> started = Collections.synchronizedList(new ArrayList<Integer>());
+		final List<Integer> neverComplete = new ArrayList<Integer>();
+		final Map<String, Integer> maxPerHost = new HashMap<String, Integer>();
+		private final Map<String, Integer> inFlightPerHost = new HashMap<String, Integer>();
+		int maxInFlight = 0;
+		private int inFlight = 0;
+		boolean hold = false;
+
+		@Override
+		public void start(final BatchCheck check, final CheckExecutor.CheckCallback callback) {
+			final String host = check.getUrl().substring(7, check.getUrl().indexOf('/', 7)).toLowerCase();
+			synchronized (this) {
+				started.add(check.getIndex());
+				inFlight++;
+				maxInFlight = Math.max(maxInFlight, inFlight);
+				Integer count = inFlightPerHost.get(host);
+				count = count == null ? 1 : count + 1;
+				inFlightPerHost.put(host, count);
+				Integer max = maxPerHost.get(host);
+				maxPerHost.put(host, max == null ? count : Math.max(max, count));
+				notifyAll();
+			}
+			if (neverComplete.contains(check.getIndex()))
+				return;
+
+			completer.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						synchronized (FakeRunner.this) {
+							while (hold)
+								FakeRunner.this.wait();
+						}
+						// keep the check in flight while the executor starts others
+						Thread.sleep(5);
+					} catch (InterruptedException e) {
+						return;
+					}
+					synchronized (FakeRunner.this) {
+						inFlight--;
+						inFlightPerHost.put(host, inFlightPerHost.get(host) - 1);
+					}
+					callback.completed(100 + check.getIndex());
+				}
+			});
+		}
+
+		synchronized void awaitStarted(int count) throws InterruptedException {
+			long end = System.currentTimeMillis() + 5000;
+			while (started.size() < count && System.currentTimeMillis() < end)
+				wait(100);
+		}
+
+		synchronized void release() {
+			hold = false;
+			notifyAll();
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package com.uc4.ara.feature.websmoketest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.uc4.ara.feature.AraFileCmd;
+
+public class ConditionalCacheTest {
+
+	private static final String HELLO = "text|false|page|hello";
+	private static final String WORLD = "text|false|page|world";
+
+	private TestHttpServer server;
+	private File directory;
+	private volatile String page = "<html><body>hello world</body></html>";
+	private volatile String etag = "\"v1\"";
+	private volatile boolean noStore;
+	private volatile String ifNoneMatch;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("conditional-cache").toFile();
+		server = new TestHttpServer(new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+				exchange.getResponseHeaders().set("ETag", etag);
+				if (noStore)
+					exchange.getResponseHeaders().set("Cache-Control", "no-store");
+				if (etag.equals(ifNoneMatch))
+					TestHttpServer.respond(exchange, 304, null, new byte[0]);
+				else
+					TestHttpServer.respond(exchange, 200, "text/html", page.getBytes("UTF-8"));
+			}
+		});
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files)
+				file.delete();
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void testNotModifiedUsesCachedResult() {
+		assertEquals(AbstractWebSmokeTest.TEXT_NOT_FOUND, check("missing"));
+		assertNull(ifNoneMatch);
+		assertEquals(1, directory.list().length);
+
+		// the 304 response has no body, the result can only come from the cache
+		assertEquals(AbstractWebSmokeTest.TEXT_NOT_FOUND, check("missing"));
+		assertEquals("\"v1\"", ifNoneMatch);
+		assertEquals(2, server.getRequestCount());
+
+		// an expectation without stored result downloads the page
+		assertEquals(AbstractWebSmokeTest.OK, check("hello"));
+		assertNull(ifNoneMatch);
+		assertEquals(AbstractWebSmokeTest.OK, check("hello"));
+		assertEquals("\"v1\"", ifNoneMatch);
+		assertEquals(4, server.getRequestCount());
+	}
+
+	@Test
+	public void testChangedDigestDropsResults() {
+		assertEquals(AbstractWebSmokeTest.OK, check("hello"));
+
+		// new validators for the same content keep the other results
+		etag = "\"v2\"";
+		assertEquals(AbstractWebSmokeTest.OK, check("world"));
+		assertEquals(Integer.valueOf(AbstractWebSmokeTest.OK), entry().getResult(HELLO));
+		assertEquals(Integer.valueOf(AbstractWebSmokeTest.OK), entry().getResult(WORLD));
+
+		// changed content drops them
+		etag = "\"v3\"";
+		page = "<html><body>goodbye world</body></html>";
+		assertEquals(AbstractWebSmokeTest.OK, check("world"));
+		assertNull(entry().getResult(HELLO));
+		assertEquals(Integer.valueOf(AbstractWebSmokeTest.OK), entry().getResult(WORLD));
+
+		// a stale result is not used once the server reports a modification
+		assertEquals(AbstractWebSmokeTest.TEXT_NOT_FOUND, check("hello"));
+		assertEquals(Integer.valueOf(AbstractWebSmokeTest.TEXT_NOT_FOUND), entry().getResult(HELLO));
+	}
+
+	@Test
+	public void testNoStoreIsNotCached() {
+		noStore = true;
+		assertEquals(AbstractWebSmokeTest.OK, check("hello"));
+		assertEquals(0, directory.list().length);
+		assertEquals(AbstractWebSmokeTest.OK, check("hello"));
+		assertNull(ifNoneMatch);
+
+		// a page becoming no-store removes its entry
+		noStore = false;
+		assertEquals(AbstractWebSmokeTest.OK, check("hello"));
+		assertEquals(1, directory.list().length);
+		noStore = true;
+		etag = "\"v2\"";
+		assertEquals(AbstractWebSmokeTest.OK, check("hello"));
+		assertEquals(0, directory.list().length);
+	}
+
+	@Test
+	public void testKeyCoversConnectionSettings() {
+		String key = ConditionalCache.key(input());
+		assertEquals(key, ConditionalCache.key(input()));
+
+		WebTestInput input = input();
+		input.setUsername("user");
+		assertFalse(key.equals(ConditionalCache.key(input)));
+		input = input();
+		input.setPassword("secret");
+		assertFalse(key.equals(ConditionalCache.key(input)));
+		input = input();
+		input.setProxyHost("proxy");
+		input.setProxyPort(3128);
+		String proxyKey = ConditionalCache.key(input);
+		assertFalse(key.equals(proxyKey));
+		input.setProxyPort(8080);
+		assertFalse(proxyKey.equals(ConditionalCache.key(input)));
+		input = input();
+		input.setProxyUsername("proxyuser");
+		assertFalse(key.equals(ConditionalCache.key(input)));
+		input = input();
+		input.setIgnoreServerCert(true);
+		assertFalse(key.equals(ConditionalCache.key(input)));
+		input = input();
+		input.setTransport("jdk");
+		assertFalse(key.equals(ConditionalCache.key(input)));
+		input = input();
+		input.setHttpVersion("2");
+		assertFalse(key.equals(ConditionalCache.key(input)));
+		input = input();
+		input.setCompression(false);
+		assertFalse(key.equals(ConditionalCache.key(input)));
+		assertTrue(key.matches("[0-9a-f]{64}"));
+	}
+
+	@Test
+	public void testDifferentSettingsUseDifferentEntries() {
+		assertEquals(AbstractWebSmokeTest.OK, check("hello"));
+		assertEquals(AbstractWebSmokeTest.OK, AraFileCmd.runFeature(new GetSearchText(), new String[] { "-url",
+				server.url("/"), "-et", "hello", "-cd", directory.getPath(), "-cmp", "NO" }));
+		assertNull(ifNoneMatch);
+		assertEquals(2, directory.list().length);
+	}
+
+	private int check(String text) {
+		return AraFileCmd.runFeature(new GetSearchText(), new String[] { "-url", server.url("/"), "-et", text,
+				"-cd", directory.getPath() });
+	}
+
+	private WebTestInput input() {
+		return new WebTestInput(server.url("/"));
+	}
+
+	private ConditionalCache.Entry entry() {
+		return new ConditionalCache(directory).get(input());
+	}
+}
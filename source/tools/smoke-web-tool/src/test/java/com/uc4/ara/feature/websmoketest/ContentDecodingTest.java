@@ -0,0 +1,225 @@
+package com.uc4.ara.feature.websmoketest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class ContentDecodingTest {
+
+	private static final byte[] PAGE = page(20000, false);
+
+	private RequestTimings timings;
+
+	@Before
+	public void setUp() {
+		timings = RequestTimings.start();
+	}
+
+	@After
+	public void tearDown() {
+		timings.finish();
+	}
+
+	@Test
+	public void testAccept() {
+		BasicHttpRequest request = new BasicHttpRequest("GET", "/");
+		ContentDecoding.accept(request);
+		assertEquals(ContentDecoding.ACCEPT_ENCODING, request.getFirstHeader("Accept-Encoding").getValue());
+
+		// the codings named by the request are kept
+		request = new BasicHttpRequest("GET", "/");
+		request.addHeader("Accept-Encoding", "identity");
+		ContentDecoding.accept(request);
+		assertEquals(1, request.getHeaders("Accept-Encoding").length);
+		assertEquals("identity", request.getFirstHeader("Accept-Encoding").getValue());
+	}
+
+	@Test
+	public void testGzip() throws IOException {
+		byte[] compressed = gzip(PAGE);
+		HttpEntity entity = decode(compressed, "gzip");
+		assertNull(entity.getContentEncoding());
+		assertEquals(-1, entity.getContentLength());
+		assertArrayEquals(PAGE, EntityUtils.toByteArray(entity));
+		assertCounted(compressed.length, PAGE.length, "gzip");
+
+		assertArrayEquals(PAGE, EntityUtils.toByteArray(decode(gzip(PAGE), "X-GZIP")));
+	}
+
+	@Test
+	public void testZlibDeflate() throws IOException {
+		byte[] compressed = deflate(PAGE, false);
+		assertArrayEquals(PAGE, EntityUtils.toByteArray(decode(compressed, "deflate")));
+		assertCounted(compressed.length, PAGE.length, "deflate");
+	}
+
+	@Test
+	public void testRawDeflate() throws IOException {
+		byte[] compressed = deflate(PAGE, true);
+		assertArrayEquals(PAGE, EntityUtils.toByteArray(decode(compressed, "deflate")));
+		assertCounted(compressed.length, PAGE.length, "deflate");
+	}
+
+	@Test
+	public void testIdentity() throws IOException {
+		HttpEntity entity = decode(PAGE, null);
+		assertEquals(PAGE.length, entity.getContentLength());
+		assertArrayEquals(PAGE, EntityUtils.toByteArray(entity));
+		assertCounted(PAGE.length, PAGE.length, "identity");
+	}
+
+	@Test
+	public void testUnsupportedCodingIsPassedOn() throws IOException {
+		HttpResponse response = response(PAGE, "br");
+		HttpEntity entity = response.getEntity();
+		ContentDecoding.decode(response);
+		assertSame(entity, response.getEntity());
+		assertNull(timings.getContentEncoding());
+	}
+
+	@Test
+	public void testEmptyCompressedBody() throws IOException {
+		// HEAD requests and 204 responses name the coding without sending a body
+		assertEquals(0, EntityUtils.toByteArray(decode(new byte[0], "gzip")).length);
+		assertEquals(0, EntityUtils.toByteArray(decode(new byte[0], "deflate")).length);
+		assertCounted(0, 0, "deflate");
+	}
+
+	@Test
+	public void testEarlyStopOnCompressedStream() throws IOException {
+		byte[] page = page(1000000, true);
+		byte[] compressed = gzip(page);
+		assertTrue(compressed.length > 500000);
+
+		InputStream in = decode(compressed, "gzip").getContent();
+		byte[] buffer = new byte[100];
+		assertEquals(buffer.length, in.read(buffer));
+		in.close();
+
+		assertEquals(100, timings.getDecodedBytes());
+		// only the buffer of the decoder was read from the wire
+		assertTrue(String.valueOf(timings.getWireBytes()), timings.getWireBytes() <= 16384);
+	}
+
+	@Test
+	public void testApacheClient() throws Exception {
+		final byte[] compressed = gzip(PAGE);
+		TestHttpServer server = new TestHttpServer(new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				boolean gzip = ContentDecoding.ACCEPT_ENCODING.equals(exchange.getRequestHeaders().getFirst(
+						"Accept-Encoding"));
+				if (gzip)
+					exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+				TestHttpServer.respond(exchange, 200, "text/html", gzip ? compressed : PAGE);
+			}
+		});
+		try {
+			HttpClient httpclient = WebTestUtils.getHttpClient(new WebTestInput(server.url("/")));
+			HttpResponse response = WebTestUtils.execute(httpclient, new HttpGet(server.url("/")));
+			assertArrayEquals(PAGE, EntityUtils.toByteArray(response.getEntity()));
+			assertCounted(compressed.length, PAGE.length, "gzip");
+
+			timings.finish();
+			timings = RequestTimings.start();
+			response = WebTestUtils.execute(httpclient, new HttpHead(server.url("/")));
+			assertEquals(200, response.getStatusLine().getStatusCode());
+			assertEquals("gzip", response.getFirstHeader("Content-Encoding").getValue());
+			assertTrue(response.getEntity() == null || EntityUtils.toByteArray(response.getEntity()).length == 0);
+			assertEquals(0, timings.getWireBytes());
+
+			// without compression the page is neither requested nor decoded compressed
+			WebTestInput input = new WebTestInput(server.url("/"));
+			input.setCompression(false);
+			timings.finish();
+			timings = RequestTimings.start();
+			response = WebTestUtils.execute(WebTestUtils.getHttpClient(input), new HttpGet(server.url("/")));
+			assertFalse(response.containsHeader("Content-Encoding"));
+			assertArrayEquals(PAGE, EntityUtils.toByteArray(response.getEntity()));
+			assertNull(timings.getContentEncoding());
+		} finally {
+			server.stop();
+		}
+	}
+
+	private void assertCounted(long wireBytes, long decodedBytes, String coding) {
+		assertEquals(wireBytes, timings.getWireBytes());
+		assertEquals(decodedBytes, timings.getDecodedBytes());
+		assertEquals(coding, timings.getContentEncoding());
+	}
+
+	private HttpEntity decode(byte[] body, String coding) {
+		timings.finish();
+		timings = RequestTimings.start();
+		HttpResponse response = response(body, coding);
+		ContentDecoding.decode(response);
+		return response.getEntity();
+	}
+
+	private static HttpResponse response(byte[] body, String coding) {
+		BasicHttpEntity entity = new BasicHttpEntity();
+		entity.setContent(new ByteArrayInputStream(body));
+		entity.setContentLength(body.length);
+		if (coding != null)
+			entity.setContentEncoding(coding);
+		HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+		response.setEntity(entity);
+		return response;
+	}
+
+	private static byte[] page(int length, boolean random) {
+		byte[] page = new byte[length];
+		Random generator = new Random(42);
+		for (int i = 0; i < length; i++)
+			page[i] = (byte) (random ? generator.nextInt(256) : 'a' + i % 26);
+		return page;
+	}
+
+	private static byte[] gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		OutputStream out = new GZIPOutputStream(bytes);
+		out.write(data);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static byte[] deflate(byte[] data, boolean raw) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+		OutputStream out = new DeflaterOutputStream(bytes, deflater);
+		out.write(data);
+		out.close();
+		deflater.end();
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,74 @@
+package com.uc4.ara.feature.websmoketest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.conn.DnsResolver;
+import org.junit.Test;
+
+public class DnsCacheTest {
+
+	@Test
+	public void testCachesLookups() throws Exception {
+		CountingResolver resolver = new CountingResolver();
+		DnsCache cache = new DnsCache(resolver, 60, 60);
+		InetAddress[] first = cache.resolve("host.example");
+		InetAddress[] second = cache.resolve("HOST.example");
+		assertSame(first[0], second[0]);
+		assertEquals(1, resolver.count.get());
+	}
+
+	@Test
+	public void testCachesFailures() {
+		CountingResolver resolver = new CountingResolver();
+		DnsCache cache = new DnsCache(resolver, 60, 60);
+		for (int i = 0; i < 2; i++) {
+			try {
+				cache.resolve("unknown.example");
+				fail();
+			} catch (UnknownHostException e) {
+				// expected
+			}
+		}
+		assertEquals(1, resolver.count.get());
+	}
+
+	@Test
+	public void testExpiredLookupIsRepeated() throws Exception {
+		CountingResolver resolver = new CountingResolver();
+		DnsCache cache = new DnsCache(resolver, 0, 0);
+		cache.resolve("host.example");
+		cache.resolve("host.example");
+		assertEquals(2, resolver.count.get());
+	}
+
+	@Test
+	public void testExpiredEntriesArePrunedOnInsert() throws Exception {
+		DnsCache cache = new DnsCache(new CountingResolver(), 0, 0);
+		for (int i = 0; i < 100; i++)
+			cache.resolve("host" + i + ".example");
+		assertEquals(1, cache.size());
+
+		DnsCache forever = new DnsCache(new CountingResolver(), -1, -1);
+		for (int i = 0; i < 100; i++)
+			forever.resolve("host" + i + ".example");
+		assertEquals(100, forever.size());
+	}
+
+	private static class CountingResolver implements DnsResolver {
+		final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public InetAddress[] resolve(String host) throws UnknownHostException {
+			count.incrementAndGet();
+			if (host.startsWith("unknown"))
+				throw new UnknownHostException(host);
+			return new InetAddress[] { InetAddress.getByAddress(host, new byte[] { 127, 0, 0, 1 }) };
+		}
+	}
+}
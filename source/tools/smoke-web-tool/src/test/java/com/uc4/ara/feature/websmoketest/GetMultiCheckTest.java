@@ -0,0 +1,99 @@
+package com.uc4.ara.feature.websmoketest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.uc4.ara.feature.AraFileCmd;
+import com.uc4.ara.feature.globalcodes.ErrorCodes;
+
+public class GetMultiCheckTest {
+
+	private static final byte[] PAGE = ("<html><head><title>Welcome home</title></head>"
+			+ "<body><div id=\"main\">Hello world</div></body></html>").getBytes();
+
+	private TestHttpServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new TestHttpServer(new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.getResponseHeaders().set("X-Test", "abc");
+				String path = exchange.getRequestURI().getPath();
+				int status = path.equals("/login") ? 401 : path.equals("/proxy") ? 407 : path.equals("/missing") ? 404 : 200;
+				TestHttpServer.respond(exchange, status, "text/html", PAGE);
+			}
+		});
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Test
+	public void testParseStatusRange() {
+		assertArrayEquals(new int[] { 200, 200 }, GetMultiCheck.parseStatusRange("200"));
+		assertArrayEquals(new int[] { 200, 299 }, GetMultiCheck.parseStatusRange(" 200 - 299 "));
+		assertArrayEquals(new int[] { 300, 399 }, GetMultiCheck.parseStatusRange("3XX"));
+		assertArrayEquals(new int[] { 404, 404 }, GetMultiCheck.parseStatusRange("404-404"));
+		assertNull(GetMultiCheck.parseStatusRange("299-200"));
+		assertNull(GetMultiCheck.parseStatusRange("2x"));
+		assertNull(GetMultiCheck.parseStatusRange("axx"));
+		assertNull(GetMultiCheck.parseStatusRange("200-"));
+		assertNull(GetMultiCheck.parseStatusRange("ok"));
+		assertNull(GetMultiCheck.parseStatusRange(""));
+	}
+
+	@Test
+	public void testAllAssertionsPass() {
+		assertEquals(AbstractWebSmokeTest.OK, check("/", "-st", "2xx", "-hd", "X-Test: ^a", "-tl", "Welcome.*",
+				"-et", "hello WORLD", "-er", "w.rld", "-el", "//div[@id='main']", "-css", "div#main"));
+	}
+
+	@Test
+	public void testExpectedAuthenticationStatus() {
+		// the status assertion is evaluated before the status is taken as authentication failure
+		assertEquals(AbstractWebSmokeTest.OK, check("/login", "-st", "401", "-tl", "Welcome.*"));
+		assertEquals(AbstractWebSmokeTest.TITLE_NOT_MATCH, check("/login", "-st", "4xx", "-tl", "Goodbye"));
+		assertEquals(AbstractWebSmokeTest.OK, check("/proxy", "-st", "200", "-st", "407"));
+
+		assertEquals(AbstractWebSmokeTest.WRONG_CREDENTIALS, check("/login"));
+		assertEquals(AbstractWebSmokeTest.WRONG_CREDENTIALS, check("/login", "-st", "200", "-tl", "Goodbye"));
+		assertEquals(AbstractWebSmokeTest.WRONG_PROXY_CREDENTIALS, check("/proxy", "-st", "2xx"));
+	}
+
+	@Test
+	public void testFirstFailingAssertionWins() {
+		// an unexpected authentication status fails before any other assertion is evaluated
+		assertEquals(AbstractWebSmokeTest.WRONG_CREDENTIALS, check("/login", "-hd", "X-Missing", "-et", "nothing"));
+		assertEquals(AbstractWebSmokeTest.STATUS_NOT_MATCH, check("/missing", "-hd", "X-Missing", "-tl", "Goodbye"));
+		assertEquals(AbstractWebSmokeTest.HEADER_NOT_MATCH, check("/", "-hd", "X-Test: ^b", "-tl", "Goodbye"));
+		assertEquals(AbstractWebSmokeTest.TITLE_NOT_MATCH, check("/", "-tl", "Goodbye", "-et", "nothing"));
+		assertEquals(AbstractWebSmokeTest.ELEMENT_NOT_FOUND, check("/", "-tl", "Welcome.*", "-css", "span"));
+	}
+
+	@Test
+	public void testInvalidAssertions() {
+		assertEquals(ErrorCodes.PARAMSMISMATCH, check("/", "-st", "2x"));
+		assertEquals(ErrorCodes.EXCEPTION, check("/", "-tl", "(unclosed"));
+		assertEquals(0, server.getRequestCount());
+	}
+
+	private int check(String path, String... assertions) {
+		String[] args = new String[assertions.length + 2];
+		args[0] = "-url";
+		args[1] = server.url(path);
+		System.arraycopy(assertions, 0, args, 2, assertions.length);
+		return AraFileCmd.runFeature(new GetMultiCheck(), args);
+	}
+}
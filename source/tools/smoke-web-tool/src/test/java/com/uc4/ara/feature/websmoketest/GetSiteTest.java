@@ -0,0 +1,161 @@
+package com.uc4.ara.feature.websmoketest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.http.client.methods.HttpUriRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.uc4.ara.feature.AraFileCmd;
+import com.uc4.ara.feature.FeatureUtil;
+
+public class GetSiteTest {
+
+	private static final byte[] SMALL = "<html><body>ok</body></html>".getBytes();
+	private static final byte[] LARGE = new byte[1024 * 1024];
+
+	private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+	private final List<Integer> ports = Collections.synchronizedList(new ArrayList<Integer>());
+	private TestHttpServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new TestHttpServer(new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				String method = exchange.getRequestMethod();
+				String range = exchange.getRequestHeaders().getFirst("Range");
+				String path = exchange.getRequestURI().getPath();
+				requests.add(method + (range != null ? " " + range + " " + exchange.getRequestHeaders().getFirst(
+						"Accept-Encoding") : ""));
+				ports.add(exchange.getRemoteAddress().getPort());
+
+				if ("HEAD".equals(method) && path.startsWith("/nohead")) {
+					TestHttpServer.respond(exchange, path.endsWith("501") ? 501 : 405, null, new byte[0]);
+				} else if (range != null && path.endsWith("/empty")) {
+					TestHttpServer.respond(exchange, 416, null, new byte[0]);
+				} else if (range != null) {
+					exchange.getResponseHeaders().set("Content-Range", "bytes 0-0/" + SMALL.length);
+					TestHttpServer.respond(exchange, 206, "text/html", Arrays.copyOf(SMALL, 1));
+				} else if (path.equals("/large")) {
+					try {
+						TestHttpServer.respond(exchange, 200, "application/octet-stream", LARGE);
+					} catch (IOException e) {
+						// the client aborted the download
+					}
+				} else if (path.equals("/missing")) {
+					TestHttpServer.respond(exchange, 404, "text/html", SMALL);
+				} else {
+					TestHttpServer.respond(exchange, 200, "text/html", path.endsWith("/empty") ? new byte[0] : SMALL);
+				}
+			}
+		});
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Test
+	public void testFallbackMethod() {
+		assertEquals(GetSite.METHOD_RANGE, GetSite.fallbackMethod(GetSite.METHOD_HEAD, 405));
+		assertEquals(GetSite.METHOD_RANGE, GetSite.fallbackMethod(GetSite.METHOD_HEAD, 501));
+		assertNull(GetSite.fallbackMethod(GetSite.METHOD_HEAD, 404));
+		assertEquals(GetSite.METHOD_GET, GetSite.fallbackMethod(GetSite.METHOD_RANGE, 416));
+		assertNull(GetSite.fallbackMethod(GetSite.METHOD_RANGE, 206));
+		assertNull(GetSite.fallbackMethod(GetSite.METHOD_GET, 405));
+	}
+
+	@Test
+	public void testNewRequest() {
+		HttpUriRequest request = GetSite.newRequest(GetSite.METHOD_RANGE, "http://localhost/");
+		assertEquals("GET", request.getMethod());
+		assertEquals("bytes=0-0", request.getFirstHeader("Range").getValue());
+		assertEquals("identity", request.getFirstHeader("Accept-Encoding").getValue());
+		assertEquals("HEAD", GetSite.newRequest(GetSite.METHOD_HEAD, "http://localhost/").getMethod());
+		assertFalse(GetSite.newRequest(GetSite.METHOD_GET, "http://localhost/").containsHeader("Range"));
+	}
+
+	@Test
+	public void testHead() {
+		assertEquals(AbstractWebSmokeTest.OK, check("/", "-rm", "head"));
+		assertEquals(Arrays.asList("HEAD"), requests);
+	}
+
+	@Test
+	public void testHeadFallsBackToRange() {
+		assertEquals(AbstractWebSmokeTest.OK, check("/nohead", "-rm", "HEAD"));
+		assertEquals(AbstractWebSmokeTest.OK, check("/nohead501", "-rm", "HEAD"));
+		assertEquals(Arrays.asList("HEAD", "GET bytes=0-0 identity", "HEAD", "GET bytes=0-0 identity"), requests);
+	}
+
+	@Test
+	public void testRangeFallsBackToGet() {
+		assertEquals(AbstractWebSmokeTest.OK, check("/", "-rm", "RANGE"));
+		assertEquals(AbstractWebSmokeTest.OK, check("/nohead/empty", "-rm", "HEAD"));
+		assertEquals(Arrays.asList("GET bytes=0-0 identity", "HEAD", "GET bytes=0-0 identity", "GET"), requests);
+	}
+
+	@Test
+	public void testSmallBodyIsDrained() {
+		assertEquals(AbstractWebSmokeTest.OK, check("/"));
+		assertEquals(AbstractWebSmokeTest.OK, check("/"));
+		assertEquals("connection reused", ports.get(0), ports.get(1));
+	}
+
+	@Test
+	public void testLargeBodyIsAborted() {
+		assertEquals(AbstractWebSmokeTest.OK, check("/large"));
+		assertEquals(AbstractWebSmokeTest.OK, check("/"));
+		assertFalse("connection closed", ports.get(0).equals(ports.get(1)));
+	}
+
+	@Test
+	public void testDiscardBody() {
+		assertEquals(AbstractWebSmokeTest.OK, check("/large", "-db", "yes"));
+		assertEquals(AbstractWebSmokeTest.OK, check("/"));
+		assertEquals("connection reused", ports.get(0), ports.get(1));
+		assertEquals(2, server.getRequestCount());
+	}
+
+	@Test
+	public void testDebugOnFailure() throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		FeatureUtil.setThreadOutput(new PrintStream(output, true, "UTF-8"));
+		try {
+			assertEquals(AbstractWebSmokeTest.OK, check("/", "-dbf", "5"));
+			FeatureUtil.flushLog();
+			assertFalse(output.toString("UTF-8").contains("DEBUG messages"));
+
+			assertEquals(404, check("/missing", "-dbf", "yes"));
+		} finally {
+			FeatureUtil.setThreadOutput(null);
+		}
+		String text = output.toString("UTF-8");
+		assertTrue(text, text.contains("DEBUG messages before the failure"));
+		assertTrue(text, text.contains("URL: " + server.url("/missing")));
+	}
+
+	private int check(String path, String... options) {
+		String[] args = new String[options.length + 2];
+		args[0] = "-url";
+		args[1] = server.url(path);
+		System.arraycopy(options, 0, args, 2, options.length);
+		return AraFileCmd.runFeature(new GetSite(), args);
+	}
+}
@@ -0,0 +1,137 @@
+package com.uc4.ara.feature.websmoketest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testEmpty() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getTotalCount());
+		assertEquals(0, histogram.getMin());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getMean(), 0);
+		assertEquals(0, histogram.getValueAtPercentile(0));
+		assertEquals(0, histogram.getValueAtPercentile(50));
+		assertEquals(0, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void testSingleValue() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.recordValue(123456789);
+		assertEquals(123456789, histogram.getValueAtPercentile(0));
+		assertEquals(123456789, histogram.getValueAtPercentile(50));
+		assertEquals(123456789, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void testSmallValuesAreExact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long value = 0; value < 128; value++)
+			histogram.recordValue(value);
+		for (int percentile = 1; percentile <= 100; percentile++) {
+			long rank = (long) Math.ceil(percentile / 100.0 * 128);
+			assertEquals("p" + percentile, rank - 1, histogram.getValueAtPercentile(percentile));
+		}
+	}
+
+	@Test
+	public void testPercentileEdges() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.recordValue(5000);
+		histogram.recordValue(1000000);
+		histogram.recordValue(3000000000L);
+		assertEquals(5000, histogram.getValueAtPercentile(0));
+		assertEquals(5000, histogram.getValueAtPercentile(-1));
+		assertEquals(3000000000L, histogram.getValueAtPercentile(100));
+		assertEquals(3000000000L, histogram.getValueAtPercentile(150));
+		// the smallest rank is 1, i.e. the lowest bucket
+		assertEquals(5000, histogram.getValueAtPercentile(0.001), 5000 / 64);
+	}
+
+	@Test
+	public void testNegativeValuesAreRecordedAsZero() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.recordValue(-5);
+		assertEquals(0, histogram.getMin());
+		assertEquals(0, histogram.getMax());
+		assertEquals(1, histogram.getTotalCount());
+	}
+
+	@Test
+	public void testBucketErrorBound() {
+		Random random = new Random(42);
+		long[] values = new long[10000];
+		for (int i = 0; i < values.length; i++)
+			values[i] = (long) Math.exp(random.nextDouble() * Math.log(Long.MAX_VALUE / 2));
+		values[0] = 128;
+		values[1] = 129;
+		values[2] = 255;
+		values[3] = 256;
+		values[4] = Long.MAX_VALUE / 2;
+
+		for (long value : values) {
+			// a larger second value keeps the bucket from being capped by the maximum
+			LatencyHistogram histogram = new LatencyHistogram();
+			histogram.recordValue(value);
+			histogram.recordValue(Long.MAX_VALUE);
+			long reported = histogram.getValueAtPercentile(50);
+			assertTrue(value + " reported as " + reported, reported >= value);
+			assertTrue(value + " reported as " + reported, reported - value <= value / 64);
+		}
+	}
+
+	@Test
+	public void testPercentilesNeverBelowExact() {
+		Random random = new Random(7);
+		LatencyHistogram histogram = new LatencyHistogram();
+		long[] values = new long[1000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = 1000000 + (long) (random.nextGaussian() * 200000);
+			histogram.recordValue(values[i]);
+		}
+		Arrays.sort(values);
+		for (double percentile : new double[] { 1, 25, 50, 75, 90, 95, 99, 99.9 }) {
+			long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+			long reported = histogram.getValueAtPercentile(percentile);
+			assertTrue("p" + percentile, reported >= exact);
+			assertTrue("p" + percentile, reported - exact <= exact / 64);
+		}
+		assertEquals(values[0], histogram.getMin());
+		assertEquals(values[values.length - 1], histogram.getMax());
+	}
+
+	@Test
+	public void testAdd() {
+		LatencyHistogram first = new LatencyHistogram();
+		first.recordValue(10);
+		first.recordValue(20);
+		LatencyHistogram second = new LatencyHistogram();
+		second.recordValue(5);
+		second.recordValue(90);
+		first.add(second);
+		first.add(new LatencyHistogram());
+		assertEquals(4, first.getTotalCount());
+		assertEquals(5, first.getMin());
+		assertEquals(90, first.getMax());
+		assertEquals(31.25, first.getMean(), 0.0001);
+		assertEquals(10, first.getValueAtPercentile(50));
+	}
+
+	@Test
+	public void testPercentileDistributionLeavesOutUnsupportedPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 100; i++)
+			histogram.recordValue(i * 1000000L);
+		String distribution = histogram.toPercentileDistribution();
+		assertTrue(distribution, distribution.contains(" 99 "));
+		assertTrue(distribution, !distribution.contains("99.9"));
+	}
+}
@@ -0,0 +1,82 @@
+package com.uc4.ara.feature.websmoketest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class LatencySlaTest {
+
+	@Test
+	public void testParseList() {
+		List<LatencySla> slas = LatencySla.parse("p95<300, p99 < 800,,max<2000");
+		assertEquals(3, slas.size());
+		assertEquals("p95 < 300.000 ms", slas.get(0).toString());
+		assertEquals("p99 < 800.000 ms", slas.get(1).toString());
+		assertEquals("max < 2000.000 ms", slas.get(2).toString());
+	}
+
+	@Test
+	public void testParseMetrics() {
+		assertEquals("min < 1.000 ms", LatencySla.parse("min<1").get(0).toString());
+		assertEquals("mean < 1.500 ms", LatencySla.parse("MEAN<1.5").get(0).toString());
+		assertEquals("median < 0.250 ms", LatencySla.parse("Median<0.25").get(0).toString());
+		assertEquals("p99.9 < 10.000 ms", LatencySla.parse("p99.9<10").get(0).toString());
+		assertEquals("p100 < 10.000 ms", LatencySla.parse("p100<10").get(0).toString());
+		assertEquals("p0 < 10.000 ms", LatencySla.parse("p0<10").get(0).toString());
+		assertEquals(0, LatencySla.parse("").size());
+		assertEquals(0, LatencySla.parse(" , ").size());
+	}
+
+	@Test
+	public void testParseInvalid() {
+		assertInvalid("p95>300");
+		assertInvalid("p95<");
+		assertInvalid("p95<300ms");
+		assertInvalid("p101<300");
+		assertInvalid("p<300");
+		assertInvalid("avg<300");
+		assertInvalid("p95<300,p99");
+		assertInvalid("p95<-1");
+	}
+
+	@Test
+	public void testIsMet() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 100; i++)
+			histogram.recordValue(i * 1000000L);
+
+		assertTrue(LatencySla.parse("min<1.1").get(0).isMet(histogram));
+		assertFalse(LatencySla.parse("min<1").get(0).isMet(histogram));
+		assertTrue(LatencySla.parse("max<101").get(0).isMet(histogram));
+		assertFalse(LatencySla.parse("max<100").get(0).isMet(histogram));
+		assertTrue(LatencySla.parse("mean<51").get(0).isMet(histogram));
+		assertFalse(LatencySla.parse("mean<50").get(0).isMet(histogram));
+		// percentiles are reported at the upper end of their bucket, at most 1.6% above
+		assertTrue(LatencySla.parse("median<51").get(0).isMet(histogram));
+		assertFalse(LatencySla.parse("median<50").get(0).isMet(histogram));
+		assertTrue(LatencySla.parse("p90<92").get(0).isMet(histogram));
+		assertFalse(LatencySla.parse("p90<90").get(0).isMet(histogram));
+		assertEquals(histogram.getMax(), LatencySla.parse("p100<1").get(0).getValue(histogram));
+	}
+
+	@Test
+	public void testEmptyHistogramMeetsEveryThreshold() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (LatencySla sla : LatencySla.parse("min<1,max<1,mean<1,median<1,p99<1"))
+			assertTrue(sla.toString(), sla.isMet(histogram));
+	}
+
+	private static void assertInvalid(String value) {
+		try {
+			List<LatencySla> slas = LatencySla.parse(value);
+			fail("Parsed " + value + " as " + slas);
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid latency threshold"));
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package com.uc4.ara.feature.websmoketest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.HttpClient;
+import org.junit.After;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class LoadGeneratorTest {
+
+	private static final byte[] BODY = "<html><body>ok</body></html>".getBytes();
+
+	private TestHttpServer server;
+
+	@After
+	public void tearDown() {
+		WebTestUtils.clearConnectionPoolLimits();
+		if (server != null)
+			server.stop();
+	}
+
+	@Test
+	public void testClosedLoop() throws Exception {
+		server = new TestHttpServer(respondAfter(0, 200));
+		LoadGenerator generator = generator(2, 0, 300);
+		generator.run();
+
+		assertFalse(generator.isOpenLoop());
+		assertTrue(generator.getRequestCount() > 0);
+		assertEquals(generator.getRequestCount(), server.getRequestCount());
+		assertEquals(0, generator.getFailedCount());
+		assertEquals(0, generator.getMissedCount());
+		assertEquals(AbstractWebSmokeTest.OK, generator.getFirstFailure());
+		assertEquals(generator.getRequestCount(), generator.getLatencies().getTotalCount());
+		assertEquals(generator.getRequestCount(), generator.getServiceTimes().getTotalCount());
+		assertTrue(generator.getElapsedNanos() >= TimeUnit.MILLISECONDS.toNanos(300));
+	}
+
+	@Test
+	public void testClosedLoopFailures() throws Exception {
+		server = new TestHttpServer(respondAfter(0, 503));
+		LoadGenerator generator = generator(1, 0, 200);
+		generator.run();
+
+		assertTrue(generator.getRequestCount() > 0);
+		assertEquals(generator.getRequestCount(), generator.getFailedCount());
+		assertEquals(503, generator.getFirstFailure());
+		assertEquals(Collections.singletonMap(503, (int) generator.getRequestCount()), generator.getFailures());
+	}
+
+	@Test
+	public void testOpenLoopSchedulesFixedRate() throws Exception {
+		server = new TestHttpServer(respondAfter(0, 200));
+		// 20 requests in 400 ms, one every 20 ms
+		LoadGenerator generator = generator(4, 50, 400);
+		generator.run();
+
+		assertTrue(generator.isOpenLoop());
+		assertEquals(20, generator.getRequestCount() + generator.getMissedCount());
+		assertEquals(generator.getRequestCount(), server.getRequestCount());
+		assertTrue(generator.getMissedCount() <= 1);
+	}
+
+	@Test
+	public void testOpenLoopRecordsMissedRequests() throws Exception {
+		// one worker, every response takes 150 ms, so most of the 20 slots are missed
+		server = new TestHttpServer(respondAfter(150, 200));
+		LoadGenerator generator = generator(1, 50, 400);
+		generator.run();
+
+		long requests = generator.getRequestCount();
+		assertTrue(requests >= 2 && requests <= 4);
+		assertEquals(20, requests + generator.getMissedCount());
+		assertEquals(requests, generator.getServiceTimes().getTotalCount());
+		// the missed requests count with the time from their slot to the end of the duration
+		assertEquals(20, generator.getLatencies().getTotalCount());
+		assertTrue(generator.getLatencies().getMin() <= TimeUnit.MILLISECONDS.toNanos(100));
+		// the slot of the second request passed while the first one was running
+		assertTrue(generator.getLatencies().getMax() >= TimeUnit.MILLISECONDS.toNanos(250));
+		assertTrue(generator.getServiceTimes().getMax() < generator.getLatencies().getMax());
+	}
+
+	private LoadGenerator generator(int concurrency, double rate, long durationMillis) throws IOException {
+		WebTestInput input = new WebTestInput(server.url("/"), 5000);
+		WebTestUtils.setConnectionPoolLimits(100, concurrency);
+		HttpClient httpclient = WebTestUtils.getHttpClient(input);
+		return new LoadGenerator(httpclient, input, concurrency, rate, TimeUnit.MILLISECONDS.toNanos(durationMillis), false);
+	}
+
+	private static HttpHandler respondAfter(final long millis, final int status) {
+		return new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					Thread.sleep(millis);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				TestHttpServer.respond(exchange, status, "text/html", BODY);
+			}
+		};
+	}
+}
@@ -0,0 +1,155 @@
+package com.uc4.ara.feature.websmoketest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+public class RequestTimingsTest {
+
+	private static final byte[] PAGE = "<html><body>ok</body></html>".getBytes();
+
+	private TestHttpServer server;
+
+	@After
+	public void tearDown() {
+		if (RequestTimings.current() != null)
+			RequestTimings.current().finish();
+		if (server != null)
+			server.stop();
+	}
+
+	@Test
+	public void testPhases() throws Exception {
+		RequestTimings timings = RequestTimings.start();
+		assertSame(timings, RequestTimings.current());
+		timings.addDns(1000000);
+		timings.addConnect(2000000);
+		timings.addTls(3000000, false);
+		Thread.sleep(20);
+		timings.responseReceived();
+		Thread.sleep(20);
+		timings.bodyReceived();
+		Thread.sleep(20);
+		timings.finish();
+		assertNull(RequestTimings.current());
+
+		assertEquals(1000000, timings.getDnsNanos());
+		assertEquals(2000000, timings.getConnectNanos());
+		assertEquals(3000000, timings.getTlsNanos());
+		// the 6 ms of the connection phases are not part of the time to first byte
+		assertTrue(timings.getTtfbNanos() >= TimeUnit.MILLISECONDS.toNanos(14));
+		assertTrue(timings.getDownloadNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+		assertTrue(timings.getParseNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+		assertEquals(timings.getTotalNanos(), timings.getDnsNanos() + timings.getConnectNanos() + timings.getTlsNanos()
+				+ timings.getTtfbNanos() + timings.getDownloadNanos() + timings.getParseNanos());
+
+		// finished timings do not change
+		long total = timings.getTotalNanos();
+		Thread.sleep(5);
+		timings.finish();
+		assertEquals(total, timings.getTotalNanos());
+		assertFalse(timings.isConnectionReused());
+	}
+
+	@Test
+	public void testPhasesNotReached() {
+		RequestTimings timings = RequestTimings.start();
+		timings.finish();
+		assertEquals(-1, timings.getTtfbNanos());
+		assertEquals(-1, timings.getDownloadNanos());
+		assertEquals(-1, timings.getParseNanos());
+		assertTrue(timings.getTotalNanos() >= 0);
+		assertFalse(timings.isConnectionReused());
+
+		String json = timings.toJson("http://host/");
+		assertTrue(json, json.contains("\"ttfbMs\":null,\"downloadMs\":null,\"parseMs\":null"));
+		assertFalse(json, json.contains("wireBytes"));
+		String log = timings.toLogString();
+		assertFalse(log, log.contains("TTFB") || log.contains("download") || log.contains("parse"));
+
+		// the response was received, the body not
+		timings = RequestTimings.start();
+		timings.responseReceived();
+		timings.finish();
+		assertTrue(timings.getTtfbNanos() >= 0);
+		assertEquals(-1, timings.getDownloadNanos());
+		assertTrue(timings.isConnectionReused());
+	}
+
+	@Test
+	public void testConnectionNotMeasured() {
+		RequestTimings timings = RequestTimings.start();
+		timings.connectionNotMeasured();
+		timings.responseReceived();
+		timings.finish();
+		assertFalse(timings.isConnectionReused());
+		String json = timings.toJson("http://host/");
+		assertFalse(json, json.contains("dnsMs") || json.contains("connectionReused"));
+		assertFalse(timings.toLogString().contains("DNS"));
+	}
+
+	@Test
+	public void testBodySize() {
+		RequestTimings timings = RequestTimings.start();
+		timings.setContentEncoding("gzip");
+		timings.addWireBytes(100);
+		timings.addDecodedBytes(400);
+		timings.responseReceived();
+		timings.bodyReceived();
+		timings.finish();
+		assertTrue(timings.toLogString(), timings.toLogString().contains(", body 400 bytes (100 on the wire, gzip)"));
+		assertTrue(timings.toJson("u").endsWith(",\"wireBytes\":100,\"decodedBytes\":400,\"contentEncoding\":\"gzip\"}"));
+	}
+
+	@Test
+	public void testMeasuredRequests() throws Exception {
+		server = new TestHttpServer(new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				TestHttpServer.respond(exchange, 200, "text/html", PAGE);
+			}
+		});
+		HttpClient httpclient = WebTestUtils.getHttpClient(new WebTestInput(server.url("/timings")));
+
+		RequestTimings first = get(httpclient);
+		assertTrue(first.getConnectNanos() > 0);
+		assertEquals(0, first.getTlsNanos());
+		assertFalse(first.isConnectionReused());
+		assertEquals(PAGE.length, first.getDecodedBytes());
+		assertTrue(first.getDownloadNanos() >= 0);
+
+		// the pooled connection is used again
+		RequestTimings second = get(httpclient);
+		assertEquals(0, second.getDnsNanos());
+		assertEquals(0, second.getConnectNanos());
+		assertTrue(second.isConnectionReused());
+		assertTrue(second.toLogString(), second.toLogString().endsWith(" (connection reused)"));
+	}
+
+	private RequestTimings get(HttpClient httpclient) throws IOException {
+		RequestTimings timings = RequestTimings.start();
+		HttpGet request = new HttpGet(server.url("/timings"));
+		HttpResponse response = WebTestUtils.execute(httpclient, request);
+		timings.responseReceived();
+		EntityUtils.toByteArray(response.getEntity());
+		timings.bodyReceived();
+		WebTestUtils.releaseConnection(request, response);
+		timings.finish();
+		return timings;
+	}
+}
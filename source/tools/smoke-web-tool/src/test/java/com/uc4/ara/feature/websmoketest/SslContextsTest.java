@@ -0,0 +1,179 @@
+package com.uc4.ara.feature.websmoketest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.KeyStore;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSocket;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+/**
+ * Resumes TLS sessions against a local HTTPS server with a self-signed
+ * certificate created by keytool.
+ */
+public class SslContextsTest {
+
+	private static final char[] PASSWORD = "changeit".toCharArray();
+
+	private static File keyStore;
+	private static HttpsServer server;
+	private static ExecutorService executor;
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		keyStore = File.createTempFile("server", ".p12");
+		keyStore.delete();
+		Process keytool = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/keytool").getPath(),
+				"-genkeypair", "-keystore", keyStore.getPath(), "-storetype", "PKCS12", "-storepass",
+				new String(PASSWORD), "-alias", "server", "-keyalg", "RSA", "-keysize", "2048", "-validity", "1",
+				"-dname", "CN=localhost").redirectErrorStream(true).start();
+		InputStream in = keytool.getInputStream();
+		while (in.read() != -1)
+			;
+		assertEquals(0, keytool.waitFor());
+
+		KeyStore store = KeyStore.getInstance("PKCS12");
+		InputStream storeIn = new FileInputStream(keyStore);
+		try {
+			store.load(storeIn, PASSWORD);
+		} finally {
+			storeIn.close();
+		}
+		KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+		keyManagers.init(store, PASSWORD);
+		SSLContext serverContext = SSLContext.getInstance("TLS");
+		serverContext.init(keyManagers.getKeyManagers(), null, null);
+
+		server = HttpsServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.setHttpsConfigurator(new HttpsConfigurator(serverContext));
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				// every request needs a new connection and handshake
+				exchange.getResponseHeaders().set("Connection", "close");
+				TestHttpServer.respond(exchange, 200, "text/html", "<html><body>ok</body></html>".getBytes());
+				exchange.close();
+			}
+		});
+		executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		if (server != null)
+			server.stop(0);
+		if (executor != null)
+			executor.shutdownNow();
+		if (keyStore != null)
+			keyStore.delete();
+	}
+
+	@Test
+	public void testSharedContexts() throws Exception {
+		SSLContext trustAll = SslContexts.getContext(true);
+		SSLContext validating = SslContexts.getContext(false);
+		assertSame(trustAll, SslContexts.getContext(true));
+		assertSame(validating, SslContexts.getContext(false));
+		assertNotSame(trustAll, validating);
+		assertEquals(SslContexts.SESSION_CACHE_SIZE, trustAll.getClientSessionContext().getSessionCacheSize());
+		assertEquals(SslContexts.SESSION_TIMEOUT, trustAll.getClientSessionContext().getSessionTimeout());
+		assertEquals(SslContexts.SESSION_TIMEOUT, validating.getClientSessionContext().getSessionTimeout());
+	}
+
+	@Test
+	public void testSessionIsResumed() throws Exception {
+		// TLS 1.2 keeps the session id on resumption
+		byte[] first = handshake("TLSv1.2");
+		byte[] second = handshake("TLSv1.2");
+		assertTrue(first.length > 0);
+		assertArrayEquals(first, second);
+	}
+
+	@Test
+	public void testChecksReportResumedSessions() throws Exception {
+		HttpClient httpclient = WebTestUtils.getHttpClient(input());
+
+		RequestTimings first = get(httpclient);
+		assertTrue(first.getTlsNanos() > 0);
+
+		RequestTimings second = get(httpclient);
+		assertTrue(second.getTlsNanos() > 0);
+		assertFalse(second.isConnectionReused());
+		assertTrue(second.toLogString(), second.isTlsResumed());
+	}
+
+	@Test
+	public void testCertificateIsValidated() throws Exception {
+		WebTestInput input = input();
+		input.setIgnoreServerCert(false);
+		try {
+			WebTestUtils.execute(WebTestUtils.getHttpClient(input), new HttpGet(url()));
+			fail("self-signed certificate accepted");
+		} catch (SSLException e) {
+			// expected
+		}
+	}
+
+	private static byte[] handshake(String protocol) throws Exception {
+		SSLSocket socket = (SSLSocket) SslContexts.getContext(true).getSocketFactory()
+				.createSocket(server.getAddress().getAddress(), server.getAddress().getPort());
+		try {
+			socket.setEnabledProtocols(new String[] { protocol });
+			socket.startHandshake();
+			return socket.getSession().getId();
+		} finally {
+			socket.close();
+		}
+	}
+
+	private static RequestTimings get(HttpClient httpclient) throws IOException {
+		RequestTimings timings = RequestTimings.start();
+		HttpGet request = new HttpGet(url());
+		HttpResponse response = WebTestUtils.execute(httpclient, request);
+		timings.responseReceived();
+		WebTestUtils.releaseConnection(request, response);
+		timings.finish();
+		assertEquals(200, response.getStatusLine().getStatusCode());
+		return timings;
+	}
+
+	private static WebTestInput input() {
+		WebTestInput input = new WebTestInput(url());
+		input.setIgnoreServerCert(true);
+		return input;
+	}
+
+	private static String url() {
+		return "https://localhost:" + server.getAddress().getPort() + "/";
+	}
+}
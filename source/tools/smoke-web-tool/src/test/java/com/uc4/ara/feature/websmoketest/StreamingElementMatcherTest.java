@@ -0,0 +1,132 @@
+package com.uc4.ara.feature.websmoketest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.htmlcleaner.CleanerProperties;
+import org.htmlcleaner.DomSerializer;
+import org.htmlcleaner.HtmlCleaner;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+/**
+ * Compares the streaming matcher with the evaluation of the XPath expression
+ * on the document built by HtmlCleaner, like GetSearchElement does without
+ * streaming.
+ */
+public class StreamingElementMatcherTest {
+
+	@Test
+	public void testPositionIsCountedPerParent() throws Exception {
+		String html = "<ul><li>a</li><li>b</li></ul><ul><li>c</li></ul>";
+		assertElement(html, "//li[2]", true);
+		assertElement(html, "//li[3]", false);
+		assertElement(html, "//ul[2]/li[1]", true);
+		assertElement(html, "//ul[2]/li[2]", false);
+		assertElement(html, "//ul/li[2][contains(text(),'b')]", true);
+		assertElement(html, "//ul/li[2][contains(text(),'c')]", false);
+		assertElement(html, "/html/body/ul[2]", true);
+		assertElement(html, "/html/body/*[3]", false);
+	}
+
+	@Test
+	public void testTextContainsUsesFirstTextNode() throws Exception {
+		String html = "<p>first <b>bold</b> second</p>";
+		assertElement(html, "//p[contains(text(),'first')]", true);
+		assertElement(html, "//p[contains(text(),'second')]", false);
+		assertElement(html, "//p[contains(text(),'bold')]", false);
+		assertElement(html, "//b[text()='bold']", true);
+		assertElement(html, "//p[text()='first']", false);
+	}
+
+	@Test
+	public void testStringValueAcrossChunks() throws Exception {
+		// the tokenizer returns text in chunks of 4096 characters
+		String html = "<div id=\"main\">" + repeat('x', 5000) + "<span>need</span>le tail</div>";
+		assertElement(html, "//div[contains(.,'xneedle tail')]", true);
+		assertElement(html, "//div[contains(.,'xneedle  tail')]", false);
+		assertElement(html, "//span[contains(.,'needle')]", false);
+		assertElement(html, "//*[@id='main'][contains(.,'xxneed')]", true);
+		assertElement(html, "/html/body[contains(.,'le tail')]", true);
+	}
+
+	@Test
+	public void testImpliedStructure() throws Exception {
+		String html = "<title>Test</title><p>text</p>";
+		assertElement(html, "/html/head/title", true);
+		assertElement(html, "/html/body/p", true);
+		assertElement(html, "/html/body/title", false);
+		assertElement("<p>after</p></body></html><p>trailing</p>", "/html/body/p[2]", true);
+	}
+
+	@Test
+	public void testImplicitlyClosedElements() throws Exception {
+		assertElement("<p>one<p>two<div>three</div>", "/html/body/p[2]", true);
+		assertElement("<p>one<p>two<div>three</div>", "//p/p", false);
+		assertElement("<p>one<p>two<div>three</div>", "//p/div", false);
+		assertElement("<p>one<p>two<div>three</div>", "/html/body/div", true);
+		assertElement("<ul><li>a<li>b</ul>", "//ul/li[2]", true);
+		assertElement("<ul><li>a<li>b</ul>", "//li/li", false);
+		assertElement("<table><tr><td>a<td>b</table>", "//tr/td[2]", true);
+		assertElement("<table><tr><td>a<td>b</table>", "//td/td", false);
+		assertElement("<table><tr><td>a<tr><td>b</table>", "//tr[2]/td", true);
+	}
+
+	@Test
+	public void testVoidElements() throws Exception {
+		String html = "<p>a<br>b<img src=\"x.png\">c<input name=\"q\"><span>d</span></p>";
+		assertElement(html, "//p/img[@src='x.png']", true);
+		assertElement(html, "//p/span", true);
+		assertElement(html, "//br/img", false);
+		assertElement(html, "//img/input", false);
+		assertElement(html, "//input/span", false);
+		assertElement(html, "//p[contains(text(),'a')]", true);
+		assertElement("<div><br/><span>x</span></div>", "//div/span", true);
+	}
+
+	@Test
+	public void testAttributes() throws Exception {
+		String html = "<div class=\"nav main\" data-x=\"\"><a href=\"/home\">Home</a></div>";
+		assertElement(html, "//div[@class]", true);
+		assertElement(html, "//div[@id]", false);
+		assertElement(html, "//div[contains(@class,'main')]", true);
+		assertElement(html, "//div[@class='main']", false);
+		assertElement(html, "//*[@href='/home']", true);
+	}
+
+	@Test
+	public void testUnsupportedExpressions() {
+		assertNull(StreamingElementMatcher.compile("//a/.."));
+		assertNull(StreamingElementMatcher.compile("//a[last()]"));
+		assertNull(StreamingElementMatcher.compile("//p[contains(text(),'a')][1]"));
+		assertNotNull(StreamingElementMatcher.compile("//p[1][contains(text(),'a')]"));
+	}
+
+	private static void assertElement(String html, String xpath, boolean expected) throws Exception {
+		HtmlCleaner htmlCleaner = new HtmlCleaner();
+		CleanerProperties prop = new CleanerProperties();
+		prop.setNamespacesAware(false);
+		Document doc = new DomSerializer(prop).createDOM(htmlCleaner.clean(html));
+		Object node = XPathFactory.newInstance().newXPath().evaluate(xpath, doc, XPathConstants.NODE);
+		assertEquals("parsed " + xpath, expected, node != null);
+
+		StreamingElementMatcher matcher = StreamingElementMatcher.compile(xpath);
+		assertNotNull(xpath, matcher);
+		assertEquals("streamed " + xpath, expected,
+				matcher.match(new StringEntity(html, ContentType.create("text/html", "UTF-8")), 0));
+	}
+
+	private static String repeat(char c, int count) {
+		char[] chars = new char[count];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+}
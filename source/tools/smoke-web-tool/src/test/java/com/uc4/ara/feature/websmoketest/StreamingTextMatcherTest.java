@@ -0,0 +1,135 @@
+package com.uc4.ara.feature.websmoketest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.junit.Test;
+
+/**
+ * Compares the streaming search with the search in the text of the parsed
+ * document.
+ */
+public class StreamingTextMatcherTest {
+
+	@Test
+	public void testLiteralAcrossTextChunks() throws Exception {
+		// the tokenizer returns text in chunks of 4096 characters
+		String html = page(repeat('x', 4090) + " needle in the haystack");
+		assertText(html, "needle in", true);
+		assertText(html, "NEEDLE IN THE", true);
+		assertText(html, "needle out", false);
+	}
+
+	@Test
+	public void testLiteralAcrossMarkup() throws Exception {
+		String html = page("<p>nee<b>dle</b>\n\n   in <!-- comment -->the<br>haystack</p>");
+		assertText(html, "needle in the", true);
+		assertText(html, "the haystack", true);
+		assertText(html, "thehaystack", false);
+	}
+
+	@Test
+	public void testHeadIsNotSearched() throws Exception {
+		String html = "<html><head><title>needle</title></head><body><p>hay</p></body></html>";
+		assertText(html, "needle", false);
+		assertText(html, "hay", true);
+	}
+
+	@Test
+	public void testEntities() throws Exception {
+		String html = page("<p>&hearts; &copy 2024 &CounterClockwiseContourIntegral; &unknown; &#x41;&#66;</p>");
+		assertText(html, "\u2665 \u00a9 2024 \u2233 &unknown; AB", true);
+	}
+
+	@Test
+	public void testRegexCompletedByNextChunk() throws Exception {
+		// the first chunk ends with "order 12", the match continues in the next one
+		String html = page(repeat('x', 4088) + "order 12345 shipped");
+		assertRegex(html, "order \\d+ shipped", true);
+		assertRegex(html, "order 123 shipped", false);
+	}
+
+	@Test
+	public void testRegexRequiringEndIsNotFinal() throws Exception {
+		// both match at the end of the first chunk, but not with the text following it
+		String html = page(repeat('x', 4088) + "order 12345 shipped");
+		assertRegex(html, "12$", false);
+		assertRegex(html, "order 12\\b", false);
+		assertRegex(html, "order 12345\\b", true);
+	}
+
+	@Test
+	public void testRegexWithLookBehind() throws Exception {
+		String html = page(repeat('x', 10000) + " total: 42");
+		assertRegex(html, "(?<=total: )\\d+", true);
+		assertRegex(html, "(?<=sum: )\\d+", false);
+	}
+
+	@Test
+	public void testTrailingSpaceIsTrimmed() throws Exception {
+		String html = page("<p>order shipped   </p>\n<div> </div>\n");
+		assertRegex(html, "shipped$", true);
+		assertRegex(html, "shipped $", false);
+		assertRegex(html, "^order", true);
+	}
+
+	@Test
+	public void testByteLimit() throws Exception {
+		String html = page(repeat('x', 10000) + " needle");
+
+		StreamingTextMatcher matcher = StreamingTextMatcher.forText("needle");
+		assertFalse(matcher.match(entity(html), 1000));
+		assertTrue(matcher.isLimitReached());
+		assertEquals(1000, matcher.getBytesRead());
+
+		assertTrue(matcher.match(entity(html), 0));
+		assertFalse(matcher.isLimitReached());
+
+		matcher = StreamingTextMatcher.forRegex("needle$");
+		assertTrue(matcher.match(entity(html), html.length() + 1));
+		assertFalse(matcher.isLimitReached());
+		assertTrue(matcher.match(entity(html), html.length() - "</body></html>".length()));
+		assertFalse(matcher.match(entity(html), html.length() - "e</body></html>".length()));
+		assertTrue(matcher.isLimitReached());
+	}
+
+	@Test
+	public void testHasText() throws Exception {
+		StreamingTextMatcher matcher = StreamingTextMatcher.forText("needle");
+		matcher.match(entity("<html><head><title>t</title></head><body> \n </body></html>"), 0);
+		assertFalse(matcher.hasText());
+		matcher.match(entity(page("hay")), 0);
+		assertTrue(matcher.hasText());
+	}
+
+	private static void assertText(String html, String text, boolean expected) throws Exception {
+		assertEquals("parsed", expected, WebTestUtils.html2text(html).toLowerCase().contains(text.toLowerCase()));
+		assertEquals("streamed", expected, StreamingTextMatcher.forText(text).match(entity(html), 0));
+	}
+
+	private static void assertRegex(String html, String regex, boolean expected) throws Exception {
+		Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+		assertEquals("parsed", expected, pattern.matcher(WebTestUtils.html2text(html)).find());
+		assertEquals("streamed", expected, StreamingTextMatcher.forRegex(regex).match(entity(html), 0));
+	}
+
+	private static String page(String body) {
+		return "<html><head><title>Test</title></head><body>" + body + "</body></html>";
+	}
+
+	private static String repeat(char c, int count) {
+		char[] chars = new char[count];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+
+	private static StringEntity entity(String html) {
+		return new StringEntity(html, ContentType.create("text/html", "UTF-8"));
+	}
+}
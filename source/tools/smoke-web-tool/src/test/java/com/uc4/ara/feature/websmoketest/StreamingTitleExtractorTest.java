@@ -0,0 +1,89 @@
+package com.uc4.ara.feature.websmoketest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.junit.Test;
+
+/**
+ * Reads the title of pages without downloading the rest.
+ */
+public class StreamingTitleExtractorTest {
+
+	@Test
+	public void testTitle() throws Exception {
+		assertEquals("Welcome home", extract("<html><head><title>Welcome home</title></head><body></body></html>"));
+		assertEquals("Upper case", extract("<HTML><HEAD><TITLE lang=\"en\">Upper case</TITLE></HEAD></HTML>"));
+		assertEquals("", extract("<html><head><title></title></head></html>"));
+	}
+
+	@Test
+	public void testWhitespaceIsCollapsed() throws Exception {
+		assertEquals("Welcome home", extract("<title>\n\t Welcome   \r\n home&nbsp;</title>"));
+		assertEquals("", extract("<title>  \n </title>"));
+	}
+
+	@Test
+	public void testEntities() throws Exception {
+		assertEquals("Tom & Jerry \u00a9 <2024> AB", extract("<title>Tom &amp; Jerry &copy; &lt;2024&gt; &#x41;&#66;</title>"));
+	}
+
+	@Test
+	public void testMarkupBeforeTitle() throws Exception {
+		assertEquals("Page", extract("<!DOCTYPE html><html><head><!-- <title>Comment</title> -->"
+				+ "<meta charset=\"utf-8\"><script>var t = '<title>Script</title>';</script><title>Page</title></head>"));
+	}
+
+	@Test
+	public void testNoTitleInHead() throws Exception {
+		assertNull(extract("<html><head><meta charset=\"utf-8\"></head><body><title>Body</title></body></html>"));
+		assertNull(extract("<html><body><title>Body</title></body></html>"));
+		assertNull(extract(""));
+	}
+
+	@Test
+	public void testUnterminatedTitle() throws Exception {
+		assertEquals("Cut off", extract("<html><head><title>Cut off"));
+	}
+
+	@Test
+	public void testStopsAfterTitle() throws Exception {
+		String html = "<html><head><title>Large page</title></head><body>" + repeat('x', 100000) + "</body></html>";
+		StreamingTitleExtractor extractor = new StreamingTitleExtractor();
+		assertEquals("Large page", extractor.extract(entity(html), 0));
+		assertTrue(String.valueOf(extractor.getBytesRead()), extractor.getBytesRead() < 20000);
+		assertFalse(extractor.isLimitReached());
+	}
+
+	@Test
+	public void testByteLimit() throws Exception {
+		String html = "<html><head>" + repeat(' ', 1000) + "<title>Late title</title></head></html>";
+		StreamingTitleExtractor extractor = new StreamingTitleExtractor();
+		assertNull(extractor.extract(entity(html), 500));
+		assertTrue(extractor.isLimitReached());
+		assertEquals(500, extractor.getBytesRead());
+
+		assertEquals("Late title", extractor.extract(entity(html), 2000));
+		assertFalse(extractor.isLimitReached());
+	}
+
+	private static String extract(String html) throws Exception {
+		return new StreamingTitleExtractor().extract(entity(html), 0);
+	}
+
+	private static String repeat(char c, int count) {
+		char[] chars = new char[count];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+
+	private static StringEntity entity(String html) {
+		return new StringEntity(html, ContentType.create("text/html", "UTF-8"));
+	}
+}
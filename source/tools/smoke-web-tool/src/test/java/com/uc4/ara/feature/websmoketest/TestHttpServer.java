@@ -0,0 +1,73 @@
+package com.uc4.ara.feature.websmoketest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * HTTP server on the loopback interface for the tests of the checks. Every
+ * request is passed to the handler of the test, the requests are counted.
+ */
+class TestHttpServer {
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final AtomicInteger requestCount = new AtomicInteger();
+
+	TestHttpServer(final HttpHandler handler) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				requestCount.incrementAndGet();
+				try {
+					InputStream in = exchange.getRequestBody();
+					while (in.read() != -1)
+						;
+					handler.handle(exchange);
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	String url(String path) {
+		return "http://" + server.getAddress().getAddress().getHostAddress() + ":" + server.getAddress().getPort() + path;
+	}
+
+	int getRequestCount() {
+		return requestCount.get();
+	}
+
+	void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Sends a response with a body, no body for HEAD requests.
+	 */
+	static void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+		if (contentType != null)
+			exchange.getResponseHeaders().set("Content-Type", contentType);
+		boolean head = "HEAD".equals(exchange.getRequestMethod());
+		exchange.sendResponseHeaders(status, head || body.length == 0 ? -1 : body.length);
+		if (!head && body.length > 0) {
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}
+	}
+}
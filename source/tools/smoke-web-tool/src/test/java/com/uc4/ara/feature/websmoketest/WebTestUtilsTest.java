@@ -0,0 +1,79 @@
+package com.uc4.ara.feature.websmoketest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.apache.http.conn.ClientConnectionManager;
+import org.junit.After;
+import org.junit.Test;
+
+public class WebTestUtilsTest {
+
+	@After
+	public void clearLimits() {
+		WebTestUtils.clearConnectionPoolLimits();
+	}
+
+	@Test
+	public void testPoolsAreKeyedBySettings() {
+		ClientConnectionManager pool = WebTestUtils.getConnectionManager(input("user", "secret"));
+		assertSame(pool, WebTestUtils.getConnectionManager(input("user", "secret")));
+		assertNotSame(pool, WebTestUtils.getConnectionManager(input("user", "other")));
+		assertNotSame(pool, WebTestUtils.getConnectionManager(input("other", "secret")));
+
+		WebTestInput insecure = input("user", "secret");
+		insecure.setIgnoreServerCert(true);
+		assertNotSame(pool, WebTestUtils.getConnectionManager(insecure));
+
+		WebTestInput proxied = input("user", "secret");
+		proxied.setProxyHost("proxy");
+		proxied.setProxyPort(3128);
+		proxied.setProxyUsername("proxyuser");
+		proxied.setProxyPassword("a");
+		ClientConnectionManager proxyPool = WebTestUtils.getConnectionManager(proxied);
+		assertNotSame(pool, proxyPool);
+		proxied.setProxyPassword("b");
+		assertNotSame(proxyPool, WebTestUtils.getConnectionManager(proxied));
+	}
+
+	@Test
+	public void testPoolsAreKeyedByLimits() {
+		ClientConnectionManager pool = WebTestUtils.getConnectionManager(input("limits", null));
+		WebTestUtils.setConnectionPoolLimits(200, 20);
+		ClientConnectionManager limited = WebTestUtils.getConnectionManager(input("limits", null));
+		assertNotSame(pool, limited);
+		assertSame(limited, WebTestUtils.getConnectionManager(input("limits", null)));
+		WebTestUtils.clearConnectionPoolLimits();
+		assertSame(pool, WebTestUtils.getConnectionManager(input("limits", null)));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedPoolIsEvicted() {
+		ClientConnectionManager first = WebTestUtils.getConnectionManager(input("evicted", null));
+		ClientConnectionManager kept = WebTestUtils.getConnectionManager(input("kept", null));
+		for (int i = 0; i < 40; i++) {
+			WebTestUtils.getConnectionManager(input("user" + i, null));
+			// keeps the pool recently used
+			WebTestUtils.getConnectionManager(input("kept", null));
+		}
+		assertSame(kept, WebTestUtils.getConnectionManager(input("kept", null)));
+		assertNotSame(first, WebTestUtils.getConnectionManager(input("evicted", null)));
+	}
+
+	@Test
+	public void testCredentialsDigest() {
+		String digest = WebTestUtils.credentialsDigest("user", "secret");
+		assertEquals(64, digest.length());
+		assertFalse(digest.contains("secret"));
+		assertEquals(digest, WebTestUtils.credentialsDigest("user", "secret"));
+		assertFalse(digest.equals(WebTestUtils.credentialsDigest("user", "secreT")));
+		assertFalse(WebTestUtils.credentialsDigest("a|b", null).equals(WebTestUtils.credentialsDigest("a", "b")));
+		assertFalse(WebTestUtils.credentialsDigest(null, "").equals(WebTestUtils.credentialsDigest("", null)));
+	}
+
+	private static WebTestInput input(String username, String password) {
+		return new WebTestInput("http://localhost/", username, password);
+	}
+}
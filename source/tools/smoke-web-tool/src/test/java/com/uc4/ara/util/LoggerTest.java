@@ -0,0 +1,134 @@
+package com.uc4.ara.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.uc4.ara.feature.FeatureUtil;
+
+public class LoggerTest {
+
+	private static final String NL = System.getProperty("line.separator");
+
+	private ByteArrayOutputStream output;
+
+	@Before
+	public void setUp() throws UnsupportedEncodingException {
+		output = new ByteArrayOutputStream();
+		FeatureUtil.setThreadOutput(new PrintStream(output, true, "UTF-8"));
+	}
+
+	@After
+	public void tearDown() {
+		Logger.endDebugBuffer(false);
+		FeatureUtil.setThreadOutput(null);
+	}
+
+	@Test
+	public void testFormat() {
+		assertEquals("a 1 b 2 c", Logger.format("a {} b {} c", 2, "1", "2", null));
+		assertEquals("1 2 3", Logger.format("{} {} {}", 3, null, null, new Object[] { 1, 2, 3 }));
+		assertEquals("x null {}", Logger.format("x {} {}", 1, null, null, null));
+		assertEquals("no placeholder", Logger.format("no placeholder", 2, "1", "2", null));
+	}
+
+	@Test
+	public void testDebugIsNotLoggedBelowDebugLevel() throws Exception {
+		Logger.MessageSupplier failing = new Logger.MessageSupplier() {
+			@Override
+			public String get() {
+				throw new AssertionError("message built");
+			}
+		};
+		Logger.logDebug(LogLevel.INFO, "hidden {}", "message");
+		Logger.logDebug(LogLevel.INFO, failing);
+		Logger.logDebug(LogLevel.DEBUG, "shown {} of {}", 1L);
+		assertEquals("shown 1 of {}" + NL, text());
+	}
+
+	@Test
+	public void testBufferIsWrittenOnFailure() throws Exception {
+		Logger.startDebugBuffer(3);
+		Logger.logDebug(LogLevel.ERROR, "first");
+		Logger.logDebug(LogLevel.ERROR, "second {}", 2L);
+		Logger.logDebug(LogLevel.ERROR, "third {} {}", "a", "b");
+		Logger.logDebug(LogLevel.ERROR, "fourth {} {} {}", 1, 2, 3);
+		Logger.logInfo(LogLevel.ERROR, "info is not kept");
+		assertEquals("", text());
+
+		Logger.endDebugBuffer(true);
+		String text = text();
+		assertTrue(text, text.startsWith("DEBUG messages before the failure (1 older messages dropped):"));
+		assertFalse(text, text.contains("first"));
+		assertTrue(text, text.matches("(?s).*\\d\\d:\\d\\d:\\d\\d\\.\\d{3} second 2\r\n"
+				+ "\\d\\d:\\d\\d:\\d\\d\\.\\d{3} third a b\r\n"
+				+ "\\d\\d:\\d\\d:\\d\\d\\.\\d{3} fourth 1 2 3\r\n.*"));
+		assertFalse(text, text.contains("info"));
+
+		// the buffer ended with the check
+		Logger.logDebug(LogLevel.ERROR, "later");
+		Logger.endDebugBuffer(true);
+		assertEquals(text, text());
+	}
+
+	@Test
+	public void testBufferIsDiscardedOnSuccess() throws Exception {
+		Logger.startDebugBuffer(10);
+		Logger.logDebug(LogLevel.INFO, "detail");
+		Logger.endDebugBuffer(false);
+		assertEquals("", text());
+
+		// nothing recorded, nothing written
+		Logger.startDebugBuffer(10);
+		Logger.endDebugBuffer(true);
+		assertEquals("", text());
+	}
+
+	@Test
+	public void testMessagesAreFormattedWhenRecorded() throws Exception {
+		StringBuilder state = new StringBuilder("before");
+		Logger.startDebugBuffer(10);
+		Logger.logDebug(LogLevel.INFO, "state {}", state);
+		state.setLength(0);
+		state.append("after");
+		Logger.logDebug(LogLevel.INFO, new IllegalStateException("broken"));
+		Logger.endDebugBuffer(true);
+
+		String text = text();
+		assertTrue(text, text.contains("state before"));
+		assertTrue(text, text.contains("java.lang.IllegalStateException: broken"));
+		assertTrue(text, text.contains("at " + LoggerTest.class.getName()));
+	}
+
+	@Test
+	public void testBufferIsPerThread() throws Exception {
+		Logger.startDebugBuffer(10);
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				Logger.logDebug(LogLevel.INFO, "other thread");
+			}
+		};
+		thread.start();
+		thread.join();
+		Logger.logDebug(LogLevel.INFO, "this thread");
+		Logger.endDebugBuffer(true);
+
+		String text = text();
+		assertTrue(text, text.contains("this thread"));
+		assertFalse(text, text.contains("other thread"));
+	}
+
+	private String text() throws UnsupportedEncodingException {
+		FeatureUtil.flushLog();
+		return output.toString("UTF-8");
+	}
+}